@@ -17,7 +17,8 @@ public interface Action extends Consumer<Game> {
                 self.accept(game);
             }
 
-            public String getDescription() { return description; }
+            @Override
+            public String getLogDescription() { return description; }
         };
     }
 }
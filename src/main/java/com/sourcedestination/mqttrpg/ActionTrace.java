@@ -0,0 +1,22 @@
+package com.sourcedestination.mqttrpg;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** flight recorder event spanning the execution of one {@link Action} */
+@Name("mqttrpg.ActionExecuted")
+@Label("Action Executed")
+@Category({"MQTT RPG", "Game Loop"})
+@Description("Execution of a queued or timed action")
+@Enabled(false)
+@StackTrace(false)
+final class ActionTrace extends jdk.jfr.Event {
+    @Label("Description") String description;
+    @Label("Action Class") Class<?> actionClass;
+    @Label("Mode") @Description("serial, speculative (parallel transaction) or serialized (fallback after a failed transaction)")
+    String mode;
+}
@@ -0,0 +1,93 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.*;
+
+/** buffered execution of one {@link Action} during parallel action processing.
+ * While an action runs speculatively, the entities and tiles it reads are added to its read set, and
+ * its moves and property writes are buffered (and visible to its own later reads) instead of being
+ * applied. Committing replays the buffered writes against the game in the order they were made.
+ */
+final class ActionTransaction {
+
+    /** thrown to stop an action that used an operation transactions cannot track */
+    static final class Abort extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Abort() { super("untracked operation during parallel action execution", null, false, false); }
+    }
+
+    static final Abort ABORT = new Abort();
+
+    private final Game game;
+    private final Set<Object> reads = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Object> writes = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<Entity, Container> locations = new IdentityHashMap<>();
+    private final Map<HasProperties, Map<String,Object>> properties = new IdentityHashMap<>();
+    private final List<Runnable> log = new ArrayList<>();
+    private boolean failed;
+
+    ActionTransaction(Game game) {
+        this.game = game;
+    }
+
+    /** true if the action could not be run speculatively and must be run directly */
+    boolean isFailed() { return failed; }
+
+    void fail() { failed = true; }
+
+    void read(Object o) { reads.add(o); }
+
+    /** true if this transaction read anything in the given set of written objects */
+    boolean conflictsWith(Set<Object> written) {
+        var smaller = reads.size() <= written.size() ? reads : written;
+        var larger = smaller == reads ? written : reads;
+        for(var o : smaller)
+            if(larger.contains(o)) return true;
+        return false;
+    }
+
+    Set<Object> getWrites() { return writes; }
+
+    /** location of an entity as seen by this transaction */
+    Container location(Entity ent, Container committed) {
+        read(ent);
+        var moved = locations.get(ent);
+        return moved != null ? moved : committed;
+    }
+
+    /** contents of a container as seen by this transaction */
+    Set<Entity> contents(Container container, Collection<Entity> committed) {
+        read(container);
+        var contents = new HashSet<>(committed);
+        for(var entry : locations.entrySet()) {
+            if(entry.getValue() == container) contents.add(entry.getKey());
+            else contents.remove(entry.getKey());
+        }
+        return contents;
+    }
+
+    void move(Entity ent, Container from, Container to) {
+        writes.add(ent);
+        writes.add(from);
+        writes.add(to);
+        locations.put(ent, to);
+        log.add(() -> game.moveEntity(ent, to));
+    }
+
+    void setProperty(HasProperties owner, String key, Object value) {
+        writes.add(owner);
+        properties.computeIfAbsent(owner, o -> new HashMap<>()).put(key, value);
+        log.add(() -> owner.setProperty(key, value));
+    }
+
+    /** property values written by this transaction for owner, or null if none */
+    Map<String,Object> writtenProperties(HasProperties owner) {
+        read(owner);
+        return properties.get(owner);
+    }
+
+    /** applies the buffered writes to the game */
+    void commit() {
+        for(var write : log) write.run();
+    }
+}
@@ -0,0 +1,190 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/** admission control in front of a game's command queue.
+ * Each agent has a token bucket refilled with game time and a bounded queue of pending commands.
+ * Commands beyond the rate or queue limit are rejected and counted per agent. Each tick drains the
+ * queues round robin, one command per agent per round starting after the agent served first last
+ * tick, so a flooding agent cannot delay other agents' commands by more than one round.
+ * <p>
+ * Unlimited by default. Thread safe: commands may be offered from network threads.
+ */
+public class AdmissionControl {
+
+    /** a command waiting for the next tick, with its per-agent sequence number */
+    static final class Pending {
+        final Agent agent;
+        final Command command;
+        final long sequence;
+        final long admittedAt = System.nanoTime();
+
+        Pending(Agent agent, Command command, long sequence) {
+            this.agent = agent;
+            this.command = command;
+            this.sequence = sequence;
+        }
+    }
+
+    /** admission counters for one agent */
+    public static final class AgentStats {
+        private long admitted, rateLimited, queueFull;
+        private int pending;
+
+        public long getAdmitted() { return admitted; }
+        public long getRateLimited() { return rateLimited; }
+        public long getQueueFull() { return queueFull; }
+        /** commands rejected for either reason */
+        public long getDropped() { return rateLimited + queueFull; }
+        public int getPending() { return pending; }
+
+        private AgentStats copy() {
+            var copy = new AgentStats();
+            copy.admitted = admitted;
+            copy.rateLimited = rateLimited;
+            copy.queueFull = queueFull;
+            copy.pending = pending;
+            return copy;
+        }
+    }
+
+    private static final class AgentQueue {
+        final ArrayDeque<Pending> commands = new ArrayDeque<>();
+        final AgentStats stats = new AgentStats();
+        double tokens;
+        long lastRefill;
+    }
+
+    private final LongSupplier clock;
+    private final Map<String, AgentQueue> queues = new LinkedHashMap<>();
+    private double commandsPerSecond = Double.POSITIVE_INFINITY;
+    private double burst = Double.POSITIVE_INFINITY;
+    private int maxPending = Integer.MAX_VALUE;
+    private int maxCommandsPerTick = Integer.MAX_VALUE;
+    private int nextFirst;  // position of the agent served first in the next drain
+
+    /** @param clock source of game time in milliseconds */
+    public AdmissionControl(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /** limits each agent to a sustained rate, allowing bursts of up to burst commands */
+    public synchronized void setRateLimit(double commandsPerSecond, int burst) {
+        if(commandsPerSecond <= 0 || burst < 1) throw new IllegalArgumentException("rate and burst must be positive");
+        this.commandsPerSecond = commandsPerSecond;
+        this.burst = burst;
+        for(var queue : queues.values()) queue.tokens = Math.min(queue.tokens, burst);
+    }
+
+    /** maximum commands an agent may have waiting for a tick */
+    public synchronized void setMaxPending(int maxPending) {
+        if(maxPending < 1) throw new IllegalArgumentException("maxPending must be positive");
+        this.maxPending = maxPending;
+    }
+
+    /** maximum commands processed per tick across all agents; the rest wait for later ticks */
+    public synchronized void setMaxCommandsPerTick(int maxCommandsPerTick) {
+        if(maxCommandsPerTick < 1) throw new IllegalArgumentException("maxCommandsPerTick must be positive");
+        this.maxCommandsPerTick = maxCommandsPerTick;
+    }
+
+    /** queues a command, returning null if it was admitted or the reason it was rejected */
+    synchronized CommandRejectedException.Reason offer(Pending pending) {
+        var queue = queue(pending.agent.getAgentID());
+        if(queue.commands.size() >= maxPending) {
+            queue.stats.queueFull++;
+            return CommandRejectedException.Reason.QUEUE_FULL;
+        }
+        if(commandsPerSecond != Double.POSITIVE_INFINITY) {
+            long now = clock.getAsLong();
+            queue.tokens = Math.min(burst, queue.tokens + Math.max(0, now - queue.lastRefill) * commandsPerSecond / 1000);
+            queue.lastRefill = now;
+            if(queue.tokens < 1) {
+                queue.stats.rateLimited++;
+                return CommandRejectedException.Reason.RATE_LIMITED;
+            }
+            queue.tokens--;
+        }
+        queue.commands.add(pending);
+        queue.stats.admitted++;
+        return null;
+    }
+
+    private AgentQueue queue(String agentId) {
+        return queues.computeIfAbsent(agentId, id -> {
+            var q = new AgentQueue();
+            q.tokens = burst;
+            q.lastRefill = clock.getAsLong();
+            return q;
+        });
+    }
+
+    /** removes up to the per-tick limit of pending commands, round robin across agents */
+    synchronized List<Pending> drain() {
+        var drained = new ArrayList<Pending>();
+        if(queues.isEmpty()) return drained;
+        var order = new ArrayList<>(queues.values());
+        int first = nextFirst % order.size();
+        boolean progress = true;
+        while(progress && drained.size() < maxCommandsPerTick) {
+            progress = false;
+            for(int i = 0; i < order.size() && drained.size() < maxCommandsPerTick; i++) {
+                var next = order.get((first + i) % order.size()).commands.poll();
+                if(next != null) {
+                    drained.add(next);
+                    progress = true;
+                }
+            }
+        }
+        nextFirst = first + 1;
+        return drained;
+    }
+
+    /** returns every pending command without removing it */
+    synchronized List<Pending> pending() {
+        var pending = new ArrayList<Pending>();
+        for(var queue : queues.values()) pending.addAll(queue.commands);
+        return pending;
+    }
+
+    /** replaces the pending commands, bypassing limits; used to roll back speculation */
+    synchronized void restore(List<Pending> pending) {
+        for(var queue : queues.values()) queue.commands.clear();
+        for(var p : pending)
+            queue(p.agent.getAgentID()).commands.add(p);
+    }
+
+    /** discards an agent's pending commands and counters */
+    synchronized void remove(String agentId) {
+        queues.remove(agentId);
+    }
+
+    /** number of commands waiting across all agents */
+    public synchronized int size() {
+        int size = 0;
+        for(var queue : queues.values()) size += queue.commands.size();
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        for(var queue : queues.values())
+            if(!queue.commands.isEmpty()) return false;
+        return true;
+    }
+
+    /** snapshot of the counters for one agent, or null if it never sent a command */
+    public synchronized AgentStats getStats(String agentId) {
+        var queue = queues.get(agentId);
+        if(queue == null) return null;
+        queue.stats.pending = queue.commands.size();
+        return queue.stats.copy();
+    }
+
+    /** snapshots of the counters of every agent, by agent id */
+    public synchronized Map<String, AgentStats> getStats() {
+        var stats = new LinkedHashMap<String, AgentStats>();
+        for(var id : queues.keySet()) stats.put(id, getStats(id));
+        return stats;
+    }
+}
@@ -0,0 +1,20 @@
+package com.sourcedestination.mqttrpg;
+
+import java.io.IOException;
+
+/** the network side of an agent, written to by an {@link OutboundDispatcher}'s I/O threads */
+public interface AgentConnection {
+
+    /** writes one event; may block. Throwing closes the connection. */
+    void send(EncodedEvent payload) throws IOException;
+
+    /** sends the client a full snapshot of the state it observes, replacing events that were discarded.
+     * Called on an I/O thread after the pending events were dropped under {@link SlowConsumerPolicy#RESYNC}.
+     */
+    default void resync() throws IOException {
+        throw new IOException("connection does not support resynchronization");
+    }
+
+    /** closes the connection; no further calls follow */
+    void close();
+}
@@ -0,0 +1,262 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/** struct-of-arrays storage for many simple entities of the same type and shape.
+ * <p>
+ * Each row of an archetype holds the values of a fixed set of properties (its columns). Integer, long,
+ * double and boolean columns are stored in primitive arrays, so systems can update thousands of rows
+ * with tight, parallelizable loops over {@link #ints(PropertyKey)}, {@link #doubles(PropertyKey)} etc.
+ * instead of visiting {@link Entity} objects one by one.
+ * <p>
+ * Rows are identified by stable handles; removing a row moves the last row into its place.
+ * Rows are not registered with the {@link Game} as entities until {@link #getEntity(int)} is called
+ * for them, which creates an {@link ArchetypeEntity} facade backed by the row.
+ * <p>
+ * Column arrays are replaced when the archetype grows, so systems must fetch them again after rows are added.
+ * Adding and removing rows is not thread safe and must not happen while rows are being iterated.
+ */
+public class Archetype {
+    private static final byte REF = 0, INT = 1, LONG = 2, DOUBLE = 3, BOOLEAN = 4;
+    private static final int PARALLEL_BATCH = 4096;
+
+    private final Game game;
+    private final String type;
+    private final PropertyKey<?>[] columns;
+    private final byte[] kinds;
+    private final Object[] data;
+    private final Map<Integer, ArchetypeEntity> facades = new ConcurrentHashMap<>();
+    private int size;
+    private int capacity;
+    private int[] handles;      // row -> handle
+    private int[] rows;         // handle -> row, or -1 if the handle is free
+    private int freeHandles;    // number of free handles stacked at the end of freeList
+    private int[] freeList = new int[0];
+
+    /**
+     * @param game game the archetype's entities belong to
+     * @param type value returned by {@link Entity#getType()} for this archetype's entities
+     * @param columns properties stored for every row
+     */
+    public Archetype(Game game, String type, PropertyKey<?>... columns) {
+        this.game = game;
+        this.type = type;
+        this.columns = columns.clone();
+        this.kinds = new byte[columns.length];
+        this.data = new Object[columns.length];
+        for(int i = 0; i < columns.length; i++) {
+            var t = columns[i].getType();
+            kinds[i] = t == Integer.class ? INT : t == Long.class ? LONG : t == Double.class ? DOUBLE :
+                    t == Boolean.class ? BOOLEAN : REF;
+        }
+        allocate(16);
+        rows = new int[0];
+    }
+
+    private void allocate(int capacity) {
+        for(int i = 0; i < columns.length; i++) {
+            var old = data[i];
+            switch(kinds[i]) {
+                case INT: data[i] = old == null ? new int[capacity] : Arrays.copyOf((int[])old, capacity); break;
+                case LONG: data[i] = old == null ? new long[capacity] : Arrays.copyOf((long[])old, capacity); break;
+                case DOUBLE: data[i] = old == null ? new double[capacity] : Arrays.copyOf((double[])old, capacity); break;
+                case BOOLEAN: data[i] = old == null ? new boolean[capacity] : Arrays.copyOf((boolean[])old, capacity); break;
+                default: data[i] = old == null ? new Object[capacity] : Arrays.copyOf((Object[])old, capacity);
+            }
+        }
+        handles = handles == null ? new int[capacity] : Arrays.copyOf(handles, capacity);
+        this.capacity = capacity;
+    }
+
+    public Game getGame() { return game; }
+
+    public String getType() { return type; }
+
+    /** number of rows */
+    public int size() { return size; }
+
+    /** returns the position of a property among this archetype's columns, or -1 if it has no such column */
+    public int getColumn(PropertyKey<?> key) {
+        for(int i = 0; i < columns.length; i++)
+            if(columns[i].getId() == key.getId()) return i;
+        return -1;
+    }
+
+    public PropertyKey<?>[] getColumns() { return columns.clone(); }
+
+    /** adds a row with all columns set to their defaults (0, false or null)
+     * @return handle of the new row
+     */
+    public int add() {
+        game.serialOnly();
+        if(size == capacity) allocate(capacity * 2);
+        int handle;
+        if(freeHandles > 0) handle = freeList[--freeHandles];
+        else {
+            handle = rows.length;
+            rows = Arrays.copyOf(rows, Math.max(16, rows.length * 2));
+            Arrays.fill(rows, handle, rows.length, -1);
+            if(freeList.length < rows.length) freeList = Arrays.copyOf(freeList, rows.length);
+            for(int h = rows.length - 1; h > handle; h--) freeList[freeHandles++] = h;
+        }
+        rows[handle] = size;
+        handles[size] = handle;
+        clearRow(size++);
+        return handle;
+    }
+
+    private void clearRow(int row) {
+        for(int i = 0; i < columns.length; i++) {
+            var values = data[i];
+            switch(kinds[i]) {
+                case INT: ((int[])values)[row] = 0; break;
+                case LONG: ((long[])values)[row] = 0; break;
+                case DOUBLE: ((double[])values)[row] = 0; break;
+                case BOOLEAN: ((boolean[])values)[row] = false; break;
+                default: ((Object[])values)[row] = null;
+            }
+        }
+    }
+
+    /** removes a row, along with its entity facade if one was created */
+    public void remove(int handle) {
+        game.serialOnly();
+        int row = getRow(handle);
+        var facade = facades.remove(handle);
+        if(facade != null) game.removeEntity(facade);  // listeners of the removal still see the row's values
+        int last = --size;
+        for(int i = 0; i < columns.length; i++) {
+            var column = data[i];
+            System.arraycopy(column, last, column, row, 1);
+        }
+        clearRow(last); // release references held by the vacated row
+        handles[row] = handles[last];
+        rows[handles[row]] = row;
+        rows[handle] = -1;
+        freeList[freeHandles++] = handle;
+    }
+
+    /** returns true if handle refers to a row of this archetype */
+    public boolean contains(int handle) {
+        return handle >= 0 && handle < rows.length && rows[handle] >= 0;
+    }
+
+    /** returns the current row of a handle */
+    public int getRow(int handle) {
+        if(!contains(handle)) throw new IllegalArgumentException("no row with handle " + handle);
+        return rows[handle];
+    }
+
+    /** returns the handle of the entity currently stored in a row */
+    public int getHandle(int row) { return handles[row]; }
+
+    /** raw int column; only the first {@link #size()} entries are in use */
+    public int[] ints(PropertyKey<Integer> key) { return (int[])column(key, INT); }
+
+    /** raw long column; only the first {@link #size()} entries are in use */
+    public long[] longs(PropertyKey<Long> key) { return (long[])column(key, LONG); }
+
+    /** raw double column; only the first {@link #size()} entries are in use */
+    public double[] doubles(PropertyKey<Double> key) { return (double[])column(key, DOUBLE); }
+
+    /** raw boolean column; only the first {@link #size()} entries are in use */
+    public boolean[] booleans(PropertyKey<Boolean> key) { return (boolean[])column(key, BOOLEAN); }
+
+    /** raw reference column; only the first {@link #size()} entries are in use */
+    public Object[] objects(PropertyKey<?> key) { return (Object[])column(key, REF); }
+
+    private Object column(PropertyKey<?> key, byte kind) {
+        game.serialOnly();  // array access cannot be tracked by action transactions
+        int i = getColumn(key);
+        if(i < 0) throw new IllegalArgumentException("archetype " + type + " has no column " + key.getName());
+        if(kinds[i] != kind) throw new IllegalArgumentException("column " + key.getName() + " has a different type");
+        return data[i];
+    }
+
+    /** reads a value from a row, boxing primitives */
+    public Object get(int row, int column) {
+        var values = data[column];
+        switch(kinds[column]) {
+            case INT: return ((int[])values)[row];
+            case LONG: return ((long[])values)[row];
+            case DOUBLE: return ((double[])values)[row];
+            case BOOLEAN: return ((boolean[])values)[row];
+            default: return ((Object[])values)[row];
+        }
+    }
+
+    /** writes a value to a row, converting it to the column's type as {@link PropertyStore} would.
+     * Meant for per-object access through facades; systems should write to the column arrays directly.
+     */
+    public void set(int row, int column, Object value) {
+        game.serialOnly();
+        var values = data[column];
+        if(kinds[column] == REF) {
+            ((Object[])values)[row] = value;
+            return;
+        }
+        var converted = new PropertyStore();
+        converted.put(columns[column].getName(), value);
+        switch(kinds[column]) {
+            case INT: ((int[])values)[row] = converted.getInt(columns[column]); break;
+            case LONG: ((long[])values)[row] = converted.getLong(columns[column]); break;
+            case DOUBLE: ((double[])values)[row] = converted.getDouble(columns[column]); break;
+            case BOOLEAN: ((boolean[])values)[row] = converted.getBoolean(columns[column]); break;
+        }
+    }
+
+    /** calls action with every row index in order */
+    public void forEachRow(IntConsumer action) {
+        for(int row = 0; row < size; row++) action.accept(row);
+    }
+
+    /** processes rows in parallel on the common fork-join pool.
+     * action receives contiguous row ranges [from, to) so it can loop over column arrays directly.
+     */
+    public void parallelForEachRange(RowRangeConsumer action) {
+        if(size <= PARALLEL_BATCH) action.accept(0, size);
+        else ForkJoinPool.commonPool().invoke(new RangeTask(action, 0, size));
+    }
+
+    @FunctionalInterface
+    public interface RowRangeConsumer {
+        public void accept(int from, int to);
+    }
+
+    @SuppressWarnings("serial")  // fork-join tasks are never serialized
+    private static class RangeTask extends RecursiveAction {
+        private final RowRangeConsumer action;
+        private final int from, to;
+
+        RangeTask(RowRangeConsumer action, int from, int to) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= PARALLEL_BATCH) action.accept(from, to);
+            else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(action, from, middle), new RangeTask(action, middle, to));
+            }
+        }
+    }
+
+    /** returns an entity facade for a row, registering it with the game the first time it is requested */
+    public Entity getEntity(int handle) {
+        getRow(handle); // validate handle
+        var facade = facades.get(handle);
+        if(facade != null) return facade;
+        // built outside the map: registering the facade runs game code that may look up other facades
+        facade = new ArchetypeEntity(this, handle);
+        var existing = facades.putIfAbsent(handle, facade);
+        return existing != null ? existing : facade;
+    }
+}
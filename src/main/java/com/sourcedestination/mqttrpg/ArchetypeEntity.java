@@ -0,0 +1,96 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/** an {@link Entity} facade over one row of an {@link Archetype}.
+ * Properties that are columns of the archetype are read from and written to the row;
+ * any other properties are stored on the facade like those of a regular entity.
+ * Facades are created by {@link Archetype#getEntity(int)} and removed along with their row.
+ */
+public class ArchetypeEntity extends Entity {
+	private final Archetype archetype;
+	private final int handle;
+
+	ArchetypeEntity(Archetype archetype, int handle) {
+		super(archetype.getGame(), Map.of());
+		this.archetype = archetype;
+		this.handle = handle;
+	}
+
+	public Archetype getArchetype() { return archetype; }
+
+	/** handle of the row backing this entity */
+	public int getHandle() { return handle; }
+
+	/** archetype column holding a property, or -1 if there is none or the Entity constructor is still running */
+	private int column(PropertyKey<?> key) {
+		return archetype == null ? -1 : archetype.getColumn(key);
+	}
+
+	@Override
+	public String getType() {
+		return archetype == null ? null : archetype.getType(); // null while the Entity constructor runs
+	}
+
+	@Override
+	public Map<String,Object> getProperties() {
+		if(archetype == null) return super.getProperties();
+		var properties = new HashMap<>(super.getProperties());
+		int row = archetype.getRow(handle);
+		var columns = archetype.getColumns();
+		for(int i = 0; i < columns.length; i++)
+			properties.put(columns[i].getName(), archetype.get(row, i));
+		return Collections.unmodifiableMap(properties);
+	}
+
+	@Override
+	public void setProperty(String key, Object value) {
+		int column = column(PropertyKey.of(key));
+		if(column >= 0) {
+			getGame().serialOnly();
+			getGame().journalProperty(this, key);
+			archetype.set(archetype.getRow(handle), column, value);
+			getGame().entityPropertyChanged(this, key);
+		} else super.setProperty(key, value);
+	}
+
+	@Override
+	public boolean hasProperty(PropertyKey<?> key) {
+		return column(key) >= 0 || super.hasProperty(key);
+	}
+
+	@Override
+	public <T> T get(PropertyKey<T> key) {
+		int column = column(key);
+		if(column < 0) return super.get(key);
+		var converted = new PropertyStore();
+		converted.put(key.getName(), archetype.get(archetype.getRow(handle), column));
+		return converted.get(key);
+	}
+
+	@Override
+	public int getInt(PropertyKey<Integer> key) {
+		if(column(key) < 0) return super.getInt(key);
+		return archetype.ints(key)[archetype.getRow(handle)];
+	}
+
+	@Override
+	public long getLong(PropertyKey<Long> key) {
+		if(column(key) < 0) return super.getLong(key);
+		return archetype.longs(key)[archetype.getRow(handle)];
+	}
+
+	@Override
+	public double getDouble(PropertyKey<Double> key) {
+		if(column(key) < 0) return super.getDouble(key);
+		return archetype.doubles(key)[archetype.getRow(handle)];
+	}
+
+	@Override
+	public boolean getBoolean(PropertyKey<Boolean> key) {
+		if(column(key) < 0) return super.getBoolean(key);
+		return archetype.booleans(key)[archetype.getRow(handle)];
+	}
+}
@@ -0,0 +1,8 @@
+package com.sourcedestination.mqttrpg;
+
+/** receives the framed batches produced by a {@link TickBatcher}, one per topic per tick */
+@FunctionalInterface
+public interface BatchSink {
+    /** called on the game thread; must not block */
+    void publish(String topic, byte[] frame);
+}
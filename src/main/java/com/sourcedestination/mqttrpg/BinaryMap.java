@@ -0,0 +1,224 @@
+package com.sourcedestination.mqttrpg;
+
+import net.sourcedestination.funcles.function.Function2;
+import net.sourcedestination.funcles.tuple.Pair;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/** a compiled, memory-mapped map file.
+ * <p>
+ * The file starts with a header holding the map dimensions and a palette of tile characters,
+ * followed by one palette index byte per cell (row by row) and an optional list of property overrides
+ * for individual cells:
+ * <pre>
+ *   int magic, short version, int width, int height,
+ *   short paletteSize, char[paletteSize] palette,
+ *   byte[width*height] cells (0xFF marks a blank cell),
+ *   int overrideCount, { int column, int row, short count, { string key, string value }[count] }[overrideCount]
+ * </pre>
+ * Strings are stored as a short byte length followed by UTF-8 bytes; all values are big endian.
+ * <p>
+ * Cells are read straight from the mapped file, so opening a map costs the same regardless of its size.
+ * A BinaryMap can be turned into a {@link Board} with {@link #toBoard(String)} or used as the
+ * {@link TileSource} of a {@link ChunkedBoard}.
+ */
+public class BinaryMap implements TileSource {
+    public static final int MAGIC = 0x4D525047; // "MRPG"
+    public static final short VERSION = 1;
+    public static final int BLANK = 0xFF;
+
+    private static final int SEGMENT_BITS = 30; // cells are mapped in 1GB segments
+    private static final int HEADER_SIZE = 16;  // magic, version, width, height and palette size
+
+    private final FileChannel channel;
+    private final Map<Character, Function2<Integer,Integer,Tile>> tileGenerators;
+    private final int width;
+    private final int height;
+    private final char[] palette;
+    private final MappedByteBuffer[] cellSegments;
+    private final Map<Long, Map<String,Object>> overrides = new HashMap<>();
+
+    private BinaryMap(Path file, Map<Character, Function2<Integer,Integer,Tile>> tileGenerators) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.tileGenerators = tileGenerators;
+        try {
+            var size = channel.size();
+            if(size < HEADER_SIZE) throw new IOException(file + " is truncated: no complete header");
+            var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, HEADER_SIZE + 2 * BLANK));
+            if(header.getInt() != MAGIC) throw new IOException(file + " is not a binary map");
+            if(header.getShort() != VERSION) throw new IOException(file + " has an unsupported map version");
+            width = header.getInt();
+            height = header.getInt();
+            int paletteSize = header.getShort();
+            if(width < 0 || height < 0 || paletteSize < 0 || paletteSize > BLANK)
+                throw new IOException(file + " has a corrupt header");
+            if(header.remaining() < 2 * paletteSize) throw new IOException(file + " is truncated in its palette");
+            palette = new char[paletteSize];
+            for(int i = 0; i < palette.length; i++) palette[i] = header.getChar();
+
+            long cellsStart = header.position();
+            long cellCount = (long)width * height;
+            if(size - cellsStart < cellCount + 4)  // cells and the override count
+                throw new IOException(file + " is truncated: " + width + "x" + height + " cells need "
+                        + (cellsStart + cellCount + 4) + " bytes, file has " + size);
+            cellSegments = new MappedByteBuffer[(int)((cellCount + (1L << SEGMENT_BITS) - 1) >>> SEGMENT_BITS)];
+            for(int i = 0; i < cellSegments.length; i++) {
+                long start = (long)i << SEGMENT_BITS;
+                cellSegments[i] = channel.map(FileChannel.MapMode.READ_ONLY, cellsStart + start,
+                        Math.min(1L << SEGMENT_BITS, cellCount - start));
+            }
+
+            var trailer = channel.map(FileChannel.MapMode.READ_ONLY, cellsStart + cellCount,
+                    size - cellsStart - cellCount);
+            try {
+                for(int count = trailer.getInt(); count > 0; count--) {
+                    int column = trailer.getInt(), row = trailer.getInt();
+                    if(column < 0 || column >= width || row < 0 || row >= height)
+                        throw new IOException(file + " overrides cell (" + column + ", " + row + ") outside the map");
+                    var properties = new HashMap<String,Object>();
+                    for(int n = trailer.getShort(); n > 0; n--)
+                        properties.put(readString(trailer), readString(trailer));
+                    overrides.put(cellIndex(column, row), properties);
+                }
+            } catch(BufferUnderflowException e) {
+                throw new IOException(file + " is truncated in its property overrides");
+            }
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** maps a binary map file into memory.
+     * @param file compiled map file
+     * @param tileGenerators generators for the characters in the map's palette,
+     *                       as in {@link Board#Board(String, String, Map, Tile...)}
+     */
+    public static BinaryMap open(Path file, Map<Character, Function2<Integer,Integer,Tile>> tileGenerators)
+            throws IOException {
+        return new BinaryMap(file, tileGenerators);
+    }
+
+    @Override public int getWidth() { return width; }
+    @Override public int getHeight() { return height; }
+
+    private long cellIndex(int column, int row) { return (long)row * width + column; }
+
+    /** returns the character stored for a cell, or 0 if the cell is blank */
+    public char getCharacter(int column, int row) {
+        long index = cellIndex(column, row);
+        int entry = cellSegments[(int)(index >>> SEGMENT_BITS)]
+                .get((int)(index & ((1L << SEGMENT_BITS) - 1))) & 0xff;
+        return entry == BLANK ? 0 : palette[entry];
+    }
+
+    @Override
+    public Tile generateTile(int column, int row) {
+        var c = getCharacter(column, row);
+        if(c == 0) return null;
+        var tile = Board.generateTile(tileGenerators, c, column, row);
+        var properties = overrides.get(cellIndex(column, row));
+        if(properties != null) tile.setProperties(properties);
+        return tile;
+    }
+
+    /** builds an ordinary, fully materialized board from this map */
+    public Board toBoard(String id) {
+        var tiles = new ArrayList<Tile>();
+        for(int row = 0; row < height; row++)
+            for(int column = 0; column < width; column++) {
+                var tile = generateTile(column, row);
+                if(tile != null) tiles.add(tile);
+            }
+        return new Board(id, "", tileGenerators, tiles.toArray(new Tile[0]));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /** compiles a char map in the text format read by {@link Board#loadMap(String)} into a binary map file.
+     * Rows shorter than the longest row are padded with blank cells.
+     * @param charMap multi-line string map
+     * @param propertyOverrides properties to set on individual cells, keyed by (column, row)
+     * @param out file to write
+     */
+    public static void compile(String charMap,
+                               Map<Pair<Integer>, Map<String,String>> propertyOverrides,
+                               Path out) throws IOException {
+        var lines = charMap.split("\r?\n");
+        int height = lines.length, width = 0;
+        for(var line : lines) width = Math.max(width, line.length());
+        if(height > 0 && lines[height-1].isEmpty()) height--; // ignore trailing newline
+
+        var paletteIndexes = new LinkedHashMap<Character,Integer>();
+        var cells = new byte[width * height];
+        Arrays.fill(cells, (byte)BLANK);
+        for(int row = 0; row < height; row++)
+            for(int column = 0; column < lines[row].length(); column++) {
+                char c = lines[row].charAt(column);
+                Integer index = paletteIndexes.get(c);
+                if(index == null) {
+                    index = paletteIndexes.size();
+                    if(index >= BLANK) throw new IllegalArgumentException("map uses more than " + BLANK + " characters");
+                    paletteIndexes.put(c, index);
+                }
+                cells[row*width + column] = (byte)(int)index;
+            }
+
+        try(var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(out)))) {
+            output.writeInt(MAGIC);
+            output.writeShort(VERSION);
+            output.writeInt(width);
+            output.writeInt(height);
+            output.writeShort(paletteIndexes.size());
+            for(var c : paletteIndexes.keySet()) output.writeChar(c);
+            output.write(cells);
+            output.writeInt(propertyOverrides.size());
+            for(var entry : propertyOverrides.entrySet()) {
+                output.writeInt(entry.getKey()._1());
+                output.writeInt(entry.getKey()._2());
+                output.writeShort(entry.getValue().size());
+                for(var property : entry.getValue().entrySet()) {
+                    writeString(output, property.getKey());
+                    writeString(output, property.getValue());
+                }
+            }
+        }
+    }
+
+    public static void compile(String charMap, Path out) throws IOException {
+        compile(charMap, Map.of(), out);
+    }
+
+    private static void writeString(DataOutputStream output, String s) throws IOException {
+        var bytes = s.getBytes(StandardCharsets.UTF_8);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        var bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** converts a char map text file to a binary map: BinaryMap &lt;text map&gt; &lt;binary map&gt; */
+    public static void main(String[] args) throws IOException {
+        if(args.length != 2) {
+            System.err.println("usage: BinaryMap <text map> <binary map>");
+            System.exit(1);
+        }
+        compile(Files.readString(Path.of(args[0])), Path.of(args[1]));
+    }
+}
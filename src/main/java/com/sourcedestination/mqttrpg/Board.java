@@ -9,6 +9,8 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -25,15 +27,19 @@ public class Board implements HasProperties {
 			// no concurrent set, so only keys used to mimic set
 	private final String id;
 	private Game game;
-	private final Map<String,Object> properties = new HashMap<>();
+	private final PropertyStore properties = new PropertyStore();
+	private int width = -1, height = -1;  // computed on first use
+	private List<EventListener> listeningTiles;  // computed on first use
 
+	/** returns a read-only view of this board's properties, including its id */
 	@Override
 	public Map<String,Object> getProperties() {
-		var properties = new HashMap<>(this.properties); // add id to properties
-		properties.put("id", id);
-		return Collections.unmodifiableMap(properties);
+		return properties.asMap("id", id);
 	}
 
+	@Override
+	public PropertyStore getPropertyStore() { return properties; }
+
 	@Override
 	public void setProperty(String key, Object value) {
 		properties.put(key, value);
@@ -51,7 +57,8 @@ public class Board implements HasProperties {
 				 String charMap,
 				 Map<Character, Function2<Integer,Integer,Tile>> tileGenerators,
 				 Tile ... initialTiles) {
-		var tiles = new HashMap<Pair<Integer>,Tile>();
+		var tiles = new HashMap<Pair<Integer>,Tile>(
+				(int)((charMap.length() + initialTiles.length) / 0.75f) + 1);
 
 		for(Tile t : initialTiles) {
 			t.setBoard(this);
@@ -64,20 +71,11 @@ public class Board implements HasProperties {
 				row++; // increment row
 				col = 0; // start at first column
 			} else  {  // create a tile in this column
-				if(!tiles.containsKey(makePair(col, row))) {
-					var generator = tileGenerators.get(c);
-
-					// generate generic tiles if no generator defined
-					if(generator == null) generator =  (fcol, frow) -> new Tile(fcol, frow, "generic", c, Map.of());
-                    var properties = new HashMap<String,Object>();
-
-                    // spring XML makes pairs of strings instead of pairs of integers, so strings are used below
-                    if(!properties.containsKey("character"))
-                    	properties.put("character", ""+c);
-                    var tile = generator.apply(col, row);
-                    tile.setProperties(properties);
-                    tile.setBoard(this);
-					tiles.put(Pair.makePair(col, row), tile);
+				var location = makePair(col, row);
+				if(initialTiles.length == 0 || !tiles.containsKey(location)) {
+					var tile = generateTile(tileGenerators, c, col, row);
+					tile.setBoard(this);
+					tiles.put(location, tile);
 				}
 				col++; // increment column
 			}
@@ -86,6 +84,118 @@ public class Board implements HasProperties {
 		this.tiles = Collections.unmodifiableMap(tiles);
 	}
 
+	/** outfits board like {@link #Board(String, String, Map, Tile...)}, but calls tile generators for bands
+	 * of rows in parallel on the given pool. Tiles are assembled in row order once all bands are done, so
+	 * the board does not depend on the pool's parallelism as long as generators derive everything,
+	 * including randomness, from the location they are given. Generators must be safe to call concurrently.
+	 *
+	 * @param id
+	 * @param charMap
+	 * @param pool pool running the generators
+	 */
+	public Board(String id,
+				 String charMap,
+				 Map<Character, Function2<Integer,Integer,Tile>> tileGenerators,
+				 ForkJoinPool pool,
+				 Tile ... initialTiles) {
+		var lineStarts = new ArrayList<Integer>();  // offset of each row in charMap
+		lineStarts.add(0);
+		for(int i = charMap.indexOf('\n'); i >= 0; i = charMap.indexOf('\n', i + 1))
+			lineStarts.add(i + 1);
+		lineStarts.add(charMap.length() + 1);
+
+		var rows = new Tile[lineStarts.size() - 1][];
+		var occupied = new HashSet<Pair<Integer>>();
+		for(Tile t : initialTiles) occupied.add(makePair(t.getColumn(), t.getRow()));
+		int grain = Math.max(1, rows.length / (pool.getParallelism() * 8));
+		pool.invoke(new RowGenerator(charMap, lineStarts, rows, tileGenerators, occupied, 0, rows.length, grain));
+
+		int cells = charMap.length() - rows.length + 1;
+		var tiles = new HashMap<Pair<Integer>,Tile>((int)((cells + initialTiles.length) / 0.75f) + 1);
+		for(Tile t : initialTiles) {
+			t.setBoard(this);
+			tiles.put(makePair(t.getColumn(), t.getRow()), t);
+		}
+		for(var row : rows)
+			for(var tile : row)
+				if(tile != null) {
+					tile.setBoard(this);
+					tiles.put(makePair(tile.getColumn(), tile.getRow()), tile);
+				}
+		this.id = id;
+		this.tiles = Collections.unmodifiableMap(tiles);
+	}
+
+	/** generates the tiles of a range of rows, splitting it until it is no larger than the grain */
+	@SuppressWarnings("serial")  // fork-join tasks are never serialized
+	private static class RowGenerator extends RecursiveAction {
+		private final String charMap;
+		private final List<Integer> lineStarts;
+		private final Tile[][] rows;
+		private final Map<Character, Function2<Integer,Integer,Tile>> tileGenerators;
+		private final Set<Pair<Integer>> occupied;  // locations of initial tiles, which are not generated
+		private final int from, to, grain;
+
+		RowGenerator(String charMap, List<Integer> lineStarts, Tile[][] rows,
+					 Map<Character, Function2<Integer,Integer,Tile>> tileGenerators,
+					 Set<Pair<Integer>> occupied, int from, int to, int grain) {
+			this.charMap = charMap;
+			this.lineStarts = lineStarts;
+			this.rows = rows;
+			this.tileGenerators = tileGenerators;
+			this.occupied = occupied;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > grain) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new RowGenerator(charMap, lineStarts, rows, tileGenerators, occupied, from, middle, grain),
+						new RowGenerator(charMap, lineStarts, rows, tileGenerators, occupied, middle, to, grain));
+				return;
+			}
+			for(int row = from; row < to; row++) {
+				int start = lineStarts.get(row), end = lineStarts.get(row + 1) - 1;
+				var tiles = new Tile[end - start];
+				for(int col = 0; col < tiles.length; col++)
+					if(occupied.isEmpty() || !occupied.contains(makePair(col, row)))
+						tiles[col] = generateTile(tileGenerators, charMap.charAt(start + col), col, row);
+				rows[row] = tiles;
+			}
+		}
+	}
+
+	/** constructor for subclasses that supply their own tiles by overriding {@link #getTile(int, int)},
+	 * {@link #getTiles()}, {@link #getTileStream()}, {@link #getWidth()} and {@link #getHeight()}
+	 * @param id
+	 */
+	protected Board(String id) {
+		this.id = id;
+		this.tiles = Map.of();
+	}
+
+	/** creates the tile represented by character c at the given location using the generator
+	 * registered for that character, or a generic tile if there is none.
+	 */
+	static Tile generateTile(Map<Character, Function2<Integer,Integer,Tile>> tileGenerators,
+							 char c, int col, int row) {
+		var generator = tileGenerators.get(c);
+
+		// generate generic tiles if no generator defined
+		if(generator == null) generator =  (fcol, frow) -> new Tile(fcol, frow, "generic", c, Map.of());
+		var properties = new HashMap<String,Object>();
+
+		// spring XML makes pairs of strings instead of pairs of integers, so strings are used below
+		if(!properties.containsKey("character"))
+			properties.put("character", ""+c);
+		var tile = generator.apply(col, row);
+		tile.setProperties(properties);
+		return tile;
+	}
+
 	/**
 	 * Returns the {@link Game} associated with this board
 	 * @return associated Game
@@ -99,14 +209,6 @@ public class Board implements HasProperties {
 		});
 	}
 	
-	/**
-	 * Checks if Location exists on board.
-	 * @return
-	 */
-	private boolean locationExists(int column, int row){
-		return tiles.containsKey(Pair.makePair(column, row));
-	}
-
 	/**
 	 * Find an adjacent {@link Tile} given a Tile and {@link Direction}
 	 * @param tile original Tile
@@ -122,9 +224,7 @@ public class Board implements HasProperties {
 			case WEST: column--; break;
 			case EAST: column++; break;
 		}
-		if (locationExists(column, row))
-			return Optional.of(getTile(column, row));
-		return Optional.empty();
+		return Optional.ofNullable(getTile(column, row));
 	}
 
 	/**
@@ -165,13 +265,29 @@ public class Board implements HasProperties {
 	 */
 	public Stream<Tile> getTileStream() { return tiles.values().stream(); }
 
+	/** number of tiles held in memory; safe to call from any thread for boards built from a char map */
+	public long getResidentTileCount() {
+		return tiles.isEmpty() ? getTileStream().count() : tiles.size();
+	}
+
+	/** called after a property of one of this board's tiles is written, whether or not the board is in a game */
+	void tileModified(Tile tile) { }
+
+	/** returns the tiles of this board that listen for events */
+	Stream<EventListener> getListeningTiles() {
+		if(tiles.isEmpty()) // subclasses supplying their own tiles may change them, so scan every time
+			return getTileStream().filter(t -> t instanceof EventListener).map(t -> (EventListener)t);
+		if(listeningTiles == null) // tiles never change, so the scan only needs to happen once
+			listeningTiles = tiles.values().stream()
+					.filter(t -> t instanceof EventListener).map(t -> (EventListener)t).toList();
+		return listeningTiles.stream();
+	}
+
 	/**
 	 * Returns a {@link Tile} at the given coordinates
 	 * @return tile at given location
 	 */
 	public Tile getTile(int column, int row) {
-		if(!locationExists(column, row))
-			return null;
 		return tiles.get(Pair.makePair(column, row));
 	}
 
@@ -193,15 +309,19 @@ public class Board implements HasProperties {
 	}
 
 	public int getWidth() {
-		return tiles.keySet().stream()
-				.mapToInt(Pair::_1)
-				.max().getAsInt() + 1;
+		if(width < 0) // tiles never change, so the scan only needs to happen once
+			width = tiles.keySet().stream()
+					.mapToInt(Pair::_1)
+					.max().getAsInt() + 1;
+		return width;
 	}
 
 	public int getHeight() {
-		return tiles.keySet().stream()
-				.mapToInt(Pair::_2)
-				.max().getAsInt() + 1;
+		if(height < 0)
+			height = tiles.keySet().stream()
+					.mapToInt(Pair::_2)
+					.max().getAsInt() + 1;
+		return height;
 	}
 
 
@@ -214,9 +334,9 @@ public class Board implements HasProperties {
 		StringBuffer sb = new StringBuffer();
 		for(int r = 0; r < getHeight(); r++) {
 			for(int c = 0; c < getWidth(); c++) {
-				var location = Pair.makePair(c, r);
-				if(tiles.containsKey(location))
-					sb.append(tiles.get(location).getCharacter());
+				var tile = getTile(c, r);
+				if(tile != null)
+					sb.append(tile.getCharacter());
 				else sb.append('?');
 			}
 			sb.append('\n');
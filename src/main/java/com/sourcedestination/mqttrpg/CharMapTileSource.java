@@ -0,0 +1,96 @@
+package com.sourcedestination.mqttrpg;
+
+import net.sourcedestination.funcles.function.Function2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/** a {@link TileSource} that reads regions of a char map text file on demand.
+ * Only the first line is read when the source is opened, so opening cost does not depend on map size.
+ * Every line of the file must have the same length and each character must be encoded in a single byte.
+ * Tiles are generated the same way the {@link Board} constructor generates them.
+ */
+class CharMapTileSource implements TileSource {
+    private final FileChannel channel;
+    private final Map<Character, Function2<Integer,Integer,Tile>> tileGenerators;
+    private final int width;
+    private final int height;
+    private final int stride;  // bytes per line including the line separator
+
+    CharMapTileSource(Path mapFile, Map<Character, Function2<Integer,Integer,Tile>> tileGenerators)
+            throws IOException {
+        this.channel = FileChannel.open(mapFile, StandardOpenOption.READ);
+        this.tileGenerators = tileGenerators;
+
+        // measure the first line to determine the layout of the rest of the file
+        var size = channel.size();
+        var buffer = ByteBuffer.allocate((int)Math.min(size, 1 << 16));
+        int lineLength = -1, separatorLength = 1;
+        for(long position = 0; lineLength < 0 && position < size; ) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            for(int i = 0; i < read; i++) {
+                if(buffer.get(i) == '\n') {
+                    lineLength = (int)(position + i);
+                    if(i > 0 && buffer.get(i-1) == '\r') {
+                        lineLength--;
+                        separatorLength = 2;
+                    }
+                    break;
+                }
+            }
+            position += read;
+        }
+        if(lineLength < 0) lineLength = (int)size; // single line without separator
+        this.width = lineLength;
+        this.stride = lineLength + separatorLength;
+        this.height = lineLength == 0 ? 0 : (int)((size + stride - 1) / stride);
+    }
+
+    @Override public int getWidth() { return width; }
+    @Override public int getHeight() { return height; }
+
+    @Override
+    public Tile generateTile(int column, int row) {
+        var out = new Tile[1];
+        generateRegion(column, row, 1, 1, out);
+        return out[0];
+    }
+
+    @Override
+    public void generateRegion(int column, int row, int width, int height, Tile[] out) {
+        var buffer = ByteBuffer.allocate(width);
+        for(int r = 0; r < height; r++) {
+            buffer.clear();
+            try {
+                long position = (long)(row + r) * stride + column;
+                while(buffer.hasRemaining()) {
+                    int read = channel.read(buffer, position + buffer.position());
+                    if(read < 0) break;
+                }
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for(int c = 0; c < width; c++) {
+                Tile tile = null;
+                if(c < buffer.position()) {
+                    char ch = (char)(buffer.get(c) & 0xff);
+                    if(ch == '\n' || ch == '\r')
+                        throw new IllegalStateException("char map lines must all have length " + this.width);
+                    tile = Board.generateTile(tileGenerators, ch, column + c, row + r);
+                }
+                out[r*width + c] = tile;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,179 @@
+package com.sourcedestination.mqttrpg;
+
+import net.sourcedestination.funcles.tuple.Pair;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/** a board whose tiles are generated lazily from a {@link TileSource} in fixed-size square chunks.
+ * A chunk is materialized the first time one of its tiles is requested. Chunks that hold no entities and
+ * whose tiles have not been modified since they were generated may be evicted and regenerated later,
+ * so only the parts of the map in use are kept in memory.
+ * <p>
+ * {@link #getTiles()} and {@link #getTileStream()} only cover chunks that are currently resident.
+ * Closing the board closes its source.
+ */
+public class ChunkedBoard extends Board implements AutoCloseable {
+
+	private final TileSource source;
+	private final int chunkSize;
+	private final int maxResidentChunks;
+	private final Map<Long, Chunk> chunks = new ConcurrentHashMap<>();
+	private final AtomicLong accessClock = new AtomicLong();
+	private final AtomicLong residentTiles = new AtomicLong();
+
+	private static class Chunk {
+		final Tile[] tiles;
+		int tileCount;               // non-blank cells
+		volatile boolean pinned;     // set when a tile was modified; pinned chunks are never evicted
+		volatile long lastAccess;
+
+		Chunk(int chunkSize) { tiles = new Tile[chunkSize * chunkSize]; }
+	}
+
+	/**
+	 * @param id board id
+	 * @param source source of tiles for this board
+	 * @param chunkSize width and height of a chunk in tiles
+	 * @param maxResidentChunks number of resident chunks above which idle chunks are evicted automatically
+	 */
+	public ChunkedBoard(String id, TileSource source, int chunkSize, int maxResidentChunks) {
+		super(id);
+		if(chunkSize < 1) throw new IllegalArgumentException("chunk size must be positive");
+		this.source = source;
+		this.chunkSize = chunkSize;
+		this.maxResidentChunks = maxResidentChunks;
+	}
+
+	/** creates a chunked board that never evicts chunks automatically */
+	public ChunkedBoard(String id, TileSource source, int chunkSize) {
+		this(id, source, chunkSize, Integer.MAX_VALUE);
+	}
+
+	public int getChunkSize() { return chunkSize; }
+
+	/** number of chunks currently held in memory */
+	public int getResidentChunkCount() { return chunks.size(); }
+
+	@Override
+	public int getWidth() { return source.getWidth(); }
+
+	@Override
+	public int getHeight() { return source.getHeight(); }
+
+	@Override
+	public Tile getTile(int column, int row) {
+		if(column < 0 || row < 0 || column >= getWidth() || row >= getHeight())
+			return null;
+		var chunk = getChunk(column / chunkSize, row / chunkSize);
+		return chunk.tiles[(row % chunkSize) * chunkSize + column % chunkSize];
+	}
+
+	/** counted as chunks are generated and evicted, so this does not scan the chunks */
+	@Override
+	public long getResidentTileCount() { return residentTiles.get(); }
+
+	/** returns resident tiles only */
+	@Override
+	public Map<Pair<Integer>, Tile> getTiles() {
+		var tiles = new HashMap<Pair<Integer>, Tile>();
+		getTileStream().forEach(t -> tiles.put(Pair.makePair(t.getColumn(), t.getRow()), t));
+		return Collections.unmodifiableMap(tiles);
+	}
+
+	/** returns resident tiles only */
+	@Override
+	public Stream<Tile> getTileStream() {
+		return chunks.values().stream()
+				.flatMap(chunk -> Arrays.stream(chunk.tiles))
+				.filter(Objects::nonNull);
+	}
+
+	private static long chunkKey(int chunkColumn, int chunkRow) {
+		return ((long)chunkRow << 32) | (chunkColumn & 0xffffffffL);
+	}
+
+	private Chunk getChunk(int chunkColumn, int chunkRow) {
+		var key = chunkKey(chunkColumn, chunkRow);
+		var chunk = chunks.get(key);
+		if(chunk == null) {
+			chunk = chunks.computeIfAbsent(key, k -> materialize(chunkColumn, chunkRow));
+			chunk.lastAccess = accessClock.incrementAndGet();
+			if(chunks.size() > maxResidentChunks)
+				evictIdleChunks(chunks.size() - maxResidentChunks, chunk);
+		} else chunk.lastAccess = accessClock.incrementAndGet();
+		return chunk;
+	}
+
+	private Chunk materialize(int chunkColumn, int chunkRow) {
+		var chunk = new Chunk(chunkSize);
+		int column = chunkColumn * chunkSize, row = chunkRow * chunkSize;
+		int width = Math.min(chunkSize, getWidth() - column);
+		int height = Math.min(chunkSize, getHeight() - row);
+		var region = new Tile[width * height];
+		source.generateRegion(column, row, width, height, region);
+		for(int r = 0; r < height; r++)
+			for(int c = 0; c < width; c++) {
+				var tile = region[r*width + c];
+				if(tile != null) {
+					tile.setBoard(this);
+					chunk.tileCount++;
+				}
+				chunk.tiles[r*chunkSize + c] = tile;
+			}
+		residentTiles.addAndGet(chunk.tileCount);
+		return chunk;
+	}
+
+	private boolean isIdle(Chunk chunk) {
+		if(chunk.pinned) return false;
+		if(getGame() == null) return true;  // entities can't be placed without a game
+		for(var tile : chunk.tiles)
+			if(tile != null && !tile.isEmpty()) return false;
+		return true;
+	}
+
+	/** evicts every resident chunk that holds no entities and has no modified tiles.
+	 * @return number of chunks evicted
+	 */
+	public int evictIdleChunks() {
+		return evictIdleChunks(Integer.MAX_VALUE, null);
+	}
+
+	/** evicts up to limit idle chunks, least recently used first, never evicting keep */
+	private synchronized int evictIdleChunks(int limit, Chunk keep) {
+		var candidates = new ArrayList<Map.Entry<Long,Chunk>>();
+		for(var entry : chunks.entrySet())
+			if(entry.getValue() != keep && isIdle(entry.getValue()))
+				candidates.add(entry);
+		if(candidates.size() > limit)
+			candidates.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+		int evicted = 0;
+		for(var entry : candidates) {
+			if(evicted >= limit) break;
+			if(chunks.remove(entry.getKey(), entry.getValue())) {
+				residentTiles.addAndGet(-entry.getValue().tileCount);
+				evicted++;
+			}
+		}
+		return evicted;
+	}
+
+	/** pins the chunk of a modified tile so its state is not lost to eviction */
+	@Override
+	void tileModified(Tile tile) {
+		var chunk = chunks.get(chunkKey(tile.getColumn() / chunkSize, tile.getRow() / chunkSize));
+		if(chunk != null) chunk.pinned = true;
+	}
+
+	/** releases the resident chunks and the tile source, e.g. an open map file */
+	@Override
+	public void close() throws IOException {
+		chunks.clear();
+		residentTiles.set(0);
+		source.close();
+	}
+}
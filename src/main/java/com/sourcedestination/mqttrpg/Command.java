@@ -1,13 +1,36 @@
 package com.sourcedestination.mqttrpg;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class Command implements HasProperties {
+    private static final TypeAdapter<JsonElement> ELEMENTS = new Gson().getAdapter(JsonElement.class);
+
     private final Map<String,Object> properties;
     private final Game game;
 
+    /** parses a command from a JSON object.
+     * Whole numbers become Integer (or Long if they do not fit), other numbers Double,
+     * nested objects maps and arrays lists.
+     * @throws InvalidCommandException if the payload is not a well formed JSON object
+     */
     public Command(Game game, String json) throws CommandException {
-        properties = null; // TODO: parse from json
+        this.properties = Collections.unmodifiableMap(parseObject(json));
         this.game = game;
     }
 
@@ -23,4 +46,52 @@ public class Command implements HasProperties {
     }
 
     public Game getGame() { return game; }
+
+    /** parses a JSON object with the same value conversions as {@link #Command(Game, String)}.
+     * Parsing is strict: unquoted names or strings, comments, NaN and trailing content are rejected.
+     */
+    static Map<String,Object> parseObject(String json) throws InvalidCommandException {
+        JsonElement root;
+        try {
+            var reader = new JsonReader(new StringReader(json));
+            reader.setLenient(false);
+            root = ELEMENTS.read(reader);
+            if(reader.peek() != JsonToken.END_DOCUMENT)
+                throw new InvalidCommandException("malformed command: content after the JSON object");
+        } catch(IOException | JsonParseException | IllegalStateException | NumberFormatException e) {
+            throw new InvalidCommandException("malformed command: " + e.getMessage());
+        }
+        if(root == null || !root.isJsonObject())
+            throw new InvalidCommandException("command must be a JSON object");
+        return toMap(root.getAsJsonObject());
+    }
+
+    static Map<String,Object> toMap(JsonObject object) {
+        var map = new LinkedHashMap<String,Object>();
+        for(var entry : object.entrySet())
+            map.put(entry.getKey(), toValue(entry.getValue()));
+        return map;
+    }
+
+    private static List<Object> toList(JsonArray array) {
+        var list = new ArrayList<Object>(array.size());
+        for(var element : array) list.add(toValue(element));
+        return list;
+    }
+
+    private static Object toValue(JsonElement element) {
+        if(element.isJsonNull()) return null;
+        if(element.isJsonObject()) return toMap(element.getAsJsonObject());
+        if(element.isJsonArray()) return toList(element.getAsJsonArray());
+        var primitive = element.getAsJsonPrimitive();
+        if(primitive.isBoolean()) return primitive.getAsBoolean();
+        if(primitive.isString()) return primitive.getAsString();
+        BigDecimal number = primitive.getAsBigDecimal();
+        try {
+            long whole = number.longValueExact();
+            return whole == (int)whole ? (Object)(int)whole : (Object)whole;
+        } catch(ArithmeticException e) {
+            return number.doubleValue();
+        }
+    }
 }
@@ -1,4 +1,10 @@
 package com.sourcedestination.mqttrpg;
 
 public class CommandException extends Exception {
+
+    public CommandException() { }
+
+    public CommandException(String message) {
+        super(message);
+    }
 }
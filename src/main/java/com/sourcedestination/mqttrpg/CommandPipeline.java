@@ -0,0 +1,128 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/** parses, validates and authorizes raw command payloads on a worker pool before they reach the game.
+ * Each payload is parsed into a {@link Command}, checked against the {@link CommandSchema} registered
+ * for its type and against the issuing agent's role, and only then offered to the game's queue
+ * through {@link Game#submitCommand(Agent, Command)}. Malformed, unknown, unauthorized or rejected
+ * commands complete the returned future exceptionally and never cost game loop time.
+ * Payloads wait for a worker in a bounded backlog; once it is full, further payloads are rejected at once
+ * rather than buffered without limit. Declared enum properties reach the game as enum constants.
+ */
+public class CommandPipeline implements AutoCloseable {
+
+    /** payloads waiting for a worker above which the default pipeline rejects new ones */
+    public static final int DEFAULT_BACKLOG = 1024;
+
+    private final Game game;
+    private final ExecutorService workers;
+    private final Map<String, CommandSchema> schemas = new ConcurrentHashMap<>();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder unauthorized = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public CommandPipeline(Game game, int threads) {
+        this(game, threads, DEFAULT_BACKLOG);
+    }
+
+    /** @param backlog number of payloads that may wait for a worker */
+    public CommandPipeline(Game game, int threads, int backlog) {
+        this.game = game;
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(backlog), r -> {
+                    var thread = new Thread(r, "command-pipeline");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /** registers the schema for one command type, replacing any previous schema for that type */
+    public CommandPipeline define(CommandSchema schema) {
+        schemas.put(schema.getType(), schema);
+        return this;
+    }
+
+    /** processes a payload on the worker pool.
+     * @return a future completing with the queued command, or exceptionally with an
+     *   {@link InvalidCommandException}, {@link UnauthorizedCommandException} or {@link CommandRejectedException},
+     *   the latter also when the backlog is full
+     */
+    public CompletableFuture<Command> submit(Agent agent, String json) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return process(agent, json);
+                } catch(CommandException e) {
+                    throw new CompletionException(e);
+                }
+            }, workers);
+        } catch(RejectedExecutionException e) {
+            rejected.increment();
+            game.commandRejected(agent, CommandRejectedException.Reason.PIPELINE_FULL);
+            return CompletableFuture.failedFuture(
+                    new CommandRejectedException(agent.getAgentID(), CommandRejectedException.Reason.PIPELINE_FULL));
+        }
+    }
+
+    /** parses, validates, authorizes and queues a payload on the calling thread */
+    public Command process(Agent agent, String json) throws CommandException {
+        Command command;
+        try {
+            command = new Command(game, json);
+            var type = command.getProperties().get(CommandSchema.TYPE);
+            if(type == null) throw new InvalidCommandException("command has no type");
+            var schema = schemas.get(type.toString());
+            if(schema == null) throw new InvalidCommandException("unknown command type " + type);
+            schema.validate(command);
+            if(!schema.isAuthorized(agent))
+                throw new UnauthorizedCommandException("agent " + agent.getAgentID() + " with role " +
+                        agent.getRole() + " may not issue " + type + " commands");
+            command = schema.convert(command);
+        } catch(InvalidCommandException e) {
+            invalid.increment();
+            throw e;
+        } catch(UnauthorizedCommandException e) {
+            unauthorized.increment();
+            throw e;
+        }
+        try {
+            game.submitCommand(agent, command);
+        } catch(CommandRejectedException e) {
+            rejected.increment();
+            throw e;
+        } catch(InvalidCommandException e) {
+            invalid.increment();
+            throw e;
+        }
+        accepted.increment();
+        return command;
+    }
+
+    public long getAccepted() { return accepted.sum(); }
+    public long getInvalid() { return invalid.sum(); }
+    public long getUnauthorized() { return unauthorized.sum(); }
+    /** commands refused by the game's {@link AdmissionControl}, or because the backlog was full */
+    public long getRejected() { return rejected.sum(); }
+
+    /** stops accepting payloads and waits briefly for those in flight */
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
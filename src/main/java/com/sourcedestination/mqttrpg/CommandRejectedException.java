@@ -0,0 +1,26 @@
+package com.sourcedestination.mqttrpg;
+
+/** thrown when admission control, or a {@link CommandPipeline} with a full backlog, refuses a command before it is queued */
+public class CommandRejectedException extends CommandException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Reason { RATE_LIMITED, QUEUE_FULL, PIPELINE_FULL }
+
+    private final String agentId;
+    private final Reason reason;
+
+    public CommandRejectedException(String agentId, Reason reason) {
+        super("command from agent " + agentId + " rejected: " + switch(reason) {
+            case RATE_LIMITED -> "rate limit exceeded";
+            case QUEUE_FULL -> "too many pending commands";
+            case PIPELINE_FULL -> "too many commands waiting to be validated";
+        });
+        this.agentId = agentId;
+        this.reason = reason;
+    }
+
+    public String getAgentId() { return agentId; }
+
+    public Reason getReason() { return reason; }
+}
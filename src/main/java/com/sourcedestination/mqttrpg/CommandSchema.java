@@ -0,0 +1,119 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/** describes one type of command: the properties it must or may carry and which agent roles may issue it.
+ * A command's type is its "type" property. With no roles given, any role may issue the command.
+ * Any command may also carry a "sequence" property, which must be a non-negative whole number.
+ * Properties declared with an enum type, such as {@link Direction}, are given as the constant's name.
+ */
+public class CommandSchema {
+    public static final String TYPE = "type";
+    public static final String SEQUENCE = "sequence";
+
+    private final String type;
+    private final Map<String, Class<?>> required = new LinkedHashMap<>();
+    private final Map<String, Class<?>> optional = new LinkedHashMap<>();
+    private Set<String> roles = Set.of();
+    private boolean strict;
+
+    public CommandSchema(String type) {
+        this.type = type;
+    }
+
+    public String getType() { return type; }
+
+    /** the command must carry this property with a value of the given type */
+    public CommandSchema require(String property, Class<?> valueType) {
+        required.put(property, valueType);
+        return this;
+    }
+
+    /** the command may carry this property; if present its value must have the given type */
+    public CommandSchema optional(String property, Class<?> valueType) {
+        optional.put(property, valueType);
+        return this;
+    }
+
+    /** restricts the command to agents with one of these roles */
+    public CommandSchema roles(String ... roles) {
+        this.roles = Set.of(roles);
+        return this;
+    }
+
+    /** rejects properties other than type, sequence and those declared in this schema */
+    public CommandSchema strict() {
+        this.strict = true;
+        return this;
+    }
+
+    public boolean isAuthorized(Agent agent) {
+        return roles.isEmpty() || roles.contains(agent.getRole());
+    }
+
+    /** @throws InvalidCommandException describing the first property that does not conform */
+    public void validate(Command command) throws InvalidCommandException {
+        var properties = command.getProperties();
+        if(properties.containsKey(SEQUENCE) && !isSequence(properties.get(SEQUENCE)))
+            throw new InvalidCommandException("sequence of " + type + " command must be a non-negative whole number");
+        for(var entry : required.entrySet()) {
+            if(!properties.containsKey(entry.getKey()))
+                throw new InvalidCommandException(type + " command is missing property " + entry.getKey());
+            check(entry.getKey(), entry.getValue(), properties.get(entry.getKey()));
+        }
+        for(var entry : properties.entrySet()) {
+            var key = entry.getKey();
+            if(required.containsKey(key) || key.equals(TYPE) || key.equals(SEQUENCE)) continue;
+            if(optional.containsKey(key)) check(key, optional.get(key), entry.getValue());
+            else if(strict) throw new InvalidCommandException(type + " command has unexpected property " + key);
+        }
+    }
+
+    /** returns the command with every declared enum property converted from its name to the constant;
+     * the command must have passed {@link #validate(Command)}
+     */
+    public Command convert(Command command) {
+        Map<String, Object> converted = null;
+        for(var entry : command.getProperties().entrySet()) {
+            var valueType = required.containsKey(entry.getKey()) ? required.get(entry.getKey()) : optional.get(entry.getKey());
+            if(valueType == null || !valueType.isEnum() || valueType.isInstance(entry.getValue())) continue;
+            if(converted == null) converted = new LinkedHashMap<>(command.getProperties());
+            converted.put(entry.getKey(), constant(valueType, entry.getValue()));
+        }
+        return converted == null ? command : new Command(command.getGame(), Collections.unmodifiableMap(converted));
+    }
+
+    private void check(String property, Class<?> valueType, Object value) throws InvalidCommandException {
+        if(!conforms(valueType, value))
+            throw new InvalidCommandException("property " + property + " of " + type +
+                    " command must be " + valueType.getSimpleName());
+    }
+
+    /** true if value can order a command among its agent's commands */
+    static boolean isSequence(Object value) {
+        return (value instanceof Integer || value instanceof Long) && ((Number)value).longValue() >= 0;
+    }
+
+    private static boolean conforms(Class<?> valueType, Object value) {
+        if(value == null) return false;
+        if(valueType.isInstance(value)) return true;
+        if(valueType == Long.class) return value instanceof Integer;
+        if(valueType == Double.class) return value instanceof Number;
+        if(valueType.isEnum()) return constant(valueType, value) != null;
+        return false;
+    }
+
+    /** the constant of an enum type named by value, or null if there is none */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object constant(Class<?> enumType, Object value) {
+        if(!(value instanceof String)) return null;
+        try {
+            return Enum.valueOf((Class)enumType, (String)value);
+        } catch(IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.sourcedestination.mqttrpg;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** flight recorder event spanning an agent's handling of one command */
+@Name("mqttrpg.CommandHandled")
+@Label("Command Handled")
+@Category({"MQTT RPG", "Game Loop"})
+@Description("An agent handling a queued command on the game thread")
+@Enabled(false)
+@StackTrace(false)
+final class CommandTrace extends jdk.jfr.Event {
+    @Label("Agent") String agent;
+    @Label("Command Type") String commandType;
+    @Label("Error") String error;
+}
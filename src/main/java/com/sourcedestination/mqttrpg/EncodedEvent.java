@@ -0,0 +1,65 @@
+package com.sourcedestination.mqttrpg;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** an event encoded once in one {@link EventFormat} and shared, read only, by every recipient.
+ * Reference counted: each holder that keeps the payload beyond the call that delivered it must
+ * {@link #retain()} it and {@link #release()} it once the bytes are sent. When the last reference
+ * is released the bytes are dropped, and any later access fails instead of sending stale data.
+ */
+public final class EncodedEvent {
+    private final Event event;
+    private final EventFormat format;
+    private volatile byte[] bytes;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final long encodedAt = System.nanoTime();
+
+    EncodedEvent(Event event, EventFormat format, byte[] bytes) {
+        this.event = event;
+        this.format = format;
+        this.bytes = bytes;
+    }
+
+    /** the encoded event; only valid during delivery, as pooled events are reused afterwards */
+    public Event getEvent() { return event; }
+
+    public EventFormat getFormat() { return format; }
+
+    /** read only view of the encoded bytes */
+    public ByteBuffer getBuffer() {
+        return ByteBuffer.wrap(bytes()).asReadOnlyBuffer();
+    }
+
+    /** a private copy of the encoded bytes */
+    public byte[] toByteArray() {
+        return bytes().clone();
+    }
+
+    public int size() { return bytes().length; }
+
+    /** {@link System#nanoTime()} when the event was encoded */
+    public long getEncodedAt() { return encodedAt; }
+
+    public EncodedEvent retain() {
+        if(references.getAndUpdate(n -> n > 0 ? n + 1 : n) <= 0)
+            throw new IllegalStateException("event payload already released");
+        return this;
+    }
+
+    /** drops one reference, returning true if it was the last */
+    public boolean release() {
+        int remaining = references.decrementAndGet();
+        if(remaining < 0) throw new IllegalStateException("event payload released too often");
+        if(remaining == 0) bytes = null;
+        return remaining == 0;
+    }
+
+    public int getReferenceCount() { return Math.max(0, references.get()); }
+
+    private byte[] bytes() {
+        var b = bytes;
+        if(b == null) throw new IllegalStateException("event payload already released");
+        return b;
+    }
+}
@@ -5,14 +5,13 @@ import com.google.gson.GsonBuilder;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /** a class representing tile-occupying entities in the game */
 public abstract class Entity implements HasProperties {
 	private final int id;
 	private final Game game;
 	private Direction heading;
-	private final Map<String,Object> properties;
+	private final PropertyStore properties;
 
 	/**
 	 * Constructs Entity from a {@link Game}
@@ -21,7 +20,7 @@ public abstract class Entity implements HasProperties {
 	public Entity(Game game, Map<String,String> properties) {
 
 		this.game = game;
-		this.properties = new ConcurrentHashMap<>(properties);
+		this.properties = new PropertyStore(properties);
 		game.addEntity(this);
 		this.id = game.getEntityId(this);
 	}
@@ -31,16 +30,41 @@ public abstract class Entity implements HasProperties {
 		game.moveEntity(this, initialLocation);
 	}
 
+	/** returns a read-only view of this entity's properties, including its id */
 	@Override
 	public Map<String,Object> getProperties() {
-		var properties = new HashMap<>(this.properties); // add id to properties
-		properties.put("id", id);
-		return Collections.unmodifiableMap(properties);
+		var txn = game.transaction();
+		var written = txn == null ? null : txn.writtenProperties(this);
+		if(written != null) {
+			var merged = new HashMap<>(properties.asMap("id", id));
+			merged.putAll(written);
+			return Collections.unmodifiableMap(merged);
+		}
+		return properties.asMap("id", id);
+	}
+
+	@Override
+	public PropertyStore getPropertyStore() {
+		var txn = game.transaction();
+		var written = txn == null ? null : txn.writtenProperties(this);
+		if(written != null) {
+			var merged = properties.copy();
+			written.forEach(merged::put);
+			return merged;
+		}
+		return properties;
 	}
 
 	@Override
 	public void setProperty(String key, Object value) {
+		var txn = game.transaction();
+		if(txn != null) {
+			txn.setProperty(this, key, value);
+			return;
+		}
+		game.journalProperty(this, key);
 		properties.put(key, value);
+		game.entityPropertyChanged(this, key);
 	}
 
 	/**
@@ -54,6 +78,11 @@ public abstract class Entity implements HasProperties {
 	 * @param heading facing Direction
 	 */
 	public void setHeading(Direction heading) {
+		game.serialOnly();
+		if(game.isSpeculating()) {
+			var previous = this.heading;
+			game.journal(() -> this.heading = previous);
+		}
 		this.heading = heading;
 	}
 
@@ -95,6 +124,8 @@ public abstract class Entity implements HasProperties {
 		}
 		m.put("id", getID());
 		m.put("type", getType());
+		var properties = new HashMap<>(getProperties());
+		properties.remove("id");
 		m.put("properties", properties);
 		return gson.toJson(m);
 	}
@@ -0,0 +1,9 @@
+package com.sourcedestination.mqttrpg;
+
+/** recreates an entity of one type in another game, e.g. when it is handed off to another node or restored
+ * from a {@link GameSnapshot}. The game assigns the original id; properties and heading are copied afterwards.
+ */
+@FunctionalInterface
+public interface EntityFactory {
+    Entity create(Game game);
+}
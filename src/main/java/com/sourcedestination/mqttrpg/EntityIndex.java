@@ -0,0 +1,124 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.*;
+
+/** a secondary index grouping a game's entities by their type, the value of one property, or the board they are on.
+ * Indexes are registered with {@link Game#addIndex(EntityIndex)} and kept up to date by the game as entities are
+ * added, removed, moved or have their properties set. Property values are indexed by their string form.
+ * New entities are filed when they register and again at the next query, index lookup or tick, so
+ * subclasses whose type depends on their own fields end up filed correctly.
+ * <p>
+ * Changes the game cannot observe, such as writes to {@link Archetype} column arrays, are not reflected until
+ * {@link Game#updateIndexes(Entity)} is called for the affected entity.
+ */
+public class EntityIndex {
+    public enum Kind { TYPE, PROPERTY, BOARD }
+
+    private final Kind kind;
+    private final String property;
+    private final Map<Object, Set<Entity>> buckets = new HashMap<>();
+    private final Map<Entity, Object> keys = new HashMap<>();
+    private volatile Game game;  // the game this index is registered with, if any
+
+    private EntityIndex(Kind kind, String property) {
+        this.kind = kind;
+        this.property = property;
+    }
+
+    /** creates an index of entities by {@link Entity#getType()} */
+    public static EntityIndex byType() { return new EntityIndex(Kind.TYPE, null); }
+
+    /** creates an index of entities by the string value of a property; entities without the property are not indexed */
+    public static EntityIndex byProperty(String property) { return new EntityIndex(Kind.PROPERTY, property); }
+
+    /** creates an index of entities by the {@link Board} whose tile ultimately holds them */
+    public static EntityIndex byBoard() { return new EntityIndex(Kind.BOARD, null); }
+
+    public Kind getKind() { return kind; }
+
+    /** the indexed property, for property indexes */
+    public String getProperty() { return property; }
+
+    /** records the game this index is registered with, or null once it is removed */
+    synchronized void setGame(Game game) {
+        if(game != null && this.game != null && this.game != game)
+            throw new IllegalStateException("index is already registered with another game");
+        this.game = game;
+    }
+
+    /** files entities the game registered since its last lookup, so lookups see them under their final key */
+    private void refile() {
+        var game = this.game;
+        if(game != null) game.refileRegistered();
+    }
+
+    /** normalizes a value to the form used as a key by this index */
+    Object normalize(Object value) {
+        return kind == Kind.PROPERTY && value != null ? value.toString() : value;
+    }
+
+    /** computes the key an entity should currently be filed under, or null if it should not be indexed */
+    Object keyOf(Game game, Entity ent) {
+        switch(kind) {
+            case TYPE: return ent.getType();
+            case PROPERTY: return normalize(ent.getProperties().get(property));
+            default:
+                var tile = game.getRootTile(ent);
+                return tile == null ? null : tile.getBoard();
+        }
+    }
+
+    /** refiles an entity under its current key */
+    synchronized void update(Game game, Entity ent) {
+        var key = keyOf(game, ent);
+        if(key != null && key.equals(keys.get(ent))) return;
+        remove(ent);
+        if(key != null) {
+            keys.put(ent, key);
+            buckets.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(ent);
+        }
+    }
+
+    synchronized void remove(Entity ent) {
+        if(!keys.containsKey(ent)) return;
+        var key = keys.remove(ent);
+        var bucket = buckets.get(key);
+        bucket.remove(ent);
+        if(bucket.isEmpty()) buckets.remove(key);
+    }
+
+    /** returns true if the entity is currently filed under key */
+    public boolean matches(Entity ent, Object key) {
+        refile();
+        synchronized(this) {
+            var current = keys.get(ent);
+            return current != null && current.equals(normalize(key));
+        }
+    }
+
+    /** returns a snapshot of the entities filed under key */
+    public Set<Entity> get(Object key) {
+        refile();
+        synchronized(this) {
+            var bucket = buckets.get(normalize(key));
+            return bucket == null ? Set.of() : new LinkedHashSet<>(bucket);
+        }
+    }
+
+    /** returns the number of entities filed under key */
+    public int count(Object key) {
+        refile();
+        synchronized(this) {
+            var bucket = buckets.get(normalize(key));
+            return bucket == null ? 0 : bucket.size();
+        }
+    }
+
+    /** returns a snapshot of the keys that currently have entities */
+    public Set<Object> getKeys() {
+        refile();
+        synchronized(this) {
+            return new HashSet<>(buckets.keySet());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/** published when an entity is created ("entity-creation") or deleted ("entity-deletion") */
+public class EntityLifecycleEvent extends Event {
+    public static final String CREATION = "entity-creation";
+    public static final String DELETION = "entity-deletion";
+
+    private final Entity entity;
+
+    public EntityLifecycleEvent(Game game, String type, Entity entity) {
+        super(game, type);
+        this.entity = entity;
+    }
+
+    @Override
+    public Optional<Entity> getEntity() { return Optional.of(entity); }
+
+    @Override
+    public Stream<HasProperties> getUpdatedStates() {
+        return Stream.of(entity);
+    }
+
+    @Override
+    protected void addProperties(Map<String,Object> m) {
+        m.put("entity-id", entity.getID());
+    }
+}
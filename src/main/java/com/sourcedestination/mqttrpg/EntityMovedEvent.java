@@ -0,0 +1,74 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/** published when an entity moves to a new {@link Container}.
+ * Keeps references to the entity and both containers and only builds the property map
+ * (entity, board/row/column or entity-container, and their previous- counterparts) when it is requested.
+ */
+public class EntityMovedEvent extends Event {
+    private Entity entity;
+    private Container previous;
+    private Container current;
+
+    public EntityMovedEvent(Game game, Entity entity, Container previous, Container current) {
+        super(game, "entity-moved");
+        this.entity = entity;
+        this.previous = previous;
+        this.current = current;
+    }
+
+    /** reuses a pooled event for another move */
+    EntityMovedEvent reuse(Entity entity, Container previous, Container current) {
+        recycle();
+        this.entity = entity;
+        this.previous = previous;
+        this.current = current;
+        return this;
+    }
+
+    /** container that held the entity before the move, or null if it had none */
+    public Container getPrevious() { return previous; }
+
+    /** container holding the entity after the move */
+    public Container getCurrent() { return current; }
+
+    @Override
+    public Optional<Entity> getEntity() { return Optional.of(entity); }
+
+    /** resolves "" to the new tile and "previous-" to the old tile without building the property map */
+    @Override
+    public Optional<Tile> getTile(String prefix) {
+        if(prefix.isEmpty()) return current instanceof Tile ? Optional.of((Tile)current) : Optional.empty();
+        if(prefix.equals("previous-")) return previous instanceof Tile ? Optional.of((Tile)previous) : Optional.empty();
+        return super.getTile(prefix);
+    }
+
+    @Override
+    public Stream<HasProperties> getUpdatedStates() {
+        return Stream.of(entity, current);
+    }
+
+    @Override
+    protected void addProperties(Map<String,Object> m) {
+        m.put("entity", entity.getID());
+        if(previous instanceof Tile) {
+            var tile = (Tile)previous;
+            m.put("previous-board", tile.getBoard().getID());
+            m.put("previous-row", tile.getRow());
+            m.put("previous-column", tile.getColumn());
+        } else if(previous instanceof Entity) {
+            m.put("previous-entity-container", ((Entity)previous).getID());
+        }
+        if(current instanceof Tile) {
+            var tile = (Tile)current;
+            m.put("board", tile.getBoard().getID());
+            m.put("row", tile.getRow());
+            m.put("column", tile.getColumn());
+        } else if(current instanceof Entity) {
+            m.put("entity-container", ((Entity)current).getID());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/** a conjunctive query over a game's entities, created by {@link Game#query()}.
+ * Criteria backed by an index registered with the game are answered from that index: the smallest matching
+ * index bucket is used as the candidate set and the remaining criteria are checked per candidate, so a
+ * query costs time proportional to the number of candidates rather than the number of entities.
+ * If no criterion is indexed, every entity in the game is scanned.
+ */
+public class EntityQuery {
+    private final Game game;
+    private final List<Criterion> criteria = new ArrayList<>();
+
+    private static class Criterion {
+        final EntityIndex.Kind kind;
+        final String property;
+        final Object value;
+
+        Criterion(EntityIndex.Kind kind, String property, Object value) {
+            this.kind = kind;
+            this.property = property;
+            this.value = value;
+        }
+    }
+
+    EntityQuery(Game game) {
+        this.game = game;
+    }
+
+    /** restricts results to entities of the given type */
+    public EntityQuery ofType(String type) {
+        criteria.add(new Criterion(EntityIndex.Kind.TYPE, null, type));
+        return this;
+    }
+
+    /** restricts results to entities whose property has the given value (compared by string form).
+     * A null value matches no entity, as entities without the property are not indexed.
+     */
+    public EntityQuery where(String property, Object value) {
+        criteria.add(new Criterion(EntityIndex.Kind.PROPERTY, property, value));
+        return this;
+    }
+
+    /** restricts results to entities held, directly or through containers, by a tile of the given board */
+    public EntityQuery onBoard(Board board) {
+        criteria.add(new Criterion(EntityIndex.Kind.BOARD, null, board));
+        return this;
+    }
+
+    private EntityIndex indexFor(Criterion criterion) {
+        return game.getIndex(criterion.kind, criterion.property);
+    }
+
+    private boolean matches(Entity ent, Criterion criterion) {
+        var index = indexFor(criterion);
+        if(index != null) return index.matches(ent, criterion.value);
+        switch(criterion.kind) {
+            case TYPE: return Objects.equals(ent.getType(), criterion.value);
+            case PROPERTY:
+                var value = ent.getProperties().get(criterion.property);
+                return value != null && criterion.value != null && value.toString().equals(criterion.value.toString());
+            default:
+                var tile = game.getRootTile(ent);
+                return tile != null && tile.getBoard() == criterion.value;
+        }
+    }
+
+    /** returns the matching entities */
+    public Stream<Entity> stream() {
+        Criterion driver = null;
+        int smallest = Integer.MAX_VALUE;
+        for(var criterion : criteria) {
+            var index = indexFor(criterion);
+            if(index != null) {
+                int count = index.count(criterion.value);
+                if(count < smallest) {
+                    smallest = count;
+                    driver = criterion;
+                }
+            }
+        }
+        Stream<Entity> candidates = driver == null ?
+                game.getEntities() :
+                indexFor(driver).get(driver.value).stream();
+        Predicate<Entity> filter = ent -> true;
+        for(var criterion : criteria)
+            if(criterion != driver) filter = filter.and(ent -> matches(ent, criterion));
+        return candidates.filter(filter);
+    }
+
+    public long count() {
+        if(criteria.size() == 1) { // answer directly from the index if possible
+            var index = indexFor(criteria.get(0));
+            if(index != null) return index.count(criteria.get(0).value);
+        }
+        return stream().count();
+    }
+
+    /** returns true if every matching entity satisfies predicate */
+    public boolean allMatch(Predicate<Entity> predicate) {
+        return stream().allMatch(predicate);
+    }
+}
@@ -4,28 +4,31 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.HashSet;
 import java.util.stream.Stream;
 
 
 /** Indicates when something happens during the game that other game components may react to.
  * Also used to record important events in the processing of the game.
+ * <p>
+ * Subclasses for frequent events keep their data in typed fields and build the property map
+ * in {@link #addProperties(Map)} only when a listener first asks for it.
  */
 public class Event implements HasProperties {
+    private static final Gson GSON = new GsonBuilder().create();  // thread safe, shared by all events
 
-    private final Map<String,Object> properties;
-    private final Set<HasProperties> updatedState;
-    private final int id;
+    private Map<String,Object> properties;  // null until first requested for typed events
+    private final HasProperties[] updatedState;
+    private int id;
     private final Game game;
-    private final long eventTime;
+    private long eventTime;
     private final String type;
 
     public Event(Game game, String type, HasProperties ... updatedState) {
-        this(game, type, game.getNextEventId(), new HashMap<>(), updatedState);
+        this(game, type, game.getNextEventId(), (Map<String,Object>)null, updatedState);
     }
 
     private Event(Game game, String type, int id, HasProperties ... updatedState) {
@@ -42,26 +45,45 @@ public class Event implements HasProperties {
         this.game = game;
         this.type = type;
         this.eventTime = game.getGameTime();
-        properties = new HashMap<>(properties); // add id to properties
-        properties.put("id", ""+id);
-        this.properties = Collections.unmodifiableMap(properties);
-        this.updatedState = new HashSet<>();
-        for(var o : updatedState) this.updatedState.add(o);
+        if(properties != null) {
+            properties = new HashMap<>(properties); // add id to properties
+            properties.put("id", ""+id);
+            this.properties = Collections.unmodifiableMap(properties);
+        }
+        this.updatedState = updatedState;
     }
 
     @Override
     public Map<String, Object> getProperties() {
+        var properties = this.properties;
+        if(properties == null) {
+            var m = new HashMap<String,Object>();
+            addProperties(m);
+            m.put("id", ""+id);
+            this.properties = properties = Collections.unmodifiableMap(m);
+        }
         return properties;
     }
 
+    /** adds the properties of a typed event to m.
+     * Called at most once per event (or per reuse of a pooled event), when properties are first requested.
+     */
+    protected void addProperties(Map<String,Object> m) { }
+
+    /** prepares a pooled event for reuse with a new id and time */
+    void recycle() {
+        id = game.getNextEventId();
+        eventTime = game.getGameTime();
+        properties = null;
+    }
+
     @Override
     public void setProperty(String key, Object value) {
         throw new UnsupportedOperationException("Event properties are immutable");
     }
 
     public static Event fromJson(Game game, String json) {
-        Gson gson = new Gson();
-        var obj = gson.fromJson(json, JsonObject.class);
+        var obj = GSON.fromJson(json, JsonObject.class);
         int id = obj.get("id").getAsInt();
         String type = obj.get("type").getAsString();
         var map = new HashMap<String,Object>();
@@ -81,20 +103,21 @@ public class Event implements HasProperties {
     }
 
     public Stream<HasProperties> getUpdatedStates() {
-        return updatedState.stream();
+        return Arrays.stream(updatedState).distinct();
     }
 
     public String getType() { return type; }
 
+    public int getID() { return id; }
+
+    /** JSON with the id, time, type and properties of this event */
     public String toString() {
-            var gsonBuilder = new GsonBuilder();
-            var gson = gsonBuilder.create();
             var m = new HashMap<String,Object>();
             m.put("id", id);
             m.put("time", getEventTime());
             m.put("type", type);
             m.put("properties", getProperties());
-            return gson.toJson(m);
+            return GSON.toJson(m);
     }
 
 }
@@ -0,0 +1,160 @@
+package com.sourcedestination.mqttrpg;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/** packs many encoded events into one framed, optionally compressed message.
+ * A frame is a magic byte (0xEB), the {@link PayloadCompression} id, the number of events and the length of
+ * the uncompressed body as varints, then the body: each event as a varint length followed by its bytes.
+ * Compressed bodies are raw deflate streams primed with a preset dictionary.
+ * <p>
+ * Encoding reuses one deflater per compression level, so an instance must only be used by one thread.
+ */
+public class EventBatchCodec {
+    static final int MAGIC = 0xEB;
+
+    /** largest uncompressed body accepted when decoding */
+    static final int MAX_BODY_LENGTH = 16 << 20;
+
+    /** deflate cannot expand data by more than this factor, which bounds the body a frame can claim */
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    /** preset dictionary of the keys and event types that appear in nearly every event, most common last */
+    static final byte[] DICTIONARY = String.join("",
+            "\"entity-container\":", "\"previous-entity-container\":",
+            "\"type\":\"board-creation\"", "\"type\":\"entity-deletion\"", "\"type\":\"entity-creation\"",
+            "\"entity-id\":", "\"type\":\"tile-status-update\"",
+            "\"previous-board\":\"", "\"previous-column\":", "\"previous-row\":",
+            "\"time\":", "\"type\":\"entity-moved\"", "\"entity\":",
+            "\"board\":\"", "\"column\":", "\"row\":", "{\"properties\":{\"id\":\"", "\"id\":"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private final byte[] dictionary;
+    private final Map<PayloadCompression, Deflater> deflaters = new EnumMap<>(PayloadCompression.class);
+    private final byte[] buffer = new byte[4096];
+
+    public EventBatchCodec() {
+        this(DICTIONARY);
+    }
+
+    /** uses a custom preset dictionary, which decoders must share */
+    public EventBatchCodec(byte[] dictionary) {
+        this.dictionary = dictionary.clone();
+    }
+
+    /** frames a batch of encoded events */
+    public byte[] encode(List<byte[]> events, PayloadCompression compression) {
+        var body = new ByteArrayOutputStream(64 * events.size() + 16);
+        for(var event : events) {
+            writeVarint(body, event.length);
+            body.write(event, 0, event.length);
+        }
+        var raw = body.toByteArray();
+        var frame = new ByteArrayOutputStream(raw.length / 2 + 16);
+        frame.write(MAGIC);
+        frame.write(compression.getId());
+        writeVarint(frame, events.size());
+        writeVarint(frame, raw.length);
+        if(compression == PayloadCompression.NONE) {
+            frame.write(raw, 0, raw.length);
+        } else {
+            var deflater = deflaters.computeIfAbsent(compression, c -> new Deflater(c.getLevel(), true));
+            deflater.reset();
+            deflater.setDictionary(dictionary);
+            deflater.setInput(raw);
+            deflater.finish();
+            while(!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                frame.write(buffer, 0, n);
+            }
+        }
+        return frame.toByteArray();
+    }
+
+    /** releases the native compression state */
+    public void close() {
+        deflaters.values().forEach(Deflater::end);
+        deflaters.clear();
+    }
+
+    /** unpacks a frame produced with the default dictionary */
+    public static List<byte[]> decode(byte[] frame) {
+        return decode(frame, DICTIONARY);
+    }
+
+    /** unpacks a frame into the encoded events it carries
+     * @throws IllegalArgumentException if the frame is malformed
+     */
+    public static List<byte[]> decode(byte[] frame, byte[] dictionary) {
+        if(frame.length < 4 || (frame[0] & 0xFF) != MAGIC) throw new IllegalArgumentException("not an event batch");
+        var compression = PayloadCompression.fromId(frame[1]);
+        int[] position = {2};
+        int count = readVarint(frame, position);
+        int rawLength = readVarint(frame, position);
+        int available = frame.length - position[0];
+        if(rawLength < 0 || rawLength > MAX_BODY_LENGTH ||
+                (compression != PayloadCompression.NONE && rawLength > (long)available * MAX_DEFLATE_RATIO))
+            throw new IllegalArgumentException("event batch body length out of range: " + rawLength);
+        if(count < 0 || count > rawLength)  // every event takes at least its length byte
+            throw new IllegalArgumentException("event count out of range: " + count);
+        byte[] raw;
+        if(compression == PayloadCompression.NONE) {
+            if(frame.length - position[0] != rawLength) throw new IllegalArgumentException("truncated event batch");
+            raw = Arrays.copyOfRange(frame, position[0], frame.length);
+        } else {
+            raw = new byte[rawLength];
+            var inflater = new Inflater(true);
+            try {
+                inflater.setDictionary(dictionary);
+                inflater.setInput(frame, position[0], frame.length - position[0]);
+                int n = 0;
+                while(n < rawLength) {
+                    int read = inflater.inflate(raw, n, rawLength - n);
+                    if(read == 0 && (inflater.finished() || inflater.needsInput()))
+                        throw new IllegalArgumentException("truncated event batch");
+                    n += read;
+                }
+            } catch(DataFormatException e) {
+                throw new IllegalArgumentException("corrupt event batch", e);
+            } finally {
+                inflater.end();
+            }
+        }
+        var events = new ArrayList<byte[]>(count);
+        position[0] = 0;
+        for(int i = 0; i < count; i++) {
+            int length = readVarint(raw, position);
+            if(length < 0 || length > raw.length - position[0]) throw new IllegalArgumentException("truncated event batch");
+            events.add(Arrays.copyOfRange(raw, position[0], position[0] + length));
+            position[0] += length;
+        }
+        return events;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] bytes, int[] position) {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            if(position[0] >= bytes.length) throw new IllegalArgumentException("truncated event batch");
+            int b = bytes[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("malformed varint in event batch");
+    }
+}
@@ -0,0 +1,109 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/** delivers each game event to many subscribers while encoding it at most once per format.
+ * An event is only encoded in a format when a subscriber using that format accepts it, and every such
+ * subscriber receives the same immutable {@link EncodedEvent}. With 500 spectators on JSON, an event is
+ * serialized once instead of 500 times.
+ * <p>
+ * Subscribers may be added and cancelled from any thread; events are delivered on the game thread.
+ * A subscriber that throws, or whose format cannot encode an event, is counted as a failure and does not
+ * keep the event from the remaining subscribers.
+ */
+public class EventFanout implements EventListener {
+
+    /** receives encoded events; must {@link EncodedEvent#retain()} a payload it keeps after returning */
+    @FunctionalInterface
+    public interface Subscriber {
+        void deliver(EncodedEvent payload);
+    }
+
+    /** a subscriber registered with this fan-out */
+    public final class Subscription {
+        private final String agentId;
+        private final EventFormat format;
+        private final Predicate<Event> filter;
+        private final Subscriber subscriber;
+
+        private Subscription(String agentId, EventFormat format, Predicate<Event> filter, Subscriber subscriber) {
+            this.agentId = agentId;
+            this.format = format;
+            this.filter = filter;
+            this.subscriber = subscriber;
+        }
+
+        public String getAgentId() { return agentId; }
+        public EventFormat getFormat() { return format; }
+
+        public void cancel() { subscriptions.remove(this); }
+    }
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final LongAdder encodings = new LongAdder();
+    private final LongAdder encodedBytes = new LongAdder();
+    private final LongAdder deliveries = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /** creates a fan-out receiving every event propagated in the game */
+    public EventFanout(Game game) {
+        game.addEventListener(this);
+    }
+
+    public Subscription subscribe(String agentId, EventFormat format, Subscriber subscriber) {
+        return subscribe(agentId, format, event -> true, subscriber);
+    }
+
+    /** subscribes to the events accepted by filter */
+    public Subscription subscribe(String agentId, EventFormat format, Predicate<Event> filter, Subscriber subscriber) {
+        var subscription = new Subscription(agentId, format, filter, subscriber);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public int getSubscriberCount() { return subscriptions.size(); }
+
+    /** number of times an event was encoded in some format */
+    public long getEncodings() { return encodings.sum(); }
+
+    public long getEncodedBytes() { return encodedBytes.sum(); }
+
+    /** number of payloads handed to subscribers */
+    public long getDeliveries() { return deliveries.sum(); }
+
+    /** number of deliveries that failed because encoding or the subscriber threw */
+    public long getFailures() { return failures.sum(); }
+
+    @Override
+    public void acceptEvent(Event event) {
+        Map<EventFormat, EncodedEvent> encoded = null;  // allocated once the first subscriber accepts
+        try {
+            for(var subscription : subscriptions) {
+                try {
+                    if(!subscription.filter.test(event)) continue;
+                    if(encoded == null) encoded = new IdentityHashMap<>(4);
+                    var payload = encoded.get(subscription.format);
+                    if(payload == null) {
+                        var bytes = subscription.format.encode(event);
+                        encodings.increment();
+                        encodedBytes.add(bytes.length);
+                        payload = new EncodedEvent(event, subscription.format, bytes);
+                        encoded.put(subscription.format, payload);
+                    }
+                    subscription.subscriber.deliver(payload);
+                    deliveries.increment();
+                } catch(RuntimeException e) {
+                    failures.increment();
+                }
+            }
+        } finally {
+            if(encoded != null)
+                for(var payload : encoded.values()) payload.release();  // subscribers that retained keep it alive
+        }
+    }
+}
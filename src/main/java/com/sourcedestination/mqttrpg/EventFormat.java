@@ -0,0 +1,62 @@
+package com.sourcedestination.mqttrpg;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/** a wire encoding for events sent to agents */
+public interface EventFormat {
+
+    /** UTF-8 JSON as produced by {@link Event#toString()} */
+    EventFormat JSON = new EventFormat() {
+        public String getName() { return "json"; }
+        public byte[] encode(Event event) { return event.toString().getBytes(StandardCharsets.UTF_8); }
+    };
+
+    /** compact binary encoding: id (int), time (long), type (string), property count (short),
+     * then each property as a string key, a one byte tag and its value.
+     * Tags are N (null), I (int), J (long), D (double), Z (boolean) and S (string, used for anything else).
+     * Strings are an int byte length followed by their UTF-8 bytes, so values are not limited to the 64 KB
+     * of {@link DataOutputStream#writeUTF(String)}.
+     */
+    EventFormat BINARY = new EventFormat() {
+        public String getName() { return "binary"; }
+        public byte[] encode(Event event) {
+            var bytes = new ByteArrayOutputStream(64);
+            try(var out = new DataOutputStream(bytes)) {
+                out.writeInt(event.getID());
+                out.writeLong(event.getEventTime());
+                writeString(out, event.getType());
+                var properties = event.getProperties();
+                out.writeShort(properties.size());
+                for(Map.Entry<String,Object> entry : properties.entrySet()) {
+                    writeString(out, entry.getKey());
+                    var value = entry.getValue();
+                    if(value == null) out.writeByte('N');
+                    else if(value instanceof Integer) { out.writeByte('I'); out.writeInt((Integer)value); }
+                    else if(value instanceof Long) { out.writeByte('J'); out.writeLong((Long)value); }
+                    else if(value instanceof Double) { out.writeByte('D'); out.writeDouble((Double)value); }
+                    else if(value instanceof Boolean) { out.writeByte('Z'); out.writeBoolean((Boolean)value); }
+                    else { out.writeByte('S'); writeString(out, value.toString()); }
+                }
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private void writeString(DataOutputStream out, String value) throws IOException {
+            var utf8 = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+    };
+
+    /** short name used in metrics and by subscribers */
+    String getName();
+
+    byte[] encode(Event event);
+}
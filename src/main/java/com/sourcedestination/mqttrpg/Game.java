@@ -2,12 +2,17 @@ package com.sourcedestination.mqttrpg;
 
 import com.google.common.collect.*;
 import com.google.gson.GsonBuilder;
-import net.sourcedestination.funcles.tuple.Tuple2;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /** Class for managing the state of games using the 2D API
@@ -19,25 +24,117 @@ public abstract class Game implements Container, Runnable {
 	private final long startTime;    // time when game was started or restarted
 	private final long elapsedTime;  // time elapsed in game since start or last restart
 	private int nextEntityID = 1;
+	private int entityIdStride = 1;
+	private int adoptedEntityID = 0;  // id for the entity being recreated by adoptEntity, 0 if none
 	private int nextEventID = 1;
 	private final List<Action> actionQueue = new ArrayList<>();
-	private final List<Tuple2<Agent,Command>> commandQueue = new Vector<>();
+	private final AdmissionControl admission = new AdmissionControl(this::getGameTime);
+	private final Map<String, Long> nextCommandSequence = new HashMap<>();
 	private final BiMap<Integer, Entity> registeredEntities = HashBiMap.create();
+	private final NavigableMap<Long, EventListener> listeningEntities = new TreeMap<>();  // registered entities that listen, by registration position
+	private final Map<EventListener, Long> listenerPositions = new HashMap<>();
+	private long nextRegistrationPosition;  // keeps an entity registered again on rollback in its old place
 	private final BiMap<String, Agent> allAgents = HashBiMap.create();
+	private final Map<String, Archetype> archetypes = new ConcurrentHashMap<>();
+	private final List<EntityIndex> indexes = new CopyOnWriteArrayList<>();
+	private final Set<Entity> unrefiled = new LinkedHashSet<>();  // registered while possibly still being constructed
+	private final List<EventListener> listeners = new CopyOnWriteArrayList<>();
+	private final List<Runnable> tickListeners = new CopyOnWriteArrayList<>();
 
 	// access must be protected by monitor
 	private final Multimap<Container, Entity> containerContents;
 	private final Map<Entity, Container> entityLocations;
+	private final Map<Entity, Tile> rootTiles = new HashMap<>();  // tile ultimately holding each entity
+
+	// reusable events, only handed out when no listener is still processing an event
+	private boolean eventPooling = false;
+	private int propagationDepth = 0;
+	private int listenerCalls = 0;  // running count of listener invocations, only touched by the game thread
+	private EntityMovedEvent pooledMovedEvent;
+	private TileStatusUpdateEvent pooledTileEvent;
+
+	// lockstep state: time, randomness and command order all derive from the tick count and seed
+	private GameClock clock;
+	private final GameRandom random = new GameRandom(System.nanoTime());
+	private boolean lockstep = false;
+	private long tickCount = 0;
+	private volatile long publishedActions, publishedTimers, publishedEntities, publishedAgents, publishedTicks;
+	private volatile List<Board> publishedBoards = List.of();
+	private long lastTickHash = 0;
+	private final Set<Tile> modifiedTiles = new HashSet<>();  // tiles included in state hashes
+
+	// undo journal for speculative execution, see speculate()
+	private final List<Runnable> journal = new ArrayList<>();
+	private final Deque<Speculation> speculations = new ArrayDeque<>();
+	private final List<Event> heldEvents = new ArrayList<>();  // raised while speculating, propagated on commit
+	private boolean undoing = false;
+
+	// optimistic parallel execution of actions, see setActionParallelism()
+	private ForkJoinPool actionPool;
+	private volatile boolean parallelPhase = false;
+	private final ThreadLocal<ActionTransaction> transaction = new ThreadLocal<>();
+	private long actionsCommitted, actionsReexecuted, actionsSerialized;
+
+	private TimerWheel timers;
+
+	private ShardCoordinator shard;  // set when boards are distributed across engine nodes
+	private volatile OutboundDispatcher outbound;  // set when networked agents are written to off the game thread
+	private Consumer<List<AdmissionControl.Pending>> commandRecorder;  // set on a replication primary
+
+	// built-in instrumentation, see getMetrics()
+	private final MetricsRegistry metrics = new MetricsRegistry();
+	private final MetricsRegistry.Counter commandsProcessed =
+			metrics.counter("mqttrpg_commands_processed_total", "commands handed to their agents");
+	private final MetricsRegistry.LabeledCounter commandErrors =
+			metrics.labeledCounter("mqttrpg_command_errors_total", "commands whose agent threw", "exception");
+	private final MetricsRegistry.LabeledCounter commandsRejected = metrics.labeledCounter(
+			"mqttrpg_commands_rejected_total", "commands refused before being queued", "agent", "reason");
+	private final MetricsRegistry.Counter actionsProcessed =
+			metrics.counter("mqttrpg_actions_processed_total", "queued and timed actions executed");
+	private final MetricsRegistry.Histogram commandLatency =
+			metrics.histogram("mqttrpg_command_latency_seconds", "time from admitting a command to the start of the tick handling it", 1e-9);
+	private final MetricsRegistry.Histogram tickDuration =
+			metrics.histogram("mqttrpg_tick_duration_seconds", "wall time spent per tick", 1e-9);
+	private final MetricsRegistry.LabeledCounter eventsPropagated =
+			metrics.labeledCounter("mqttrpg_events_propagated_total", "events delivered to listeners", "type");
+	private final MetricsRegistry.Counter listenersInvoked =
+			metrics.counter("mqttrpg_event_listener_invocations_total", "listener invocations across all propagated events");
+
+	private static final Comparator<AdmissionControl.Pending> CANONICAL_ORDER =
+			Comparator.<AdmissionControl.Pending,String>comparing(c -> c.agent.getAgentID())
+					.thenComparingLong(c -> c.sequence);
 
 	public Game(String id, Board ... boards) {
 		this.id = id;
 		this.startTime = System.currentTimeMillis();
 		this.elapsedTime = 0;
+		this.clock = GameClock.system(startTime - elapsedTime);
+		this.timers = new TimerWheel(10, clock.getTime());
 		// access must be protected by monitor
 		containerContents = HashMultimap.create();
 		entityLocations = new HashMap<>();
 		  // set next entity ID to be one more than the biggest one in the database
 		for(var board : boards) addBoard(board);
+
+		metrics.gauge("mqttrpg_pending_commands", "commands admitted but not yet processed", admission::size);
+		// the rest read values the game thread publishes after each tick, never the game's own collections
+		metrics.gauge("mqttrpg_queued_actions", "actions waiting for the next tick", () -> publishedActions);
+		metrics.gauge("mqttrpg_pending_timers", "scheduled delayed and periodic actions", () -> publishedTimers);
+		metrics.gauge("mqttrpg_entities", "registered entities", () -> publishedEntities);
+		metrics.gauge("mqttrpg_agents", "registered agents", () -> publishedAgents);
+		metrics.gauge("mqttrpg_tiles", "resident tiles across all boards",
+				() -> publishedBoards.stream().mapToLong(Board::getResidentTileCount).sum());
+		metrics.gauge("mqttrpg_ticks", "ticks processed", () -> publishedTicks);
+		publishGauges();
+	}
+
+	/** copies the sizes exported as gauges into fields a metrics scrape may read from any thread */
+	private void publishGauges() {
+		publishedActions = actionQueue.size();
+		publishedTimers = timers.size();
+		publishedEntities = registeredEntities.size();
+		publishedAgents = allAgents.size();
+		publishedTicks = tickCount;
 	}
 
 	public String getId() { return this.id; }
@@ -54,29 +151,145 @@ public abstract class Game implements Container, Runnable {
 
 	/** returns the number of milliseconds elapsed since the start of the game */
 	public long getGameTime() {
-		return System.currentTimeMillis() - startTime + elapsedTime;
+		return clock.getTime();
+	}
+
+	public GameClock getClock() { return clock; }
+
+	public void setClock(GameClock clock) {
+		assert clock != null;
+		this.clock = clock;
+		timers.rebase(clock.getTime());
+	}
+
+	/** pending delayed and periodic actions */
+	public TimerWheel getTimers() { return timers; }
+
+	/** runs an action once, in the first tick at least delay milliseconds of game time from now */
+	public Timer schedule(Action action, long delay) {
+		return schedule(action, delay, null);
+	}
+
+	/** schedules an action that is cancelled if owner is removed from the game first */
+	public Timer schedule(Action action, long delay, Entity owner) {
+		serialOnly();
+		var timer = timers.schedule(action, getGameTime() + delay, owner);
+		journal(timer::cancel);
+		return timer;
+	}
+
+	/** runs an action every period milliseconds of game time, starting after initialDelay */
+	public Timer scheduleAtFixedRate(Action action, long initialDelay, long period) {
+		return scheduleAtFixedRate(action, initialDelay, period, null);
+	}
+
+	/** schedules a periodic action that is cancelled when owner is removed from the game */
+	public Timer scheduleAtFixedRate(Action action, long initialDelay, long period, Entity owner) {
+		serialOnly();
+		var timer = timers.scheduleAtFixedRate(action, getGameTime() + initialDelay, period, owner);
+		journal(timer::cancel);
+		return timer;
+	}
+
+	/** game-scoped random number generator; game logic should use this rather than its own sources */
+	public GameRandom getRandom() {
+		serialOnly();
+		return random;
+	}
+
+	/** switches to deterministic lockstep mode.
+	 * Game time advances a fixed step per tick, the random generator is reseeded, commands within a
+	 * tick run ordered by agent id then sequence number, and a state hash is recorded after every tick.
+	 * Games started with the same seed, step and commands stay identical.
+	 */
+	public void setLockstep(long seed, long millisPerTick) {
+		setClock(GameClock.fixedStep(millisPerTick));
+		this.random.setSeed(seed);
+		this.lockstep = true;
 	}
 
+	public boolean isLockstep() { return lockstep; }
+
+	/** number of ticks processed so far */
+	public long getTickCount() { return tickCount; }
+
+	/** state hash recorded at the end of the last tick in lockstep mode (0 before the first) */
+	public long getLastTickHash() { return lastTickHash; }
+
 
 	/** add an agent to the game
 	 * @param agent agent to be added to the game
 	 */
 	public void addAgent(Agent agent) {
+		serialOnly();
 		allAgents.put(agent.getAgentID(), agent);
 	}
 
-	public void addAction(Action a) { actionQueue.add(a); }
-	public void addCommand(Agent a, Command c) { commandQueue.add(Tuple2.makeTuple(a,c)); }
+	public void addAction(Action a) {
+		serialOnly();
+		actionQueue.add(a);
+	}
+
+	/** queues a command for the next tick.
+	 * The command's "sequence" property orders it among the agent's commands in lockstep mode;
+	 * commands without one are numbered in arrival order.
+	 * Commands refused by admission control or with an invalid sequence are dropped and counted;
+	 * see {@link #submitCommand(Agent, Command)}.
+	 */
+	public void addCommand(Agent a, Command c) {
+		try {
+			admit(a, c);
+		} catch(InvalidCommandException e) {
+			commandErrors.labels(e.getClass().getSimpleName()).increment();
+		}
+	}
+
+	/** queues a command for the next tick, like {@link #addCommand(Agent, Command)}
+	 * @throws CommandRejectedException if the agent exceeded its rate limit or pending command limit
+	 * @throws InvalidCommandException if the command's sequence is not a non-negative whole number
+	 */
+	public void submitCommand(Agent a, Command c) throws CommandRejectedException, InvalidCommandException {
+		var reason = admit(a, c);
+		if(reason != null) throw new CommandRejectedException(a.getAgentID(), reason);
+	}
+
+	/** counts a command refused before it was queued, by agent and reason */
+	void commandRejected(Agent a, CommandRejectedException.Reason reason) {
+		commandsRejected.labels(a.getAgentID(), reason.name().toLowerCase()).increment();
+	}
+
+	/** per-agent rate limits, pending queues and drop counts for commands */
+	public AdmissionControl getAdmissionControl() { return admission; }
+
+	private CommandRejectedException.Reason admit(Agent a, Command c) throws InvalidCommandException {
+		serialOnly();
+		long sequence;
+		var given = c.getProperties() == null ? null : c.getProperties().get(CommandSchema.SEQUENCE);
+		if(given != null && !CommandSchema.isSequence(given))
+			throw new InvalidCommandException("command sequence must be a non-negative whole number");
+		synchronized(nextCommandSequence) {  // a rejected command does not use up a sequence number
+			long next = nextCommandSequence.getOrDefault(a.getAgentID(), 0L);
+			sequence = given != null ? ((Number)given).longValue() : next;
+			var reason = admission.offer(new AdmissionControl.Pending(a, c, sequence));
+			if(reason == null) nextCommandSequence.put(a.getAgentID(), Math.max(next, sequence + 1));
+			else commandRejected(a, reason);
+			return reason;
+		}
+	}
 
 	/** remove agent from the game
 	 *
 	 * @param agent agent to be removed from the game
 	 */
 	public void removeAgent(Agent agent) {
-		allAgents.remove(agent.getAgentID());
+		removePlayer(agent.getAgentID());
 	}
 	public void removePlayer(String playerId) {
 		allAgents.remove(playerId);
+		admission.remove(playerId);
+		commandsRejected.remove(playerId);
+		var outbound = this.outbound;
+		if(outbound != null) outbound.detach(playerId);
 	}
 
 	/** find player with associated ID that has joined this game
@@ -93,6 +306,7 @@ public abstract class Game implements Container, Runnable {
 	 * @return Stream of associated Entities
 	 */
 	public Stream<Entity> getEntities() {
+		serialOnly();
 		return registeredEntities.values().stream();
 	}
 
@@ -112,10 +326,107 @@ public abstract class Game implements Container, Runnable {
 	 * @return the id of the supplied entity
 	 */
 	public int getEntityId(Entity ent) {
-		return registeredEntities.entrySet().stream()
-				.filter(e -> e.getValue() == ent)
-				.mapToInt(e -> e.getKey())
-				.findFirst().getAsInt();
+		var id = registeredEntities.inverse().get(ent);
+		if(id == null) throw new NoSuchElementException("entity is not registered with this game");
+		return id;
+	}
+
+	/** creates and registers struct-of-arrays storage for entities of the given type.
+	 * @see Archetype
+	 */
+	public Archetype createArchetype(String type, PropertyKey<?>... columns) {
+		var archetype = new Archetype(this, type, columns);
+		if(archetypes.putIfAbsent(type, archetype) != null)
+			throw new IllegalArgumentException("archetype " + type + " already exists");
+		return archetype;
+	}
+
+	/** returns the archetype registered for an entity type, or null if there is none */
+	public Archetype getArchetype(String type) {
+		return archetypes.get(type);
+	}
+
+	public Stream<Archetype> getArchetypes() {
+		return archetypes.values().stream();
+	}
+
+	/** registers a secondary index, filling it with the entities currently in the game.
+	 * Only one index of each kind (and property, for property indexes) is used by queries.
+	 * @return the registered index
+	 */
+	public EntityIndex addIndex(EntityIndex index) {
+		refileRegistered();
+		index.setGame(this);
+		indexes.add(index);
+		getEntities().forEach(ent -> index.update(this, ent));
+		return index;
+	}
+
+	public void removeIndex(EntityIndex index) {
+		if(indexes.remove(index)) index.setGame(null);
+	}
+
+	/** returns the registered index of the given kind, or null if there is none
+	 * @param property indexed property for {@link EntityIndex.Kind#PROPERTY} indexes, otherwise ignored
+	 */
+	public EntityIndex getIndex(EntityIndex.Kind kind, String property) {
+		refileRegistered();
+		return findIndex(kind, property);
+	}
+
+	private EntityIndex findIndex(EntityIndex.Kind kind, String property) {
+		for(var index : indexes)
+			if(index.getKind() == kind &&
+					(kind != EntityIndex.Kind.PROPERTY || index.getProperty().equals(property)))
+				return index;
+		return null;
+	}
+
+	/** starts a query over this game's entities, answered from registered indexes where possible */
+	public EntityQuery query() {
+		serialOnly();
+		refileRegistered();
+		return new EntityQuery(this);
+	}
+
+	/** refiles entities registered since the last query, index lookup or tick.
+	 * Entities register from the {@link Entity} constructor, before subclass fields their type or properties
+	 * may depend on are set, so they are filed again once construction is over.
+	 */
+	void refileRegistered() {
+		if(unrefiled.isEmpty()) return;
+		for(var ent : unrefiled) updateIndexes(ent);
+		unrefiled.clear();
+	}
+
+	/** refiles an entity in every registered index.
+	 * Only needed after changes the game does not observe, such as writes to archetype columns.
+	 */
+	public void updateIndexes(Entity ent) {
+		for(var index : indexes) index.update(this, ent);
+	}
+
+	/** called by entities after a property is set to keep property indexes up to date */
+	void entityPropertyChanged(Entity ent, String key) {
+		for(var index : indexes)
+			if(index.getKind() == EntityIndex.Kind.PROPERTY && index.getProperty().equals(key))
+				index.update(this, ent);
+	}
+
+	/** records the new root tile of a moved entity and everything it contains, refiling them in board indexes */
+	private void updateSubtree(Entity ent, Tile root) {
+		var boardIndex = findIndex(EntityIndex.Kind.BOARD, null);
+		var pending = new ArrayDeque<Entity>();
+		pending.push(ent);
+		while(!pending.isEmpty()) {
+			var next = pending.pop();
+			if(root == null) rootTiles.remove(next);
+			else rootTiles.put(next, root);
+			if(boardIndex != null) boardIndex.update(this, next);
+			if(next instanceof Container)
+				for(var contained : containerContents.get((Container)next))
+					pending.push(contained);
+		}
 	}
 
 	/**
@@ -137,6 +448,7 @@ public abstract class Game implements Container, Runnable {
 	public void addBoard(Board board) {
 		board.setGame(this);
 		boards.put(board.getID(), board);
+		publishedBoards = List.copyOf(boards.values());
 		propagateEvent(new Event(this, "board-creation",
 				Map.of(
 						"board-id", board.getID()+""
@@ -148,7 +460,8 @@ public abstract class Game implements Container, Runnable {
 		board.getTileStream().flatMap(t -> t.getEntities()).forEach( e-> {
 			removeEntity(e);
 		});
-		boards.remove(board);
+		boards.remove(board.getID());
+		publishedBoards = List.copyOf(boards.values());
 		propagateEvent(new Event(this, "board-creation",
 				Map.of(
 						"board-id", board.getID()+""
@@ -161,15 +474,122 @@ public abstract class Game implements Container, Runnable {
 	 */
 	public void addEntity(Entity ent) {
 		assert ent != null;
-		var id = nextEntityID++;
-		
-		registeredEntities.put(id, ent);
-		entityLocations.put(ent, this);
-		containerContents.put(this, ent);
-		propagateEvent(new Event(this, "entity-creation",
-				Map.of(
-						"entity-id", ent.getID()+""
-				), ent));
+		serialOnly();
+		int id;
+		if(adoptedEntityID != 0) {
+			id = adoptedEntityID;
+			adoptedEntityID = 0;
+			if(registeredEntities.containsKey(id))
+				throw new IllegalStateException("entity id " + id + " is already in use");
+		} else {
+			id = nextEntityID;
+			nextEntityID += entityIdStride;
+		}
+
+		register(id, ent);
+		journal(() -> unregister(ent));
+		propagateEvent(new EntityLifecycleEvent(this, EntityLifecycleEvent.CREATION, ent));
+	}
+
+	/** restricts new entity ids to first, first + stride, first + 2 * stride, ...
+	 * Lets several games allocate ids from disjoint sets, e.g. the nodes of a {@link ShardCoordinator}.
+	 * Ids already handed out are unaffected.
+	 */
+	public void setEntityIdAllocation(int first, int stride) {
+		if(stride < 1 || first < 1 || first > stride)
+			throw new IllegalArgumentException("first id must be between 1 and the stride");
+		serialOnly();
+		int next = nextEntityID;
+		while((next - first) % stride != 0) next++;
+		nextEntityID = next;
+		entityIdStride = stride;
+	}
+
+	/** registers the entity created by factory under a given id rather than the next free one.
+	 * Used to recreate entities arriving from another node.
+	 * @throws IllegalStateException if the id is already in use
+	 */
+	<E extends Entity> E adoptEntity(int id, Supplier<E> factory) {
+		serialOnly();
+		adoptedEntityID = id;
+		try {
+			var ent = factory.get();
+			if(adoptedEntityID != 0) throw new IllegalStateException("factory did not create an entity");
+			return ent;
+		} finally {
+			adoptedEntityID = 0;
+		}
+	}
+
+	/** registers a removed entity again under its old id, e.g. when handing it off to another node failed */
+	void reinstateEntity(Entity ent) {
+		serialOnly();
+		if(registeredEntities.containsKey(ent.getID()))
+			throw new IllegalStateException("entity id " + ent.getID() + " is already in use");
+		register(ent.getID(), ent);
+		journal(() -> unregister(ent));
+		propagateEvent(new EntityLifecycleEvent(this, EntityLifecycleEvent.CREATION, ent));
+	}
+
+	/** receives the commands of every tick, in execution order, before they run; see {@link ReplicationPrimary} */
+	void setCommandRecorder(Consumer<List<AdmissionControl.Pending>> recorder) {
+		if(this.commandRecorder != null && recorder != null)
+			throw new IllegalStateException("game already has a command recorder");
+		this.commandRecorder = recorder;
+	}
+
+	/** number of actions waiting for the next tick */
+	int getQueuedActionCount() { return actionQueue.size(); }
+
+	// counters captured and restored by GameSnapshot
+	int getNextEntityID() { return nextEntityID; }
+	int getNextEventID() { return nextEventID; }
+
+	Map<String, Long> getCommandSequences() {
+		synchronized(nextCommandSequence) {
+			return new HashMap<>(nextCommandSequence);
+		}
+	}
+
+	/** tiles whose properties changed since lockstep was enabled */
+	List<Tile> getModifiedTiles() {
+		synchronized(modifiedTiles) {
+			return new ArrayList<>(modifiedTiles);
+		}
+	}
+
+	void restoreCounters(long tickCount, long lastTickHash, long randomState, int nextEntityID, int nextEventID,
+						 Map<String, Long> commandSequences) {
+		serialOnly();
+		this.tickCount = tickCount;
+		this.lastTickHash = lastTickHash;
+		this.random.setState(randomState);
+		this.nextEntityID = nextEntityID;
+		this.nextEventID = nextEventID;
+		synchronized(nextCommandSequence) {
+			nextCommandSequence.clear();
+			nextCommandSequence.putAll(commandSequences);
+		}
+		if(clock instanceof TickClock) ((TickClock)clock).setTick(tickCount);
+		timers.rebase(clock.getTime());
+	}
+
+	void setOutboundDispatcher(OutboundDispatcher outbound) {
+		if(this.outbound != null && outbound != null)
+			throw new IllegalStateException("game already has an outbound dispatcher");
+		this.outbound = outbound;
+	}
+
+	/** true if an agent's events are written by an outbound queue rather than delivered on the game thread */
+	private boolean isQueued(Agent agent) {
+		var outbound = this.outbound;
+		return outbound != null && outbound.getQueue(agent.getAgentID()) != null;
+	}
+
+	void setShardCoordinator(ShardCoordinator shard) {
+		if(this.shard != null && shard != null)
+			throw new IllegalStateException("game already has a shard coordinator");
+		this.shard = shard;
 	}
 
 	/**
@@ -177,25 +597,22 @@ public abstract class Game implements Container, Runnable {
 	 * @param ent Entity to be removed
 	 */
 	public void removeEntity(Entity ent) {
+		serialOnly();
 		moveEntity(ent, this); // generate an entity moved event
 
-		var currentContainer = entityLocations.get(ent);
-		entityLocations.remove(ent);
-		if(currentContainer != null) {
-			containerContents.remove(currentContainer, ent);
-		}
-		// remove entity from game
-		registeredEntities.remove(ent);
+		int id = ent.getID();
+		long position = unregister(ent);
+		journal(() -> register(id, ent, position));
+		var cancelled = timers.cancelAll(ent);
+		if(!cancelled.isEmpty()) journal(() -> cancelled.forEach(timers::restore));
 
 		// alert other game components to entity removal
-		propagateEvent(new Event(this, "entity-deletion",
-				Map.of(
-						"entity-id", ent.getID()+""
-				), ent));
+		propagateEvent(new EntityLifecycleEvent(this, EntityLifecycleEvent.DELETION, ent));
 	}
 
 	/** moves the entity to a new Container.
-	 * Container may be a Player, a Tile, or another Entity
+	 * Container may be a Player, a Tile, or another Entity.
+	 * Moving onto a tile of a board owned by another node hands the entity off to that node.
 	 * @param ent
 	 * @param container
 	 */
@@ -204,8 +621,65 @@ public abstract class Game implements Container, Runnable {
 		assert container != null;
 		assert registeredEntities.containsKey(ent.getID());
 
+		if(container instanceof Entity && ent instanceof Container &&
+				isContainedBy((Entity)container, (Container)ent))
+			throw new IllegalArgumentException("entity " + ent.getID() +
+					" cannot be moved into itself or an entity it contains");
+
+		if(shard != null && container instanceof Tile && !shard.ownsBoard(((Tile)container).getBoard())) {
+			serialOnly();
+			shard.handOff(ent, (Tile)container);
+			return;
+		}
+
 		Container prev = getGame().getEntityLocation(ent);
+		var txn = transaction();
+		if(txn != null) {  // checked again when the transaction commits
+			txn.move(ent, prev, container);
+			return;
+		}
+		relocate(ent, container);
+		if(isSpeculating()) journal(() -> relocate(ent, prev));  // no capturing lambda on the common path
+		propagateEvent(entityMovedEvent(ent, prev, container));
+	}
+
+	private void register(int id, Entity ent) {
+		register(id, ent, nextRegistrationPosition++);
+	}
 
+	/** registers an entity, delivering events to it after entities registered at earlier positions */
+	private void register(int id, Entity ent, long position) {
+		registeredEntities.put(id, ent);
+		if(ent instanceof EventListener listener) {
+			listeningEntities.put(position, listener);
+			listenerPositions.put(listener, position);
+		}
+		entityLocations.put(ent, this);
+		containerContents.put(this, ent);
+		if(!indexes.isEmpty()) {
+			updateIndexes(ent);
+			unrefiled.add(ent);
+		}
+	}
+
+	/** unregisters an entity, returning its registration position if it listens for events, otherwise -1 */
+	private long unregister(Entity ent) {
+		var currentContainer = entityLocations.get(ent);
+		entityLocations.remove(ent);
+		if(currentContainer != null) {
+			containerContents.remove(currentContainer, ent);
+		}
+		// remove entity from game
+		registeredEntities.inverse().remove(ent);
+		Long position = listenerPositions.remove(ent);
+		if(position != null) listeningEntities.remove(position);
+		rootTiles.remove(ent);
+		unrefiled.remove(ent);
+		for(var index : indexes) index.remove(ent);
+		return position == null ? -1 : position;
+	}
+
+	private void relocate(Entity ent, Container container) {
 			// move entity to new location
 			var currentLocation = getEntityLocation(ent);
 			if(currentLocation != null)
@@ -213,24 +687,8 @@ public abstract class Game implements Container, Runnable {
 				containerContents.remove(currentLocation, ent);
 			entityLocations.put(ent, container);
 			containerContents.put(container, ent);
-		var properties = new HashMap<String,Object>();
-		properties.put("entity", ent.getID());
-		if(prev instanceof Tile) {
-			properties.put("previous-board", ((Tile)prev).getBoard().getID());
-			properties.put("previous-row", ((Tile)prev).getRow()+"");
-			properties.put("previous-column", ((Tile)prev).getColumn()+"");
-		} else if(prev instanceof Entity) {
-			properties.put("previous-entity-container", ((Entity)prev).getID()+"");
-		}
-		var current = getEntityLocation(ent);
-		if(current instanceof Tile) {
-			properties.put("board", ((Tile)current).getBoard().getID());
-			properties.put("row", ((Tile)current).getRow()+"");
-			properties.put("column", ((Tile)current).getColumn()+"");
-		} else if(current instanceof Entity) {
-			properties.put("entity-container", ((Entity)current).getID()+"");
-		}
-		propagateEvent(new Event(this, "entity-moved", properties, ent, container));
+			updateSubtree(ent, container instanceof Tile ? (Tile)container :
+					container instanceof Entity ? rootTiles.get(container) : null);
 	}
 
 	/** Determines whether or not a specified Container holds the specified entity */
@@ -239,6 +697,8 @@ public abstract class Game implements Container, Runnable {
 		assert container != null;
 		assert registeredEntities.containsKey(ent.getID());
 
+		var txn = transaction();
+		if(txn != null) return txn.location(ent, entityLocations.get(ent)) == container;
 		return containerContents.containsEntry(container, ent);
 	}
 
@@ -248,6 +708,8 @@ public abstract class Game implements Container, Runnable {
 		assert ent != null;
 		assert registeredEntities.containsKey(ent.getID());
 
+		var txn = transaction();
+		if(txn != null) return txn.location(ent, entityLocations.get(ent));
 		return entityLocations.get(ent);
 	}
 
@@ -255,6 +717,8 @@ public abstract class Game implements Container, Runnable {
 	public Stream<Entity> getContainerContents(Container container) {
 		assert container != null;
 
+		var txn = transaction();
+		if(txn != null) return txn.contents(container, containerContents.get(container)).stream();
 		return new HashSet<Entity>(containerContents.get(container)).stream();
 	}
 
@@ -262,15 +726,49 @@ public abstract class Game implements Container, Runnable {
 	 * For instance, if an entity is held by a treasure chest and the treasure chest appears on a tile,
 	 * the tile holding the treasure chest is returned.
 	 * Returns null if no tile contains this entity */
-	@Deprecated
 	public Container getTopLevelEntityLocation(Entity ent) {
+		return getRootTile(ent);
+	}
+
+	/** returns the tile holding an entity directly or through any number of containers, or null if there is none.
+	 * Root tiles are maintained by {@link #moveEntity(Entity, Container)}, so this is a single lookup.
+	 */
+	public Tile getRootTile(Entity ent) {
+		assert ent != null;
+		serialOnly();
+
+		return rootTiles.get(ent);
+	}
+
+	/** returns true if ent is container itself or is held by container directly or through other containers */
+	public boolean isContainedBy(Entity ent, Container container) {
 		assert ent != null;
+		assert container != null;
+		serialOnly();
+
+		Object location = ent;
+		while(location instanceof Entity) {
+			if(location == container) return true;
+			location = entityLocations.get(location);
+		}
+		return location == container;
+	}
+
+	/** returns every entity held by container, directly or through other containers, in depth-first order */
+	public Stream<Entity> getAllContents(Container container) {
+		assert container != null;
+		serialOnly();
 
-		var location = getEntityLocation(ent);
-		if(location == null) return null;
-		if(location instanceof Entity)
-			return getEntityLocation((Entity)location);
-		return location instanceof Tile ? (Tile)location : null;
+		var contents = new ArrayList<Entity>();
+		var pending = new ArrayDeque<Entity>(containerContents.get(container));
+		while(!pending.isEmpty()) {
+			var next = pending.pop();
+			contents.add(next);
+			if(next instanceof Container)
+				for(var contained : containerContents.get((Container)next))
+					pending.push(contained);
+		}
+		return contents.stream();
 	}
 
 	/** determines next ID to be used for an event, then increments the count of events */
@@ -290,44 +788,471 @@ public abstract class Game implements Container, Runnable {
 		return gson.toJson(m);
 	}
 
+	/** enables reuse of entity-moved and tile-status-update events.
+	 * Only safe when no listener keeps a reference to an event after acceptEvent returns.
+	 */
+	public void setEventPooling(boolean eventPooling) {
+		this.eventPooling = eventPooling;
+	}
+
+	public boolean isEventPooling() { return eventPooling; }
+
+	private EntityMovedEvent entityMovedEvent(Entity ent, Container prev, Container container) {
+		if(!eventPooling || propagationDepth > 0 || !speculations.isEmpty())  // held events must not be reused
+			return new EntityMovedEvent(this, ent, prev, container);
+		if(pooledMovedEvent == null)
+			return pooledMovedEvent = new EntityMovedEvent(this, ent, prev, container);
+		return pooledMovedEvent.reuse(ent, prev, container);
+	}
+
+	/** returns a tile-status-update event for the tile, reusing a pooled one when possible */
+	TileStatusUpdateEvent tileStatusUpdateEvent(Tile tile) {
+		if(!eventPooling || propagationDepth > 0 || !speculations.isEmpty())
+			return new TileStatusUpdateEvent(tile);
+		if(pooledTileEvent == null)
+			return pooledTileEvent = new TileStatusUpdateEvent(tile);
+		return pooledTileEvent.reuse(tile);
+	}
+
 	public void propagateEvent(Event event) {
+		serialOnly();
+		if(!speculations.isEmpty()) {  // speculative events go to the speculation's listener until committed
+			if(undoing) return;
+			var listener = speculations.peek().getListener();
+			if(listener != null) listener.acceptEvent(event);
+			heldEvents.add(event);
+			return;
+		}
+		propagationDepth++;
+		var trace = new PropagationTrace();
+		trace.begin();
+		try {
+			eventsPropagated.labels(event.getType()).increment();
+			int listeners = deliverEvent(event);
+			listenersInvoked.add(listeners);
+			trace.end();
+			if(trace.shouldCommit()) {
+				trace.eventType = event.getType();
+				trace.listeners = listeners;
+				trace.commit();
+			}
+		} finally {
+			propagationDepth--;
+		}
+	}
+
+	/** delivers an event to agents, registered listeners, entities, boards and tiles that listen, returning how many were invoked.
+	 * Agents attached to an {@link OutboundDispatcher} are skipped; their queue receives the event through its fanout.
+	 */
+	private int deliverEvent(Event event) {
+		int before = listenerCalls;
 		getAllAgents()
-				.forEach(listener -> ((EventListener) listener).acceptEvent(event));
-		getEntities()
-				.filter(ent -> ent instanceof EventListener)
-				.forEach(listener -> ((EventListener) listener).acceptEvent(event));
+				.filter(agent -> !isQueued(agent))
+				.forEach(listener -> deliver(listener, event));
+		listeners.forEach(listener -> deliver(listener, event));
+		listeningEntities.values().forEach(listener -> deliver(listener, event));
 		boards.values().stream()
 				.filter(board -> board instanceof EventListener)
-				.forEach(listener -> ((EventListener) listener).acceptEvent(event));
+				.forEach(listener -> deliver((EventListener) listener, event));
 		boards.values().stream()
-			.flatMap(board -> board.getTileStream())
-				.filter(tile -> tile instanceof EventListener)
-				.forEach(listener -> ((EventListener) listener).acceptEvent(event));
+			.flatMap(board -> board.getListeningTiles())
+				.forEach(listener -> deliver(listener, event));
+		return listenerCalls - before;
+	}
+
+	private void deliver(EventListener listener, Event event) {
+		listenerCalls++;
+		var trace = new ListenerTrace();
+		trace.begin();
+		listener.acceptEvent(event);
+		trace.end();
+		if(trace.shouldCommit()) {  // only calls over the recording's threshold
+			trace.eventType = event.getType();
+			trace.listenerClass = listener.getClass();
+			trace.listener = describeListener(listener);
+			trace.commit();
+		}
+	}
+
+	private static String describeListener(EventListener listener) {
+		if(listener instanceof Agent) return "agent " + ((Agent)listener).getAgentID();
+		if(listener instanceof Entity) return "entity " + ((Entity)listener).getID();
+		if(listener instanceof Board) return "board " + ((Board)listener).getID();
+		if(listener instanceof Tile) {
+			var tile = (Tile)listener;
+			return "tile " + tile.getBoard().getID() + " (" + tile.getColumn() + ", " + tile.getRow() + ")";
+		}
+		return String.valueOf(listener);
+	}
+
+	/** registers a listener for every propagated event that is not part of the game itself, such as an {@link EventFanout} */
+	public void addEventListener(EventListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeEventListener(EventListener listener) {
+		listeners.remove(listener);
+	}
+
+	/** registers a callback run on the game thread at the end of every tick, e.g. to flush batched output */
+	public void addTickListener(Runnable listener) {
+		tickListeners.add(listener);
+	}
+
+	public void removeTickListener(Runnable listener) {
+		tickListeners.remove(listener);
 	}
-	
+
 	public abstract boolean checkGameAlive();
 
-	public void run() {
-		while(checkGameAlive()) {
-			commandQueue.stream()
-					.collect(Collectors.toList()).stream() // copy to avoid modification errors
-					.forEach(t2 -> {
-				commandQueue.remove(t2);
-				t2.unpack((agent, command) -> {
-					// TODO: log command
-					try {
-						agent.receiveCommand(command);
-					} catch (CommandException e) {
-						// TODO: log/handle error
-					}
-				});
-			});
-			actionQueue.stream()
-					.collect(Collectors.toList()).stream() // copy to avoid modification errors
-					.forEach(action -> {
-				actionQueue.remove(action);
-				action.accept(this);
+	/** starts speculative execution.
+	 * Until the returned speculation is rolled back or committed, every change to entity locations,
+	 * entity and tile properties, entity registration, timers, queues, counters and the random generator is
+	 * recorded in an undo journal. Events are held back from listeners: those of rolled back changes are
+	 * discarded, and the rest are propagated in order when the outermost speculation commits. Speculations
+	 * nest, so a search can explore a move, recurse, and roll back to any level. Rolling back is
+	 * proportional to the number of changes made, not the size of the game.
+	 * <p>
+	 * Writes through archetype entity facades are journaled; direct writes to archetype column arrays and
+	 * custom subclass state are not, unless they call {@link #journal(Runnable)}.
+	 * Speculation must happen on the thread running the game.
+	 */
+	public Speculation speculate() {
+		return speculate(null);
+	}
+
+	/** starts speculative execution, redirecting events raised during it to the given listener */
+	public Speculation speculate(EventListener listener) {
+		serialOnly();
+		var speculation = new Speculation(this, listener, journal.size(), heldEvents.size(), nextEntityID, nextEventID,
+				random.getState(), tickCount, clock instanceof TickClock ? ((TickClock)clock).getTick() : 0,
+				actionQueue.isEmpty() ? List.of() : new ArrayList<>(actionQueue),
+				admission.isEmpty() ? List.of() : admission.pending());
+		speculations.push(speculation);
+		return speculation;
+	}
+
+	/** true while a speculation is active */
+	public boolean isSpeculating() { return !speculations.isEmpty(); }
+
+	/** records how to undo a change to game state if it happens during a speculation */
+	public void journal(Runnable undo) {
+		if(!speculations.isEmpty() && !undoing) journal.add(undo);
+	}
+
+	/** records the previous value of a property before it is changed */
+	void journalProperty(HasProperties owner, String key) {
+		if(speculations.isEmpty() || undoing) return;
+		if(owner.hasProperty(key)) {
+			var previous = owner.getProperty(key);
+			journal.add(() -> owner.setProperty(key, previous));
+		} else {
+			journal.add(() -> {
+				owner.getPropertyStore().remove(key);
+				if(owner instanceof Entity) entityPropertyChanged((Entity)owner, key);
 			});
 		}
 	}
+
+	/** undoes every change recorded since the speculation began */
+	void rollback(Speculation speculation) {
+		if(speculations.peek() != speculation)
+			throw new IllegalStateException("only the innermost speculation can be rolled back");
+		undoing = true;
+		try {
+			for(int i = journal.size() - 1; i >= speculation.mark; i--)
+				journal.remove(i).run();
+		} finally {
+			undoing = false;
+		}
+		heldEvents.subList(speculation.eventMark, heldEvents.size()).clear();
+		nextEntityID = speculation.nextEntityID;
+		nextEventID = speculation.nextEventID;
+		random.setState(speculation.randomState);
+		tickCount = speculation.tickCount;
+		if(clock instanceof TickClock) ((TickClock)clock).setTick(speculation.clockTick);
+		if(!actionQueue.isEmpty() || !speculation.actions.isEmpty()) {
+			actionQueue.clear();
+			actionQueue.addAll(speculation.actions);
+		}
+		if(!admission.isEmpty() || !speculation.commands.isEmpty())
+			admission.restore(speculation.commands);
+	}
+
+	/** ends a speculation, keeping its changes in the journal of any enclosing speculation.
+	 * Ending the outermost one propagates the events of the changes it kept.
+	 */
+	void end(Speculation speculation) {
+		if(speculations.peek() != speculation)
+			throw new IllegalStateException("speculations must end innermost first");
+		speculations.pop();
+		if(speculations.isEmpty()) {
+			journal.clear();
+			var committed = new ArrayList<>(heldEvents);
+			heldEvents.clear();
+			committed.forEach(this::propagateEvent);
+		}
+	}
+
+	/** enables optimistic parallel execution of the actions queued for each tick.
+	 * Actions first run concurrently against the state at the start of the batch. Their moves and
+	 * property writes are buffered, and the entities, tiles and containers they read are recorded.
+	 * Results are then committed in queue order. An action that read something written by an earlier
+	 * action in the batch is re-executed at its turn, so the outcome equals serial execution.
+	 * <p>
+	 * Only moves and entity/tile property reads and writes are tracked. Any other game operation
+	 * (creating or removing entities, raising events, queueing actions, using the random generator,
+	 * archetype columns, index queries, ...) stops the speculative run. That action then runs serially
+	 * at its turn and every later action in the batch is re-executed. Actions must not change state
+	 * outside the game API; subclasses holding such state should call {@link #serialOnly()}.
+	 * @param parallelism number of threads, or 1 to execute actions serially
+	 */
+	public void setActionParallelism(int parallelism) {
+		if(actionPool != null) actionPool.shutdown();
+		actionPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+	}
+
+	/** number of actions whose speculative results were committed without re-execution */
+	public long getActionsCommitted() { return actionsCommitted; }
+
+	/** number of actions re-executed because of a conflict with an earlier action */
+	public long getActionsReexecuted() { return actionsReexecuted; }
+
+	/** number of actions run serially because they used an untracked operation */
+	public long getActionsSerialized() { return actionsSerialized; }
+
+	/** transaction of the action running speculatively on this thread, or null */
+	ActionTransaction transaction() {
+		return parallelPhase ? transaction.get() : null;
+	}
+
+	/** marks an operation that parallel action transactions cannot track.
+	 * Called during speculative execution, it stops the action so it is run serially instead.
+	 */
+	public void serialOnly() {
+		if(!parallelPhase) return;
+		var txn = transaction.get();
+		if(txn != null) {
+			txn.fail();  // even if the action catches the abort, its transaction must not commit
+			throw ActionTransaction.ABORT;
+		}
+	}
+
+	/** runs an action, tracing it for the flight recorder */
+	private void runAction(Action action, String mode) {
+		var trace = new ActionTrace();
+		trace.begin();
+		try {
+			action.accept(this);
+		} finally {
+			trace.end();
+			if(trace.shouldCommit()) {
+				trace.description = action.getLogDescription();
+				trace.actionClass = action.getClass();
+				trace.mode = mode;
+				trace.commit();
+			}
+		}
+	}
+
+	/** runs an action with its writes buffered in a new transaction */
+	private ActionTransaction runTracked(Action action) {
+		var txn = new ActionTransaction(this);
+		transaction.set(txn);
+		try {
+			runAction(action, "speculative");
+		} catch(RuntimeException e) {  // rerun directly so errors surface as in serial execution
+			txn.fail();
+		} finally {
+			transaction.remove();
+		}
+		return txn;
+	}
+
+	private void executeInParallel(List<Action> actions) {
+		var txns = new ActionTransaction[actions.size()];
+		parallelPhase = true;
+		try {
+			actionPool.submit(() -> IntStream.range(0, txns.length).parallel()
+					.forEach(i -> txns[i] = runTracked(actions.get(i)))).get();
+
+			Set<Object> written = Collections.newSetFromMap(new IdentityHashMap<>());
+			boolean untrackedWrites = false;
+			for(int i = 0; i < txns.length; i++) {
+				var txn = txns[i];
+				if(txn.isFailed() || untrackedWrites || txn.conflictsWith(written)) {
+					txn = runTracked(actions.get(i)); // against the state left by earlier actions
+					if(txn.isFailed()) {
+						runAction(actions.get(i), "serialized");
+						actionsSerialized++;
+						untrackedWrites = true;
+						continue;
+					}
+					actionsReexecuted++;
+				} else actionsCommitted++;
+				txn.commit();
+				written.addAll(txn.getWrites());
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while executing actions", e);
+		} catch(ExecutionException e) {
+			throw new IllegalStateException("parallel action execution failed", e.getCause());
+		} finally {
+			parallelPhase = false;
+		}
+	}
+
+	public void run() {
+		while(checkGameAlive()) tick();
+	}
+
+	/** processes one tick: queued commands, then due timers and queued actions, then advances the clock */
+	public void tick() {
+		tick(admission.drain());
+	}
+
+	/** processes a tick with commands a primary recorded instead of those admitted here, see {@link GameReplica} */
+	void replayTick(List<AdmissionControl.Pending> commands) {
+		synchronized(nextCommandSequence) {
+			for(var pending : commands)
+				nextCommandSequence.merge(pending.agent.getAgentID(), pending.sequence + 1, Math::max);
+		}
+		tick(commands);
+	}
+
+	private void tick(List<AdmissionControl.Pending> commands) {
+		long start = System.nanoTime();
+		var tickTrace = new TickTrace();
+		tickTrace.begin();
+		refileRegistered();
+		if(lockstep) commands.sort(CANONICAL_ORDER);
+		if(commandRecorder != null) commandRecorder.accept(commands);
+		for(var pending : commands) {
+			commandLatency.record(start - pending.admittedAt);
+			var trace = new CommandTrace();
+			trace.begin();
+			try {
+				pending.agent.receiveCommand(pending.command);
+			} catch (CommandException e) {
+				commandErrors.labels(e.getClass().getSimpleName()).increment();
+				trace.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+			}
+			trace.end();
+			if(trace.shouldCommit()) {
+				var properties = pending.command.getProperties();
+				trace.agent = pending.agent.getAgentID();
+				trace.commandType = properties == null ? null : String.valueOf(properties.get(CommandSchema.TYPE));
+				trace.commit();
+			}
+		}
+		commandsProcessed.add(commands.size());
+		// while speculating, timers this tick fires or reschedules come back on rollback
+		var actions = new ArrayList<>(timers.advance(getGameTime(), speculations.isEmpty() ? null : this::journal));
+		var queued = new ArrayList<>(actionQueue); // copy to avoid modification errors
+		actionQueue.removeAll(queued);
+		actions.addAll(queued);
+		if(actionPool != null && actions.size() > 1 && speculations.isEmpty()) executeInParallel(actions);
+		else actions.forEach(action -> runAction(action, "serial"));
+		actionsProcessed.add(actions.size());
+
+		clock.tick();
+		tickCount++;
+		publishGauges();
+		if(lockstep) lastTickHash = getStateHash();
+		tickListeners.forEach(Runnable::run);
+		tickDuration.record(System.nanoTime() - start);
+		tickTrace.end();
+		if(tickTrace.shouldCommit()) {
+			tickTrace.game = id;
+			tickTrace.tick = tickCount;
+			tickTrace.commands = commands.size();
+			tickTrace.actions = actions.size();
+			tickTrace.commit();
+		}
+	}
+
+	/** built-in counters, histograms and gauges for commands, actions, events, ticks and game size.
+	 * Register additional game specific metrics here to export them alongside.
+	 * Counts are not rolled back by speculation.
+	 */
+	public MetricsRegistry getMetrics() { return metrics; }
+
+	/** hash of the game state for detecting divergence between replicas.
+	 * Covers the tick count, random state, every entity (id, type, location and properties) and
+	 * tiles whose properties changed in lockstep mode. Independent of iteration order.
+	 * Property values must be JSON representable: null, strings, numbers, booleans, characters, enum
+	 * constants, and lists and maps of these. They are hashed by value, so the hash does not depend on
+	 * toString implementations or identity hash codes.
+	 * @throws IllegalStateException if a property holds any other kind of value
+	 */
+	public long getStateHash() {
+		long hash = GameRandom.mix(tickCount) + GameRandom.mix(random.getState() ^ 0x5DEECE66DL);
+		for(var ent : registeredEntities.values()) {
+			long h = GameRandom.mix(ent.getID()) ^ Objects.hashCode(ent.getType());
+			var location = entityLocations.get(ent);
+			if(location instanceof Tile tile)
+				h = GameRandom.mix(h + hashTile(tile));
+			else if(location instanceof Entity container)
+				h = GameRandom.mix(h + container.getID());
+			else if(location instanceof Agent agent)
+				h = GameRandom.mix(h + agent.getAgentID().hashCode());
+			h += hashProperties(ent.getProperties());
+			hash += GameRandom.mix(h);
+		}
+		synchronized(modifiedTiles) {
+			for(var tile : modifiedTiles)
+				hash += GameRandom.mix(hashTile(tile) + hashProperties(tile.getProperties()));
+		}
+		return hash;
+	}
+
+	private static long hashTile(Tile tile) {
+		return GameRandom.mix(((long)tile.getRow() << 32 | tile.getColumn() & 0xFFFFFFFFL)
+				^ tile.getBoard().getID().hashCode());
+	}
+
+	private static long hashProperties(Map<String,Object> properties) {
+		long h = 0;
+		for(var entry : properties.entrySet())
+			h += GameRandom.mix(entry.getKey().hashCode() * 31L + hashValue(entry.getKey(), entry.getValue()));
+		return h;
+	}
+
+	private static int hashValue(String key, Object value) {
+		if(value == null || value instanceof String || value instanceof Number && isPlainNumber(value)
+				|| value instanceof Boolean || value instanceof Character)
+			return Objects.hashCode(value);
+		if(value instanceof Enum<?> constant) return constant.name().hashCode();
+		if(value instanceof List<?> list) {
+			int h = 1;
+			for(var element : list) h = 31 * h + hashValue(key, element);
+			return h;
+		}
+		if(value instanceof Map<?,?> map) {
+			int h = 0;
+			for(var entry : map.entrySet())
+				h += hashValue(key, entry.getKey()) ^ hashValue(key, entry.getValue());
+			return h;
+		}
+		throw new IllegalStateException("property " + key + " holds a " + value.getClass().getName()
+				+ ", which is not JSON representable and cannot be hashed");
+	}
+
+	private static boolean isPlainNumber(Object number) {
+		return number instanceof Integer || number instanceof Long || number instanceof Double
+				|| number instanceof Float || number instanceof Short || number instanceof Byte
+				|| number instanceof java.math.BigInteger || number instanceof java.math.BigDecimal;
+	}
+
+	/** records a tile property change and notifies listeners */
+	void tilePropertyChanged(Tile tile) {
+		if(lockstep && !undoing) {  // an undone write restores the membership journaled with it
+			boolean added;
+			synchronized(modifiedTiles) { added = modifiedTiles.add(tile); }
+			if(added && isSpeculating())
+				journal(() -> { synchronized(modifiedTiles) { modifiedTiles.remove(tile); } });
+		}
+		propagateEvent(tileStatusUpdateEvent(tile));
+	}
 }
@@ -0,0 +1,23 @@
+package com.sourcedestination.mqttrpg;
+
+/** source of game time, in milliseconds since the start of the game.
+ * The game advances its clock once per {@link Game#tick()}.
+ */
+public interface GameClock {
+
+    /** milliseconds elapsed in the game */
+    long getTime();
+
+    /** called by the game at the end of each tick */
+    default void tick() { }
+
+    /** clock following the wall clock, measured from the given UNIX time */
+    static GameClock system(long origin) {
+        return () -> System.currentTimeMillis() - origin;
+    }
+
+    /** deterministic clock that advances a fixed number of milliseconds per tick */
+    static TickClock fixedStep(long millisPerTick) {
+        return new TickClock(millisPerTick);
+    }
+}
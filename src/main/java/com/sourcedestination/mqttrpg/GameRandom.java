@@ -0,0 +1,64 @@
+package com.sourcedestination.mqttrpg;
+
+/** game-scoped random number generator (SplitMix64).
+ * Its whole state is a single long, so it can be saved and restored with the game and
+ * produces identical sequences on every node given the same seed.
+ * Not thread safe; intended to be used from the game loop.
+ */
+public class GameRandom {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long state;
+
+    public GameRandom(long seed) {
+        this.state = seed;
+    }
+
+    /** resets the generator as if newly created with the given seed */
+    public void setSeed(long seed) { state = seed; }
+
+    /** returns the current state, suitable for {@link #setState(long)} */
+    public long getState() { return state; }
+
+    public void setState(long state) { this.state = state; }
+
+    public long nextLong() {
+        return mix(state += GOLDEN_GAMMA);
+    }
+
+    public int nextInt() {
+        return (int)(nextLong() >>> 32);
+    }
+
+    /** returns a uniformly distributed int in [0, bound) */
+    public int nextInt(int bound) {
+        if(bound <= 0) throw new IllegalArgumentException("bound must be positive");
+        int r = nextInt() >>> 1;
+        int m = bound - 1;
+        if((bound & m) == 0) return (int)((bound * (long)r) >> 31);
+        for(int u = r; u - (r = u % bound) + m < 0; u = nextInt() >>> 1);
+        return r;
+    }
+
+    /** returns a uniformly distributed int in [origin, bound) */
+    public int nextInt(int origin, int bound) {
+        if(origin >= bound) throw new IllegalArgumentException("origin must be less than bound");
+        return origin + nextInt(bound - origin);
+    }
+
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    /** SplitMix64 finalizer; also used for mixing state hashes */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
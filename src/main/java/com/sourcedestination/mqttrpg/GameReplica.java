@@ -0,0 +1,240 @@
+package com.sourcedestination.mqttrpg;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/** hot-standby copy of a game streamed by a {@link ReplicationPrimary}.
+ * The replica's game is not ticked on its own: {@link #poll()} replays each of the primary's ticks with
+ * the same commands, so the lockstep game reaches the same state, which is checked against the primary's
+ * state hash after every tick. Frames arriving out of order are held back; a gap that does not fill is
+ * reported to the primary, which resends the missing frames or a {@link GameSnapshot}. A replica that
+ * diverges is restored from a snapshot. If the primary refuses the snapshot, because timers or actions
+ * are pending there, the replica cannot catch up and {@link #poll()} fails.
+ * <p>
+ * On failover, {@link #promote()} stops following the primary and hands the up to date game over to be
+ * ticked normally, e.g. under a new {@link ReplicationPrimary} that the other replicas {@link #follow(String)}.
+ */
+public class GameReplica implements AutoCloseable {
+
+    /** creates the replica's counterpart of an agent that issued commands on the primary */
+    @FunctionalInterface
+    public interface AgentFactory {
+        Agent create(Game game, String id, String role);
+    }
+
+    /** frames received past a gap before the missing frames are requested again */
+    static final int GAP_PATIENCE = 30;
+
+    private final Game game;
+    private final String nodeId;
+    private final NodeTransport transport;
+    private final AgentFactory agents;
+    private final Map<String, EntityFactory> factories = new ConcurrentHashMap<>();
+    private final Queue<String> inbox = new ConcurrentLinkedQueue<>();
+    private volatile String primaryId;
+
+    // game thread only
+    private final TreeMap<Long, JsonObject> pending = new TreeMap<>();  // frames received ahead of the game
+    private long requestedFrom, requestedAt;  // last request sent and the newest frame seen when sending it
+    private boolean awaitingSnapshot;
+    private String refusal;  // why the primary could not send a snapshot, null if it did not refuse
+    private boolean promoted;
+
+    private volatile long appliedTick;
+    private volatile long lastFrameAt = System.nanoTime();
+    private volatile long framesApplied, gapsDetected, snapshotsRestored, divergences, messagesDropped;
+
+    public GameReplica(Game game, String nodeId, String primaryId, NodeTransport transport,
+                       AgentFactory agents) throws IOException {
+        if(!game.isLockstep()) throw new IllegalStateException("only lockstep games can be replicated");
+        this.game = game;
+        this.nodeId = nodeId;
+        this.primaryId = primaryId;
+        this.transport = transport;
+        this.agents = agents;
+        this.appliedTick = game.getTickCount();
+        transport.start(nodeId, inbox::add);
+        request(game.getTickCount() + 1);
+    }
+
+    /** registers how to recreate entities of a type from snapshots */
+    public void registerType(String type, EntityFactory factory) {
+        factories.put(type, factory);
+    }
+
+    /** switches to a new primary, e.g. one promoted from another replica, asking it for the frames still missing */
+    public void follow(String primaryId) {
+        this.primaryId = primaryId;
+        refusal = null;
+        request(appliedTick + 1);
+    }
+
+    /** applies the frames and snapshots received so far; call on the thread owning the game instead of ticking it
+     * @return the number of ticks replayed
+     * @throws IllegalStateException if the replica needed a snapshot and the primary refused it
+     */
+    public int poll() {
+        if(promoted) throw new IllegalStateException("replica was promoted");
+        String message;
+        while((message = inbox.poll()) != null) {
+            try {
+                var parsed = new JsonParser().parse(message).getAsJsonObject();
+                var kind = text(parsed, "kind");
+                if("frame".equals(kind)) {
+                    if(!isFrame(parsed)) throw new JsonParseException("malformed frame");
+                    lastFrameAt = System.nanoTime();
+                    long tick = parsed.get("tick").getAsLong();
+                    if(tick > game.getTickCount()) pending.put(tick, parsed);
+                } else if("snapshot".equals(kind)) {
+                    if(!(parsed.get("snapshot") instanceof JsonObject)) throw new JsonParseException("snapshot without state");
+                    restore(GameSnapshot.of(parsed.get("snapshot")));
+                } else if("refused".equals(kind)) {
+                    var reason = text(parsed, "reason");
+                    refusal = reason != null ? reason : "no reason given";
+                } else {
+                    throw new JsonParseException("unknown message kind " + kind);
+                }
+            } catch(JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+                messagesDropped++;  // a bad message must not stop the replica; gaps it leaves are requested again
+            }
+        }
+        if(refusal != null) throw new IllegalStateException("primary refused a snapshot: " + refusal);
+
+        int applied = 0;
+        while(!awaitingSnapshot && !pending.isEmpty() && pending.firstKey() <= game.getTickCount() + 1) {
+            var frame = pending.pollFirstEntry();
+            if(frame.getKey() == game.getTickCount() + 1) {
+                apply(frame.getValue());
+                applied++;
+            }
+        }
+
+        if(!pending.isEmpty()) {  // a gap: frames are missing or a snapshot is on its way
+            long from = awaitingSnapshot ? 0 : game.getTickCount() + 1;
+            if(from != requestedFrom || pending.lastKey() - requestedAt > GAP_PATIENCE) {
+                if(!awaitingSnapshot) gapsDetected++;
+                request(from);
+            }
+        }
+        return applied;
+    }
+
+    /** the value of a string or number field, or null if it is missing or not a primitive */
+    private static String text(JsonObject message, String key) {
+        var value = message.get(key);
+        return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+    }
+
+    private static boolean isWhole(JsonElement value) {
+        if(value == null || !value.isJsonPrimitive() || !value.getAsJsonPrimitive().isNumber()) return false;
+        try {
+            value.getAsBigDecimal().longValueExact();
+            return true;
+        } catch(ArithmeticException e) {
+            return false;
+        }
+    }
+
+    /** checks everything {@link #apply(JsonObject)} reads, so a frame is rejected on arrival rather than when replayed */
+    private static boolean isFrame(JsonObject frame) {
+        if(!isWhole(frame.get("tick")) || !isWhole(frame.get("hash")) || !(frame.get("commands") instanceof JsonArray))
+            return false;
+        for(var element : frame.getAsJsonArray("commands")) {
+            if(!element.isJsonObject()) return false;
+            var command = element.getAsJsonObject();
+            if(text(command, "agent") == null || text(command, "role") == null || !isWhole(command.get("sequence"))
+                    || !(command.get("command") instanceof JsonObject))
+                return false;
+        }
+        return true;
+    }
+
+    /** replays one of the primary's ticks */
+    private void apply(JsonObject frame) {
+        var commands = new ArrayList<AdmissionControl.Pending>();
+        for(var element : frame.getAsJsonArray("commands")) {
+            var command = element.getAsJsonObject();
+            var agent = GameSnapshot.agent(command.get("agent").getAsString(), command.get("role").getAsString(),
+                    game, agents);
+            commands.add(new AdmissionControl.Pending(agent,
+                    new Command(game, Command.toMap(command.getAsJsonObject("command"))),
+                    command.get("sequence").getAsLong()));
+        }
+        game.replayTick(commands);
+        appliedTick = game.getTickCount();
+        framesApplied++;
+        if(game.getLastTickHash() != frame.get("hash").getAsLong()) {
+            divergences++;
+            awaitingSnapshot = true;
+            request(0);
+        }
+    }
+
+    private void restore(GameSnapshot snapshot) {
+        if(!awaitingSnapshot && snapshot.getTick() <= game.getTickCount()) return;  // already past it
+        snapshot.restore(game, factories, agents);
+        appliedTick = game.getTickCount();
+        pending.headMap(snapshot.getTick(), true).clear();
+        awaitingSnapshot = false;
+        snapshotsRestored++;
+        if(game.getStateHash() != snapshot.getHash()) divergences++;
+    }
+
+    /** asks the primary for the frames from a tick on; 0 asks for a snapshot */
+    private void request(long from) {
+        requestedFrom = from;
+        requestedAt = pending.isEmpty() ? appliedTick : pending.lastKey();
+        var request = new JsonObject();
+        request.addProperty("kind", "resend");
+        request.addProperty("replica", nodeId);
+        request.addProperty("from", from);
+        try {
+            transport.send(primaryId, request.toString());
+        } catch(IOException e) {
+            // asked again once more frames arrive past the gap
+        }
+    }
+
+    /** stops following the primary and returns the game, up to date with every frame received, to be ticked normally */
+    public Game promote() {
+        poll();
+        promoted = true;
+        transport.stop(nodeId);
+        return game;
+    }
+
+    public Game getGame() { return game; }
+    public String getPrimaryId() { return primaryId; }
+    public boolean isPromoted() { return promoted; }
+
+    /** last of the primary's ticks replayed or restored */
+    public long getAppliedTick() { return appliedTick; }
+
+    public long getMillisSinceLastFrame() { return (System.nanoTime() - lastFrameAt) / 1_000_000; }
+
+    public long getFramesApplied() { return framesApplied; }
+    /** times frames were found missing and requested again */
+    public long getGapsDetected() { return gapsDetected; }
+    public long getSnapshotsRestored() { return snapshotsRestored; }
+    /** ticks after which the replica's state hash differed from the primary's */
+    public long getDivergences() { return divergences; }
+    /** messages from the primary that were malformed or of an unknown kind */
+    public long getMessagesDropped() { return messagesDropped; }
+
+    @Override
+    public void close() {
+        if(!promoted) transport.stop(nodeId);
+        promoted = true;
+    }
+}
@@ -0,0 +1,194 @@
+package com.sourcedestination.mqttrpg;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** the state of a lockstep game at the end of a tick, for bringing a replica up to date.
+ * Covers agents (id and role), every entity with its location, heading and properties, tiles whose
+ * properties changed, the tick count, random state and id counters: everything in
+ * {@link Game#getStateHash()}. Agent properties are not captured, so a restored game only matches its
+ * source if they can be derived from the captured state. Scheduled timers and queued actions cannot be
+ * captured, so games with any pending are refused. Properties must be representable in JSON.
+ */
+public final class GameSnapshot {
+
+    private static final Gson GSON = new Gson();
+
+    private final JsonObject state;
+
+    private GameSnapshot(JsonObject state) {
+        this.state = state;
+    }
+
+    /** captures a lockstep game; call on the game thread between ticks
+     * @throws IllegalStateException if timers or actions are pending, which a restored game would miss
+     */
+    public static GameSnapshot capture(Game game) {
+        if(!game.isLockstep()) throw new IllegalStateException("only lockstep games can be captured");
+        if(game.getTimers().size() > 0 || game.getQueuedActionCount() > 0)
+            throw new IllegalStateException("games with pending timers or queued actions cannot be captured");
+        var state = new JsonObject();
+        state.addProperty("tick", game.getTickCount());
+        state.addProperty("hash", game.getLastTickHash());
+        state.addProperty("random", game.getRandom().getState());
+        state.addProperty("next-entity-id", game.getNextEntityID());
+        state.addProperty("next-event-id", game.getNextEventID());
+        state.add("sequences", GSON.toJsonTree(game.getCommandSequences()));
+
+        var agents = new JsonArray();
+        game.getAllAgents().sorted(Comparator.comparing(Agent::getAgentID)).forEach(agent -> {
+            var data = new JsonObject();
+            data.addProperty("id", agent.getAgentID());
+            data.addProperty("role", agent.getRole());
+            agents.add(data);
+        });
+        state.add("agents", agents);
+
+        var entities = new JsonArray();
+        game.getEntities().sorted(Comparator.comparingInt(Entity::getID)).forEach(ent -> {
+            var data = describe(ent);
+            var location = game.getEntityLocation(ent);
+            if(location instanceof Tile tile) data.add("tile", describe(tile));
+            else if(location instanceof Entity container) data.addProperty("container", container.getID());
+            else if(location instanceof Agent agent) data.addProperty("agent", agent.getAgentID());
+            entities.add(data);
+        });
+        state.add("entities", entities);
+
+        var tiles = new JsonArray();
+        for(var tile : game.getModifiedTiles()) {
+            var data = describe(tile);
+            data.add("properties", GSON.toJsonTree(tile.getProperties()));
+            tiles.add(data);
+        }
+        state.add("tiles", tiles);
+        return new GameSnapshot(state);
+    }
+
+    /** tick at the end of which the snapshot was taken */
+    public long getTick() { return state.get("tick").getAsLong(); }
+
+    /** state hash of the captured game, which a restored game must reproduce */
+    public long getHash() { return state.get("hash").getAsLong(); }
+
+    public String toJson() { return state.toString(); }
+
+    JsonObject getState() { return state; }
+
+    /** @throws IllegalArgumentException if json is not a snapshot */
+    public static GameSnapshot fromJson(String json) {
+        JsonElement root;
+        try {
+            root = new JsonParser().parse(json);
+        } catch(JsonParseException e) {
+            throw new IllegalArgumentException("malformed snapshot", e);
+        }
+        return of(root);
+    }
+
+    static GameSnapshot of(JsonElement state) {
+        if(state == null || !state.isJsonObject() || !state.getAsJsonObject().has("tick"))
+            throw new IllegalArgumentException("not a game snapshot");
+        return new GameSnapshot(state.getAsJsonObject());
+    }
+
+    /** replaces the entities and counters of a lockstep game built with the same boards.
+     * Existing entities are removed first; missing agents are created with the given factory.
+     * @throws IllegalArgumentException if an entity type has no factory
+     */
+    public void restore(Game game, Map<String, EntityFactory> factories, GameReplica.AgentFactory agentFactory) {
+        if(!game.isLockstep()) throw new IllegalStateException("snapshots can only be restored into lockstep games");
+        game.getEntities().toList().forEach(game::removeEntity);
+
+        for(var element : state.getAsJsonArray("agents")) {
+            var agent = element.getAsJsonObject();
+            agent(agent.get("id").getAsString(), agent.get("role").getAsString(), game, agentFactory);
+        }
+
+        var entities = state.getAsJsonArray("entities");
+        var restored = new HashMap<Integer, Entity>();
+        for(var entity : entities) {
+            var ent = recreate(game, Command.toMap(entity.getAsJsonObject()), factories);
+            restored.put(ent.getID(), ent);
+        }
+        for(var element : entities) {
+            var entity = element.getAsJsonObject();
+            var ent = restored.get(entity.get("id").getAsInt());
+            if(entity.has("tile"))
+                game.moveEntity(ent, tile(game, entity.getAsJsonObject("tile")));
+            else if(entity.has("container") && restored.get(entity.get("container").getAsInt()) instanceof Container container)
+                game.moveEntity(ent, container);
+            else if(entity.has("agent"))
+                game.moveEntity(ent, game.getAgent(entity.get("agent").getAsString()));
+        }
+
+        for(var element : state.getAsJsonArray("tiles")) {
+            var tile = element.getAsJsonObject();
+            var target = tile(game, tile);
+            Command.toMap(tile.getAsJsonObject("properties")).forEach(target::setProperty);
+        }
+
+        var sequences = new HashMap<String, Long>();
+        state.getAsJsonObject("sequences").entrySet()
+                .forEach(entry -> sequences.put(entry.getKey(), entry.getValue().getAsLong()));
+        game.restoreCounters(getTick(), getHash(), state.get("random").getAsLong(),
+                state.get("next-entity-id").getAsInt(), state.get("next-event-id").getAsInt(), sequences);
+    }
+
+    /** finds an agent in the game, creating it if needed */
+    static Agent agent(String id, String role, Game game, GameReplica.AgentFactory factory) {
+        var agent = game.getAgent(id);
+        if(agent == null) {
+            agent = factory.create(game, id, role);
+            if(game.getAgent(id) == null) game.addAgent(agent);
+        }
+        return agent;
+    }
+
+    /** id, type, heading and properties of an entity */
+    static JsonObject describe(Entity ent) {
+        var data = new JsonObject();
+        data.addProperty("id", ent.getID());
+        data.addProperty("type", ent.getType());
+        if(ent.getHeading() != null) data.addProperty("heading", ent.getHeading().name());
+        var properties = new LinkedHashMap<>(ent.getProperties());
+        properties.remove("id");
+        data.add("properties", GSON.toJsonTree(properties));
+        return data;
+    }
+
+    /** recreates an entity described by {@link #describe(Entity)}, under its original id and held by the game */
+    @SuppressWarnings("unchecked")
+    static Entity recreate(Game game, Map<String, Object> data, Map<String, EntityFactory> factories) {
+        var type = (String)data.get("type");
+        var factory = factories.get(type);
+        if(factory == null) throw new IllegalArgumentException("no factory registered for entity type " + type);
+        var ent = game.adoptEntity(((Number)data.get("id")).intValue(), () -> factory.create(game));
+        ((Map<String, Object>)data.get("properties")).forEach(ent::setProperty);
+        if(data.get("heading") != null) ent.setHeading(Direction.valueOf((String)data.get("heading")));
+        if(game.getEntityLocation(ent) != game) game.moveEntity(ent, game);
+        return ent;
+    }
+
+    private static JsonObject describe(Tile tile) {
+        var data = new JsonObject();
+        data.addProperty("board", tile.getBoard().getID());
+        data.addProperty("column", tile.getColumn());
+        data.addProperty("row", tile.getRow());
+        return data;
+    }
+
+    private static Tile tile(Game game, JsonObject data) {
+        return game.getBoard(data.get("board").getAsString())
+                .getTile(data.get("column").getAsInt(), data.get("row").getAsInt());
+    }
+}
@@ -3,11 +3,19 @@ package com.sourcedestination.mqttrpg;
 import java.util.Map;
 import java.util.Optional;
 
-/** interface for all game objects that can have properties associated with them */
+/** interface for all game objects that can have properties associated with them.
+ * Properties can be accessed by name or, without boxing or string hashing, through interned
+ * {@link PropertyKey} handles.
+ */
 public interface HasProperties {
     public Map<String,Object> getProperties();
     public void setProperty(String key, Object value);
 
+    /** returns the typed storage backing this object's properties,
+     * or null if properties are only available through {@link #getProperties()}
+     */
+    public default PropertyStore getPropertyStore() { return null; }
+
     public default void setProperties(Map<String,Object> properties) {
         for(var entry : properties.entrySet())
             setProperty(entry.getKey(), entry.getValue());
@@ -19,44 +27,86 @@ public interface HasProperties {
 
     public default Object getProperty(String key) {
         var m = getProperties();
-        if(!m.containsKey(key))
+        var value = m.get(key);
+        if(value == null && !m.containsKey(key))
             throw new IllegalArgumentException("no such property " +
                     key + " in " +this);
-        return m.get(key);
+        return value;
     }
 
     public default String getString(String key) {
-        var m = getProperties();
-        if(!m.containsKey(key))
-            throw new IllegalArgumentException("no such property " +
-                    key + " in " +this);
-        if((m.get(key) instanceof String))
-            return (String)m.get(key);
-        return m.get(key)+"";
+        var value = getProperty(key);
+        if((value instanceof String))
+            return (String)value;
+        return value+"";
     }
 
     public default Integer getInteger(String key) {
-        var m = getProperties();
-        if(!m.containsKey(key))
-            throw new IllegalArgumentException("no such property " +
-                    key + " in " +this);
-        if((m.get(key) instanceof Integer))
-            return (Integer)m.get(key);
+        var value = getProperty(key);
+        if((value instanceof Integer))
+            return (Integer)value;
 
-        try{ return Integer.parseInt(m.get(key)+"");}
+        try{ return Integer.parseInt(value+"");}
         catch(NumberFormatException e) {
             throw new IllegalArgumentException("property " +
                     key + " does not have type Integer in " +this);
         }
     }
 
+    public default boolean hasProperty(PropertyKey<?> key) {
+        var store = getPropertyStore();
+        return store != null ? store.contains(key) : hasProperty(key.getName());
+    }
+
+    /** returns a property converted to the key's type
+     * @throws IllegalArgumentException if the property is not set or cannot be converted
+     */
+    public default <T> T get(PropertyKey<T> key) {
+        var store = getPropertyStore();
+        if(store != null) {
+            if(!store.contains(key))
+                throw new IllegalArgumentException("no such property " + key.getName() + " in " + this);
+            return store.get(key);
+        }
+        var converted = new PropertyStore();
+        converted.put(key.getName(), getProperty(key.getName()));
+        return converted.get(key);
+    }
+
+    public default int getInt(PropertyKey<Integer> key) {
+        var store = getPropertyStore();
+        return store != null ? store.getInt(key) : get(key);
+    }
+
+    public default long getLong(PropertyKey<Long> key) {
+        var store = getPropertyStore();
+        return store != null ? store.getLong(key) : get(key);
+    }
+
+    public default double getDouble(PropertyKey<Double> key) {
+        var store = getPropertyStore();
+        return store != null ? store.getDouble(key) : get(key);
+    }
+
+    public default boolean getBoolean(PropertyKey<Boolean> key) {
+        var store = getPropertyStore();
+        return store != null ? store.getBoolean(key) : get(key);
+    }
+
+    /** sets a property through {@link #setProperty(String, Object)} so implementations can react to the change */
+    public default <T> void set(PropertyKey<T> key, T value) { setProperty(key.getName(), value); }
+    public default void setInt(PropertyKey<Integer> key, int value) { setProperty(key.getName(), value); }
+    public default void setLong(PropertyKey<Long> key, long value) { setProperty(key.getName(), value); }
+    public default void setDouble(PropertyKey<Double> key, double value) { setProperty(key.getName(), value); }
+    public default void setBoolean(PropertyKey<Boolean> key, boolean value) { setProperty(key.getName(), value); }
+
     public Game getGame();
 
     public default Optional<Entity> getEntity(String property) {
         var properties = getProperties();
         if(properties.containsKey(property)) {
             try {
-                var entity = getGame().getEntity((Integer)getProperty(property));
+                var entity = getGame().getEntity(getInteger(property));
                 return Optional.of(entity);
             } catch(Exception e) {
 
@@ -68,6 +118,7 @@ public interface HasProperties {
 
     public default Optional<Direction> getDirection(String property) {
         var properties = getProperties();
+        if(properties.get(property) instanceof Direction) return Optional.of((Direction)properties.get(property));
         if(properties.containsKey(property)) {
             try {
                 var direction = Direction.valueOf(properties.get(property).toString());
@@ -88,11 +139,11 @@ public interface HasProperties {
             var board = getGame().getBoard(properties.get(prefix+"board").toString());
             if(board != null) {
                 try {
-                    var row = (Integer)properties.get(prefix+"row");
-                    var column = (Integer)(properties.get(prefix+"column"));
+                    var row = getInteger(prefix+"row");
+                    var column = getInteger(prefix+"column");
                     var tile = board.getTile(column, row);
                     if(tile != null) return Optional.of(tile);
-                } catch(NumberFormatException e) {
+                } catch(IllegalArgumentException e) {
                 }
             }
         }
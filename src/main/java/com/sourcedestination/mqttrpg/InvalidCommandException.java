@@ -1,4 +1,11 @@
 package com.sourcedestination.mqttrpg;
 
+/** thrown when a command is malformed or does not match its {@link CommandSchema} */
 public class InvalidCommandException extends CommandException {
+
+    public InvalidCommandException() { }
+
+    public InvalidCommandException(String message) {
+        super(message);
+    }
 }
@@ -0,0 +1,21 @@
+package com.sourcedestination.mqttrpg;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/** flight recorder event for a single listener call, only recorded when the call exceeds the threshold */
+@Name("mqttrpg.SlowListener")
+@Label("Slow Listener")
+@Category({"MQTT RPG", "Events"})
+@Description("A listener whose handling of one game event took longer than the threshold")
+@Enabled(false)
+@Threshold("1 ms")
+final class ListenerTrace extends jdk.jfr.Event {
+    @Label("Event Type") String eventType;
+    @Label("Listener Class") Class<?> listenerClass;
+    @Label("Listener") String listener;
+}
@@ -0,0 +1,32 @@
+package com.sourcedestination.mqttrpg;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/** connects nodes running in the same JVM, e.g. for tests or to split one process across several game threads.
+ * Share one instance between all nodes; messages are handed straight to the receiving node's receiver.
+ */
+public class LocalTransport implements NodeTransport {
+
+    private final Map<String, Consumer<String>> nodes = new ConcurrentHashMap<>();
+
+    @Override
+    public void start(String nodeId, Consumer<String> receiver) {
+        if(nodes.putIfAbsent(nodeId, receiver) != null)
+            throw new IllegalStateException("node " + nodeId + " is already started");
+    }
+
+    @Override
+    public void send(String nodeId, String message) throws IOException {
+        var receiver = nodes.get(nodeId);
+        if(receiver == null) throw new IOException("node " + nodeId + " is not reachable");
+        receiver.accept(message);
+    }
+
+    @Override
+    public void stop(String nodeId) {
+        nodes.remove(nodeId);
+    }
+}
@@ -0,0 +1,256 @@
+package com.sourcedestination.mqttrpg;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/** counters, histograms and gauges exported in the Prometheus text format.
+ * Recording is lock free and allocation free: counters are {@link LongAdder}s and histograms count into fixed
+ * power-of-two buckets, so instrumenting the game loop costs a few nanoseconds per update. Gauges are
+ * only evaluated when the metrics are exported.
+ */
+public class MetricsRegistry {
+
+    /** a monotonically increasing count */
+    public static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        public void increment() { count.increment(); }
+        public void add(long n) { count.add(n); }
+        public long get() { return count.sum(); }
+    }
+
+    /** a family of counters distinguished by the values of one or more labels */
+    public static final class LabeledCounter {
+        private final String[] labels;
+        private final Map<Object, Counter> counters = new ConcurrentHashMap<>();  // by value, or list of values
+
+        private LabeledCounter(String... labels) { this.labels = labels; }
+
+        public Counter labels(String value) {
+            if(labels.length != 1) throw new IllegalArgumentException("expected values for labels " + List.of(labels));
+            var counter = counters.get(value);
+            return counter != null ? counter : counters.computeIfAbsent(value, v -> new Counter());
+        }
+
+        /** the counter for one value of each label, in the order the labels were registered */
+        public Counter labels(String... values) {
+            if(values.length == 1) return labels(values[0]);
+            if(values.length != labels.length) throw new IllegalArgumentException("expected values for labels " + List.of(labels));
+            var key = List.of(values);
+            var counter = counters.get(key);
+            return counter != null ? counter : counters.computeIfAbsent(key, v -> new Counter());
+        }
+
+        /** stops exporting every counter whose first label has this value, e.g. when the agent it counts for leaves */
+        public void remove(String value) {
+            counters.keySet().removeIf(key -> key instanceof List ? ((List<?>)key).get(0).equals(value) : key.equals(value));
+        }
+
+        /** current value for the given label values, 0 if never incremented */
+        public long get(String... values) {
+            var counter = counters.get(values.length == 1 ? values[0] : List.of(values));
+            return counter == null ? 0 : counter.get();
+        }
+
+        private String series(Object key) {
+            var values = key instanceof List ? (List<?>)key : List.of(key);
+            var series = new StringBuilder();
+            for(int i = 0; i < labels.length; i++)
+                series.append(i == 0 ? "{" : ",").append(labels[i]).append("=\"").append(escape((String)values.get(i))).append('"');
+            return series.append('}').toString();
+        }
+    }
+
+    /** a family of gauges distinguished by the value of one label, such as one per connected agent */
+    public static final class LabeledGauge {
+        private final String label;
+        private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+        private LabeledGauge(String label) { this.label = label; }
+
+        public void set(String value, DoubleSupplier gauge) { gauges.put(value, gauge); }
+
+        public void remove(String value) { gauges.remove(value); }
+    }
+
+    /** distribution of non-negative values in buckets bounded by powers of two */
+    public static final class Histogram {
+        private static final int BUCKETS = 64;
+        private final double scale;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder sum = new LongAdder();
+
+        private Histogram(double scale) {
+            this.scale = scale;
+        }
+
+        /** records a value; bucket i holds values up to 2^i - 1 */
+        public void record(long value) {
+            if(value < 0) value = 0;
+            buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value)));
+            sum.add(value);
+        }
+
+        public long getCount() {
+            long count = 0;
+            for(int i = 0; i < BUCKETS; i++) count += buckets.get(i);
+            return count;
+        }
+
+        /** sum of recorded values in exported units */
+        public double getSum() { return sum.sum() * scale; }
+
+        /** upper bound, in exported units, of the bucket holding the given quantile; 0 if empty */
+        public double quantile(double q) {
+            long count = getCount(), seen = 0;
+            if(count == 0) return 0;
+            for(int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if(seen >= Math.ceil(q * count)) return upperBound(i);
+            }
+            return upperBound(BUCKETS - 1);
+        }
+
+        private double upperBound(int bucket) {
+            return ((1L << bucket) - 1) * scale;
+        }
+    }
+
+    private static final class Metric {
+        final String type, help;
+        final Object value;
+
+        Metric(String type, String help, Object value) {
+            this.type = type;
+            this.help = help;
+            this.value = value;
+        }
+    }
+
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    public Counter counter(String name, String help) {
+        return register(name, "counter", help, new Counter());
+    }
+
+    /** a counter family with one or more labels, e.g. agent and reason */
+    public LabeledCounter labeledCounter(String name, String help, String... labels) {
+        if(labels.length == 0) throw new IllegalArgumentException("a labeled counter needs at least one label");
+        return register(name, "counter", help, new LabeledCounter(labels));
+    }
+
+    /** @param scale factor converting recorded values to exported units, e.g. 1e-9 for nanoseconds to seconds */
+    public Histogram histogram(String name, String help, double scale) {
+        return register(name, "histogram", help, new Histogram(scale));
+    }
+
+    /** a value sampled on export; the supplier must be safe to call from the exporting thread */
+    public void gauge(String name, String help, DoubleSupplier value) {
+        register(name, "gauge", help, value);
+    }
+
+    public LabeledGauge labeledGauge(String name, String help, String label) {
+        return register(name, "gauge", help, new LabeledGauge(label));
+    }
+
+    private <T> T register(String name, String type, String help, T value) {
+        if(metrics.putIfAbsent(name, new Metric(type, help, value)) != null)
+            throw new IllegalArgumentException("metric " + name + " is already registered");
+        return value;
+    }
+
+    /** writes every metric, sorted by name, in the Prometheus text exposition format */
+    public void writePrometheus(Writer out) throws IOException {
+        for(var entry : new TreeMap<>(metrics).entrySet()) {
+            var name = entry.getKey();
+            var metric = entry.getValue();
+            out.write("# HELP " + name + " " + metric.help + "\n");
+            out.write("# TYPE " + name + " " + metric.type + "\n");
+            if(metric.value instanceof Counter) {
+                out.write(name + " " + ((Counter)metric.value).get() + "\n");
+            } else if(metric.value instanceof LabeledCounter) {
+                var family = (LabeledCounter)metric.value;
+                var series = new TreeMap<String, Counter>();
+                family.counters.forEach((key, counter) -> series.put(family.series(key), counter));
+                for(var counter : series.entrySet())
+                    out.write(name + counter.getKey() + " " + counter.getValue().get() + "\n");
+            } else if(metric.value instanceof LabeledGauge) {
+                var family = (LabeledGauge)metric.value;
+                for(var gauge : new TreeMap<>(family.gauges).entrySet())
+                    out.write(name + "{" + family.label + "=\"" + escape(gauge.getKey()) + "\"} " +
+                            format(gauge.getValue().getAsDouble()) + "\n");
+            } else if(metric.value instanceof Histogram) {
+                var histogram = (Histogram)metric.value;
+                long cumulative = 0;
+                int last = Histogram.BUCKETS - 1;
+                while(last > 0 && histogram.buckets.get(last) == 0) last--;
+                for(int i = 0; i <= last; i++) {
+                    cumulative += histogram.buckets.get(i);
+                    out.write(name + "_bucket{le=\"" + format(histogram.upperBound(i)) + "\"} " + cumulative + "\n");
+                }
+                out.write(name + "_bucket{le=\"+Inf\"} " + histogram.getCount() + "\n");
+                out.write(name + "_sum " + format(histogram.getSum()) + "\n");
+                out.write(name + "_count " + histogram.getCount() + "\n");
+            } else {
+                out.write(name + " " + format(((DoubleSupplier)metric.value).getAsDouble()) + "\n");
+            }
+        }
+    }
+
+    /** the metrics in the Prometheus text exposition format */
+    public String toPrometheusText() {
+        var out = new StringWriter();
+        try {
+            writePrometheus(out);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /** writes the metrics to a file, replacing it atomically so readers never see a partial export */
+    public void writeTo(Path file) throws IOException {
+        var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, toPrometheusText(), StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** serves the metrics at /metrics on the given port until the returned server is stopped */
+    public HttpServer serve(int port) throws IOException {
+        var server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", exchange -> {
+            var body = toPrometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try(var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value) ? Long.toString((long)value) : Double.toString(value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
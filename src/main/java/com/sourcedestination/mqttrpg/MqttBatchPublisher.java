@@ -0,0 +1,74 @@
+package com.sourcedestination.mqttrpg;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/** publishes event batches to an MQTT broker without blocking the game thread.
+ * Uses the asynchronous Paho client. A batch that cannot be handed to the client, for example because
+ * too many messages are in flight, or that the client later fails to deliver, e.g. because the connection
+ * drops, is not retried. Batches are deltas, so its topic is resynchronized
+ * instead: the next publish to that topic sends a snapshot frame of the state the topic observes in
+ * place of the batch, which already reflects that batch's events.
+ */
+public class MqttBatchPublisher implements BatchSink {
+
+    private final IMqttAsyncClient client;
+    private final int qos;
+    private final Function<String, byte[]> snapshots;
+    private final Set<String> outOfSync = ConcurrentHashMap.newKeySet();  // topics with a lost batch; also added to by client callbacks
+    private final LongAdder published = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final IMqttActionListener delivery = new IMqttActionListener() {
+        public void onSuccess(IMqttToken token) { }
+
+        public void onFailure(IMqttToken token, Throwable cause) {
+            failed.increment();
+            outOfSync.add((String)token.getUserContext());
+        }
+    };
+
+    /** @param snapshots encodes a frame bringing a client of a topic up to date with the current state,
+     *                  e.g. with creation events for everything the topic observes; called on the game thread
+     */
+    public MqttBatchPublisher(IMqttAsyncClient client, int qos, Function<String, byte[]> snapshots) {
+        this.client = client;
+        this.qos = qos;
+        this.snapshots = snapshots;
+    }
+
+    @Override
+    public void publish(String topic, byte[] frame) {
+        boolean resync = outOfSync.contains(topic);
+        var message = new MqttMessage(resync ? snapshots.apply(topic) : frame);
+        message.setQos(qos);
+        try {
+            client.publish(topic, message, topic, delivery);
+        } catch(MqttException e) {
+            failed.increment();
+            outOfSync.add(topic);
+            return;
+        }
+        published.increment();
+        if(resync) {
+            outOfSync.remove(topic);
+            resyncs.increment();
+        }
+    }
+
+    public long getPublished() { return published.sum(); }
+
+    /** batches and snapshots the client refused, e.g. with too many messages in flight, or failed to deliver */
+    public long getFailed() { return failed.sum(); }
+
+    /** snapshots published to resynchronize topics after a refused batch */
+    public long getResyncs() { return resyncs.sum(); }
+}
@@ -0,0 +1,63 @@
+package com.sourcedestination.mqttrpg;
+
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/** connects nodes through an MQTT broker; each node subscribes to {@code <prefix>/node/<node id>}.
+ * Use QoS 1 or 2 so handed off entities survive a dropped connection; the broker keeps the
+ * per-publisher order the coordinator relies on. Publishing is asynchronous, so a message the client accepted
+ * can still fail; handoffs lost that way are reinstated by the sender when their acknowledgement times out.
+ * The client must already be connected and is not closed here.
+ */
+public class MqttNodeTransport implements NodeTransport {
+
+    private final IMqttAsyncClient client;
+    private final String prefix;
+    private final int qos;
+
+    public MqttNodeTransport(IMqttAsyncClient client, String prefix, int qos) {
+        this.client = client;
+        this.prefix = prefix;
+        this.qos = qos;
+    }
+
+    private String topic(String nodeId) {
+        return prefix + "/node/" + nodeId;
+    }
+
+    @Override
+    public void start(String nodeId, Consumer<String> receiver) throws IOException {
+        try {
+            client.subscribe(topic(nodeId), qos,
+                    (topic, message) -> receiver.accept(new String(message.getPayload(), StandardCharsets.UTF_8)))
+                    .waitForCompletion();
+        } catch(MqttException e) {
+            throw new IOException("could not subscribe to " + topic(nodeId), e);
+        }
+    }
+
+    @Override
+    public void send(String nodeId, String message) throws IOException {
+        var mqttMessage = new MqttMessage(message.getBytes(StandardCharsets.UTF_8));
+        mqttMessage.setQos(qos);
+        try {
+            client.publish(topic(nodeId), mqttMessage);
+        } catch(MqttException e) {
+            throw new IOException("could not publish to " + topic(nodeId), e);
+        }
+    }
+
+    @Override
+    public void stop(String nodeId) {
+        try {
+            client.unsubscribe(topic(nodeId));
+        } catch(MqttException e) {
+            // the subscription ends with the connection anyway
+        }
+    }
+}
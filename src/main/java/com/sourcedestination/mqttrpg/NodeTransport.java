@@ -0,0 +1,22 @@
+package com.sourcedestination.mqttrpg;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/** carries messages between the engine nodes of a sharded game, see {@link ShardCoordinator}.
+ * Messages are JSON strings; delivery is asynchronous but must preserve order between two nodes.
+ */
+public interface NodeTransport {
+
+    /** starts delivering messages addressed to a node to receiver, which may be called from any thread */
+    void start(String nodeId, Consumer<String> receiver) throws IOException;
+
+    /** hands a message for another node to the transport without waiting for it to be delivered.
+     * A message that was accepted may still be lost; the coordinator times out handoffs that are never answered.
+     * @throws IOException if the message was not accepted, in which case it will never be delivered
+     */
+    void send(String nodeId, String message) throws IOException;
+
+    /** stops delivering messages to a node */
+    void stop(String nodeId);
+}
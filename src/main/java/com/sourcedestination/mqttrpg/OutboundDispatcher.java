@@ -0,0 +1,99 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/** decouples event delivery to networked agents from the game thread.
+ * Each attached agent gets an {@link OutboundQueue} fed by an {@link EventFanout} subscription and drained
+ * by a shared pool of I/O threads. While attached, an agent's own {@link Agent#acceptEvent(Event)} is no longer
+ * called on the game thread, and removing the agent from the game detaches it. Queue depth, lag and drop counts
+ * per agent are exported through the game's {@link MetricsRegistry}; a game has at most one dispatcher.
+ */
+public class OutboundDispatcher implements AutoCloseable {
+
+    private final Game game;
+    private final EventFanout fanout;
+    private final ExecutorService io;
+    private final Map<String, OutboundQueue> queues = new ConcurrentHashMap<>();
+    private final Map<String, EventFanout.Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    private final MetricsRegistry.LabeledGauge depth;
+    private final MetricsRegistry.LabeledGauge lag;
+    private final MetricsRegistry.LabeledCounter dropped;
+    private final MetricsRegistry.LabeledCounter coalesced;
+
+    /** @throws IllegalStateException if the game already has a dispatcher */
+    public OutboundDispatcher(Game game, EventFanout fanout, int ioThreads) {
+        game.setOutboundDispatcher(this);
+        this.game = game;
+        this.fanout = fanout;
+        this.io = Executors.newFixedThreadPool(ioThreads, r -> {
+            var thread = new Thread(r, "outbound-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var metrics = game.getMetrics();
+        depth = metrics.labeledGauge("mqttrpg_outbound_queue_depth", "events waiting to be written per agent", "agent");
+        lag = metrics.labeledGauge("mqttrpg_outbound_lag_seconds", "age of the oldest unwritten event per agent", "agent");
+        dropped = metrics.labeledCounter("mqttrpg_outbound_dropped_events_total", "events discarded for slow agents", "agent");
+        coalesced = metrics.labeledCounter("mqttrpg_outbound_coalesced_events_total", "events superseded before being written", "agent");
+    }
+
+    public OutboundQueue attach(String agentId, EventFormat format, AgentConnection connection,
+                                SlowConsumerPolicy policy, int capacity) {
+        return attach(agentId, format, event -> true, connection, policy, capacity);
+    }
+
+    /** starts delivering the events accepted by filter to a connection, replacing any previous attachment of the agent */
+    public synchronized OutboundQueue attach(String agentId, EventFormat format, Predicate<Event> filter,
+                                             AgentConnection connection, SlowConsumerPolicy policy, int capacity) {
+        detach(agentId);
+        var queue = new OutboundQueue(agentId, connection, policy, capacity, io, closed -> remove(agentId, closed),
+                dropped.labels(agentId), coalesced.labels(agentId));
+        queues.put(agentId, queue);
+        subscriptions.put(agentId, fanout.subscribe(agentId, format, filter,
+                payload -> queue.offer(payload, OutboundQueue.coalescingKey(payload.getEvent()))));
+        depth.set(agentId, queue::getDepth);
+        lag.set(agentId, () -> queue.getLagMillis() / 1000);
+        return queue;
+    }
+
+    /** stops delivery to an agent, abandons its pending events and closes its connection */
+    public void detach(String agentId) {
+        var queue = queues.get(agentId);
+        if(queue != null) {
+            remove(agentId, queue);
+            queue.close();
+        }
+    }
+
+    public OutboundQueue getQueue(String agentId) { return queues.get(agentId); }
+
+    /** unsubscribes a queue that is closing, whether detached, disconnected by its policy or failed */
+    private synchronized void remove(String agentId, OutboundQueue queue) {
+        if(queues.remove(agentId, queue)) {
+            subscriptions.remove(agentId).cancel();
+            depth.remove(agentId);
+            lag.remove(agentId);
+            dropped.remove(agentId);
+            coalesced.remove(agentId);
+        }
+    }
+
+    /** closes every connection and stops the I/O threads; agents receive their events on the game thread again */
+    @Override
+    public void close() {
+        queues.keySet().forEach(this::detach);
+        game.setOutboundDispatcher(null);
+        io.shutdown();
+        try {
+            io.awaitTermination(5, TimeUnit.SECONDS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.sourcedestination.mqttrpg;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/** bounded queue of encoded events waiting to be written to one agent's connection.
+ * The game thread only ever appends; an I/O thread drains the queue and performs the possibly blocking
+ * writes, so a slow client can delay its own events but never the game. When the queue is full the
+ * queue's {@link SlowConsumerPolicy} decides what to give up.
+ */
+public class OutboundQueue {
+
+    private static final class Entry {
+        EncodedEvent payload;
+        final Object key;
+        final long enqueuedAt;
+
+        Entry(EncodedEvent payload, Object key) {
+            this.payload = payload;
+            this.key = key;
+            this.enqueuedAt = payload.getEncodedAt();
+        }
+    }
+
+    private final String agentId;
+    private final AgentConnection connection;
+    private final SlowConsumerPolicy policy;
+    private final int capacity;
+    private final Executor io;
+    private final Consumer<OutboundQueue> onClose;
+    private final MetricsRegistry.Counter droppedTotal, coalescedTotal;  // exported counts across the game
+
+    // guarded by this
+    private final ArrayDeque<Entry> pending = new ArrayDeque<>();
+    private final Map<Object, Entry> pendingByKey = new HashMap<>();
+    private boolean resyncRequested;
+    private boolean closed;
+    private long sent, dropped, coalesced, resyncs;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    OutboundQueue(String agentId, AgentConnection connection, SlowConsumerPolicy policy, int capacity,
+                  Executor io, Consumer<OutboundQueue> onClose,
+                  MetricsRegistry.Counter droppedTotal, MetricsRegistry.Counter coalescedTotal) {
+        if(capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.agentId = agentId;
+        this.connection = connection;
+        this.policy = policy;
+        this.capacity = capacity;
+        this.io = io;
+        this.onClose = onClose;
+        this.droppedTotal = droppedTotal;
+        this.coalescedTotal = coalescedTotal;
+    }
+
+    /** key under which events about the same entity or tile are coalesced, or null if the event is not coalescable */
+    static Object coalescingKey(Event event) {
+        if(event instanceof EntityMovedEvent)
+            return event.getEntity().get();
+        if(event instanceof TileStatusUpdateEvent)
+            return event.getTile().get();
+        return null;
+    }
+
+    /** appends an event on the game thread, applying the slow consumer policy if the queue is full */
+    void offer(EncodedEvent payload, Object key) {
+        synchronized(this) {
+            if(closed) return;
+            if(policy == SlowConsumerPolicy.COALESCE && key != null) {
+                var existing = pendingByKey.get(key);
+                if(existing != null) {  // the newer event supersedes the one still waiting
+                    existing.payload.release();
+                    existing.payload = payload.retain();
+                    coalesced++;
+                    coalescedTotal.increment();
+                    return;
+                }
+            }
+            if(pending.size() >= capacity) {
+                switch(policy) {
+                    case DROP_OLDEST:
+                    case COALESCE:
+                        remove(pending.poll());
+                        drop(1);
+                        break;
+                    case RESYNC:
+                        drop(clear());
+                        resyncRequested = true;
+                        resyncs++;
+                        break;
+                    case DISCONNECT:
+                        drop(clear() + 1);
+                        closed = true;
+                        break;
+                }
+            }
+            if(!closed) {
+                var entry = new Entry(payload.retain(), key);
+                pending.add(entry);
+                if(policy == SlowConsumerPolicy.COALESCE && key != null) pendingByKey.put(key, entry);
+            }
+        }
+        scheduleDrain();
+    }
+
+    /** stops delivery, discarding pending events, and closes the connection from an I/O thread */
+    public void close() {
+        synchronized(this) {
+            if(closed) return;
+            clear();
+            closed = true;
+        }
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if(draining.compareAndSet(false, true)) io.execute(this::drain);
+    }
+
+    /** writes pending events until the queue is empty; runs on an I/O thread, one per queue at a time */
+    private void drain() {
+        while(true) {
+            Entry next;
+            boolean resync, close;
+            synchronized(this) {
+                close = closed;
+                resync = resyncRequested;
+                resyncRequested = false;
+                next = close || resync ? null : pending.poll();
+                if(next != null) remove(next);
+                if(next == null && !close && !resync) {
+                    draining.set(false);
+                    return;
+                }
+            }
+            if(close) {
+                connection.close();
+                onClose.accept(this);
+                return;  // leave draining set so nothing is scheduled again
+            }
+            try {
+                if(resync) connection.resync();
+                else {
+                    connection.send(next.payload);
+                    synchronized(this) { sent++; }
+                }
+            } catch(IOException | RuntimeException e) {
+                synchronized(this) {
+                    clear();
+                    closed = true;
+                }
+            } finally {
+                if(next != null) next.payload.release();
+            }
+        }
+    }
+
+    private void drop(int events) {
+        dropped += events;
+        droppedTotal.add(events);
+    }
+
+    private void remove(Entry entry) {
+        if(entry.key != null) pendingByKey.remove(entry.key, entry);
+    }
+
+    private int clear() {
+        int n = pending.size();
+        for(var entry : pending) entry.payload.release();
+        pending.clear();
+        pendingByKey.clear();
+        return n;
+    }
+
+    public String getAgentId() { return agentId; }
+    public SlowConsumerPolicy getPolicy() { return policy; }
+    public int getCapacity() { return capacity; }
+
+    public synchronized int getDepth() { return pending.size(); }
+
+    /** how long the oldest pending event has waited, in milliseconds; 0 if nothing is pending */
+    public synchronized double getLagMillis() {
+        var head = pending.peek();
+        return head == null ? 0 : (System.nanoTime() - head.enqueuedAt) / 1e6;
+    }
+
+    public synchronized long getSent() { return sent; }
+    /** events discarded because the queue was full, or by a resync or disconnect */
+    public synchronized long getDropped() { return dropped; }
+    /** events replaced by a newer event about the same entity or tile */
+    public synchronized long getCoalesced() { return coalesced; }
+    public synchronized long getResyncs() { return resyncs; }
+    public synchronized boolean isClosed() { return closed; }
+}
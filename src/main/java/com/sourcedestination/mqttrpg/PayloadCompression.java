@@ -0,0 +1,49 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.List;
+import java.util.zip.Deflater;
+
+/** compression applied to an {@link EventBatchCodec} frame, negotiated per client.
+ * Both compressed variants use deflate primed with a preset dictionary of event keys, so even
+ * small batches compress well; they differ in how hard deflate searches for matches.
+ */
+public enum PayloadCompression {
+    /** events are framed but not compressed */
+    NONE("none", 0, Deflater.NO_COMPRESSION),
+    /** default deflate level, best ratio for bandwidth constrained clients */
+    DEFLATE("deflate", 1, Deflater.DEFAULT_COMPRESSION),
+    /** fastest deflate level, for when server CPU matters more than bytes */
+    FAST("fast", 2, Deflater.BEST_SPEED);
+
+    private final String name;
+    private final int id;
+    private final int level;
+
+    PayloadCompression(String name, int id, int level) {
+        this.name = name;
+        this.id = id;
+        this.level = level;
+    }
+
+    /** name used when a client lists the compressions it accepts */
+    public String getName() { return name; }
+
+    /** id written into each frame's header */
+    int getId() { return id; }
+
+    int getLevel() { return level; }
+
+    static PayloadCompression fromId(int id) {
+        for(var compression : values())
+            if(compression.id == id) return compression;
+        throw new IllegalArgumentException("unknown compression " + id);
+    }
+
+    /** picks the first compression in the client's preference list that the server supports, or NONE */
+    public static PayloadCompression negotiate(List<String> offered) {
+        for(var name : offered)
+            for(var compression : values())
+                if(compression.name.equalsIgnoreCase(name.trim())) return compression;
+        return NONE;
+    }
+}
@@ -0,0 +1,20 @@
+package com.sourcedestination.mqttrpg;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** flight recorder event spanning the delivery of one game event to every listener */
+@Name("mqttrpg.EventPropagated")
+@Label("Event Propagated")
+@Category({"MQTT RPG", "Events"})
+@Description("Delivery of a game event to agents, entities, boards and tiles")
+@Enabled(false)
+@StackTrace(false)
+final class PropagationTrace extends jdk.jfr.Event {
+    @Label("Event Type") String eventType;
+    @Label("Listeners") int listeners;
+}
@@ -0,0 +1,83 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** an interned, typed handle for a property name.
+ * Every property name is assigned a small integer id the first time it is used, so a
+ * {@link PropertyStore} can find values by comparing ints instead of hashing and comparing strings.
+ * Handles for the same name and type are shared; handles for the same name with different types
+ * refer to the same property and differ only in how its value is read.
+ * @param <T> value type of the property
+ */
+public final class PropertyKey<T> {
+    private static final Map<String,Integer> ids = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Map<String, PropertyKey<?>>> handles = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[64];
+
+    private final String name;
+    private final Class<T> type;
+    private final int id;
+
+    private PropertyKey(String name, Class<T> type, int id) {
+        this.name = name;
+        this.type = type;
+        this.id = id;
+    }
+
+    /** returns the interned handle for a property name and value type */
+    @SuppressWarnings("unchecked")
+    public static <T> PropertyKey<T> of(String name, Class<T> type) {
+        var byName = handles.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+        var key = byName.get(name);
+        if(key == null) key = byName.computeIfAbsent(name, n -> new PropertyKey<>(n, type, idOf(n)));
+        return (PropertyKey<T>)key;
+    }
+
+    /** returns the interned handle for a property whose values may have any type */
+    public static PropertyKey<Object> of(String name) { return of(name, Object.class); }
+
+    public static PropertyKey<Integer> intKey(String name) { return of(name, Integer.class); }
+    public static PropertyKey<Long> longKey(String name) { return of(name, Long.class); }
+    public static PropertyKey<Double> doubleKey(String name) { return of(name, Double.class); }
+    public static PropertyKey<Boolean> booleanKey(String name) { return of(name, Boolean.class); }
+    public static PropertyKey<String> stringKey(String name) { return of(name, String.class); }
+
+    /** returns the id interned for a property name, assigning one if the name is new */
+    static int idOf(String name) {
+        var id = ids.get(name);
+        return id != null ? id : register(name);
+    }
+
+    /** returns the id interned for a property name, or -1 if no property of that name was ever set;
+     * unlike {@link #idOf(String)} this never grows the global name table, so reads of arbitrary names are safe
+     */
+    static int find(String name) {
+        var id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    private static synchronized int register(String name) {
+        var id = ids.get(name);
+        if(id != null) return id;
+        id = ids.size();
+        if(id == names.length) names = Arrays.copyOf(names, id * 2);
+        names[id] = name;
+        ids.put(name, id);
+        return id;
+    }
+
+    /** returns the property name interned with the given id */
+    static String nameOf(int id) { return names[id]; }
+
+    public String getName() { return name; }
+
+    public Class<T> getType() { return type; }
+
+    /** interned id shared by all handles with this key's name */
+    public int getId() { return id; }
+
+    @Override
+    public String toString() { return name + ":" + type.getSimpleName(); }
+}
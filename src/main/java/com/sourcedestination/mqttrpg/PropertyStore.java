@@ -0,0 +1,296 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.*;
+
+/** compact storage for the properties of a game object.
+ * Properties are kept in parallel arrays indexed by insertion order and located by their interned
+ * {@link PropertyKey} id. Integer, long, double and boolean values are stored unboxed in a primitive slot
+ * and are only boxed when read through the string-keyed compatibility API ({@link #get(String)} and
+ * {@link #asMap()}). All other values are stored as references.
+ * <p>
+ * All methods are thread safe. Map views are live and weakly consistent, like those of a ConcurrentHashMap.
+ */
+public final class PropertyStore {
+    private static final byte REF = 0, INT = 1, LONG = 2, DOUBLE = 3, BOOLEAN = 4;
+    private static final int[] NO_IDS = new int[0];
+    private static final byte[] NO_KINDS = new byte[0];
+    private static final long[] NO_BITS = new long[0];
+    private static final Object[] NO_REFS = new Object[0];
+
+    private int size;
+    private int[] ids = NO_IDS;
+    private byte[] kinds = NO_KINDS;
+    private long[] bits = NO_BITS;
+    private Object[] refs = NO_REFS;
+
+    public PropertyStore() { }
+
+    public PropertyStore(Map<String,?> properties) {
+        for(var entry : properties.entrySet())
+            put(entry.getKey(), entry.getValue());
+    }
+
+    /** returns a new store holding the same properties */
+    public synchronized PropertyStore copy() {
+        var copy = new PropertyStore();
+        copy.size = size;
+        copy.ids = Arrays.copyOf(ids, size);
+        copy.kinds = Arrays.copyOf(kinds, size);
+        copy.bits = Arrays.copyOf(bits, size);
+        copy.refs = Arrays.copyOf(refs, size);
+        return copy;
+    }
+
+    public synchronized int size() { return size; }
+
+    private int indexOf(int id) {
+        for(int i = 0; i < size; i++)
+            if(ids[i] == id) return i;
+        return -1;
+    }
+
+    /** finds the slot for id, creating it if necessary */
+    private int slotFor(int id) {
+        int i = indexOf(id);
+        if(i >= 0) return i;
+        if(size == ids.length) {
+            int capacity = Math.max(4, size * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            bits = Arrays.copyOf(bits, capacity);
+            refs = Arrays.copyOf(refs, capacity);
+        }
+        ids[size] = id;
+        return size++;
+    }
+
+    private void store(int id, byte kind, long value, Object ref) {
+        int i = slotFor(id);
+        kinds[i] = kind;
+        bits[i] = value;
+        refs[i] = ref;
+    }
+
+    public boolean contains(String name) { return contains(PropertyKey.find(name)); }
+
+    public boolean contains(PropertyKey<?> key) { return contains(key.getId()); }
+
+    private synchronized boolean contains(int id) { return indexOf(id) >= 0; }
+
+    /** returns the value of a property, boxing primitive values, or null if it is not set */
+    public Object get(String name) { return get(PropertyKey.find(name)); }
+
+    private synchronized Object get(int id) {
+        int i = indexOf(id);
+        return i < 0 ? null : box(i);
+    }
+
+    private Object box(int i) {
+        switch(kinds[i]) {
+            case INT: return (int)bits[i];
+            case LONG: return bits[i];
+            case DOUBLE: return Double.longBitsToDouble(bits[i]);
+            case BOOLEAN: return bits[i] != 0;
+            default: return refs[i];
+        }
+    }
+
+    /** returns the value of a property converted to the key's type, or null if it is not set */
+    @SuppressWarnings("unchecked")
+    public <T> T get(PropertyKey<T> key) {
+        var type = key.getType();
+        if(!contains(key)) return null;
+        if(type == Integer.class) return (T)(Integer)getInt(key);
+        if(type == Long.class) return (T)(Long)getLong(key);
+        if(type == Double.class) return (T)(Double)getDouble(key);
+        if(type == Boolean.class) return (T)(Boolean)getBoolean(key);
+        var value = get(key.getId());
+        if(type == String.class && value != null) return (T)value.toString();
+        return type.cast(value);
+    }
+
+    /** returns an int property without boxing.
+     * Values of other numeric kinds are narrowed and strings are parsed.
+     * @throws IllegalArgumentException if the property is not set or cannot be read as an int
+     */
+    public synchronized int getInt(PropertyKey<?> key) {
+        int i = require(key);
+        switch(kinds[i]) {
+            case INT: case LONG: return (int)bits[i];
+            case DOUBLE: return (int)Double.longBitsToDouble(bits[i]);
+            case REF:
+                if(refs[i] instanceof Number) return ((Number)refs[i]).intValue();
+                try { return Integer.parseInt(String.valueOf(refs[i])); }
+                catch(NumberFormatException e) { }
+        }
+        throw new IllegalArgumentException("property " + key.getName() + " does not have type Integer");
+    }
+
+    /** returns a long property without boxing; see {@link #getInt(PropertyKey)} */
+    public synchronized long getLong(PropertyKey<?> key) {
+        int i = require(key);
+        switch(kinds[i]) {
+            case INT: case LONG: return bits[i];
+            case DOUBLE: return (long)Double.longBitsToDouble(bits[i]);
+            case REF:
+                if(refs[i] instanceof Number) return ((Number)refs[i]).longValue();
+                try { return Long.parseLong(String.valueOf(refs[i])); }
+                catch(NumberFormatException e) { }
+        }
+        throw new IllegalArgumentException("property " + key.getName() + " does not have type Long");
+    }
+
+    /** returns a double property without boxing; see {@link #getInt(PropertyKey)} */
+    public synchronized double getDouble(PropertyKey<?> key) {
+        int i = require(key);
+        switch(kinds[i]) {
+            case INT: case LONG: return bits[i];
+            case DOUBLE: return Double.longBitsToDouble(bits[i]);
+            case REF:
+                if(refs[i] instanceof Number) return ((Number)refs[i]).doubleValue();
+                try { return Double.parseDouble(String.valueOf(refs[i])); }
+                catch(NumberFormatException e) { }
+        }
+        throw new IllegalArgumentException("property " + key.getName() + " does not have type Double");
+    }
+
+    /** returns a boolean property without boxing. The strings "true" and "false" are also accepted.
+     * @throws IllegalArgumentException if the property is not set or cannot be read as a boolean
+     */
+    public synchronized boolean getBoolean(PropertyKey<?> key) {
+        int i = require(key);
+        if(kinds[i] == BOOLEAN) return bits[i] != 0;
+        if(kinds[i] == REF) {
+            if(refs[i] instanceof Boolean) return (Boolean)refs[i];
+            if("true".equals(refs[i])) return true;
+            if("false".equals(refs[i])) return false;
+        }
+        throw new IllegalArgumentException("property " + key.getName() + " does not have type Boolean");
+    }
+
+    private int require(PropertyKey<?> key) {
+        int i = indexOf(key.getId());
+        if(i < 0) throw new IllegalArgumentException("no such property " + key.getName());
+        return i;
+    }
+
+    /** sets a property, storing Integer, Long, Double and Boolean values in unboxed form */
+    public void put(String name, Object value) { put(PropertyKey.idOf(name), value); }
+
+    public <T> void put(PropertyKey<T> key, T value) { put(key.getId(), value); }
+
+    private synchronized void put(int id, Object value) {
+        if(value instanceof Integer) store(id, INT, (Integer)value, null);
+        else if(value instanceof Long) store(id, LONG, (Long)value, null);
+        else if(value instanceof Double) store(id, DOUBLE, Double.doubleToRawLongBits((Double)value), null);
+        else if(value instanceof Boolean) store(id, BOOLEAN, (Boolean)value ? 1 : 0, null);
+        else store(id, REF, 0, value);
+    }
+
+    public synchronized void setInt(PropertyKey<?> key, int value) { store(key.getId(), INT, value, null); }
+    public synchronized void setLong(PropertyKey<?> key, long value) { store(key.getId(), LONG, value, null); }
+    public synchronized void setDouble(PropertyKey<?> key, double value) {
+        store(key.getId(), DOUBLE, Double.doubleToRawLongBits(value), null);
+    }
+    public synchronized void setBoolean(PropertyKey<?> key, boolean value) {
+        store(key.getId(), BOOLEAN, value ? 1 : 0, null);
+    }
+
+    /** removes a property, returning whether it was set */
+    public boolean remove(String name) { return remove(PropertyKey.find(name)); }
+
+    private synchronized boolean remove(int id) {
+        int i = indexOf(id);
+        if(i < 0) return false;
+        int tail = size - i - 1;  // shift rather than swap so iteration order is preserved
+        System.arraycopy(ids, i + 1, ids, i, tail);
+        System.arraycopy(kinds, i + 1, kinds, i, tail);
+        System.arraycopy(bits, i + 1, bits, i, tail);
+        System.arraycopy(refs, i + 1, refs, i, tail);
+        refs[--size] = null;
+        return true;
+    }
+
+    /** returns the entry at position i, or null if the store has shrunk below i */
+    private synchronized Map.Entry<String,Object> entryAt(int i) {
+        if(i >= size) return null;
+        return new AbstractMap.SimpleImmutableEntry<>(PropertyKey.nameOf(ids[i]), box(i));
+    }
+
+    /** returns a live, read-only map view of this store */
+    public Map<String,Object> asMap() {
+        return new View(null, null);
+    }
+
+    /** returns a live, read-only map view of this store with one additional fixed entry,
+     * used by objects that report their id as a property.
+     */
+    public Map<String,Object> asMap(String extraKey, Object extraValue) {
+        return new View(extraKey, extraValue);
+    }
+
+    private class View extends AbstractMap<String,Object> {
+        private final String extraKey;
+        private final Object extraValue;
+
+        View(String extraKey, Object extraValue) {
+            this.extraKey = extraKey;
+            this.extraValue = extraValue;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String &&
+                    (key.equals(extraKey) || PropertyStore.this.contains((String)key));
+        }
+
+        @Override
+        public Object get(Object key) {
+            if(!(key instanceof String)) return null;
+            if(key.equals(extraKey)) return extraValue;
+            return PropertyStore.this.get((String)key);
+        }
+
+        @Override
+        public int size() {
+            if(extraKey == null) return PropertyStore.this.size();
+            return PropertyStore.this.size() + (PropertyStore.this.contains(extraKey) ? 0 : 1);
+        }
+
+        @Override
+        public Set<Entry<String,Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override public int size() { return View.this.size(); }
+
+                @Override
+                public Iterator<Entry<String,Object>> iterator() {
+                    return new Iterator<>() {
+                        private int position = extraKey == null ? 0 : -1;
+                        private Entry<String,Object> next = advance();
+
+                        private Entry<String,Object> advance() {
+                            if(position < 0) {
+                                position++;
+                                return new SimpleImmutableEntry<>(extraKey, extraValue);
+                            }
+                            Entry<String,Object> entry;
+                            do entry = entryAt(position++);
+                            while(entry != null && entry.getKey().equals(extraKey));
+                            return entry;
+                        }
+
+                        @Override public boolean hasNext() { return next != null; }
+
+                        @Override
+                        public Entry<String,Object> next() {
+                            if(next == null) throw new NoSuchElementException();
+                            var entry = next;
+                            next = advance();
+                            return entry;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
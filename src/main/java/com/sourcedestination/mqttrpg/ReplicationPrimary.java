@@ -0,0 +1,203 @@
+package com.sourcedestination.mqttrpg;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/** streams a lockstep game to hot-standby {@link GameReplica}s.
+ * A lockstep game is determined by its commands, so instead of its events the primary sends one frame
+ * per tick holding the tick's commands in execution order, numbered by tick, with the resulting state
+ * hash. Actions and timers are replayed by the replicas rather than sent, so frames stay small however
+ * much work a tick does.
+ * <p>
+ * Recent frames are kept so a replica that missed some can catch up; one that fell further behind,
+ * joined late or diverged is sent a {@link GameSnapshot} instead, or told the snapshot was refused while
+ * timers or actions are pending. Replicas join by asking for frames.
+ */
+public class ReplicationPrimary implements AutoCloseable {
+
+    private static final Gson GSON = new Gson();
+
+    private final Game game;
+    private final String nodeId;
+    private final NodeTransport transport;
+    private final int history;
+    private final Set<String> replicas = new ConcurrentSkipListSet<>();
+    private final Queue<String> inbox = new ConcurrentLinkedQueue<>();
+    private final Runnable endOfTick = this::endOfTick;
+
+    private List<AdmissionControl.Pending> commands = List.of();  // commands of the current tick
+    private final ArrayDeque<String> frames = new ArrayDeque<>();  // the last frames sent, oldest first
+    private long firstFrame;  // tick of the oldest kept frame
+
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder framesResent = new LongAdder();
+    private final LongAdder snapshotsSent = new LongAdder();
+    private final LongAdder snapshotsRefused = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+    private final LongAdder requestsDropped = new LongAdder();
+
+    /** @param history number of recent frames kept for replicas catching up */
+    public ReplicationPrimary(Game game, String nodeId, NodeTransport transport, int history) throws IOException {
+        if(!game.isLockstep()) throw new IllegalStateException("only lockstep games can be replicated");
+        if(history < 1) throw new IllegalArgumentException("history must be positive");
+        this.game = game;
+        this.nodeId = nodeId;
+        this.transport = transport;
+        this.history = history;
+        this.firstFrame = game.getTickCount() + 1;
+        game.setCommandRecorder(commands -> this.commands = List.copyOf(commands));
+        game.addTickListener(endOfTick);
+        transport.start(nodeId, inbox::add);
+    }
+
+    /** starts streaming to a replica from the next tick; replicas asking for frames are added automatically */
+    public void addReplica(String replicaId) {
+        replicas.add(replicaId);
+    }
+
+    public void removeReplica(String replicaId) {
+        replicas.remove(replicaId);
+    }
+
+    /** sends the frame of the tick just processed, then answers replicas asking for frames */
+    private void endOfTick() {
+        var frame = encodeFrame(game.getTickCount(), game.getLastTickHash(), commands);
+        commands = List.of();
+        frames.add(frame);
+        if(frames.size() > history) {
+            frames.poll();
+            firstFrame++;
+        }
+        for(var replica : replicas)
+            if(send(replica, frame)) framesSent.increment();
+
+        String message;
+        while((message = inbox.poll()) != null) {
+            try {
+                var request = Command.parseObject(message);
+                if(!"resend".equals(request.get("kind")) || !(request.get("replica") instanceof String)
+                        || !CommandSchema.isSequence(request.get("from")))
+                    throw new InvalidCommandException("malformed resend request");
+                resend((String)request.get("replica"), ((Number)request.get("from")).longValue());
+            } catch(InvalidCommandException e) {
+                requestsDropped.increment();
+            }
+        }
+    }
+
+    /** sends the frames from a tick on, or a snapshot if they are no longer kept */
+    private void resend(String replica, long from) {
+        replicas.add(replica);
+        if(from < firstFrame || from > game.getTickCount() + 1) {
+            var snapshot = new JsonObject();
+            try {
+                snapshot.add("snapshot", GameSnapshot.capture(game).getState());
+                snapshot.addProperty("kind", "snapshot");
+            } catch(IllegalStateException e) {
+                snapshotsRefused.increment();
+                snapshot.addProperty("kind", "refused");
+                snapshot.addProperty("reason", e.getMessage());
+                send(replica, snapshot.toString());
+                return;
+            }
+            if(send(replica, snapshot.toString())) snapshotsSent.increment();
+            return;
+        }
+        long tick = firstFrame;
+        for(var frame : frames) {
+            if(tick++ >= from && send(replica, frame)) framesResent.increment();
+        }
+    }
+
+    private boolean send(String replica, String message) {
+        try {
+            transport.send(replica, message);
+            return true;
+        } catch(IOException e) {
+            sendFailures.increment();
+            return false;
+        }
+    }
+
+    /** writes a frame with a streaming writer; building a JSON tree first doubles the cost on large ticks */
+    static String encodeFrame(long tick, long hash, List<AdmissionControl.Pending> commands) {
+        var out = new StringWriter(64 + 96 * commands.size());
+        try(var writer = new JsonWriter(out)) {
+            writer.beginObject();
+            writer.name("kind").value("frame");
+            writer.name("tick").value(tick);
+            writer.name("hash").value(hash);
+            writer.name("commands").beginArray();
+            for(var pending : commands) {
+                writer.beginObject();
+                writer.name("agent").value(pending.agent.getAgentID());
+                writer.name("role").value(pending.agent.getRole());
+                writer.name("sequence").value(pending.sequence);
+                writer.name("command");
+                writeValue(writer, pending.command.getProperties());
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);  // not thrown by a StringWriter
+        }
+        return out.toString();
+    }
+
+    private static void writeValue(JsonWriter writer, Object value) throws IOException {
+        if(value == null) writer.nullValue();
+        else if(value instanceof String) writer.value((String)value);
+        else if(value instanceof Boolean) writer.value((Boolean)value);
+        else if(value instanceof Number) writer.value((Number)value);
+        else if(value instanceof Map) {
+            writer.beginObject();
+            for(var entry : ((Map<?, ?>)value).entrySet()) {
+                writer.name(String.valueOf(entry.getKey()));
+                writeValue(writer, entry.getValue());
+            }
+            writer.endObject();
+        } else if(value instanceof Iterable) {
+            writer.beginArray();
+            for(var element : (Iterable<?>)value) writeValue(writer, element);
+            writer.endArray();
+        } else {
+            GSON.toJson(GSON.toJsonTree(value), writer);
+        }
+    }
+
+    public String getNodeId() { return nodeId; }
+    public Set<String> getReplicas() { return Set.copyOf(replicas); }
+
+    public long getFramesSent() { return framesSent.sum(); }
+    /** frames sent again to replicas that reported a gap */
+    public long getFramesResent() { return framesResent.sum(); }
+    public long getSnapshotsSent() { return snapshotsSent.sum(); }
+    /** snapshots replicas needed that could not be captured; see {@link GameSnapshot#capture(Game)} */
+    public long getSnapshotsRefused() { return snapshotsRefused.sum(); }
+    /** frames and snapshots the transport refused; replicas recover by asking again */
+    public long getSendFailures() { return sendFailures.sum(); }
+    /** messages from replicas that were not well-formed resend requests */
+    public long getRequestsDropped() { return requestsDropped.sum(); }
+
+    /** stops replicating; replicas keep their state and can be promoted */
+    @Override
+    public void close() {
+        transport.stop(nodeId);
+        game.removeTickListener(endOfTick);
+        game.setCommandRecorder(null);
+    }
+}
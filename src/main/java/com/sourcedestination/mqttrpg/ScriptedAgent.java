@@ -0,0 +1,40 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** an {@link Agent} controlled by code rather than an outside client, for headless simulation.
+ * {@link SimulationRunner} calls {@link #act(long)} once before each tick; implementations issue
+ * commands with {@link #issue(Command)} and handle them in {@link #receiveCommand(Command)} as usual.
+ */
+public abstract class ScriptedAgent extends Agent {
+
+    private final Game game;
+    private final Map<String,Object> properties = new HashMap<>();
+
+    protected ScriptedAgent(Game game, String id, String role) {
+        super(id, role);
+        this.game = game;
+        game.addAgent(this);
+    }
+
+    /** decides what to do during the given tick */
+    public abstract void act(long tick);
+
+    /** queues a command from this agent for the next tick */
+    protected void issue(Command command) {
+        game.addCommand(this, command);
+    }
+
+    @Override
+    public void acceptEvent(Event event) { }
+
+    @Override
+    public Game getGame() { return game; }
+
+    @Override
+    public Map<String,Object> getProperties() { return properties; }
+
+    @Override
+    public void setProperty(String key, Object value) { properties.put(key, value); }
+}
@@ -0,0 +1,442 @@
+package com.sourcedestination.mqttrpg;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/** distributes the boards of one game across several engine nodes.
+ * Every node constructs the same game with all boards, but only simulates entities on the boards it
+ * owns. When {@link Game#moveEntity(Entity, Container)} targets a tile on a board owned by another node,
+ * the entity, its properties and everything it contains are removed here and recreated there, with
+ * the same ids, in a single message. Entity ids are allocated from a disjoint stride per node, so they
+ * stay unique across the game, and commands about an entity are forwarded to the node holding it.
+ * <p>
+ * Incoming messages are applied on the game thread at the end of each tick. Timers owned by a handed
+ * off entity are cancelled, or kept if the handoff fails, and its properties must be representable in JSON.
+ * <p>
+ * A handoff is kept pending until the receiving node acknowledges it. If the receiver refuses it, or no
+ * answer arrives within the {@linkplain #setHandoffTimeout(long) handoff timeout}, the entities are
+ * reinstated where they were. A late acknowledgement of a handoff that already timed out revokes it,
+ * so the receiver removes the entities again.
+ */
+public class ShardCoordinator implements AutoCloseable {
+
+    /** command property holding the id of the entity a command is about, used for routing */
+    public static final String ENTITY = "entity";
+
+    /** forwarded commands chasing an entity that keeps moving are dropped after this many hops */
+    static final int MAX_HOPS = 8;
+
+    private static final Gson GSON = new Gson();
+
+    /** a handoff sent but not yet acknowledged by the receiver */
+    private static final class PendingHandoff {
+        final String target;
+        final List<Entity> order;  // each after its container
+        final Map<Entity, Container> locations;
+        final List<Timer> timers;
+        final Set<Integer> arrived;  // ids that had arrived here from elsewhere before leaving
+        final long sent;
+
+        PendingHandoff(String target, List<Entity> order, Map<Entity, Container> locations,
+                       List<Timer> timers, Set<Integer> arrived, long sent) {
+            this.target = target;
+            this.order = order;
+            this.locations = locations;
+            this.timers = timers;
+            this.arrived = arrived;
+            this.sent = sent;
+        }
+    }
+
+    private final Game game;
+    private final String nodeId;
+    private final NodeTransport transport;
+    private final Map<String, String> boardOwners;
+    private final List<String> nodes;
+    private final Map<String, EntityFactory> factories = new ConcurrentHashMap<>();
+    private final Map<Integer, String> forwarding = new ConcurrentHashMap<>();  // entities that left this node
+    private final Set<Integer> arrived = ConcurrentHashMap.newKeySet();  // entities here created elsewhere
+    private final Queue<String> inbox = new ConcurrentLinkedQueue<>();
+    private final Runnable drain = this::processInbox;
+    private final Map<String, PendingHandoff> pending = new LinkedHashMap<>();  // by handoff id; game thread only
+    private long handoffs;
+    private volatile long handoffTimeout = 5000;
+
+    private final LongAdder handoffsSent = new LongAdder();
+    private final LongAdder handoffsReceived = new LongAdder();
+    private final LongAdder handoffsFailed = new LongAdder();
+    private final LongAdder handoffsRevoked = new LongAdder();
+    private final LongAdder commandsForwarded = new LongAdder();
+    private final LongAdder commandsDropped = new LongAdder();
+    private final LongAdder messagesDropped = new LongAdder();
+
+    /** joins a game to the nodes owning its boards; must be created before the game creates any entities
+     * @param boardOwners id of the node owning each board; boards not listed belong to this node.
+     *                    All nodes must be given the same map, and every node must own at least one board.
+     */
+    public ShardCoordinator(Game game, String nodeId, NodeTransport transport,
+                            Map<String, String> boardOwners) throws IOException {
+        this(game, nodeId, boardOwners.values(), transport, boardOwners);
+    }
+
+    /** joins a game to a set of nodes; must be created before the game creates any entities
+     * @param nodes every node of the game, including this one and nodes owning no boards.
+     *              Entity ids are allocated by position in this set, so all nodes must be given the same set.
+     * @param boardOwners id of the node owning each board; boards not listed belong to this node.
+     *                    All nodes must be given the same map.
+     */
+    public ShardCoordinator(Game game, String nodeId, Collection<String> nodes, NodeTransport transport,
+                            Map<String, String> boardOwners) throws IOException {
+        for(var board : boardOwners.keySet())
+            if(game.getBoard(board) == null) throw new IllegalArgumentException("no board " + board + " in game");
+        var sorted = new TreeSet<>(nodes);
+        if(!sorted.contains(nodeId))
+            throw new IllegalArgumentException("node " + nodeId + " is not among the nodes " + sorted);
+        for(var owner : boardOwners.values())
+            if(!sorted.contains(owner))
+                throw new IllegalArgumentException("board owner " + owner + " is not among the nodes " + sorted);
+        this.game = game;
+        this.nodeId = nodeId;
+        this.transport = transport;
+        this.boardOwners = Map.copyOf(boardOwners);
+        this.nodes = List.copyOf(sorted);
+        game.setEntityIdAllocation(this.nodes.indexOf(nodeId) + 1, this.nodes.size());
+        game.setShardCoordinator(this);
+        game.addTickListener(drain);
+        transport.start(nodeId, inbox::add);
+    }
+
+    /** registers how to recreate entities of a type arriving from other nodes; every node needs the same factories */
+    public void registerType(String type, EntityFactory factory) {
+        factories.put(type, factory);
+    }
+
+    public String getNodeId() { return nodeId; }
+
+    /** game time in milliseconds to wait for a receiver to acknowledge a handoff before the entities are reinstated */
+    public void setHandoffTimeout(long millis) {
+        if(millis <= 0) throw new IllegalArgumentException("handoff timeout must be positive");
+        handoffTimeout = millis;
+    }
+
+    public boolean ownsBoard(Board board) {
+        return nodeId.equals(boardOwners.getOrDefault(board.getID(), nodeId));
+    }
+
+    /** the node believed to hold an entity: where it was last handed to, otherwise the node that created it */
+    public String locate(int entityId) {
+        if(arrived.contains(entityId)) return nodeId;
+        var next = forwarding.get(entityId);
+        return next != null ? next : nodes.get((entityId - 1) % nodes.size());
+    }
+
+    /** queues a command, forwarding it to another node if the entity named by its {@value #ENTITY} property
+     * is held there. Safe to call from any thread.
+     * @throws CommandRejectedException if the command is for a local entity and admission control refused it
+     * @throws InvalidCommandException if the command is for a local entity and its sequence is invalid
+     */
+    public void submitCommand(Agent agent, Command command) throws CommandRejectedException, InvalidCommandException {
+        var target = route(command.getProperties());
+        if(target == null) game.submitCommand(agent, command);
+        else forward(target, agent.getAgentID(), command.getProperties(), 1);
+    }
+
+    /** node to forward a command to, or null if it is handled here */
+    private String route(Map<String, Object> command) {
+        var entity = command == null ? null : command.get(ENTITY);
+        if(!(entity instanceof Number)) return null;
+        var target = locate(((Number)entity).intValue());
+        return target.equals(nodeId) ? null : target;
+    }
+
+    private void forward(String target, String agentId, Map<String, Object> command, int hops) {
+        var message = new JsonObject();
+        message.addProperty("kind", "command");
+        message.addProperty("agent", agentId);
+        message.addProperty("hops", hops);
+        message.add("command", GSON.toJsonTree(command));
+        try {
+            transport.send(target, message.toString());
+            commandsForwarded.increment();
+        } catch(IOException e) {
+            commandsDropped.increment();
+        }
+    }
+
+    /** moves an entity and its contents to the node owning the destination tile; called by the game */
+    void handOff(Entity ent, Tile destination) {
+        if(game.isSpeculating())
+            throw new IllegalStateException("entities cannot be handed off to another node during speculation");
+        var target = boardOwners.get(destination.getBoard().getID());
+
+        // entities in the order they are recreated, each after its container
+        var order = new ArrayList<Entity>();
+        var locations = new HashMap<Entity, Container>();
+        order.add(ent);
+        locations.put(ent, game.getEntityLocation(ent));
+        var entities = new JsonArray();
+        for(int i = 0; i < order.size(); i++) {
+            var next = order.get(i);
+            if(!factories.containsKey(next.getType()))
+                throw new IllegalArgumentException("no factory registered for entity type " + next.getType());
+            var data = GameSnapshot.describe(next);
+            if(next != ent) data.addProperty("container", ((Entity)locations.get(next)).getID());
+            entities.add(data);
+            if(next instanceof Container)
+                game.getContainerContents((Container)next).sorted(Comparator.comparingInt(Entity::getID))
+                        .forEach(contained -> {
+                            order.add(contained);
+                            locations.put(contained, (Container)next);
+                        });
+        }
+        var handoff = nodeId + "-" + ++handoffs;
+        var message = new JsonObject();
+        message.addProperty("kind", "handoff");
+        message.addProperty("handoff", handoff);
+        message.addProperty("from", nodeId);
+        message.addProperty("board", destination.getBoard().getID());
+        message.addProperty("column", destination.getColumn());
+        message.addProperty("row", destination.getRow());
+        message.add("entities", entities);
+
+        // leave this node before the entity can appear on the other one
+        var timers = new ArrayList<Timer>();  // cancelled by removeEntity, scheduled again if the handoff fails
+        for(var leaving : order) timers.addAll(game.getTimers().owned(leaving));
+        var wasArrived = new HashSet<Integer>();
+        for(var leaving : order) if(arrived.contains(leaving.getID())) wasArrived.add(leaving.getID());
+        var record = new PendingHandoff(target, order, locations, timers, wasArrived, game.getGameTime());
+        for(int i = order.size() - 1; i >= 0; i--) game.removeEntity(order.get(i));
+        try {
+            transport.send(target, message.toString());
+        } catch(IOException e) {
+            reinstate(record);
+            return;
+        }
+        pending.put(handoff, record);
+        for(var sent : order) {  // commands follow the entities right away; undone if the handoff fails
+            arrived.remove(sent.getID());
+            forwarding.put(sent.getID(), target);
+        }
+        handoffsSent.increment();
+    }
+
+    /** puts the entities of a failed handoff back where they were */
+    private void reinstate(PendingHandoff handoff) {
+        handoffsFailed.increment();
+        for(var restored : handoff.order) {
+            game.reinstateEntity(restored);
+            game.moveEntity(restored, handoff.locations.get(restored));
+            forwarding.remove(restored.getID());
+            if(handoff.arrived.contains(restored.getID())) arrived.add(restored.getID());
+        }
+        handoff.timers.forEach(game.getTimers()::restore);
+    }
+
+    /** applies messages from other nodes and reinstates handoffs that timed out; called on the game thread
+     * at the end of every tick. Malformed messages and handoffs that cannot be applied are skipped and counted
+     * as dropped; a refused handoff is answered so the sender takes its entities back.
+     */
+    public void processInbox() {
+        String message;
+        while((message = inbox.poll()) != null) {
+            Map<String, Object> parsed = null;
+            try {
+                parsed = Command.parseObject(message);
+                var kind = parsed.get("kind");
+                if("handoff".equals(kind)) receiveHandoff(parsed);
+                else if("command".equals(kind)) receiveCommand(parsed);
+                else if("ack".equals(kind)) receiveAck(parsed);
+                else if("nack".equals(kind)) receiveNack(parsed);
+                else if("revoke".equals(kind)) receiveRevoke(parsed);
+                else throw new InvalidCommandException("unknown message kind " + kind);
+            } catch(InvalidCommandException | RuntimeException e) {  // a bad message must not stop the game loop
+                messagesDropped.increment();
+                if(parsed != null && "handoff".equals(parsed.get("kind"))) answer(parsed, "nack", null);
+            }
+        }
+        long now = game.getGameTime();
+        for(var i = pending.values().iterator(); i.hasNext(); ) {
+            var handoff = i.next();
+            if(now - handoff.sent < handoffTimeout) continue;
+            i.remove();
+            reinstate(handoff);
+        }
+    }
+
+    /** acknowledges or refuses a handoff, if it says where it came from */
+    private void answer(Map<String, Object> handoff, String kind, Collection<Integer> adopted) {
+        if(!(handoff.get("from") instanceof String) || !(handoff.get("handoff") instanceof String)) return;
+        var message = new JsonObject();
+        message.addProperty("kind", kind);
+        message.addProperty("handoff", (String)handoff.get("handoff"));
+        message.addProperty("from", nodeId);
+        if(adopted != null) message.add("entities", GSON.toJsonTree(adopted));
+        try {
+            transport.send((String)handoff.get("from"), message.toString());
+        } catch(IOException e) {
+            // the sender times out; it revokes an acknowledged handoff only if it hears the acknowledgement
+        }
+    }
+
+    private static int whole(Map<String, Object> message, String key) throws InvalidCommandException {
+        var value = message.get(key);
+        if(!(value instanceof Integer)) throw new InvalidCommandException("message field " + key + " must be a whole number");
+        return (Integer)value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void receiveHandoff(Map<String, Object> message) throws InvalidCommandException {
+        var board = message.get("board") instanceof String ? game.getBoard((String)message.get("board")) : null;
+        if(board == null || !ownsBoard(board))
+            throw new InvalidCommandException("handoff to a board not owned here: " + message.get("board"));
+        var tile = board.getTile(whole(message, "column"), whole(message, "row"));
+        if(tile == null) throw new InvalidCommandException("handoff to a missing tile");
+        if(!(message.get("entities") instanceof List)) throw new InvalidCommandException("handoff without entities");
+        var elements = new ArrayList<Map<String, Object>>();
+        var ids = new HashSet<Integer>();
+        for(var element : (List<Object>)message.get("entities")) {
+            if(!(element instanceof Map)) throw new InvalidCommandException("handed off entity must be an object");
+            var data = (Map<String, Object>)element;
+            int id = whole(data, "id");
+            if(!factories.containsKey(data.get("type")))
+                throw new InvalidCommandException("no factory registered for entity type " + data.get("type"));
+            if(data.get("container") != null && !ids.contains(whole(data, "container")))
+                throw new InvalidCommandException("entity " + id + " is held by an entity not handed off before it");
+            if(id <= 0 || game.getEntity(id) != null || !ids.add(id))
+                throw new InvalidCommandException("entity id " + id + " is already in use");
+            elements.add(data);
+        }
+
+        var adopted = new LinkedHashMap<Integer, Entity>();  // in handoff order, for a revoke
+        try(var arrival = game.speculate()) {  // an entity that cannot be recreated leaves none of them behind
+            for(var data : elements) {
+                var ent = GameSnapshot.recreate(game, data, factories);
+                var container = data.get("container") == null ? tile : adopted.get((Integer)data.get("container"));
+                if(!(container instanceof Container))
+                    throw new InvalidCommandException("entity " + ent.getID() + " is held by a non-container");
+                game.moveEntity(ent, (Container)container);
+                adopted.put(ent.getID(), ent);
+            }
+            arrival.commit();
+        }
+        for(int id : adopted.keySet()) {
+            forwarding.remove(id);
+            if(!isOwnId(id)) arrived.add(id);
+        }
+        handoffsReceived.increment();
+        answer(message, "ack", adopted.keySet());
+    }
+
+    private PendingHandoff answered(Map<String, Object> message) throws InvalidCommandException {
+        if(!(message.get("handoff") instanceof String)) throw new InvalidCommandException("answer without handoff id");
+        return pending.remove((String)message.get("handoff"));
+    }
+
+    private void receiveAck(Map<String, Object> message) throws InvalidCommandException {
+        if(answered(message) != null) return;
+        // the handoff timed out and its entities were reinstated here, so the receiver must drop its copies
+        if(!(message.get("from") instanceof String) || !(message.get("entities") instanceof List))
+            throw new InvalidCommandException("late acknowledgement without sender or entities");
+        var revoke = new JsonObject();
+        revoke.addProperty("kind", "revoke");
+        revoke.addProperty("from", nodeId);
+        revoke.add("entities", GSON.toJsonTree(message.get("entities")));
+        try {
+            transport.send((String)message.get("from"), revoke.toString());
+        } catch(IOException e) {
+            messagesDropped.increment();
+        }
+    }
+
+    private void receiveNack(Map<String, Object> message) throws InvalidCommandException {
+        var handoff = answered(message);
+        if(handoff != null) reinstate(handoff);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void receiveRevoke(Map<String, Object> message) throws InvalidCommandException {
+        if(!(message.get("entities") instanceof List) || !(message.get("from") instanceof String))
+            throw new InvalidCommandException("revoke without entities or sender");
+        var ids = new ArrayList<Integer>();
+        for(var id : (List<Object>)message.get("entities")) {
+            if(!(id instanceof Integer)) throw new InvalidCommandException("revoked entity id must be a whole number");
+            ids.add((Integer)id);
+        }
+        for(int i = ids.size() - 1; i >= 0; i--) {  // contents before their containers
+            var ent = game.getEntity(ids.get(i));
+            if(ent == null || !arrived.contains(ent.getID()) && !isOwnId(ent.getID())) continue;
+            game.removeEntity(ent);
+            arrived.remove(ent.getID());
+            forwarding.put(ent.getID(), (String)message.get("from"));
+        }
+        handoffsRevoked.increment();
+    }
+
+    private boolean isOwnId(int id) {
+        return nodes.get((id - 1) % nodes.size()).equals(nodeId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void receiveCommand(Map<String, Object> message) throws InvalidCommandException {
+        if(!(message.get("command") instanceof Map) || !(message.get("agent") instanceof String))
+            throw new InvalidCommandException("forwarded command without command or agent");
+        var command = (Map<String, Object>)message.get("command");
+        var agentId = (String)message.get("agent");
+        int hops = whole(message, "hops");
+        var target = route(command);
+        if(target != null) {
+            if(hops < MAX_HOPS) forward(target, agentId, command, hops + 1);
+            else commandsDropped.increment();
+            return;
+        }
+        var agent = game.getAgent(agentId);
+        if(agent == null) {
+            commandsDropped.increment();
+            return;
+        }
+        try {
+            game.submitCommand(agent, new Command(game, command));
+        } catch(CommandRejectedException | InvalidCommandException e) {
+            commandsDropped.increment();
+        }
+    }
+
+    public long getHandoffsSent() { return handoffsSent.sum(); }
+    public long getHandoffsReceived() { return handoffsReceived.sum(); }
+    /** handoffs the transport or the receiver refused, or that timed out; the entities stay where they were */
+    public long getHandoffsFailed() { return handoffsFailed.sum(); }
+    /** handoffs received here and taken back because their acknowledgement arrived after the sender gave up */
+    public long getHandoffsRevoked() { return handoffsRevoked.sum(); }
+    /** handoffs sent and not yet acknowledged or refused */
+    public int getPendingHandoffs() { return pending.size(); }
+    public long getCommandsForwarded() { return commandsForwarded.sum(); }
+    /** forwarded commands that could not be sent, chased their entity too long, or were refused on arrival */
+    public long getCommandsDropped() { return commandsDropped.sum(); }
+    /** messages from other nodes that were malformed or could not be applied */
+    public long getMessagesDropped() { return messagesDropped.sum(); }
+
+    /** leaves the game to run on its own; entities already handed off stay on their nodes */
+    @Override
+    public void close() {
+        transport.stop(nodeId);
+        game.removeTickListener(drain);
+        game.setShardCoordinator(null);
+    }
+}
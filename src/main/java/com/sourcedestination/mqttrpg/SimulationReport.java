@@ -0,0 +1,71 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** aggregate results of a batch run by {@link SimulationRunner} */
+public class SimulationReport {
+
+    private final List<SimulationRunner.GameOutcome> outcomes;
+    private final long wallNanos;
+
+    SimulationReport(List<SimulationRunner.GameOutcome> outcomes, long wallNanos) {
+        this.outcomes = outcomes;
+        this.wallNanos = wallNanos;
+    }
+
+    /** outcomes in seed order */
+    public List<SimulationRunner.GameOutcome> getOutcomes() { return outcomes; }
+
+    public int getGames() { return outcomes.size(); }
+
+    public long getWallNanos() { return wallNanos; }
+
+    public long getTotalTicks() {
+        return outcomes.stream().mapToLong(SimulationRunner.GameOutcome::getTicks).sum();
+    }
+
+    public long getFailures() {
+        return outcomes.stream().filter(o -> o.getFailure() != null).count();
+    }
+
+    /** games completed per second of wall-clock time */
+    public double getGamesPerSecond() {
+        return outcomes.size() / (wallNanos / 1e9);
+    }
+
+    public double getTicksPerSecond() {
+        return getTotalTicks() / (wallNanos / 1e9);
+    }
+
+    /** summary of a numeric per-game statistic across all games reporting it */
+    public DoubleSummaryStatistics getStatistic(String name) {
+        var stats = new DoubleSummaryStatistics();
+        for(var outcome : outcomes) {
+            var value = outcome.getStatistics().get(name);
+            if(value instanceof Number) stats.accept(((Number)value).doubleValue());
+            else if(value != null) stats.accept(Double.parseDouble(value.toString()));
+        }
+        return stats;
+    }
+
+    /** summaries of every statistic reported by any game, by name */
+    public Map<String, DoubleSummaryStatistics> getStatistics() {
+        var all = new TreeMap<String, DoubleSummaryStatistics>();
+        for(var outcome : outcomes)
+            for(var name : outcome.getStatistics().keySet())
+                all.computeIfAbsent(name, this::getStatistic);
+        return all;
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder(String.format("%d games, %d ticks in %.2fs: %.1f games/s, %.0f ticks/s, %d failures",
+                getGames(), getTotalTicks(), wallNanos / 1e9, getGamesPerSecond(), getTicksPerSecond(), getFailures()));
+        getStatistics().forEach((name, s) -> sb.append(String.format("%n  %s: min %.2f avg %.2f max %.2f",
+                name, s.getMin(), s.getAverage(), s.getMax())));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,144 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/** runs many games headless and as fast as the CPU allows.
+ * Each game runs in lockstep mode with a virtual {@link TickClock}, so game time is independent of
+ * how long a tick takes and a game can be replayed exactly from its seed. Games run in parallel on a
+ * fixed pool of threads; a single game is only ever touched by one thread.
+ */
+public class SimulationRunner {
+
+    /** creates a game, including its boards and scripted agents, for the given seed */
+    @FunctionalInterface
+    public interface GameFactory {
+        Game create(long seed);
+    }
+
+    private final GameFactory factory;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long maxTicks = 10_000;
+    private long millisPerTick = 100;
+    private Function<Game, Map<String,Object>> statistics = game -> Map.of();
+
+    public SimulationRunner(GameFactory factory) {
+        this.factory = factory;
+    }
+
+    /** number of games simulated concurrently (defaults to the number of cores) */
+    public SimulationRunner threads(int threads) {
+        if(threads < 1) throw new IllegalArgumentException("threads must be positive");
+        this.threads = threads;
+        return this;
+    }
+
+    /** ends a game after this many ticks even if it is still alive */
+    public SimulationRunner maxTicks(long maxTicks) {
+        this.maxTicks = maxTicks;
+        return this;
+    }
+
+    /** amount of game time each tick represents */
+    public SimulationRunner millisPerTick(long millisPerTick) {
+        this.millisPerTick = millisPerTick;
+        return this;
+    }
+
+    /** extracts per-game outcome statistics once a game ends */
+    public SimulationRunner statistics(Function<Game, Map<String,Object>> statistics) {
+        this.statistics = statistics;
+        return this;
+    }
+
+    /** simulates a single game to completion on the calling thread */
+    public GameOutcome runGame(long seed) {
+        long start = System.nanoTime();
+        Game game = null;
+        try {
+            game = factory.create(seed);
+            game.setLockstep(seed, millisPerTick);
+            var agents = new ArrayList<ScriptedAgent>();
+            game.getAllAgents()
+                    .filter(agent -> agent instanceof ScriptedAgent)
+                    .forEach(agent -> agents.add((ScriptedAgent)agent));
+            agents.sort((a, b) -> a.getAgentID().compareTo(b.getAgentID()));
+            while(game.getTickCount() < maxTicks && game.checkGameAlive()) {
+                long tick = game.getTickCount();
+                for(var agent : agents) agent.act(tick);
+                game.tick();
+            }
+            return new GameOutcome(seed, game.getTickCount(), game.getGameTime(), !game.checkGameAlive(),
+                    game.getStateHash(), System.nanoTime() - start, statistics.apply(game), null);
+        } catch(RuntimeException e) {
+            return new GameOutcome(seed, game == null ? 0 : game.getTickCount(),
+                    game == null ? 0 : game.getGameTime(), false, 0,
+                    System.nanoTime() - start, Map.of(), e);
+        }
+    }
+
+    /** simulates games with seeds baseSeed, baseSeed+1, ... in parallel and waits for all of them */
+    public SimulationReport run(int games, long baseSeed) {
+        var pool = Executors.newFixedThreadPool(threads, r -> {
+            var thread = new Thread(r, "simulation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        try {
+            var futures = new ArrayList<Future<GameOutcome>>(games);
+            for(int i = 0; i < games; i++) {
+                long seed = baseSeed + i;
+                futures.add(pool.submit(() -> runGame(seed)));
+            }
+            var outcomes = new ArrayList<GameOutcome>(games);
+            for(var future : futures) outcomes.add(future.get());
+            return new SimulationReport(Collections.unmodifiableList(outcomes), System.nanoTime() - start);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("simulation interrupted", e);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("simulation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** result of one simulated game */
+    public static final class GameOutcome {
+        private final long seed, ticks, gameTime, stateHash, wallNanos;
+        private final boolean finished;
+        private final Map<String,Object> statistics;
+        private final RuntimeException failure;
+
+        GameOutcome(long seed, long ticks, long gameTime, boolean finished, long stateHash,
+                    long wallNanos, Map<String,Object> statistics, RuntimeException failure) {
+            this.seed = seed;
+            this.ticks = ticks;
+            this.gameTime = gameTime;
+            this.finished = finished;
+            this.stateHash = stateHash;
+            this.wallNanos = wallNanos;
+            this.statistics = statistics;
+            this.failure = failure;
+        }
+
+        public long getSeed() { return seed; }
+        public long getTicks() { return ticks; }
+        public long getGameTime() { return gameTime; }
+        /** true if the game ended on its own rather than by reaching the tick limit */
+        public boolean isFinished() { return finished; }
+        /** final state hash, identical across runs with the same seed */
+        public long getStateHash() { return stateHash; }
+        public long getWallNanos() { return wallNanos; }
+        public Map<String,Object> getStatistics() { return statistics; }
+        /** exception thrown by the game, or null */
+        public RuntimeException getFailure() { return failure; }
+    }
+}
@@ -0,0 +1,13 @@
+package com.sourcedestination.mqttrpg;
+
+/** what an {@link OutboundQueue} does when an agent's connection falls behind and the queue is full */
+public enum SlowConsumerPolicy {
+    /** discard the oldest pending event to make room */
+    DROP_OLDEST,
+    /** replace a pending event about the same entity or tile with the newer one; drop the oldest if none matches */
+    COALESCE,
+    /** discard everything pending and have the connection resynchronize the client from a snapshot */
+    RESYNC,
+    /** discard everything pending and close the connection */
+    DISCONNECT
+}
@@ -0,0 +1,76 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.List;
+
+/** a speculative branch of a game, started with {@link Game#speculate()}.
+ * Typical use in a search:
+ * <pre>
+ * try(var s = game.speculate()) {
+ *     box.push(player).accept(game);
+ *     score = evaluate(game);
+ * } // changes are rolled back here
+ * </pre>
+ */
+public class Speculation implements AutoCloseable {
+    private final Game game;
+    private final EventListener listener;
+    private boolean active = true;
+
+    // game state captured when the speculation began
+    final int mark, eventMark;  // journal entries and held events before the speculation began
+    final int nextEntityID, nextEventID;
+    final long randomState, tickCount, clockTick;
+    final List<Action> actions;
+    final List<AdmissionControl.Pending> commands;
+
+    Speculation(Game game, EventListener listener, int mark, int eventMark, int nextEntityID, int nextEventID,
+                long randomState, long tickCount, long clockTick, List<Action> actions, List<AdmissionControl.Pending> commands) {
+        this.game = game;
+        this.listener = listener;
+        this.mark = mark;
+        this.eventMark = eventMark;
+        this.nextEntityID = nextEntityID;
+        this.nextEventID = nextEventID;
+        this.randomState = randomState;
+        this.tickCount = tickCount;
+        this.clockTick = clockTick;
+        this.actions = actions;
+        this.commands = commands;
+    }
+
+    public Game getGame() { return game; }
+
+    /** listener receiving events raised during this speculation, or null if they are discarded */
+    public EventListener getListener() { return listener; }
+
+    public boolean isActive() { return active; }
+
+    /** undoes all changes made so far but stays active, so another branch can be explored */
+    public void rollback() {
+        checkActive();
+        game.rollback(this);
+    }
+
+    /** ends the speculation and keeps its changes.
+     * If this speculation is nested, an enclosing rollback still undoes them; otherwise listeners now
+     * receive the events of the changes.
+     */
+    public void commit() {
+        checkActive();
+        active = false;
+        game.end(this);
+    }
+
+    /** rolls back and ends the speculation unless it was committed */
+    @Override
+    public void close() {
+        if(!active) return;
+        game.rollback(this);
+        active = false;
+        game.end(this);
+    }
+
+    private void checkActive() {
+        if(!active) throw new IllegalStateException("speculation has ended");
+    }
+}
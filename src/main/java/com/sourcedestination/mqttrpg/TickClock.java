@@ -0,0 +1,25 @@
+package com.sourcedestination.mqttrpg;
+
+/** deterministic {@link GameClock} advancing a fixed step per tick, independent of the wall clock */
+public class TickClock implements GameClock {
+    private final long millisPerTick;
+    private volatile long tick;
+
+    public TickClock(long millisPerTick) {
+        if(millisPerTick <= 0) throw new IllegalArgumentException("millisPerTick must be positive");
+        this.millisPerTick = millisPerTick;
+    }
+
+    @Override
+    public long getTime() { return tick * millisPerTick; }
+
+    @Override
+    public void tick() { tick++; }
+
+    public long getTick() { return tick; }
+
+    /** restores the clock, e.g. from a snapshot */
+    public void setTick(long tick) { this.tick = tick; }
+
+    public long getMillisPerTick() { return millisPerTick; }
+}
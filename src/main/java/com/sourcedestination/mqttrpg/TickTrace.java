@@ -0,0 +1,22 @@
+package com.sourcedestination.mqttrpg;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** flight recorder event spanning one {@link Game#tick()} */
+@Name("mqttrpg.Tick")
+@Label("Game Tick")
+@Category({"MQTT RPG", "Game Loop"})
+@Description("Processing of queued commands, due timers and queued actions for one tick")
+@Enabled(false)
+@StackTrace(false)
+final class TickTrace extends jdk.jfr.Event {
+    @Label("Game") String game;
+    @Label("Tick") long tick;
+    @Label("Commands") int commands;
+    @Label("Actions") int actions;
+}
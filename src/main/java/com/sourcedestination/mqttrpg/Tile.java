@@ -3,9 +3,9 @@ package com.sourcedestination.mqttrpg;
 import com.google.gson.GsonBuilder;
 import net.sourcedestination.funcles.function.Function2;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 
 /** Represents spaces on the {@link Board} that contain entities */
@@ -15,7 +15,8 @@ public class Tile implements Container {
 	final char character;
 	private Board board;
 	private final String type;
-	private final Map<String,Object> properties;
+	private final PropertyStore properties;
+	private final Map<String,Object> propertiesView;
 
 	public static Function2<Integer,Integer,Tile> getGenerator(char character,
 															   String type,
@@ -31,7 +32,8 @@ public class Tile implements Container {
 		this.column = column;
 		this.type = type;
 		this.character = character;
-		this.properties = new ConcurrentHashMap<>(properties);
+		this.properties = new PropertyStore(properties);
+		this.propertiesView = this.properties.asMap();
 	}
 
 	/** row placement of the tile on the board */
@@ -57,16 +59,48 @@ public class Tile implements Container {
 	 */
 	public Board getBoard() { return board;}
 
+	/** returns a read-only view of this tile's properties */
 	@Override
 	public Map<String,Object> getProperties() {
+		var written = writtenProperties();
+		if(written != null) {
+			var merged = new HashMap<>(propertiesView);
+			merged.putAll(written);
+			return Collections.unmodifiableMap(merged);
+		}
+		return propertiesView;
+	}
+
+	@Override
+	public PropertyStore getPropertyStore() {
+		var written = writtenProperties();
+		if(written != null) {
+			var merged = properties.copy();
+			written.forEach(merged::put);
+			return merged;
+		}
 		return properties;
 	}
 
+	/** properties written by the action transaction running on this thread, if any */
+	private Map<String,Object> writtenProperties() {
+		var game = getGame();
+		var txn = game == null ? null : game.transaction();
+		return txn == null ? null : txn.writtenProperties(this);
+	}
+
 	@Override
 	public void setProperty(String key, Object value) {
+		var txn = getGame() == null ? null : getGame().transaction();
+		if(txn != null) {
+			txn.setProperty(this, key, value);
+			return;
+		}
+		if(getGame() != null) getGame().journalProperty(this, key);
 		properties.put(key, value);
+		if(board != null) board.tileModified(this);
 		if(getGame() != null)
-			board.getGame().propagateEvent(tileStatusUpdateEvent());
+			board.getGame().tilePropertyChanged(this);
 	}
 
 	// added to avoid circular references in spring config
@@ -86,17 +120,12 @@ public class Tile implements Container {
 		m.put("column", getColumn());
 		m.put("board", getBoard().getID());
 		m.put("type", type);
-		m.put("properties", properties);
+		m.put("properties", propertiesView);
 		return gson.toJson(m);
 	}
 
 	public Event tileStatusUpdateEvent() {
-		return new Event(getGame(), "tile-status-update",
-				Map.of(
-						"board", getBoard().getID(),
-						"row", row+"",
-						"column", column+""
-				));
+		return new TileStatusUpdateEvent(this);
 	}
 
 }
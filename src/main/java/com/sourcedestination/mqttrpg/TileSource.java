@@ -0,0 +1,62 @@
+package com.sourcedestination.mqttrpg;
+
+import net.sourcedestination.funcles.function.Function2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+/** supplies the tiles of a {@link ChunkedBoard} on demand.
+ * A source describes a fixed-size grid; cells may be blank, in which case no tile is generated.
+ * Sources backed by files hold them open until closed, which closing the board does.
+ */
+public interface TileSource extends Closeable {
+
+    /** number of columns in the grid */
+    public int getWidth();
+
+    /** number of rows in the grid */
+    public int getHeight();
+
+    /** generates the tile at the given location
+     * @return the new tile, or null if the cell is blank
+     */
+    public Tile generateTile(int column, int row);
+
+    /** generates all tiles in a rectangular region, storing them row by row in out.
+     * Sources backed by files should override this to read the region in bulk.
+     * @param column leftmost column of the region
+     * @param row topmost row of the region
+     * @param width number of columns in the region
+     * @param height number of rows in the region
+     * @param out array of at least width*height entries; blank cells are set to null
+     */
+    public default void generateRegion(int column, int row, int width, int height, Tile[] out) {
+        for(int r = 0; r < height; r++)
+            for(int c = 0; c < width; c++)
+                out[r*width + c] = generateTile(column + c, row + r);
+    }
+
+    /** releases resources held by the source; sources not backed by files hold none */
+    @Override
+    public default void close() throws IOException { }
+
+    /** creates a source that calls generator for every cell of a width x height grid */
+    public static TileSource fromGenerator(int width, int height, Function2<Integer,Integer,Tile> generator) {
+        return new TileSource() {
+            @Override public int getWidth() { return width; }
+            @Override public int getHeight() { return height; }
+            @Override public Tile generateTile(int column, int row) { return generator.apply(column, row); }
+        };
+    }
+
+    /** creates a source that reads a char map text file (one byte per cell, one line per row)
+     * without loading it into memory. See {@link CharMapTileSource}.
+     */
+    public static TileSource fromCharMap(Path mapFile,
+                                         Map<Character, Function2<Integer,Integer,Tile>> tileGenerators)
+            throws IOException {
+        return new CharMapTileSource(mapFile, tileGenerators);
+    }
+}
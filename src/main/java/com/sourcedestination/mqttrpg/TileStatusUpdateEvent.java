@@ -0,0 +1,39 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/** published when a tile's properties change; the board, row and column properties are built on demand */
+public class TileStatusUpdateEvent extends Event {
+    private Tile tile;
+
+    public TileStatusUpdateEvent(Tile tile) {
+        super(tile.getGame(), "tile-status-update");
+        this.tile = tile;
+    }
+
+    /** reuses a pooled event for another update */
+    TileStatusUpdateEvent reuse(Tile tile) {
+        recycle();
+        this.tile = tile;
+        return this;
+    }
+
+    @Override
+    public Optional<Tile> getTile(String prefix) {
+        return prefix.isEmpty() ? Optional.of(tile) : super.getTile(prefix);
+    }
+
+    @Override
+    public Stream<HasProperties> getUpdatedStates() {
+        return Stream.of(tile);
+    }
+
+    @Override
+    protected void addProperties(Map<String,Object> m) {
+        m.put("board", tile.getBoard().getID());
+        m.put("row", tile.getRow());
+        m.put("column", tile.getColumn());
+    }
+}
@@ -0,0 +1,47 @@
+package com.sourcedestination.mqttrpg;
+
+/** handle for an {@link Action} scheduled on a {@link TimerWheel} */
+public final class Timer {
+    final TimerWheel wheel;
+    final Action action;
+    final long period;      // milliseconds between runs, or 0 for a one-shot timer
+    final Entity owner;     // timer is cancelled when this entity is removed, may be null
+    long dueTime;           // game time of the next run
+    long sequence;          // orders timers due at the same time by when they were scheduled
+
+    // slot list links
+    Timer prev, next;
+    int level, slot;
+    boolean scheduled;      // true while the timer is in a slot
+
+    // owner list links
+    Timer prevOwned, nextOwned;
+
+    Timer(TimerWheel wheel, Action action, long dueTime, long period, Entity owner) {
+        this.wheel = wheel;
+        this.action = action;
+        this.dueTime = dueTime;
+        this.period = period;
+        this.owner = owner;
+    }
+
+    /** stops the timer; has no effect if it already ran (one-shot) or was cancelled */
+    public void cancel() {
+        wheel.cancel(this);
+    }
+
+    /** true until a one-shot timer runs or any timer is cancelled */
+    public boolean isPending() { return scheduled; }
+
+    public boolean isPeriodic() { return period > 0; }
+
+    /** game time at which the timer next runs */
+    public long getDueTime() { return dueTime; }
+
+    public long getPeriod() { return period; }
+
+    /** entity whose removal cancels this timer, or null */
+    public Entity getOwner() { return owner; }
+
+    public Action getAction() { return action; }
+}
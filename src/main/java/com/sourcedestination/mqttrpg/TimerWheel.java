@@ -0,0 +1,265 @@
+package com.sourcedestination.mqttrpg;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/** hierarchical timing wheel scheduling {@link Action}s by game time.
+ * Time is divided into ticks of a fixed resolution. Four levels of 64 slots cover 2^24 ticks; timers
+ * further out wait in the last slot of the top level and are placed again as they come closer. Each
+ * slot is an intrusive doubly linked list, so scheduling and cancelling are O(1) and advancing costs
+ * one slot visit per elapsed tick plus the timers that cascade down or fire.
+ * <p>
+ * Timers may be tied to an {@link Entity}; {@link #cancelAll(Entity)} cancels all of them in time
+ * proportional to their number. Not thread safe; used from the game loop.
+ */
+public class TimerWheel {
+    private static final int BITS = 6, SLOTS = 1 << BITS, MASK = SLOTS - 1, LEVELS = 4;
+    private static final int OVERDUE = LEVELS;  // pseudo level holding timers already due
+
+    private final long resolution;
+    private final Timer[][] slots = new Timer[LEVELS + 1][SLOTS];
+    private final Map<Entity, Timer> owned = new IdentityHashMap<>();  // head of each owner's list
+    private long current;   // last tick processed
+    private long sequence;
+    private int size;
+    private Map<Timer, Long> touched;  // due times before the running advance, while it is journaled
+
+    /** @param resolution milliseconds of game time per wheel tick */
+    public TimerWheel(long resolution, long now) {
+        if(resolution <= 0) throw new IllegalArgumentException("resolution must be positive");
+        this.resolution = resolution;
+        this.current = Math.floorDiv(now, resolution);
+    }
+
+    public long getResolution() { return resolution; }
+
+    /** number of pending timers */
+    public int size() { return size; }
+
+    /** schedules an action to run once at the given game time */
+    public Timer schedule(Action action, long dueTime, Entity owner) {
+        return add(new Timer(this, action, dueTime, 0, owner));
+    }
+
+    /** schedules an action to run at the given game time and every period milliseconds after */
+    public Timer scheduleAtFixedRate(Action action, long dueTime, long period, Entity owner) {
+        if(period <= 0) throw new IllegalArgumentException("period must be positive");
+        return add(new Timer(this, action, dueTime, period, owner));
+    }
+
+    private Timer add(Timer timer) {
+        timer.sequence = sequence++;
+        insert(timer);
+        linkOwned(timer);
+        size++;
+        return timer;
+    }
+
+    private void linkOwned(Timer timer) {
+        if(timer.owner == null) return;
+        var head = owned.put(timer.owner, timer);
+        timer.nextOwned = head;
+        if(head != null) head.prevOwned = timer;
+    }
+
+    /** puts a timer in the slot for its due time relative to the current tick */
+    private void insert(Timer timer) {
+        long due = Math.floorDiv(timer.dueTime + resolution - 1, resolution);  // round up
+        long delta = due - current;
+        int level, slot;
+        if(delta <= 0) {
+            level = OVERDUE;
+            slot = 0;
+        } else if(delta < 1L << BITS) {
+            level = 0;
+            slot = (int)(due & MASK);
+        } else if(delta < 1L << 2 * BITS) {
+            level = 1;
+            slot = (int)((due >> BITS) & MASK);
+        } else if(delta < 1L << 3 * BITS) {
+            level = 2;
+            slot = (int)((due >> 2 * BITS) & MASK);
+        } else {
+            level = 3;
+            if(delta >= 1L << 4 * BITS) due = current + (1L << 4 * BITS) - 1;  // placed again when it cascades
+            slot = (int)((due >> 3 * BITS) & MASK);
+        }
+        timer.level = level;
+        timer.slot = slot;
+        var head = slots[level][slot];
+        timer.prev = null;
+        timer.next = head;
+        if(head != null) head.prev = timer;
+        slots[level][slot] = timer;
+        timer.scheduled = true;
+    }
+
+    private void unlink(Timer timer) {
+        if(timer.prev != null) timer.prev.next = timer.next;
+        else slots[timer.level][timer.slot] = timer.next;
+        if(timer.next != null) timer.next.prev = timer.prev;
+        timer.prev = timer.next = null;
+        timer.scheduled = false;
+    }
+
+    private void unlinkOwned(Timer timer) {
+        if(timer.owner == null) return;
+        if(timer.prevOwned != null) timer.prevOwned.nextOwned = timer.nextOwned;
+        else if(timer.nextOwned != null) owned.put(timer.owner, timer.nextOwned);
+        else owned.remove(timer.owner);
+        if(timer.nextOwned != null) timer.nextOwned.prevOwned = timer.prevOwned;
+        timer.prevOwned = timer.nextOwned = null;
+    }
+
+    /** cancels a pending timer */
+    public void cancel(Timer timer) {
+        if(timer.wheel != this) throw new IllegalArgumentException("timer belongs to another wheel");
+        if(!timer.scheduled) return;
+        unlink(timer);
+        unlinkOwned(timer);
+        size--;
+    }
+
+    /** cancels every pending timer owned by an entity, returning them */
+    public List<Timer> cancelAll(Entity owner) {
+        var cancelled = owned(owner);
+        for(var timer : cancelled) cancel(timer);
+        return cancelled;
+    }
+
+    /** pending timers owned by an entity */
+    List<Timer> owned(Entity owner) {
+        var timers = new ArrayList<Timer>();
+        for(var timer = owned.get(owner); timer != null; timer = timer.nextOwned) timers.add(timer);
+        return timers;
+    }
+
+    /** schedules a cancelled timer again with its previous due time */
+    void restore(Timer timer) {
+        if(!timer.scheduled) add(timer);
+    }
+
+    /** advances to the given game time, returning the actions due, ordered by due time and scheduling order.
+     * Periodic timers are rescheduled for their next run. A periodic timer runs at most once per call;
+     * runs it missed are made up on the following calls.
+     */
+    public List<Action> advance(long now) {
+        return advance(now, null);
+    }
+
+    /** advances like {@link #advance(long)}, passing journal a step that puts the wheel back as it was,
+     * e.g. when a speculation that advanced it is rolled back. The step only covers the timers this call
+     * moves or fires, so it costs time proportional to them rather than to every pending timer.
+     * @param journal receives the undo step, or null if the advance will not be undone
+     */
+    List<Action> advance(long now, Consumer<Runnable> journal) {
+        if(journal != null) touched = new IdentityHashMap<>();
+        long savedCurrent = current;
+        long target = Math.floorDiv(now, resolution);
+        var due = new ArrayList<Timer>();
+        drain(OVERDUE, 0, due);
+        while(current < target) {
+            if(size == due.size()) {  // nothing else pending, skip ahead
+                current = target;
+                break;
+            }
+            current++;
+            int index = (int)(current & MASK);
+            if(index == 0) {
+                cascade(1);
+                drain(OVERDUE, 0, due);  // cascaded timers due exactly now
+            }
+            drain(0, index, due);
+        }
+        if(journal != null) {
+            if(current != savedCurrent || !touched.isEmpty()) journal.accept(undoAdvance(savedCurrent, touched));
+            touched = null;
+        }
+        if(due.isEmpty()) return List.of();
+        due.sort(Comparator.comparingLong((Timer t) -> t.dueTime).thenComparingLong(t -> t.sequence));
+        var actions = new ArrayList<Action>(due.size());
+        for(var timer : due) {
+            actions.add(timer.action);
+            if(timer.period > 0) {
+                timer.dueTime += timer.period;
+                insert(timer);
+            } else {
+                unlinkOwned(timer);
+                size--;
+            }
+        }
+        return actions;
+    }
+
+    /** notes a timer's due time before advance first moves or fires it */
+    private void touch(Timer timer) {
+        if(touched != null) touched.putIfAbsent(timer, timer.dueTime);
+    }
+
+    /** puts the timers an advance moved or fired back in their slots for the tick it started from.
+     * All of them were pending before the advance; those no longer pending ran or were cancelled since.
+     */
+    private Runnable undoAdvance(long savedCurrent, Map<Timer, Long> dueTimes) {
+        return () -> {
+            for(var timer : dueTimes.keySet()) {
+                if(timer.scheduled) {
+                    unlink(timer);
+                } else {
+                    linkOwned(timer);
+                    size++;
+                }
+            }
+            current = savedCurrent;
+            dueTimes.forEach((timer, dueTime) -> {
+                timer.dueTime = dueTime;
+                insert(timer);
+            });
+        };
+    }
+
+    /** moves timers from the current slot of a level down to lower levels */
+    private void cascade(int level) {
+        if(level >= LEVELS) return;
+        int index = (int)((current >> level * BITS) & MASK);
+        if(index == 0) cascade(level + 1);
+        var timer = slots[level][index];
+        slots[level][index] = null;
+        while(timer != null) {
+            var next = timer.next;
+            touch(timer);
+            insert(timer);
+            timer = next;
+        }
+    }
+
+    private void drain(int level, int index, List<Timer> due) {
+        var timer = slots[level][index];
+        slots[level][index] = null;
+        while(timer != null) {
+            var next = timer.next;
+            touch(timer);
+            timer.prev = timer.next = null;
+            timer.scheduled = false;
+            due.add(timer);
+            timer = next;
+        }
+    }
+
+    /** moves the wheel to a new time base, keeping the remaining delay of every pending timer.
+     * Used when the game switches clocks.
+     */
+    public void rebase(long now) {
+        long shift = now - current * resolution;
+        var pending = new ArrayList<Timer>(size);
+        for(var level : slots)
+            for(int i = 0; i < SLOTS; i++) {
+                for(var timer = level[i]; timer != null; timer = timer.next) pending.add(timer);
+                level[i] = null;
+            }
+        current = Math.floorDiv(now, resolution);
+        for(var timer : pending) {
+            timer.dueTime += shift;
+            insert(timer);
+        }
+    }
+}
@@ -1,4 +1,11 @@
 package com.sourcedestination.mqttrpg;
 
+/** thrown when an agent's role is not allowed to issue a command */
 public class UnauthorizedCommandException extends CommandException {
+
+    public UnauthorizedCommandException() { }
+
+    public UnauthorizedCommandException(String message) {
+        super(message);
+    }
 }
@@ -0,0 +1,130 @@
+package com.sourcedestination.sokoban;
+
+import com.sourcedestination.mqttrpg.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/** a static Sokoban puzzle: walls, goals, boxes and the player's starting position on a grid.
+ * Positions are indexes into the grid, row * width + column.
+ */
+public class SokobanLevel {
+    private final int width, height;
+    private final boolean[] walls, goals, boxes;
+    private final int player;
+
+    public SokobanLevel(int width, int height, boolean[] walls, boolean[] goals, boolean[] boxes, int player) {
+        if(walls.length != width * height || goals.length != walls.length || boxes.length != walls.length)
+            throw new IllegalArgumentException("grid arrays must have width * height cells");
+        if(player < 0 || player >= walls.length || walls[player])
+            throw new IllegalArgumentException("player must stand on a floor cell");
+        this.width = width;
+        this.height = height;
+        this.walls = walls;
+        this.goals = goals;
+        this.boxes = boxes;
+        this.player = player;
+    }
+
+    /** parses a level in the common XSB text format.
+     * '#' wall, '@' player, '+' player on goal, '$' box, '*' box on goal, '.' goal, and ' ', '-' or '_' floor.
+     */
+    public static SokobanLevel parse(String xsb) {
+        var lines = xsb.lines().filter(line -> !line.isBlank()).toList();
+        int height = lines.size();
+        int width = lines.stream().mapToInt(String::length).max().orElse(0);
+        var walls = new boolean[width * height];
+        var goals = new boolean[width * height];
+        var boxes = new boolean[width * height];
+        int player = -1;
+        for(int row = 0; row < height; row++) {
+            var line = lines.get(row);
+            for(int column = 0; column < width; column++) {
+                int p = row * width + column;
+                char c = column < line.length() ? line.charAt(column) : ' ';
+                switch(c) {
+                    case '#': walls[p] = true; break;
+                    case '@': player = p; break;
+                    case '+': player = p; goals[p] = true; break;
+                    case '$': boxes[p] = true; break;
+                    case '*': boxes[p] = true; goals[p] = true; break;
+                    case '.': goals[p] = true; break;
+                    case ' ': case '-': case '_': break;
+                    default: throw new IllegalArgumentException("unexpected character '" + c + "' in level");
+                }
+            }
+        }
+        if(player < 0) throw new IllegalArgumentException("level has no player");
+        return new SokobanLevel(width, height, walls, goals, boxes, player);
+    }
+
+    /** parses a collection of XSB levels separated by blank lines or title/comment lines */
+    public static List<SokobanLevel> parseCollection(String text) {
+        var levels = new ArrayList<SokobanLevel>();
+        var current = new StringBuilder();
+        for(var line : text.split("\r?\n")) {
+            if(line.trim().startsWith("#") || (!line.isBlank() && line.chars().allMatch(c -> "#@+$*. -_".indexOf(c) >= 0))) {
+                current.append(line).append('\n');
+            } else if(current.length() > 0) {
+                levels.add(parse(current.toString()));
+                current.setLength(0);
+            }
+        }
+        if(current.length() > 0) levels.add(parse(current.toString()));
+        return levels;
+    }
+
+    /** extracts the level from a game board using the {@link PushableToPassable} rules.
+     * Missing or impassable tiles are walls, {@link Pushable} entities on tiles are boxes, and
+     * tiles holding an impassable entity that cannot be pushed are walls.
+     */
+    public static SokobanLevel fromBoard(Game game, Board board, Entity player, Predicate<Tile> isGoal) {
+        int width = board.getWidth(), height = board.getHeight();
+        var walls = new boolean[width * height];
+        var goals = new boolean[width * height];
+        var boxes = new boolean[width * height];
+        for(int row = 0; row < height; row++) {
+            for(int column = 0; column < width; column++) {
+                int p = row * width + column;
+                var tile = board.getTile(column, row);
+                if(tile == null || isImpassable(tile)
+                        || tile.getEntities().anyMatch(e -> !(e instanceof Pushable) && isImpassable(e))) {
+                    walls[p] = true;
+                    continue;
+                }
+                goals[p] = isGoal.test(tile);
+                boxes[p] = tile.getEntities().anyMatch(e -> e instanceof Pushable);
+            }
+        }
+        if(!(game.getEntityLocation(player) instanceof Tile tile) || tile.getBoard() != board)
+            throw new IllegalArgumentException("player is not on board " + board.getID());
+        return new SokobanLevel(width, height, walls, goals, boxes, tile.getRow() * width + tile.getColumn());
+    }
+
+    private static boolean isImpassable(HasProperties object) {
+        return object.hasProperty("impassable") && object.getProperty("impassable").equals("true");
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getPlayer() { return player; }
+    public boolean isWall(int p) { return walls[p]; }
+    public boolean isGoal(int p) { return goals[p]; }
+    public boolean isBox(int p) { return boxes[p]; }
+
+    /** renders the level in XSB format */
+    @Override
+    public String toString() {
+        var sb = new StringBuilder();
+        for(int row = 0; row < height; row++) {
+            for(int column = 0; column < width; column++) {
+                int p = row * width + column;
+                sb.append(walls[p] ? '#' : p == player ? (goals[p] ? '+' : '@') :
+                        boxes[p] ? (goals[p] ? '*' : '$') : goals[p] ? '.' : ' ');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
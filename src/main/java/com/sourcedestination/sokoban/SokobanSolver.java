@@ -0,0 +1,399 @@
+package com.sourcedestination.sokoban;
+
+import com.sourcedestination.mqttrpg.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/** push-optimal Sokoban solver for validating levels and giving hints.
+ * <p>
+ * Floor cells reachable by the player are numbered densely. A search state packs the boxes into a bitset
+ * over those cells plus the player's normalized position (the smallest cell it can reach), and is hashed
+ * with Zobrist keys so successor hashes are updated with two XORs. States are kept in a concurrent
+ * transposition table while a breadth-first search over pushes expands each layer in parallel.
+ * <p>
+ * Pushes are pruned with a dead square table, computed once per level by pulling a box backwards from
+ * every goal, and a frozen box check that rejects pushes leaving boxes immovable off their goals.
+ */
+public class SokobanSolver {
+    // directions in Direction order: north, east, south, west
+    private static final Direction[] DIRECTIONS = { Direction.NORTH, Direction.EAST, Direction.SOUTH, Direction.WEST };
+    private static final char[] MOVES = { 'u', 'r', 'd', 'l' };
+
+    private final SokobanLevel level;
+    private final int cells, words;
+    private final int[] position;    // grid position of each cell
+    private final int[] neighbors;   // cell * 4 + direction -> neighboring cell, or -1 for a wall
+    private final boolean[] goal, dead;
+    private final long[] goalBits;
+    private final long[] boxKeys, playerKeys;
+    private final State start;
+    private final ThreadLocal<Scratch> scratch;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long maxStates = 5_000_000;
+    private volatile long statesExplored;
+
+    /** @throws IllegalArgumentException if the level has more boxes than goals, or a box off a goal or an empty goal
+     *                                  lies outside the region the player can reach
+     */
+    public SokobanSolver(SokobanLevel level) {
+        this.level = level;
+        int width = level.getWidth(), size = width * level.getHeight();
+
+        // number the floor cells the player can reach
+        var cellOf = new int[size];
+        Arrays.fill(cellOf, -1);
+        var queue = new int[size];
+        int count = 0;
+        queue[count] = level.getPlayer();
+        cellOf[level.getPlayer()] = count++;
+        for(int head = 0; head < count; head++) {
+            int p = queue[head];
+            for(int d = 0; d < 4; d++) {
+                int q = step(p, d, width, size);
+                if(q >= 0 && !level.isWall(q) && cellOf[q] < 0) {
+                    cellOf[q] = count;
+                    queue[count++] = q;
+                }
+            }
+        }
+        for(int p = 0; p < size; p++) {  // the search only sees the region the player can reach
+            if(cellOf[p] >= 0 || level.isWall(p) || level.isBox(p) == level.isGoal(p)) continue;
+            throw new IllegalArgumentException((level.isBox(p) ? "box" : "goal") + " at column " + p % width
+                    + ", row " + p / width + " is out of the player's reach");
+        }
+        cells = count;
+        words = (cells + 63) >>> 6;
+        position = Arrays.copyOf(queue, cells);
+        neighbors = new int[cells * 4];
+        goal = new boolean[cells];
+        goalBits = new long[words];
+        var boxes = new long[words];
+        int boxCount = 0, goalCount = 0;
+        for(int c = 0; c < cells; c++) {
+            for(int d = 0; d < 4; d++) {
+                int q = step(position[c], d, width, size);
+                neighbors[c * 4 + d] = q < 0 ? -1 : cellOf[q];
+            }
+            if(level.isGoal(position[c])) { goal[c] = true; set(goalBits, c); goalCount++; }
+            if(level.isBox(position[c])) { set(boxes, c); boxCount++; }
+        }
+        if(boxCount > goalCount)
+            throw new IllegalArgumentException("level has " + boxCount + " boxes but only " + goalCount + " goals");
+
+        dead = computeDeadSquares();
+        var random = new GameRandom(0x50CBA7L);
+        boxKeys = new long[cells];
+        playerKeys = new long[cells];
+        for(int c = 0; c < cells; c++) {
+            boxKeys[c] = random.nextLong();
+            playerKeys[c] = random.nextLong();
+        }
+        scratch = ThreadLocal.withInitial(() -> new Scratch(cells, words));
+        long boxHash = 0;
+        for(int c = 0; c < cells; c++) if(get(boxes, c)) boxHash ^= boxKeys[c];
+        start = state(boxes, boxHash, 0, null, -1, -1);
+    }
+
+    private static int step(int p, int d, int width, int size) {
+        switch(d) {
+            case 0: return p - width;
+            case 1: return (p + 1) % width == 0 ? -1 : p + 1;
+            case 2: return p + width < size ? p + width : -1;
+            default: return p % width == 0 ? -1 : p - 1;
+        }
+    }
+
+    /** number of worker threads used to expand each search layer */
+    public SokobanSolver parallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /** gives up once the transposition table holds this many states */
+    public SokobanSolver maxStates(long maxStates) {
+        this.maxStates = maxStates;
+        return this;
+    }
+
+    /** number of distinct states stored by the last search */
+    public long getStatesExplored() { return statesExplored; }
+
+    /** true if a box on the given grid position can never reach a goal */
+    public boolean isDeadSquare(int column, int row) {
+        int p = row * level.getWidth() + column;
+        for(int c = 0; c < cells; c++)
+            if(position[c] == p) return dead[c];
+        return true;
+    }
+
+    /** true if the level's current position can no longer be solved because a box is on a dead square
+     * or frozen off its goal, e.g. to tell a player they are stuck
+     */
+    public boolean isDeadlocked() {
+        var s = scratch.get();
+        for(int c = 0; c < cells; c++)
+            if(get(start.boxes, c) && !goal[c] && (dead[c] || frozen(start.boxes, c, s))) return true;
+        return false;
+    }
+
+    /** a box can reach a cell's goal only if it can be pulled there from some goal */
+    private boolean[] computeDeadSquares() {
+        var live = new boolean[cells];
+        var queue = new int[cells];
+        int tail = 0;
+        for(int c = 0; c < cells; c++)
+            if(goal[c]) { live[c] = true; queue[tail++] = c; }
+        for(int head = 0; head < tail; head++) {
+            int c = queue[head];
+            for(int d = 0; d < 4; d++) {
+                int to = neighbors[c * 4 + d];                    // box pulled into this cell
+                int puller = to < 0 ? -1 : neighbors[to * 4 + d]; // player stands beyond it
+                if(puller >= 0 && !live[to]) {
+                    live[to] = true;
+                    queue[tail++] = to;
+                }
+            }
+        }
+        var dead = new boolean[cells];
+        for(int c = 0; c < cells; c++) dead[c] = !live[c];
+        return dead;
+    }
+
+    /** finds a solution with the fewest pushes, or empty if there is none within the state limit */
+    public Optional<Solution> solve() {
+        var table = new ConcurrentHashMap<State, State>();
+        table.put(start, start);
+        statesExplored = 1;
+        if(solved(start)) return Optional.of(solution(start));
+        List<State> frontier = List.of(start);
+        var pool = new ForkJoinPool(parallelism);
+        try {
+            while(!frontier.isEmpty() && table.size() < maxStates) {
+                var layer = frontier;
+                frontier = pool.submit(() -> layer.parallelStream()
+                        .flatMap(state -> expand(state).stream())
+                        .filter(state -> table.putIfAbsent(state, state) == null)
+                        .collect(Collectors.toList())).get();
+                statesExplored = table.size();
+                for(var state : frontier)
+                    if(solved(state)) return Optional.of(solution(state));
+            }
+            return Optional.empty();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("search failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** returns the first move of an optimal solution, or empty if the level cannot be solved */
+    public Optional<Direction> hint() {
+        return solve().filter(s -> !s.getMoves().isEmpty()).map(s -> s.getDirections().get(0));
+    }
+
+    /** suggests the next move for a player on a game board */
+    public static Optional<Direction> hint(Game game, Board board, Entity player, Predicate<Tile> isGoal) {
+        return new SokobanSolver(SokobanLevel.fromBoard(game, board, player, isGoal)).hint();
+    }
+
+    private boolean solved(State state) {
+        for(int w = 0; w < words; w++)
+            if((state.boxes[w] & ~goalBits[w]) != 0) return false;
+        return true;
+    }
+
+    private List<State> expand(State state) {
+        var s = scratch.get();
+        int reached = reach(state.boxes, state.player, s.queue, s.seen);
+        var successors = new ArrayList<State>();
+        for(int i = 0; i < reached; i++) {
+            int p = s.queue[i];
+            for(int d = 0; d < 4; d++) {
+                int box = neighbors[p * 4 + d];
+                if(box < 0 || !get(state.boxes, box)) continue;
+                int target = neighbors[box * 4 + d];
+                if(target < 0 || dead[target] || get(state.boxes, target)) continue;
+                var boxes = state.boxes.clone();
+                clear(boxes, box);
+                set(boxes, target);
+                if(!goal[target] && frozen(boxes, target, s)) continue;
+                successors.add(state(boxes, state.boxHash ^ boxKeys[box] ^ boxKeys[target],
+                        box, state, box, d));
+            }
+        }
+        return successors;
+    }
+
+    /** breadth-first search of cells the player can reach; returns the count, cells are left in queue */
+    private int reach(long[] boxes, int from, int[] queue, long[] seen) {
+        Arrays.fill(seen, 0);
+        queue[0] = from;
+        set(seen, from);
+        int tail = 1;
+        for(int head = 0; head < tail; head++) {
+            int c = queue[head];
+            for(int d = 0; d < 4; d++) {
+                int n = neighbors[c * 4 + d];
+                if(n >= 0 && !get(seen, n) && !get(boxes, n)) {
+                    set(seen, n);
+                    queue[tail++] = n;
+                }
+            }
+        }
+        return tail;
+    }
+
+    private State state(long[] boxes, long boxHash, int player, State parent, int pushed, int direction) {
+        var s = scratch.get();
+        int reached = reach(boxes, player, s.normalizeQueue, s.normalizeSeen);
+        int min = player;
+        for(int i = 1; i < reached; i++) min = Math.min(min, s.normalizeQueue[i]);
+        return new State(boxes, boxHash, min, boxHash ^ playerKeys[min], parent, pushed, direction);
+    }
+
+    /** true if the box at cell c can no longer move along either axis and the stuck group includes a box off its goal */
+    private boolean frozen(long[] boxes, int c, Scratch s) {
+        Arrays.fill(s.marked, 0);
+        if(!frozen(boxes, c, s.marked)) return false;
+        for(int w = 0; w < words; w++)
+            if((s.marked[w] & ~goalBits[w]) != 0) return true;
+        return false;
+    }
+
+    private boolean frozen(long[] boxes, int c, long[] marked) {
+        set(marked, c); // boxes under examination are treated as walls
+        boolean frozen = blocked(boxes, c, 0, marked) && blocked(boxes, c, 1, marked);
+        if(!frozen) clear(marked, c);
+        return frozen;
+    }
+
+    /** axis 0 is north/south, axis 1 is east/west */
+    private boolean blocked(long[] boxes, int c, int axis, long[] marked) {
+        int a = neighbors[c * 4 + axis], b = neighbors[c * 4 + axis + 2];
+        if(a < 0 || b < 0 || get(marked, a) || get(marked, b)) return true;
+        if(dead[a] && dead[b]) return true;
+        return (get(boxes, a) && frozen(boxes, a, marked)) || (get(boxes, b) && frozen(boxes, b, marked));
+    }
+
+    /** replays the pushes leading to a state, adding the walking moves between them */
+    private Solution solution(State end) {
+        var pushes = new ArrayDeque<State>();
+        for(var state = end; state.parent != null; state = state.parent) pushes.push(state);
+        var moves = new StringBuilder();
+        var boxes = start.boxes.clone();
+        int player = 0;  // cell 0 is the player's start
+        var s = scratch.get();
+        var from = new int[cells];
+        for(var push : pushes) {
+            int stand = neighbors[push.pushed * 4 + (push.direction + 2) % 4];
+            // walk to the standing cell, recording how each cell was reached
+            Arrays.fill(s.seen, 0);
+            s.queue[0] = player;
+            set(s.seen, player);
+            for(int head = 0, tail = 1; head < tail && !get(s.seen, stand); head++) {
+                int c = s.queue[head];
+                for(int d = 0; d < 4; d++) {
+                    int n = neighbors[c * 4 + d];
+                    if(n >= 0 && !get(s.seen, n) && !get(boxes, n)) {
+                        set(s.seen, n);
+                        from[n] = d;
+                        s.queue[tail++] = n;
+                    }
+                }
+            }
+            var walk = new StringBuilder();
+            for(int c = stand; c != player; c = neighbors[c * 4 + (from[c] + 2) % 4])
+                walk.append(MOVES[from[c]]);
+            moves.append(walk.reverse());
+            moves.append(Character.toUpperCase(MOVES[push.direction]));
+            clear(boxes, push.pushed);
+            set(boxes, neighbors[push.pushed * 4 + push.direction]);
+            player = push.pushed;
+        }
+        return new Solution(moves.toString(), pushes.size(), statesExplored);
+    }
+
+    private static boolean get(long[] bits, int i) { return (bits[i >>> 6] & (1L << i)) != 0; }
+    private static void set(long[] bits, int i) { bits[i >>> 6] |= 1L << i; }
+    private static void clear(long[] bits, int i) { bits[i >>> 6] &= ~(1L << i); }
+
+    /** per-thread work arrays for reachability and freeze checks */
+    private static final class Scratch {
+        final int[] queue, normalizeQueue;  // expansion and successor normalization search separately
+        final long[] seen, normalizeSeen, marked;
+
+        Scratch(int cells, int words) {
+            queue = new int[cells];
+            normalizeQueue = new int[cells];
+            seen = new long[words];
+            normalizeSeen = new long[words];
+            marked = new long[words];
+        }
+    }
+
+    /** packed search state; the parent link and last push are not part of its identity */
+    private static final class State {
+        final long[] boxes;
+        final long boxHash, hash;
+        final int player;
+        final State parent;
+        final int pushed, direction;  // cell of the box before the push leading here, and push direction
+
+        State(long[] boxes, long boxHash, int player, long hash, State parent, int pushed, int direction) {
+            this.boxes = boxes;
+            this.boxHash = boxHash;
+            this.player = player;
+            this.hash = hash;
+            this.parent = parent;
+            this.pushed = pushed;
+            this.direction = direction;
+        }
+
+        @Override
+        public int hashCode() { return (int)(hash ^ (hash >>> 32)); }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof State)) return false;
+            var other = (State)o;
+            return hash == other.hash && player == other.player && Arrays.equals(boxes, other.boxes);
+        }
+    }
+
+    /** a solution in LURD notation: lowercase letters walk, uppercase letters push */
+    public static final class Solution {
+        private final String moves;
+        private final int pushes;
+        private final long statesExplored;
+
+        Solution(String moves, int pushes, long statesExplored) {
+            this.moves = moves;
+            this.pushes = pushes;
+            this.statesExplored = statesExplored;
+        }
+
+        public String getMoves() { return moves; }
+        public int getPushes() { return pushes; }
+        public long getStatesExplored() { return statesExplored; }
+
+        /** the moves as game directions */
+        public List<Direction> getDirections() {
+            var directions = new ArrayList<Direction>(moves.length());
+            for(char c : moves.toLowerCase().toCharArray())
+                directions.add(DIRECTIONS[new String(MOVES).indexOf(c)]);
+            return directions;
+        }
+
+        @Override
+        public String toString() { return moves; }
+    }
+}
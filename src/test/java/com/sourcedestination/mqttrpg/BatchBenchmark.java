@@ -0,0 +1,54 @@
+package com.sourcedestination.mqttrpg;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** measures bytes on the wire and CPU per event for batched, compressed event messages.
+ * Batch size is the number of events per topic per tick; bytes/s assumes 60 ticks per second.
+ * Run with: java -cp target/classes:target/test-classes:&lt;deps&gt; com.sourcedestination.mqttrpg.BatchBenchmark [events]
+ */
+public class BatchBenchmark {
+
+    public static void main(String[] args) {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        var events = sampleEvents(1000);
+        var cpu = ManagementFactory.getThreadMXBean();
+        var codec = new EventBatchCodec();
+        for(int round = 0; round < 2; round++) {  // the first round warms up
+            System.out.printf("%-9s %6s %12s %14s %12s%n", "codec", "batch", "bytes/event", "bytes/s@60Hz", "cpu ns/event");
+            for(var compression : PayloadCompression.values())
+                for(int batchSize : new int[] {1, 4, 16, 64, 256}) {
+                    long bytes = 0, batches = 0;
+                    long start = cpu.getCurrentThreadCpuTime();
+                    for(int sent = 0; sent < total; sent += batchSize) {
+                        int from = sent % (events.size() - batchSize);
+                        bytes += codec.encode(events.subList(from, from + batchSize), compression).length;
+                        batches++;
+                    }
+                    long nanos = cpu.getCurrentThreadCpuTime() - start;
+                    long encoded = batches * batchSize;
+                    System.out.printf("%-9s %6d %12.1f %14.0f %12.0f%n", compression.getName(), batchSize,
+                            (double)bytes / encoded, (double)bytes / batches * 60, (double)nanos / encoded);
+                }
+            System.out.println();
+        }
+    }
+
+    /** JSON of a walking entity's moves and tile updates, as spectators would receive them */
+    private static List<byte[]> sampleEvents(int n) {
+        var game = new DummyGame();
+        var board = game.getBoard("map1");
+        var ent = new DummyEntity(game);
+        var events = new ArrayList<byte[]>();
+        game.addEventListener(event -> events.add(event.toString().getBytes(StandardCharsets.UTF_8)));
+        var random = new GameRandom(42);
+        while(events.size() < n) {
+            var tile = board.getTile(random.nextInt(5), random.nextInt(5));
+            if(random.nextInt(4) == 0) tile.setProperty("lit", random.nextBoolean());
+            else game.moveEntity(ent, tile);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,92 @@
+package com.sourcedestination.mqttrpg;
+
+import net.sourcedestination.funcles.function.Function2;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/** compares sequential and parallel board construction for a map with procedural tile generators.
+ * Floor tiles get a terrain height from value noise and walls get loot, both derived from their location.
+ * Run with: java -cp target/classes:target/test-classes:&lt;deps&gt; com.sourcedestination.mqttrpg.BoardConstructionBenchmark [size] [threads]
+ */
+public class BoardConstructionBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        var random = new Random(42);
+        var sb = new StringBuilder();
+        for(int row = 0; row < size; row++) {
+            for(int column = 0; column < size; column++)
+                sb.append(random.nextInt(10) == 0 ? '#' : ' ');
+            sb.append('\n');
+        }
+        var charMap = sb.toString();
+
+        Map<Character, Function2<Integer,Integer,Tile>> generators = Map.of(
+                ' ', (col, row) -> {
+                    var tile = Tile.getGenerator(' ', "floor", Map.of()).apply(col, row);
+                    tile.setProperty("height", Math.round(noise(col, row) * 100));
+                    return tile;
+                },
+                '#', (col, row) -> {
+                    var tile = Tile.getGenerator('#', "wall", Map.of("impassable", "true")).apply(col, row);
+                    var loot = new Random(col * 1_000_003L + row);
+                    if(loot.nextInt(20) == 0) tile.setProperty("loot", "gold:" + loot.nextInt(50));
+                    return tile;
+                });
+
+        System.out.println(size + "x" + size + " map, best of 5 runs");
+        var expected = new Board("sequential", charMap, generators);
+        for(int warmup = 0; warmup < 2; warmup++) {
+            report("sequential", warmup, () -> new Board("sequential", charMap, generators));
+            for(int parallelism = 1; parallelism <= threads; parallelism *= 2) {
+                var pool = new ForkJoinPool(parallelism);
+                try {
+                    var board = report("parallel, " + parallelism + " threads", warmup,
+                            () -> new Board("parallel", charMap, generators, pool));
+                    if(!board.getTile(size / 2, size / 2).getProperties()
+                            .equals(expected.getTile(size / 2, size / 2).getProperties()))
+                        throw new AssertionError("parallel board differs from sequential board");
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+
+    /** smoothed value noise in [0, 1) over a grid of 16 tiles */
+    static double noise(int col, int row) {
+        double x = col / 16.0, y = row / 16.0;
+        int x0 = (int)x, y0 = (int)y;
+        double fx = smooth(x - x0), fy = smooth(y - y0);
+        double top = lerp(lattice(x0, y0), lattice(x0 + 1, y0), fx);
+        double bottom = lerp(lattice(x0, y0 + 1), lattice(x0 + 1, y0 + 1), fx);
+        return lerp(top, bottom, fy);
+    }
+
+    private static double lattice(int x, int y) {
+        long h = x * 0x9E3779B97F4A7C15L ^ y * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ (h >>> 31)) * 0xBF58476D1CE4E5B9L;
+        return ((h ^ (h >>> 29)) >>> 11) / (double)(1L << 53);
+    }
+
+    private static double smooth(double t) { return t * t * (3 - 2 * t); }
+
+    private static double lerp(double a, double b, double t) { return a + (b - a) * t; }
+
+    private static Board report(String name, int round, Supplier<Board> loader) {
+        long best = Long.MAX_VALUE;
+        Board board = null;
+        for(int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            board = loader.get();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if(round > 0) // first round only warms up the JIT
+            System.out.printf("%-24s %8.1f ms%n", name, best / 1e6);
+        return board;
+    }
+}
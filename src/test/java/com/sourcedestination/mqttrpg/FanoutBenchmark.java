@@ -0,0 +1,39 @@
+package com.sourcedestination.mqttrpg;
+
+import java.nio.charset.StandardCharsets;
+
+/** compares serializing an event per recipient with encoding it once through an {@link EventFanout}.
+ * Run with: java -cp target/classes:target/test-classes:&lt;deps&gt; com.sourcedestination.mqttrpg.FanoutBenchmark [subscribers] [events]
+ */
+public class FanoutBenchmark {
+
+    public static void main(String[] args) {
+        int subscribers = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int events = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        for(int round = 0; round < 3; round++) {
+            System.out.printf("per recipient: %,.0f events/s%n", run(subscribers, events, false));
+            System.out.printf("fan-out:       %,.0f events/s%n", run(subscribers, events, true));
+        }
+    }
+
+    private static double run(int subscribers, int events, boolean shared) {
+        var game = new DummyGame();
+        var board = game.getBoard("map1");
+        var ent = new DummyEntity(game);
+        long[] sink = new long[1];
+        if(shared) {
+            var fanout = new EventFanout(game);
+            for(int i = 0; i < subscribers; i++)
+                fanout.subscribe("spectator" + i, EventFormat.JSON, payload -> sink[0] += payload.size());
+        } else {
+            for(int i = 0; i < subscribers; i++)
+                game.addEventListener(event -> sink[0] += event.toString().getBytes(StandardCharsets.UTF_8).length);
+        }
+        long start = System.nanoTime();
+        for(int i = 0; i < events; i++)
+            game.moveEntity(ent, board.getTile(i % 5, 2));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if(sink[0] == 0) throw new AssertionError();
+        return events / seconds;
+    }
+}
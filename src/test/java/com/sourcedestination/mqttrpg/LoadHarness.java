@@ -0,0 +1,300 @@
+package com.sourcedestination.mqttrpg;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** drives one game node with thousands of simulated clients to find where tick times break down.
+ * Clients send move and push commands as JSON at a fixed rate through a {@link CommandPipeline} and receive
+ * the events about their avatar through an {@link EventFanout} and {@link OutboundDispatcher}, the same
+ * path networked agents use past the broker. Each step runs a fresh game on a generated board with the
+ * given number of clients; the game ticks at a fixed rate on its own thread.
+ * <p>
+ * Measured per step: tick duration, command to event latency (from submitting a command to its client
+ * receiving the resulting event) and delivery lag (from encoding an event to writing it), as
+ * percentiles. One CSV row per step is appended to the report, labelled so runs of different builds can
+ * be compared.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes:&lt;deps&gt; com.sourcedestination.mqttrpg.LoadHarness
+ * [clients,clients,...] [commands per second per client] [seconds per step] [report.csv] [label]
+ */
+public class LoadHarness {
+
+    static final int TICKS_PER_SECOND = 20;
+    static final double PUSH_SHARE = 0.25;
+
+    static final String HEADER = "label,time,clients,rate,seconds,commands_sent,commands_refused,events_delivered," +
+            "events_dropped,ticks,tick_overruns,tick_p50_ms,tick_p99_ms,tick_max_ms," +
+            "latency_p50_ms,latency_p90_ms,latency_p99_ms,latency_max_ms,lag_p50_ms,lag_p99_ms,lag_max_ms";
+
+    public static void main(String[] args) throws Exception {
+        var clients = Arrays.stream((args.length > 0 ? args[0] : "250,500,1000,2000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        double rate = args.length > 1 ? Double.parseDouble(args[1]) : 2;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        var report = Path.of(args.length > 3 ? args[3] : "target/load-report.csv");
+        var label = args.length > 4 ? args[4] : "local";
+
+        run(Math.min(100, clients[0]), rate, 2, 1); // warm up
+        for(var count : clients) {
+            var row = label + "," + Instant.now() + "," + run(count, rate, seconds, 42);
+            System.out.println(HEADER);
+            System.out.println(row);
+            append(report, row);
+        }
+    }
+
+    private static void append(Path report, String row) throws IOException {
+        if(report.getParent() != null) Files.createDirectories(report.getParent());
+        var lines = Files.exists(report) ? List.of(row) : List.of(HEADER, row);
+        Files.write(report, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /** runs one step and returns its CSV columns after the label and time */
+    static String run(int clientCount, double rate, int seconds, long seed) throws Exception {
+        var random = new Random(seed);
+        int side = (int)Math.ceil(Math.sqrt(clientCount * 8)) + 2;
+        var game = new LoadGame(generateBoard("arena", side, side, random));
+        var board = game.getBoard("arena");
+        var floor = board.getTileStream().filter(LoadHarness::isFloor).toList();
+        for(int i = 0; i < clientCount / 4; i++)
+            game.moveEntity(new Crate(game), floor.get(random.nextInt(floor.size())));
+
+        var fanout = new EventFanout(game);
+        var dispatcher = new OutboundDispatcher(game, fanout, 2);
+        var pipeline = new CommandPipeline(game, 2)
+                .define(new CommandSchema("move").require("direction", Direction.class).strict())
+                .define(new CommandSchema("push").require("direction", Direction.class).strict());
+        var ticks = new Recorder();
+        var latency = new Recorder();
+        var lag = new Recorder();
+        var clients = new ArrayList<Client>();
+        for(int i = 0; i < clientCount; i++) {
+            var avatar = new Avatar(game);
+            game.moveEntity(avatar, floor.get(random.nextInt(floor.size())));
+            var player = new Player(game, "client" + i, avatar);
+            var client = new Client(player, pipeline, latency, lag, new Random(random.nextLong()));
+            dispatcher.attach(player.getAgentID(), EventFormat.JSON,
+                    event -> event.getEntity().orElse(null) == avatar, client, SlowConsumerPolicy.DROP_OLDEST, 256);
+            clients.add(client);
+        }
+
+        var loop = new GameLoop(game, ticks);
+        var thread = new Thread(loop, "game-loop");
+        thread.start();
+        var scheduler = Executors.newScheduledThreadPool(4);
+        long period = (long)(1_000_000 / rate);
+        for(var client : clients)
+            scheduler.scheduleAtFixedRate(client::issue, random.nextInt((int)period), period, TimeUnit.MICROSECONDS);
+        Thread.sleep(seconds * 1000L);
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        Thread.sleep(1000); // let queued commands and events drain
+        loop.running = false;
+        thread.join();
+
+        long sent = clients.stream().mapToLong(c -> c.sent.get()).sum();
+        long delivered = clients.stream().mapToLong(c -> c.delivered.get()).sum();
+        long dropped = clients.stream().mapToLong(c -> dispatcher.getQueue(c.player.getAgentID()).getDropped()).sum();
+        long refused = pipeline.getInvalid() + pipeline.getUnauthorized() + pipeline.getRejected();
+        dispatcher.close();
+        pipeline.close();
+        return String.join(",", List.of(
+                "" + clientCount, "" + rate, "" + seconds, "" + sent, "" + refused, "" + delivered, "" + dropped,
+                "" + ticks.count(), "" + loop.overruns,
+                ms(ticks.percentile(0.5)), ms(ticks.percentile(0.99)), ms(ticks.percentile(1)),
+                ms(latency.percentile(0.5)), ms(latency.percentile(0.9)), ms(latency.percentile(0.99)),
+                ms(latency.percentile(1)), ms(lag.percentile(0.5)), ms(lag.percentile(0.99)), ms(lag.percentile(1))));
+    }
+
+    private static String ms(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+
+    /** square board with a wall around the edge and scattered interior walls */
+    static Board generateBoard(String id, int width, int height, Random random) {
+        var map = new StringBuilder();
+        for(int row = 0; row < height; row++) {
+            for(int column = 0; column < width; column++) {
+                boolean edge = row == 0 || column == 0 || row == height - 1 || column == width - 1;
+                map.append(edge || random.nextDouble() < 0.08 ? '#' : ' ');
+            }
+            map.append('\n');
+        }
+        return new Board(id, map.toString(), Map.of());
+    }
+
+    static boolean isFloor(Tile tile) {
+        return tile.getCharacter() != '#';
+    }
+
+    /** floor without a crate */
+    static boolean isOpen(Tile tile) {
+        return isFloor(tile) && tile.getEntities().noneMatch(ent -> ent instanceof Crate);
+    }
+
+    static class LoadGame extends Game {
+        LoadGame(Board board) { super("load", board); }
+
+        public boolean checkGameAlive() { return true; }
+        public Map<String,Object> getProperties() { return Map.of(); }
+        public void setProperty(String key, Object value) { }
+    }
+
+    static class Avatar extends Entity {
+        Avatar(Game game) { super(game, Map.of()); }
+        public String getType() { return "avatar"; }
+    }
+
+    static class Crate extends Entity implements Pushable {
+        Crate(Game game) { super(game, Map.of()); }
+        public String getType() { return "crate"; }
+        public Entity getSelfReference() { return this; }
+        public boolean canPush(Entity pusher, Container container) {
+            return container instanceof Tile && isOpen((Tile)container);
+        }
+    }
+
+    /** moves its avatar, pushing a crate in the way for push commands. Blocked moves leave the avatar where it
+     * is but still produce a move event, so every command yields exactly one event for its client.
+     */
+    static class Player extends Agent {
+        final Game game;
+        final Avatar avatar;
+
+        Player(Game game, String id, Avatar avatar) {
+            super(id, "player");
+            this.game = game;
+            this.avatar = avatar;
+            game.addAgent(this);
+        }
+
+        public void receiveCommand(Command command) {
+            var here = (Tile)game.getEntityLocation(avatar);
+            var direction = (Direction)command.getProperty("direction");  // converted by the pipeline's schema
+            var next = here.getBoard().getAdjacentTile(here, direction).orElse(here);
+            if("push".equals(command.getProperty(CommandSchema.TYPE)))
+                next.getEntities().filter(ent -> ent instanceof Crate).findFirst()
+                        .ifPresent(crate -> ((Crate)crate).push(avatar).accept(game));
+            game.moveEntity(avatar, isOpen(next) ? next : here);
+        }
+
+        public void acceptEvent(Event event) { }
+        public Game getGame() { return game; }
+        public Map<String,Object> getProperties() { return Map.of(); }
+        public void setProperty(String key, Object value) { }
+    }
+
+    /** a simulated networked client: issues commands and matches the events it receives to them in order */
+    static class Client implements AgentConnection {
+        private static final Direction[] DIRECTIONS = Direction.values();
+
+        final Player player;
+        final CommandPipeline pipeline;
+        final Recorder latency, lag;
+        final Random random;
+        final ConcurrentSkipListMap<Long, Long> outstanding = new ConcurrentSkipListMap<>();  // sequence -> sent at
+        final AtomicLong sent = new AtomicLong(), delivered = new AtomicLong();
+
+        Client(Player player, CommandPipeline pipeline, Recorder latency, Recorder lag, Random random) {
+            this.player = player;
+            this.pipeline = pipeline;
+            this.latency = latency;
+            this.lag = lag;
+            this.random = random;
+        }
+
+        /** sends one command; called by the load scheduler */
+        synchronized void issue() {
+            long sequence = sent.incrementAndGet();
+            var type = random.nextDouble() < PUSH_SHARE ? "push" : "move";
+            var direction = DIRECTIONS[random.nextInt(DIRECTIONS.length)].name();
+            var json = "{\"type\":\"" + type + "\",\"direction\":\"" + direction + "\"}";
+            outstanding.put(sequence, System.nanoTime());
+            pipeline.submit(player, json).whenComplete((command, error) -> {
+                if(error != null) outstanding.remove(sequence);
+            });
+        }
+
+        @Override
+        public void send(EncodedEvent payload) {
+            long now = System.nanoTime();
+            lag.record(now - payload.getEncodedAt());
+            var command = outstanding.pollFirstEntry();
+            if(command != null) latency.record(now - command.getValue());
+            delivered.incrementAndGet();
+        }
+
+        @Override
+        public void close() { }
+    }
+
+    /** ticks a game at a fixed rate, recording how long each tick takes */
+    static class GameLoop implements Runnable {
+        final Game game;
+        final Recorder ticks;
+        volatile boolean running = true;
+        long overruns;  // ticks that took longer than the tick period
+
+        GameLoop(Game game, Recorder ticks) {
+            this.game = game;
+            this.ticks = ticks;
+        }
+
+        public void run() {
+            long period = 1_000_000_000L / TICKS_PER_SECOND;
+            long next = System.nanoTime();
+            while(running) {
+                long start = System.nanoTime();
+                game.tick();
+                long took = System.nanoTime() - start;
+                ticks.record(took);
+                if(took > period) overruns++;
+                next += period;
+                long wait = next - System.nanoTime();
+                if(wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                } else {
+                    next = System.nanoTime();  // fell behind: do not try to catch up
+                }
+            }
+        }
+    }
+
+    /** collects raw samples for exact percentiles */
+    static class Recorder {
+        private long[] samples = new long[1024];
+        private int size;
+
+        synchronized void record(long nanos) {
+            if(size == samples.length) samples = Arrays.copyOf(samples, size * 2);
+            samples[size++] = nanos;
+        }
+
+        synchronized long count() { return size; }
+
+        /** the sample at quantile q, 0 if nothing was recorded */
+        synchronized long percentile(double q) {
+            if(size == 0) return 0;
+            var sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            return sorted[Math.min(size - 1, (int)Math.ceil(q * size) - (q > 0 ? 1 : 0))];
+        }
+    }
+}
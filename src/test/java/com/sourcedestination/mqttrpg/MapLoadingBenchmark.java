@@ -0,0 +1,63 @@
+package com.sourcedestination.mqttrpg;
+
+import net.sourcedestination.funcles.function.Function2;
+
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Random;
+
+/** compares board startup time for text maps, compiled binary maps and chunked boards over a binary map.
+ * Run with: java -cp target/classes:target/test-classes:&lt;deps&gt; com.sourcedestination.mqttrpg.MapLoadingBenchmark [size]
+ */
+public class MapLoadingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        var random = new Random(42);
+        var sb = new StringBuilder();
+        for(int row = 0; row < size; row++) {
+            for(int column = 0; column < size; column++)
+                sb.append(random.nextInt(10) == 0 ? '#' : ' ');
+            sb.append('\n');
+        }
+        var charMap = sb.toString();
+        var textFile = Files.createTempFile("map", ".txt");
+        var binaryFile = Files.createTempFile("map", ".bin");
+        Files.writeString(textFile, charMap);
+        BinaryMap.compile(charMap, binaryFile);
+
+        Map<Character, Function2<Integer,Integer,Tile>> generators =
+                Map.of('#', Tile.getGenerator('#', "wall", Map.of("impassable", "true")));
+        System.out.println(size + "x" + size + " map, best of 5 runs");
+        try {
+            for(int warmup = 0; warmup < 2; warmup++) {
+                report("text board", warmup, () -> new Board("text", Files.readString(textFile), generators));
+                report("binary board", warmup, () -> {
+                    try(var map = BinaryMap.open(binaryFile, generators)) { return map.toBoard("binary"); }
+                });
+                report("chunked binary board", warmup, () -> {
+                    var map = BinaryMap.open(binaryFile, generators);
+                    var board = new ChunkedBoard("chunked", map, 64);
+                    board.getTile(size / 2, size / 2);
+                    return board;
+                });
+            }
+        } finally {
+            Files.delete(textFile);
+            Files.delete(binaryFile);
+        }
+    }
+
+    private interface BoardLoader { Board load() throws Exception; }
+
+    private static void report(String name, int round, BoardLoader loader) throws Exception {
+        long best = Long.MAX_VALUE;
+        for(int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            loader.load();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if(round > 0) // first round only warms up the JIT
+            System.out.printf("%-24s %10.2f ms%n", name, best / 1e6);
+    }
+}
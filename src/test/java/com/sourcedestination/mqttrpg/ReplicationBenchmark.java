@@ -0,0 +1,84 @@
+package com.sourcedestination.mqttrpg;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/** measures the cost of replicating a tick, on the primary and on a replica, against a 60 Hz budget.
+ * Commands only update a property so the numbers are dominated by encoding, sending and replaying frames.
+ * Run with: java -cp target/classes:target/test-classes:&lt;deps&gt; com.sourcedestination.mqttrpg.ReplicationBenchmark [commands per tick] [ticks]
+ */
+public class ReplicationBenchmark {
+
+    /** creates an entity, or tags one, per command */
+    static class Tagger extends ScriptedAgent {
+        Tagger(Game game, String id) { super(game, id, "player"); }
+
+        public void act(long tick) { }
+
+        public void receiveCommand(Command command) {
+            var entity = command.getProperties().get("entity");
+            if(entity == null) new DummyEntity(getGame());
+            else getGame().getEntity(((Number)entity).intValue()).setProperty("tag", command.getProperty("tag"));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int commands = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        for(int round = 0; round < 3; round++) run(commands, ticks);
+    }
+
+    private static void run(int commands, int ticks) throws Exception {
+        var transport = new LocalTransport();
+        long[] bytes = new long[1];
+        NodeTransport measured = new NodeTransport() {
+            public void start(String nodeId, Consumer<String> receiver) throws IOException {
+                transport.start(nodeId, receiver);
+            }
+            public void send(String nodeId, String message) throws IOException {
+                bytes[0] += message.length();
+                transport.send(nodeId, message);
+            }
+            public void stop(String nodeId) { transport.stop(nodeId); }
+        };
+
+        var game = new DummyGame();
+        game.setLockstep(1, 16);
+        var agents = new Tagger[100];
+        for(int i = 0; i < agents.length; i++) agents[i] = new Tagger(game, "agent" + i);
+        var primary = new ReplicationPrimary(game, "primary", measured, 64);
+        var replicaGame = new DummyGame();
+        replicaGame.setLockstep(1, 16);
+        var replica = new GameReplica(replicaGame, "replica", "primary", measured,
+                (g, id, role) -> new Tagger(g, id));
+        replica.registerType("dummy", DummyEntity::new);
+
+        for(int i = 0; i < commands; i++)
+            game.addCommand(agents[i % agents.length], new Command(game, Map.of("type", "spawn")));
+        game.tick();
+        replica.poll();
+        var ids = game.getEntities().mapToInt(Entity::getID).toArray();
+
+        long primaryNanos = 0, replicaNanos = 0;
+        bytes[0] = 0;
+        for(int t = 0; t < ticks; t++) {
+            for(int i = 0; i < commands; i++)
+                game.addCommand(agents[i % agents.length],
+                        new Command(game, Map.of("type", "tag", "entity", ids[i], "tag", t)));
+            long start = System.nanoTime();
+            game.tick();
+            long ticked = System.nanoTime();
+            replica.poll();
+            long replayed = System.nanoTime();
+            primaryNanos += ticked - start;
+            replicaNanos += replayed - ticked;
+        }
+        if(replicaGame.getStateHash() != game.getStateHash()) throw new AssertionError("replica diverged");
+        System.out.printf("%,d commands/tick: primary %.2f ms/tick, replica %.2f ms/tick, %,d bytes/frame, %d frames behind%n",
+                commands, primaryNanos / 1e6 / ticks, replicaNanos / 1e6 / ticks, bytes[0] / ticks,
+                game.getTickCount() - replica.getAppliedTick());
+        primary.close();
+        replica.close();
+    }
+}
@@ -0,0 +1,17 @@
+package com.sourcedestination.mqttrpg;
+
+/** measures headless simulation throughput in games per second.
+ * Run with: java -cp target/classes:target/test-classes:&lt;deps&gt; com.sourcedestination.mqttrpg.SimulationBenchmark [games] [threads]
+ */
+public class SimulationBenchmark {
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        var runner = new SimulationRunner(seed -> new TestSimulationRunner.WalkGame())
+                .threads(threads)
+                .statistics(game -> java.util.Map.of("ticks", game.getTickCount()));
+        runner.run(games / 10, 0); // warm up
+        System.out.println(runner.run(games, 1_000_000));
+    }
+}
@@ -0,0 +1,44 @@
+package com.sourcedestination.mqttrpg;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+/** measures speculative branches ("forks") per second and bytes allocated per branch.
+ * Each branch moves a few entities, changes a property and is rolled back.
+ * Run with: java -cp target/classes:target/test-classes:&lt;deps&gt; com.sourcedestination.mqttrpg.SpeculationBenchmark [entities]
+ */
+public class SpeculationBenchmark {
+
+    public static void main(String[] args) {
+        int entityCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        var game = new DummyGame();
+        var board = game.getBoard("map1");
+        var entities = new ArrayList<Entity>();
+        for(int i = 0; i < entityCount; i++) {
+            var ent = new DummyEntity(game);
+            game.moveEntity(ent, board.getTile(i % board.getWidth(), (i / board.getWidth()) % board.getHeight()));
+            entities.add(ent);
+        }
+        var threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        var random = new GameRandom(1);
+        System.out.println(entityCount + " entities, 4 moves and 1 property change per branch");
+        for(int round = 0; round < 5; round++) {
+            int branches = 200_000;
+            long bytes = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for(int i = 0; i < branches; i++) {
+                try(var s = game.speculate()) {
+                    for(int m = 0; m < 4; m++)
+                        game.moveEntity(entities.get(random.nextInt(entityCount)),
+                                board.getTile(random.nextInt(board.getWidth()), random.nextInt(board.getHeight())));
+                    entities.get(random.nextInt(entityCount)).setProperty("visited", true);
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+            System.out.printf("round %d: %,.0f forks/s, %,d bytes allocated per fork%n",
+                    round, branches / (nanos / 1e9), bytes / branches);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestAdmissionControl {
+
+    List<String> received = new ArrayList<>();
+    DummyGame game = new DummyGame();
+
+    class Client extends ScriptedAgent {
+        Client(String id) { super(game, id, "player"); }
+        public void act(long tick) { }
+        public void receiveCommand(Command command) { received.add(getAgentID()); }
+    }
+
+    Client flooder = new Client("flooder");
+    Client alice = new Client("alice");
+    Client bob = new Client("bob");
+
+    public TestAdmissionControl() {
+        game.setLockstep(1, 100);
+    }
+
+    private Command command() {
+        return new Command(game, Map.of());
+    }
+
+    @Test
+    public void testRoundRobinDraining() throws CommandException {
+        for(int i = 0; i < 5; i++) game.submitCommand(flooder, command());
+        game.submitCommand(alice, command());
+        game.submitCommand(bob, command());
+        game.getAdmissionControl().setMaxCommandsPerTick(4);
+        game.tick();
+        assertEquals(List.of("alice", "bob", "flooder", "flooder"), received);
+        received.clear();
+        game.tick();
+        assertEquals(List.of("flooder", "flooder", "flooder"), received);
+    }
+
+    @Test
+    public void testRateLimit() throws CommandException {
+        game.getAdmissionControl().setRateLimit(10, 2);  // one token per tick of 100ms
+        game.submitCommand(alice, command());
+        game.submitCommand(alice, command());
+        try {
+            game.submitCommand(alice, command());
+            fail();
+        } catch(CommandRejectedException e) {
+            assertEquals(CommandRejectedException.Reason.RATE_LIMITED, e.getReason());
+            assertEquals("alice", e.getAgentId());
+        }
+        game.addCommand(alice, command());  // dropped silently but counted
+        game.tick();
+        game.submitCommand(alice, command());
+        var stats = game.getAdmissionControl().getStats("alice");
+        assertEquals(3, stats.getAdmitted());
+        assertEquals(2, stats.getRateLimited());
+        assertEquals(1, stats.getPending());
+    }
+
+    @Test
+    public void testBoundedQueue() throws CommandException {
+        game.getAdmissionControl().setMaxPending(3);
+        for(int i = 0; i < 10; i++) game.addCommand(flooder, command());
+        game.submitCommand(bob, command());
+        var stats = game.getAdmissionControl().getStats();
+        assertEquals(7, stats.get("flooder").getQueueFull());
+        assertEquals(7, stats.get("flooder").getDropped());
+        assertEquals(0, stats.get("bob").getDropped());
+        assertTrue(game.getMetrics().toPrometheusText()
+                .contains("mqttrpg_commands_rejected_total{agent=\"flooder\",reason=\"queue_full\"} 7\n"));
+        game.tick();
+        assertEquals(4, received.size());
+    }
+
+    @Test
+    public void testRejectedCommandsDoNotUseSequenceNumbers() throws CommandException {
+        game.getAdmissionControl().setMaxPending(1);
+        game.submitCommand(alice, command());
+        game.addCommand(alice, command());  // queue full
+        game.addCommand(alice, new Command(game, Map.of(CommandSchema.SEQUENCE, 9)));  // queue full
+        assertEquals(Long.valueOf(1), game.getCommandSequences().get("alice"));
+        game.tick();
+        game.submitCommand(alice, command());
+        assertEquals(Long.valueOf(2), game.getCommandSequences().get("alice"));
+    }
+
+    @Test
+    public void testRemovedAgentsAreForgotten() throws CommandException {
+        game.getAdmissionControl().setMaxPending(1);
+        game.submitCommand(alice, command());
+        game.addCommand(alice, command());  // queue full
+        game.submitCommand(bob, command());
+        assertTrue(game.getMetrics().toPrometheusText().contains("agent=\"alice\""));
+        game.removeAgent(alice);
+        assertFalse(game.getMetrics().toPrometheusText().contains("agent=\"alice\""));
+        assertNull(game.getAdmissionControl().getStats("alice"));
+        assertEquals(List.of("bob"), List.copyOf(game.getAdmissionControl().getStats().keySet()));
+        game.tick();
+        assertEquals(List.of("bob"), received);
+    }
+}
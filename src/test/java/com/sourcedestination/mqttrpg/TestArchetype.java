@@ -0,0 +1,116 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestArchetype {
+    static final PropertyKey<Double> X = PropertyKey.doubleKey("x");
+    static final PropertyKey<Double> VX = PropertyKey.doubleKey("vx");
+    static final PropertyKey<Integer> TTL = PropertyKey.intKey("ttl");
+
+    DummyGame game = new DummyGame();
+    Archetype particles = game.createArchetype("particle", X, VX, TTL);
+
+    @Test
+    public void testAddAndRemove() {
+        int a = particles.add(), b = particles.add(), c = particles.add();
+        particles.doubles(X)[particles.getRow(c)] = 3;
+        assertEquals(3, particles.size());
+
+        particles.remove(a);
+        assertEquals(2, particles.size());
+        assertFalse(particles.contains(a));
+        assertTrue(particles.contains(b));
+        assertEquals(3, particles.doubles(X)[particles.getRow(c)], 0);
+
+        int d = particles.add();
+        assertEquals(a, d); // handles are reused
+        assertEquals(0, particles.doubles(X)[particles.getRow(d)], 0);
+    }
+
+    @Test
+    public void testParallelSystem() {
+        for(int i = 0; i < 100_000; i++) {
+            int row = particles.getRow(particles.add());
+            particles.doubles(VX)[row] = i;
+        }
+        var x = particles.doubles(X);
+        var vx = particles.doubles(VX);
+        particles.parallelForEachRange((from, to) -> {
+            for(int i = from; i < to; i++) x[i] += vx[i];
+        });
+        for(int i = 0; i < particles.size(); i++)
+            assertEquals(vx[i], x[i], 0);
+    }
+
+    @Test
+    public void testEntityFacade() {
+        int handle = particles.add();
+        particles.ints(TTL)[particles.getRow(handle)] = 5;
+        var entity = particles.getEntity(handle);
+        assertSame(entity, particles.getEntity(handle));
+        assertEquals("particle", entity.getType());
+        assertSame(entity, game.getEntity(entity.getID()));
+
+        assertEquals(5, entity.getInt(TTL));
+        assertEquals(5, entity.getProperty("ttl"));
+        entity.setProperty("ttl", "7");
+        assertEquals(7, particles.ints(TTL)[particles.getRow(handle)]);
+        entity.setProperty("color", "red");
+        assertEquals("red", entity.getString("color"));
+        assertEquals(entity.getID(), entity.getProperty("id"));
+
+        var tile = game.getBoard("map1").getTile(1, 1);
+        tile.addEntity(entity);
+        assertTrue(tile.containsEntity(entity));
+
+        particles.remove(handle);
+        assertNull(game.getEntity(entity.getID()));
+        assertTrue(tile.isEmpty());
+    }
+
+    @Test
+    public void testFacadeReadDuringConstruction() {
+        var seen = new java.util.ArrayList<Object>();
+        game.addEventListener(event -> event.getEntity().ifPresent(ent -> {
+            seen.add(ent.hasProperty(TTL));
+            seen.add(ent.getProperties().containsKey("ttl"));
+        }));
+        int handle = particles.add();
+        particles.ints(TTL)[particles.getRow(handle)] = 5;
+        var entity = particles.getEntity(handle);
+        assertEquals(false, seen.get(0));  // the facade is not backed by its row until constructed
+        assertEquals(false, seen.get(1));
+        assertEquals(5, entity.getInt(TTL));
+    }
+
+    @Test
+    public void testRemovalListenersSeeTheRow() {
+        int handle = particles.add();
+        particles.add();  // so removing the first row moves another one into it
+        particles.ints(TTL)[particles.getRow(handle)] = 5;
+        var entity = particles.getEntity(handle);
+        var seen = new java.util.ArrayList<Integer>();
+        game.addEventListener(event -> event.getEntity().filter(ent -> ent == entity)
+                .ifPresent(ent -> seen.add(ent.getInt(TTL))));
+        particles.remove(handle);
+        assertFalse(seen.isEmpty());
+        assertTrue(seen.stream().allMatch(ttl -> ttl == 5));
+    }
+
+    @Test
+    public void testFacadeLookupWhileRegistering() {
+        int first = particles.add(), second = particles.add();
+        var looked = new java.util.ArrayList<Entity>();
+        var asked = new boolean[1];
+        game.addEventListener(event -> {
+            if(asked[0]) return;
+            asked[0] = true;
+            looked.add(particles.getEntity(second));
+        });
+        var entity = particles.getEntity(first);
+        assertSame(entity, particles.getEntity(first));
+        assertSame(looked.get(0), particles.getEntity(second));
+    }
+}
@@ -0,0 +1,83 @@
+package com.sourcedestination.mqttrpg;
+
+import net.sourcedestination.funcles.tuple.Pair;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestBinaryMap {
+    Path file;
+
+    private BinaryMap compile(String charMap, Map<Pair<Integer>, Map<String,String>> overrides) throws Exception {
+        file = Files.createTempFile("map", ".bin");
+        BinaryMap.compile(charMap, overrides, file);
+        return BinaryMap.open(file, Map.of('#', Tile.getGenerator('#', "wall", Map.of())));
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        if(file != null) Files.delete(file);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        try(var map = compile(Map1.MAP1, Map.of())) {
+            assertEquals(5, map.getWidth());
+            assertEquals(5, map.getHeight());
+            var board = map.toBoard("binary");
+            var text = new Map1();
+            assertEquals(text.getTileMap(), board.getTileMap());
+            assertEquals("wall", board.getTile(0, 0).getType());
+            assertEquals("generic", board.getTile(1, 1).getType());
+            assertEquals(" ", board.getTile(1, 1).getProperty("character"));
+            assertEquals(board, board.getTile(3, 3).getBoard());
+        }
+    }
+
+    @Test
+    public void testBlankCellsAndOverrides() throws Exception {
+        try(var map = compile("##\n#\n", Map.of(Pair.makePair(1, 0), Map.of("goal", "true")))) {
+            assertEquals(2, map.getWidth());
+            assertEquals(2, map.getHeight());
+            assertNull(map.generateTile(1, 1));
+            assertEquals(0, map.getCharacter(1, 1));
+            assertEquals("true", map.generateTile(1, 0).getProperty("goal"));
+            assertFalse(map.generateTile(0, 0).hasProperty("goal"));
+        }
+    }
+
+    @Test
+    public void testChunkedBoardSource() throws Exception {
+        try(var map = compile(Map1.MAP1, Map.of())) {
+            var board = new ChunkedBoard("chunked", map, 2);
+            assertEquals(new Map1().getTileMap(), board.getTileMap());
+        }
+    }
+
+    private void assertRejected(long length) throws Exception {
+        try(var channel = java.nio.channels.FileChannel.open(file, java.nio.file.StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+        try {
+            BinaryMap.open(file, Map.of()).close();
+            fail("opened a map truncated to " + length + " bytes");
+        } catch(java.io.IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("truncated"));
+        }
+    }
+
+    @Test
+    public void testTruncatedFilesAreRejected() throws Exception {
+        compile(Map1.MAP1, Map.of(Pair.makePair(1, 1), Map.of("goal", "true"))).close();
+        long size = Files.size(file);
+        assertRejected(size - 3);   // inside the overrides
+        assertRejected(size - 30);  // inside the cells
+        assertRejected(17);         // inside the palette
+        assertRejected(10);         // inside the header
+    }
+}
@@ -9,6 +9,8 @@ import org.junit.Test;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.*;
 
@@ -114,5 +116,56 @@ public class TestBoard {
         assertEquals("5", board.getTileMap().substring(9,10));
     }
 
+    /** walls with loot derived from their location, as procedural generators should */
+    Map<Character, Function2<Integer,Integer,Tile>> procedural = Map.of('#', (col, row) -> {
+        var tile = Tile.getGenerator('#', "wall", Map.of()).apply(col, row);
+        tile.setProperty("loot", new Random(col * 31L + row).nextInt(100));
+        return tile;
+    });
+
+    private static void assertSameTiles(Board expected, Board actual) {
+        assertEquals(expected.getTiles().keySet(), actual.getTiles().keySet());
+        expected.getTiles().forEach((location, tile) -> {
+            var other = actual.getTiles().get(location);
+            assertEquals(tile.getType(), other.getType());
+            assertEquals(tile.getCharacter(), other.getCharacter());
+            assertEquals(tile.getProperties(), other.getProperties());
+            assertSame(actual, other.getBoard());
+        });
+    }
+
+    @Test
+    public void testParallelConstruction(){
+        var map = new StringBuilder();
+        var random = new Random(42);
+        for(int row = 0; row < 60; row++) {
+            for(int col = 0; col < 40 + row % 3; col++) map.append(random.nextInt(4) == 0 ? '#' : ' ');
+            map.append('\n');
+        }
+        var sequential = new Board("sequential", map.toString(), procedural);
+        for(int parallelism : new int[]{1, 3, 8}) {
+            var pool = new ForkJoinPool(parallelism);
+            try {
+                assertSameTiles(sequential, new Board("parallel", map.toString(), procedural, pool));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testParallelConstructionKeepsInitialTiles(){
+        var pool = new ForkJoinPool(2);
+        try {
+            var sequential = new DummyBoard("sequential", Map1.MAP1, new DummyTile(0, 0), new DummyTile(1, 1));
+            var parallel = new Board("parallel", Map1.MAP1, Map.of(), pool, tile1, tile4);
+            assertSameTiles(sequential, parallel);
+            assertSame(tile1, parallel.getTile(0, 0));
+            assertSame(tile4, parallel.getTile(1, 1));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
 
 }
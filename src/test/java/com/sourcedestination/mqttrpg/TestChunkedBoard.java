@@ -0,0 +1,125 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TestChunkedBoard {
+    AtomicInteger generated = new AtomicInteger();
+    TileSource source = TileSource.fromGenerator(1000, 1000, (col, row) -> {
+        generated.incrementAndGet();
+        return new DummyTile(col, row);
+    });
+    ChunkedBoard board = new ChunkedBoard("chunked", source, 10);
+    DummyGame game = new DummyGame(board);
+
+    @Test
+    public void testLazyMaterialization() {
+        assertEquals(0, board.getResidentChunkCount());
+        assertEquals(1000, board.getWidth());
+        assertEquals(1000, board.getHeight());
+
+        var tile = board.getTile(15, 25);
+        assertEquals(15, tile.getColumn());
+        assertEquals(25, tile.getRow());
+        assertEquals(board, tile.getBoard());
+        assertSame(tile, board.getTile(15, 25));
+        assertEquals(1, board.getResidentChunkCount());
+        assertEquals(100, generated.get());
+        assertEquals(100, board.getTileStream().count());
+
+        assertNull(board.getTile(1000, 0));
+        assertNull(board.getTile(-1, 0));
+    }
+
+    @Test
+    public void testAdjacentTileAcrossChunks() {
+        var tile = board.getTile(9, 9);
+        assertEquals(board.getTile(10, 9), board.getAdjacentTile(tile, Direction.EAST).get());
+        assertEquals(2, board.getResidentChunkCount());
+    }
+
+    @Test
+    public void testEvictIdleChunks() {
+        var occupied = board.getTile(5, 5);
+        var modified = board.getTile(25, 5);
+        board.getTile(45, 5);
+        assertEquals(3, board.getResidentChunkCount());
+
+        occupied.addEntity(new DummyEntity(game));
+        modified.setProperty("sprite", "U");
+
+        assertEquals(300, board.getResidentTileCount());
+        assertEquals(1, board.evictIdleChunks());
+        assertEquals(2, board.getResidentChunkCount());
+        assertEquals(200, board.getResidentTileCount());
+        assertSame(occupied, board.getTile(5, 5));
+        assertSame(modified, board.getTile(25, 5));
+        assertEquals("U", board.getTile(25, 5).getProperty("sprite"));
+    }
+
+    @Test
+    public void testCommittedSpeculationPinsChunk() {
+        var door = board.getTile(3, 3);
+        try(var s = game.speculate()) {
+            door.setProperty("door", "open");
+            s.commit();
+        }
+        assertEquals(0, board.evictIdleChunks());
+        assertEquals("open", board.getTile(3, 3).getProperty("door"));
+    }
+
+    @Test
+    public void testWritesPinChunksOutsideAGame() {
+        var detached = new ChunkedBoard("detached", source, 10);
+        detached.getTile(3, 3).setProperty("door", "open");
+        detached.getTile(33, 3);
+        assertEquals(1, detached.evictIdleChunks());
+        assertEquals("open", detached.getTile(3, 3).getProperty("door"));
+    }
+
+    @Test
+    public void testCloseClosesSource() throws Exception {
+        var closed = new AtomicInteger();
+        var closing = new TileSource() {
+            public int getWidth() { return 10; }
+            public int getHeight() { return 10; }
+            public Tile generateTile(int column, int row) { return new DummyTile(column, row); }
+            public void close() { closed.incrementAndGet(); }
+        };
+        try(var closable = new ChunkedBoard("closable", closing, 5)) {
+            closable.getTile(1, 1);
+        }
+        assertEquals(1, closed.get());
+    }
+
+    @Test
+    public void testAutomaticEviction() {
+        var limited = new ChunkedBoard("limited", source, 10, 2);
+        new DummyGame(limited);
+        for(int col = 0; col < 1000; col += 10)
+            limited.getTile(col, 0);
+        assertTrue(limited.getResidentChunkCount() <= 2);
+    }
+
+    @Test
+    public void testCharMapSource() throws Exception {
+        var file = Files.createTempFile("map", ".txt");
+        try {
+            Files.writeString(file, Map1.MAP1);
+            var charMapBoard = new ChunkedBoard("file", TileSource.fromCharMap(file, Map.of()), 2);
+            var eager = new Map1();
+            assertEquals(eager.getWidth(), charMapBoard.getWidth());
+            assertEquals(eager.getHeight(), charMapBoard.getHeight());
+            assertEquals(eager.getTileMap(), charMapBoard.getTileMap());
+            assertEquals("#", charMapBoard.getTile(0, 0).getProperty("character"));
+            assertEquals("generic", charMapBoard.getTile(2, 2).getType());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
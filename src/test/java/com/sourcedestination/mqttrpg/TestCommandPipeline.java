@@ -0,0 +1,155 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+
+public class TestCommandPipeline {
+
+    List<Command> received = new ArrayList<>();
+    DummyGame game = new DummyGame();
+    CommandPipeline pipeline = new CommandPipeline(game, 2)
+            .define(new CommandSchema("move").require("direction", Direction.class).optional("steps", Integer.class).strict())
+            .define(new CommandSchema("kick").require("agent", String.class).roles("admin"));
+
+    class Client extends ScriptedAgent {
+        Client(String id, String role) { super(game, id, role); }
+        public void act(long tick) { }
+        public void receiveCommand(Command command) { received.add(command); }
+    }
+
+    Client player = new Client("p1", "player");
+    Client admin = new Client("root", "admin");
+
+    @After
+    public void shutdown() {
+        pipeline.close();
+    }
+
+    private Throwable failure(Agent agent, String json) throws InterruptedException {
+        try {
+            pipeline.submit(agent, json).get();
+            fail();
+            return null;
+        } catch(ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    @Test
+    public void testParseJson() throws CommandException {
+        var command = new Command(game, "{\"type\":\"move\",\"steps\":3,\"big\":10000000000,\"speed\":1.5," +
+                "\"path\":[\"N\",true],\"meta\":{\"x\":null}}");
+        assertEquals(Integer.valueOf(3), command.getProperties().get("steps"));
+        assertEquals(10000000000L, command.getProperties().get("big"));
+        assertEquals(1.5, command.getProperties().get("speed"));
+        assertEquals(List.of("N", true), command.getProperties().get("path"));
+        assertTrue(((Map<?,?>)command.getProperties().get("meta")).containsKey("x"));
+        for(var bad : List.of("{\"type\":", "[1,2]", "42", "", "{type:move}", "{'type':'move'}",
+                "{\"speed\":NaN}", "{\"type\":\"move\"} {}", "{\"type\":\"move\"} // comment", "{\"a\":1,}"))
+            try {
+                new Command(game, bad);
+                fail(bad);
+            } catch(InvalidCommandException e) { }
+    }
+
+    @Test
+    public void testValidCommandsReachTheGame() throws Exception {
+        var command = pipeline.submit(player, "{\"type\":\"move\",\"direction\":\"NORTH\",\"steps\":2}").get();
+        assertTrue(received.isEmpty());  // queued, not yet handled
+        game.tick();
+        assertEquals(List.of(command), received);
+        assertEquals(Direction.NORTH, received.get(0).getDirection().get());
+        assertEquals(Direction.NORTH, received.get(0).getProperty("direction"));  // converted by the schema
+        assertEquals(1, pipeline.getAccepted());
+    }
+
+    @Test
+    public void testInvalidSequencesAreRejected() throws Exception {
+        for(var sequence : List.of("\"abc\"", "1.5", "-1", "\"7\"", "null"))
+            assertTrue(sequence, failure(player, "{\"type\":\"move\",\"direction\":\"EAST\",\"sequence\":" +
+                    sequence + "}") instanceof InvalidCommandException);
+        assertEquals(5, pipeline.getInvalid());
+        pipeline.submit(player, "{\"type\":\"move\",\"direction\":\"EAST\",\"sequence\":7}").get();
+
+        game.addCommand(player, new Command(game, Map.of("sequence", "abc")));  // dropped, not thrown
+        game.tick();
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    public void testInvalidCommandsAreRejected() throws Exception {
+        for(var json : List.of("not json", "{\"direction\":\"NORTH\"}", "{\"type\":\"fly\"}",
+                "{\"type\":\"move\"}", "{\"type\":\"move\",\"direction\":\"UP\"}",
+                "{\"type\":\"move\",\"direction\":\"EAST\",\"steps\":\"two\"}",
+                "{\"type\":\"move\",\"direction\":\"EAST\",\"speed\":1}"))
+            assertTrue(json, failure(player, json) instanceof InvalidCommandException);
+        assertEquals(7, pipeline.getInvalid());
+        game.tick();
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testAuthorization() throws Exception {
+        var json = "{\"type\":\"kick\",\"agent\":\"p1\"}";
+        assertTrue(failure(player, json) instanceof UnauthorizedCommandException);
+        pipeline.submit(admin, json).get();
+        game.tick();
+        assertEquals(1, received.size());
+        assertEquals(1, pipeline.getUnauthorized());
+    }
+
+    @Test
+    public void testAdmissionRejections() throws Exception {
+        game.getAdmissionControl().setMaxPending(1);
+        var json = "{\"type\":\"move\",\"direction\":\"SOUTH\"}";
+        pipeline.submit(player, json).get();
+        assertTrue(failure(player, json) instanceof CommandRejectedException);
+        assertEquals(1, pipeline.getRejected());
+    }
+
+    @Test
+    public void testFullBacklogRejectsPayloads() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var slow = new Client("slow", "player") {  // holds the only worker while it is authorized
+            volatile boolean stalling;
+
+            public String getRole() {
+                if(stalling) {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch(InterruptedException e) { }
+                }
+                return super.getRole();
+            }
+        };
+        slow.stalling = true;
+        try(var narrow = new CommandPipeline(game, 1, 1).define(new CommandSchema("wait").roles("player"))) {
+            var busy = narrow.submit(slow, "{\"type\":\"wait\"}");
+            started.await();
+            var waiting = narrow.submit(player, "{\"type\":\"wait\"}");
+            var refused = narrow.submit(player, "{\"type\":\"wait\"}");
+            try {
+                refused.get();
+                fail();
+            } catch(ExecutionException e) {
+                var rejection = (CommandRejectedException)e.getCause();
+                assertEquals(CommandRejectedException.Reason.PIPELINE_FULL, rejection.getReason());
+            }
+            release.countDown();
+            busy.get();
+            waiting.get();
+            assertEquals(1, narrow.getRejected());
+            assertEquals(2, narrow.getAccepted());
+        }
+    }
+}
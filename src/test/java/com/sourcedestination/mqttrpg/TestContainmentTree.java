@@ -0,0 +1,83 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class TestContainmentTree {
+
+    static class Chest extends Entity implements Container {
+        Chest(Game game) { super(game, Map.of()); }
+        public String getType() { return "chest"; }
+    }
+
+    DummyGame game = new DummyGame();
+    Board board = game.getBoard("map1");
+    Tile tile = board.getTile(1, 1);
+    Chest chest = new Chest(game);
+    Chest pouch = new Chest(game);
+    DummyEntity coin = new DummyEntity(game);
+
+    public TestContainmentTree() {
+        game.moveEntity(coin, pouch);
+        game.moveEntity(pouch, chest);
+        game.moveEntity(chest, tile);
+    }
+
+    @Test
+    public void testRootTile() {
+        assertEquals(tile, game.getRootTile(coin));
+        assertEquals(tile, game.getTopLevelEntityLocation(coin));
+        assertEquals(tile, game.getRootTile(chest));
+
+        var other = board.getTile(2, 2);
+        game.moveEntity(chest, other);
+        assertEquals(other, game.getRootTile(coin));
+
+        game.moveEntity(pouch, game);
+        assertNull(game.getRootTile(coin));
+        assertEquals(other, game.getRootTile(chest));
+    }
+
+    @Test
+    public void testCyclePrevention() {
+        for(var target : List.<Container>of(chest, pouch)) {
+            try {
+                game.moveEntity(chest, target);
+                fail();
+            } catch(IllegalArgumentException e) { }
+        }
+        assertEquals(tile, game.getEntityLocation(chest));
+        assertTrue(game.isContainedBy(coin, chest));
+        assertFalse(game.isContainedBy(chest, pouch));
+    }
+
+    @Test
+    public void testSubtreeIteration() {
+        assertEquals(Set.of(chest, pouch, coin), game.getAllContents(tile).collect(Collectors.toSet()));
+        assertEquals(List.of(pouch, coin), game.getAllContents(chest).collect(Collectors.toList()));
+        assertEquals(Set.of(chest), tile.getEntities().collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void testSubtreeMovesWithOneEvent() {
+        var events = new ArrayList<Event>();
+        game.addAgent(new Agent("watcher", "spectator") {
+            public void receiveCommand(Command command) { }
+            public void acceptEvent(Event event) { events.add(event); }
+            public Game getGame() { return game; }
+            public Map<String,Object> getProperties() { return Map.of(); }
+            public void setProperty(String key, Object value) { }
+        });
+        var boards = game.addIndex(EntityIndex.byBoard());
+        game.moveEntity(chest, game);
+        assertEquals(1, events.size());
+        assertFalse(boards.matches(coin, board));
+    }
+}
@@ -0,0 +1,120 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestEntityQuery {
+
+    static class Box extends Entity {
+        Box(Game game, Container location) { super(game, Map.of("impassable", "true"), location); }
+        public String getType() { return "box"; }
+    }
+
+    static class Chest extends Entity implements Container {
+        Chest(Game game, Container location) { super(game, Map.of(), location); }
+        public String getType() { return "chest"; }
+    }
+
+    /** takes its type from a field, which is not yet set while the Entity constructor registers it */
+    static class Monster extends Entity {
+        private final String species;
+
+        Monster(Game game, String species, Container location) {
+            super(game, Map.of(), location);
+            this.species = species;
+        }
+
+        public String getType() { return species; }
+    }
+
+    DummyGame game = new DummyGame();
+    Board board = game.getBoard("map1");
+    EntityIndex types = game.addIndex(EntityIndex.byType());
+    EntityIndex impassable = game.addIndex(EntityIndex.byProperty("impassable"));
+    EntityIndex boards = game.addIndex(EntityIndex.byBoard());
+    Box box1 = new Box(game, board.getTile(1, 1));
+    Box box2 = new Box(game, board.getTile(2, 2));
+    DummyEntity dummy = new DummyEntity(game);
+
+    @Test
+    public void testIndexesMaintained() {
+        assertEquals(Set.of(box1, box2), types.get("box"));
+        assertEquals(Set.of(dummy), types.get("dummy"));
+        assertEquals(2, impassable.count(true));
+        assertEquals(2, boards.count(board));
+
+        box1.setProperty("impassable", "false");
+        assertEquals(Set.of(box2), impassable.get("true"));
+
+        game.moveEntity(box2, game);
+        assertEquals(Set.of(box1), boards.get(board));
+
+        game.removeEntity(box1);
+        assertEquals(Set.of(box2), types.get("box"));
+        assertEquals(0, boards.count(board));
+        assertNull(game.getEntity(box1.getID()));
+    }
+
+    @Test
+    public void testQueries() {
+        assertEquals(Set.of(box1, box2), Set.copyOf(game.query().ofType("box").stream().toList()));
+        assertEquals(2, game.query().where("impassable", true).onBoard(board).count());
+        box1.setProperty("impassable", "false");
+        assertEquals(Set.of(box2), Set.copyOf(game.query().ofType("box").where("impassable", "true").stream().toList()));
+        assertEquals(1, game.query().where("DummyKey", "DummyValue").count()); // not indexed: falls back to a scan
+    }
+
+    @Test
+    public void testWinCondition() {
+        var goals = Set.of(board.getTile(1, 1), board.getTile(3, 3));
+        var allOnGoals = (java.util.function.Predicate<Entity>)box -> goals.contains(game.getEntityLocation(box));
+        assertFalse(game.query().ofType("box").allMatch(allOnGoals));
+        game.moveEntity(box2, board.getTile(3, 3));
+        assertTrue(game.query().ofType("box").allMatch(allOnGoals));
+    }
+
+    @Test
+    public void testContainedEntitiesFollowContainer() {
+        var chest = new Chest(game, board.getTile(3, 1));
+        var item = new DummyEntity(game);
+        game.moveEntity(item, chest);
+        assertTrue(boards.matches(item, board));
+        game.moveEntity(chest, game);
+        assertFalse(boards.matches(item, board));
+    }
+
+    @Test
+    public void testSubclassTypeSetAfterRegistration() {
+        var orc = new Monster(game, "orc", board.getTile(3, 3));
+        assertEquals(Set.of(orc), game.query().ofType("orc").stream().collect(java.util.stream.Collectors.toSet()));
+        assertEquals(Set.of(orc), types.get("orc"));
+        assertTrue(types.get(null).isEmpty());
+        var goblin = new Monster(game, "goblin", board.getTile(1, 2));
+        game.tick();
+        assertEquals(Set.of(goblin), types.get("goblin"));
+    }
+
+    @Test
+    public void testIndexLookupsFileNewEntities() {
+        var troll = new Monster(game, "troll", board.getTile(3, 3));
+        assertEquals(Set.of(troll), types.get("troll"));
+        var ogre = new Monster(game, "ogre", board.getTile(1, 2));
+        assertTrue(types.getKeys().contains("ogre"));
+        assertEquals(1, types.count("ogre"));
+        assertTrue(types.matches(ogre, "ogre"));
+        game.removeIndex(types);
+        new Monster(game, "imp", board.getTile(1, 3));
+        assertTrue(types.get("imp").isEmpty());
+    }
+
+    @Test
+    public void testNullWhereValueMatchesNothing() {
+        assertEquals(0, game.query().where("impassable", null).count());
+        assertEquals(0, game.query().where("colour", null).count());
+        assertEquals(0, game.query().ofType("box").where("colour", null).count());
+    }
+}
@@ -0,0 +1,147 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestEventFanout {
+
+    DummyGame game = new DummyGame();
+    Board board = game.getBoard("map1");
+    DummyEntity ent = new DummyEntity(game);
+    EventFanout fanout = new EventFanout(game);
+    List<EncodedEvent> received = new ArrayList<>();
+
+    @Test
+    public void testEncodesOncePerFormat() {
+        for(int i = 0; i < 100; i++)
+            fanout.subscribe("spectator" + i, i % 2 == 0 ? EventFormat.JSON : EventFormat.BINARY, received::add);
+        game.moveEntity(ent, board.getTile(1, 2));
+        assertEquals(100, received.size());
+        assertEquals(2, fanout.getEncodings());
+        assertEquals(100, fanout.getDeliveries());
+        assertSame(received.get(0), received.get(98));
+        assertSame(received.get(1), received.get(99));
+        assertEquals(EventFormat.BINARY, received.get(1).getFormat());
+    }
+
+    @Test
+    public void testEncodingIsDeferredUntilNeeded() {
+        fanout.subscribe("a", EventFormat.JSON, event -> event.getType().equals("tile-status-update"), received::add);
+        fanout.subscribe("b", EventFormat.BINARY, event -> false, received::add);
+        game.moveEntity(ent, board.getTile(1, 2));
+        assertEquals(0, fanout.getEncodings());
+        board.getTile(1, 2).setProperty("lit", true);
+        assertEquals(1, fanout.getEncodings());
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    public void testJsonMatchesEventToString() {
+        fanout.subscribe("a", EventFormat.JSON, payload -> received.add(payload.retain()));
+        var events = new ArrayList<String>();
+        game.addEventListener(event -> events.add(event.toString()));
+        game.moveEntity(ent, board.getTile(3, 4));
+        var payload = received.get(0);
+        assertEquals(events.get(0), new String(payload.toByteArray(), StandardCharsets.UTF_8));
+        assertTrue(payload.getBuffer().isReadOnly());
+    }
+
+    @Test
+    public void testBinaryFormat() throws IOException {
+        fanout.subscribe("a", EventFormat.BINARY, payload -> received.add(payload.retain()));
+        game.moveEntity(ent, board.getTile(3, 4));
+        var in = new DataInputStream(new ByteArrayInputStream(received.get(0).toByteArray()));
+        in.readInt();  // id
+        assertEquals(game.getGameTime(), in.readLong(), 1000);
+        assertEquals("entity-moved", readString(in));
+        int count = in.readShort();
+        var keys = new ArrayList<String>();
+        for(int i = 0; i < count; i++) {
+            var key = readString(in);
+            keys.add(key);
+            byte tag = in.readByte();
+            if(key.equals("row")) {
+                assertEquals('I', tag);
+                assertEquals(4, in.readInt());
+            } else if(tag == 'I') in.readInt();
+            else if(tag == 'S') readString(in);
+            else fail("unexpected tag " + (char)tag + " for " + key);
+        }
+        assertTrue(keys.containsAll(List.of("entity", "board", "row", "column", "id")));
+        assertEquals(-1, in.read());
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        var utf8 = new byte[in.readInt()];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testBinaryLongStrings() throws IOException {
+        var description = "\u00e9".repeat(50_000);  // 100 KB in UTF-8, past writeUTF's limit
+        var event = new Event(game, "description", Map.of("text", description));
+        var in = new DataInputStream(new ByteArrayInputStream(EventFormat.BINARY.encode(event)));
+        in.readInt();
+        in.readLong();
+        assertEquals("description", readString(in));
+        String text = null;
+        for(int i = in.readShort(); i > 0; i--) {
+            var key = readString(in);
+            byte tag = in.readByte();
+            if(tag == 'I') in.readInt();
+            else if(tag == 'J') in.readLong();
+            else if(key.equals("text")) text = readString(in);
+            else readString(in);
+        }
+        assertEquals(description, text);
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testFailingSubscriberDoesNotStopOthers() {
+        fanout.subscribe("broken", EventFormat.JSON, payload -> { throw new IllegalStateException(); });
+        fanout.subscribe("a", EventFormat.JSON, received::add);
+        game.moveEntity(ent, board.getTile(1, 1));
+        assertEquals(1, received.size());
+        assertEquals(1, fanout.getFailures());
+        assertEquals(1, fanout.getDeliveries());
+    }
+
+    @Test
+    public void testReferenceCounting() {
+        fanout.subscribe("keeps", EventFormat.JSON, payload -> received.add(payload.retain()));
+        fanout.subscribe("drops", EventFormat.JSON, payload -> { });
+        game.moveEntity(ent, board.getTile(1, 1));
+        var payload = received.get(0);
+        assertEquals(1, payload.getReferenceCount());
+        assertTrue(payload.size() > 0);
+        assertTrue(payload.release());
+        try {
+            payload.getBuffer();
+            fail();
+        } catch(IllegalStateException e) { }
+        try {
+            payload.retain();
+            fail();
+        } catch(IllegalStateException e) { }
+    }
+
+    @Test
+    public void testCancel() {
+        var subscription = fanout.subscribe("a", EventFormat.JSON, received::add);
+        assertEquals(1, fanout.getSubscriberCount());
+        subscription.cancel();
+        game.moveEntity(ent, board.getTile(1, 1));
+        assertTrue(received.isEmpty());
+    }
+}
@@ -0,0 +1,92 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+public class TestEvents {
+
+    DummyGame game = new DummyGame();
+    Board board = game.getBoard("map1");
+    DummyEntity ent = new DummyEntity(game);
+    List<Event> events = new ArrayList<>();
+
+    private void listen(Consumer<Event> handler) {
+        game.addAgent(new Agent("listener", "spectator") {
+            public void receiveCommand(Command command) { }
+            public void acceptEvent(Event event) { handler.accept(event); }
+            public Game getGame() { return game; }
+            public Map<String,Object> getProperties() { return Map.of(); }
+            public void setProperty(String key, Object value) { }
+        });
+    }
+
+    @Test
+    public void testMovedEventProperties() {
+        listen(events::add);
+        var from = board.getTile(1, 1);
+        var to = board.getTile(2, 3);
+        game.moveEntity(ent, from);
+        game.moveEntity(ent, to);
+        var event = events.get(1);
+        assertEquals("entity-moved", event.getType());
+        assertEquals(to, event.getTile().get());
+        assertEquals(from, event.getTile("previous-").get());
+        assertEquals(ent, event.getEntity().get());
+
+        var props = event.getProperties();
+        assertEquals(ent.getID(), props.get("entity"));
+        assertEquals("map1", props.get("board"));
+        assertEquals(3, props.get("row"));
+        assertEquals(2, props.get("column"));
+        assertEquals(1, props.get("previous-row"));
+        assertEquals(""+event.getProperty("id"), props.get("id"));
+        assertSame(props, event.getProperties());
+        assertEquals(List.of(ent, to), event.getUpdatedStates().toList());
+    }
+
+    @Test
+    public void testTileEventProperties() {
+        listen(events::add);
+        var tile = board.getTile(4, 2);
+        tile.setProperty("lit", true);
+        var event = events.get(0);
+        assertTrue(event instanceof TileStatusUpdateEvent);
+        assertEquals(tile, event.getTile().get());
+        assertEquals(Map.of("board", "map1", "row", 2, "column", 4, "id", ""+event.getProperty("id")),
+                event.getProperties());
+    }
+
+    @Test
+    public void testPooledEventsAreReused() {
+        game.setEventPooling(true);
+        listen(events::add);
+        game.moveEntity(ent, board.getTile(1, 1));
+        var first = events.get(0).getProperties();
+        game.moveEntity(ent, board.getTile(1, 2));
+        assertSame(events.get(0), events.get(1));
+        assertNotEquals(first.get("id"), events.get(1).getProperty("id"));
+        assertEquals(Integer.valueOf(2), events.get(1).getInteger("row"));
+    }
+
+    @Test
+    public void testNoReuseDuringPropagation() {
+        game.setEventPooling(true);
+        var tile = board.getTile(1, 1);
+        listen(event -> {
+            events.add(event);
+            if(event.getType().equals("entity-moved") && events.size() == 1)
+                tile.setProperty("visited", true); // nested event while the move is still being delivered
+        });
+        game.moveEntity(ent, tile);
+        game.moveEntity(ent, board.getTile(2, 2));
+        assertNotSame(events.get(0), events.get(1));
+        assertTrue(events.get(1) instanceof TileStatusUpdateEvent);
+        assertSame(events.get(0), events.get(2)); // top level move reuses the pooled event
+    }
+}
@@ -0,0 +1,91 @@
+package com.sourcedestination.mqttrpg;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class TestFlightRecorder {
+
+    DummyGame game = new DummyGame();
+    Board board = game.getBoard("map1");
+    DummyEntity ent = new DummyEntity(game);
+
+    class Client extends ScriptedAgent {
+        Client(String id) { super(game, id, "player"); }
+        public void act(long tick) { }
+        public void receiveCommand(Command command) {
+            game.addAction(((Action)g -> g.moveEntity(ent, board.getTile(2, 2))).describe("walk to the middle"));
+        }
+        @Override
+        public void acceptEvent(Event event) {
+            try {
+                Thread.sleep(5);
+            } catch(InterruptedException e) { }
+        }
+    }
+
+    Client client = new Client("slowpoke");
+
+    @Test
+    public void testDescribeSetsLogDescription() {
+        Action action = g -> { };
+        assertEquals("a generic action was performed", action.getLogDescription());
+        assertEquals("jumped", action.describe("jumped").getLogDescription());
+    }
+
+    @Test
+    public void testShippedProfileRecordsGameLoop() throws IOException, ParseException {
+        Configuration profile;
+        try(var in = getClass().getResourceAsStream("/mqttrpg.jfc")) {
+            profile = Configuration.create(new InputStreamReader(in));
+        }
+        List<RecordedEvent> events;
+        try(var recording = new Recording(profile.getSettings())) {
+            // drop the thresholds so the fast calls in this test are kept, except for the slow listener
+            for(var name : List.of("Tick", "CommandHandled", "ActionExecuted", "EventPropagated"))
+                recording.enable("mqttrpg." + name).withThreshold(Duration.ZERO);
+            recording.start();
+            game.addCommand(client, new Command(game, Map.of("type", "walk")));
+            game.tick();
+            recording.stop();
+            var file = Files.createTempFile("game", ".jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+            Files.delete(file);
+        }
+        var byName = events.stream().collect(Collectors.groupingBy(e -> e.getEventType().getName()));
+
+        var tick = byName.get("mqttrpg.Tick").get(0);
+        assertEquals(1, tick.getInt("commands"));
+        assertEquals(1, tick.getInt("actions"));
+
+        var command = byName.get("mqttrpg.CommandHandled").get(0);
+        assertEquals("slowpoke", command.getString("agent"));
+        assertEquals("walk", command.getString("commandType"));
+
+        var action = byName.get("mqttrpg.ActionExecuted").get(0);
+        assertEquals("walk to the middle", action.getString("description"));
+        assertEquals("serial", action.getString("mode"));
+
+        var moved = byName.get("mqttrpg.EventPropagated").stream()
+                .filter(e -> e.getString("eventType").equals("entity-moved")).findFirst().get();
+        assertEquals(1, moved.getInt("listeners"));
+
+        var slow = byName.get("mqttrpg.SlowListener").get(0);  // above the profile's 1 ms threshold
+        assertEquals("agent slowpoke", slow.getString("listener"));
+        assertEquals("entity-moved", slow.getString("eventType"));
+    }
+}
@@ -0,0 +1,146 @@
+package com.sourcedestination.mqttrpg;
+
+import net.sourcedestination.funcles.function.Function2;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/** retained heap per tile and per entity for representative worlds, checked against
+ * src/test/resources/footprint-baseline.properties. A measurement more than the baseline's tolerance above
+ * its baseline fails; measurements are written to target/footprint.properties, which can replace the
+ * baseline after a deliberate change.
+ * <p>
+ * Retained heap is measured as the growth of the used heap across building a world, after full
+ * collections, so the numbers are only comparable on the same JVM and collector. Excluded from the default
+ * test run; run with: mvn test -Pfootprint
+ */
+public class TestFootprint {
+
+    /** tiles or entities built per measurement, in copies of the world, to keep collector noise small */
+    static final int SAMPLE = 1_000_000;
+
+    static final Properties baseline = load();
+    static final Properties measured = new Properties();
+
+    private static Properties load() {
+        var properties = new Properties();
+        try(var in = TestFootprint.class.getResourceAsStream("/footprint-baseline.properties")) {
+            properties.load(in);
+        } catch(IOException | NullPointerException e) {
+            throw new AssertionError("footprint baseline missing", e);
+        }
+        return properties;
+    }
+
+    @AfterClass
+    public static void report() throws IOException {
+        Files.createDirectories(Path.of("target"));
+        try(Writer out = Files.newBufferedWriter(Path.of("target/footprint.properties"))) {
+            measured.store(out, "retained bytes measured by TestFootprint");
+        }
+    }
+
+    /** fails if a measurement exceeds its baseline by more than the tolerance */
+    private static void check(String key, double bytes) {
+        measured.setProperty(key, String.format("%.1f", bytes));
+        var expected = baseline.getProperty(key);
+        assertNotNull("no baseline for " + key, expected);
+        double tolerance = Double.parseDouble(System.getProperty("footprint.tolerance",
+                baseline.getProperty("tolerance", "0.1")));
+        double limit = Double.parseDouble(expected) * (1 + tolerance);
+        assertTrue(String.format("%s regressed: %.1f bytes, baseline %s", key, bytes, expected), bytes <= limit);
+    }
+
+    /** used heap after collecting until it stops shrinking */
+    private static long settledHeap() {
+        var memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for(int i = 0; i < 10; i++) {
+            System.gc();
+            long now = memory.getHeapMemoryUsage().getUsed();
+            if(now >= used) break;
+            used = now;
+        }
+        return used;
+    }
+
+    static String charMap(int width, int height, Random random) {
+        var map = new StringBuilder();
+        for(int row = 0; row < height; row++) {
+            for(int column = 0; column < width; column++)
+                map.append(random.nextInt(10) == 0 ? '#' : ' ');
+            map.append('\n');
+        }
+        return map.toString();
+    }
+
+    /** retained bytes per tile of boards with the given side, averaged over enough boards for SAMPLE tiles */
+    private static double bytesPerTile(int side) {
+        var map = charMap(side, side, new Random(42));
+        Map<Character, Function2<Integer,Integer,Tile>> generators =
+                Map.of('#', Tile.getGenerator('#', "wall", Map.of("impassable", "true")));
+        int copies = Math.max(1, SAMPLE / (side * side));
+        var boards = new ArrayList<Board>(copies);
+        long before = settledHeap();
+        for(int i = 0; i < copies; i++) boards.add(new Board("board" + i, map, generators));
+        long retained = settledHeap() - before;
+        assertEquals(copies, boards.size());
+        return (double)retained / copies / (side * side);
+    }
+
+    /** retained bytes per entity placed on tiles, with one property set, in games holding the given number */
+    private static double bytesPerEntity(int count) {
+        int copies = Math.max(1, SAMPLE / 10 / count);
+        var games = new ArrayList<Game>(copies);
+        for(int i = 0; i < copies; i++)
+            games.add(new DummyGame(new DummyBoard("arena", charMap(100, 100, new Random(i)))));
+        long before = settledHeap();
+        for(var game : games) {
+            var tiles = game.getBoard("arena").getTileStream().toList();
+            for(int i = 0; i < count; i++) {
+                var ent = new DummyEntity(game);
+                ent.setProperty("hp", i % 100);
+                game.moveEntity(ent, tiles.get(i % tiles.size()));
+            }
+        }
+        long retained = settledHeap() - before;
+        for(var game : games) assertEquals(count, game.getEntities().count());
+        return (double)retained / copies / count;
+    }
+
+    @Test
+    public void testTilesIn1kBoards() {
+        check("tile.bytes.1k", bytesPerTile(32));
+    }
+
+    @Test
+    public void testTilesIn100kBoards() {
+        check("tile.bytes.100k", bytesPerTile(317));
+    }
+
+    @Test
+    public void testTilesIn1mBoard() {
+        check("tile.bytes.1m", bytesPerTile(1000));
+    }
+
+    @Test
+    public void testEntitiesIn10kWorlds() {
+        check("entity.bytes.10k", bytesPerEntity(10_000));
+    }
+
+    @Test
+    public void testEntitiesIn100kWorld() {
+        check("entity.bytes.100k", bytesPerEntity(100_000));
+    }
+}
@@ -0,0 +1,132 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestLockstep {
+
+    /** moves its entity to a random tile, recording the order commands arrive in */
+    static class Walker extends Agent {
+        final Game game;
+        final Entity body;
+        final List<String> log;
+
+        Walker(Game game, String id, List<String> log) {
+            super(id, "player");
+            this.game = game;
+            this.log = log;
+            body = new DummyEntity(game);
+            game.addAgent(this);
+        }
+
+        public void receiveCommand(Command command) {
+            log.add(getAgentID() + ":" + command.getProperty("sequence"));
+            var board = game.getBoard("map1");
+            var rnd = game.getRandom();
+            game.moveEntity(body, board.getTile(rnd.nextInt(board.getWidth()), rnd.nextInt(board.getHeight())));
+        }
+
+        public void acceptEvent(Event event) { }
+        public Game getGame() { return game; }
+        public Map<String,Object> getProperties() { return Map.of(); }
+        public void setProperty(String key, Object value) { }
+    }
+
+    private static Command command(Game game, int sequence) {
+        return new Command(game, Map.of("sequence", sequence));
+    }
+
+    @Test
+    public void testReplicasStayInSync() {
+        var logA = new ArrayList<String>();
+        var logB = new ArrayList<String>();
+        var a = new DummyGame();
+        var b = new DummyGame();
+        a.setLockstep(42, 50);
+        b.setLockstep(42, 50);
+        var a1 = new Walker(a, "alice", logA);
+        var a2 = new Walker(a, "bob", logA);
+        var b1 = new Walker(b, "alice", logB);
+        var b2 = new Walker(b, "bob", logB);
+
+        for(int t = 0; t < 10; t++) {
+            // commands arrive in different orders on each replica
+            a.addCommand(a2, command(a, 2*t+1));
+            a.addCommand(a1, command(a, 2*t));
+            a.addCommand(a2, command(a, 2*t));
+            b.addCommand(b1, command(b, 2*t));
+            b.addCommand(b2, command(b, 2*t));
+            b.addCommand(b2, command(b, 2*t+1));
+            a.tick();
+            b.tick();
+            assertEquals(a.getLastTickHash(), b.getLastTickHash());
+        }
+        assertEquals(logA, logB);
+        assertEquals(500, a.getGameTime());
+        assertEquals(10, a.getTickCount());
+        assertEquals(a.getEntityLocation(a1.body).toString(), b.getEntityLocation(b1.body).toString());
+    }
+
+    @Test
+    public void testHashDetectsDivergence() {
+        var a = new DummyGame();
+        var b = new DummyGame();
+        a.setLockstep(7, 10);
+        b.setLockstep(7, 10);
+        new DummyEntity(a);
+        new DummyEntity(b);
+        a.tick();
+        b.tick();
+        assertEquals(a.getLastTickHash(), b.getLastTickHash());
+
+        b.getBoard("map1").getTile(1, 1).setProperty("lit", true);
+        a.tick();
+        b.tick();
+        assertNotEquals(a.getLastTickHash(), b.getLastTickHash());
+    }
+
+    @Test
+    public void testHashCoversStructuredValues() {
+        var a = new DummyGame();
+        var b = new DummyGame();
+        a.setLockstep(7, 10);
+        b.setLockstep(7, 10);
+        var entA = new DummyEntity(a);
+        var entB = new DummyEntity(b);
+        entA.setProperty("facing", Direction.NORTH);
+        entB.setProperty("facing", Direction.NORTH);
+        entA.setProperty("inventory", List.of("key", Map.of("gold", 3)));
+        entB.setProperty("inventory", List.of("key", Map.of("gold", 3)));
+        assertEquals(a.getStateHash(), b.getStateHash());
+        entB.setProperty("inventory", List.of("key", Map.of("gold", 4)));
+        assertNotEquals(a.getStateHash(), b.getStateHash());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testHashRejectsOpaqueValues() {
+        var game = new DummyGame();
+        new DummyEntity(game).setProperty("handle", new Object());
+        game.getStateHash();
+    }
+
+    @Test
+    public void testRandomStateRestores() {
+        var random = new GameRandom(123);
+        random.nextLong();
+        long saved = random.getState();
+        var first = List.of(random.nextInt(10), random.nextInt(1000), random.nextInt(1 << 20));
+        random.setState(saved);
+        assertEquals(first, List.of(random.nextInt(10), random.nextInt(1000), random.nextInt(1 << 20)));
+        for(int i = 0; i < 1000; i++) {
+            int r = random.nextInt(3, 9);
+            assertTrue(r >= 3 && r < 9);
+            double d = random.nextDouble();
+            assertTrue(d >= 0 && d < 1);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestMetrics {
+
+    DummyGame game = new DummyGame();
+    Board board = game.getBoard("map1");
+    DummyEntity ent = new DummyEntity(game);
+
+    class Client extends ScriptedAgent {
+        Client(String id) { super(game, id, "player"); }
+        public void act(long tick) { }
+        public void receiveCommand(Command command) throws CommandException {
+            if(command.getProperties().containsKey("bad")) throw new InvalidCommandException("bad");
+            game.addAction(g -> g.moveEntity(ent, board.getTile(1, 1)));
+        }
+    }
+
+    Client client = new Client("c1");
+
+    @Test
+    public void testGameLoopMetrics() {
+        game.addCommand(client, new Command(game, Map.of()));
+        game.addCommand(client, new Command(game, Map.of("bad", true)));
+        assertEquals(2, (int)Double.parseDouble(gauge("mqttrpg_pending_commands")));
+        game.tick();
+        game.tick();
+        var metrics = game.getMetrics().toPrometheusText();
+        assertTrue(metrics.contains("mqttrpg_commands_processed_total 2\n"));
+        assertTrue(metrics.contains("mqttrpg_command_errors_total{exception=\"InvalidCommandException\"} 1\n"));
+        assertTrue(metrics.contains("mqttrpg_actions_processed_total 1\n"));
+        assertTrue(metrics.contains("mqttrpg_tick_duration_seconds_count 2\n"));
+        assertTrue(metrics.contains("mqttrpg_command_latency_seconds_count 2\n"));
+        assertTrue(metrics.contains("mqttrpg_events_propagated_total{type=\"entity-moved\"} 1\n"));
+        assertTrue(metrics.contains("mqttrpg_event_listener_invocations_total 1\n"));  // the client agent
+        assertEquals("1", gauge("mqttrpg_entities"));
+        assertEquals("25", gauge("mqttrpg_tiles"));
+        assertEquals("0", gauge("mqttrpg_pending_commands"));
+        assertEquals("2", gauge("mqttrpg_ticks"));
+
+        new DummyEntity(game);  // sizes are published by the game thread after each tick
+        assertEquals("1", gauge("mqttrpg_entities"));
+        game.tick();
+        assertEquals("2", gauge("mqttrpg_entities"));
+    }
+
+    private String gauge(String name) {
+        for(var line : game.getMetrics().toPrometheusText().split("\n"))
+            if(line.startsWith(name + " ")) return line.substring(name.length() + 1);
+        throw new AssertionError("no gauge " + name);
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        var histogram = new MetricsRegistry().histogram("h", "test", 1);
+        for(int i = 0; i < 90; i++) histogram.record(3);
+        for(int i = 0; i < 10; i++) histogram.record(1000);
+        assertEquals(100, histogram.getCount());
+        assertEquals(10270, histogram.getSum(), 0);
+        assertEquals(3, histogram.quantile(0.5), 0);
+        assertEquals(1023, histogram.quantile(0.99), 0);
+    }
+
+    @Test
+    public void testExport() throws IOException, InterruptedException {
+        var metrics = new MetricsRegistry();
+        metrics.counter("c_total", "a counter").add(5);
+        metrics.gauge("g", "a gauge", () -> 2.5);
+        var file = Files.createTempFile("metrics", ".prom");
+        metrics.writeTo(file);
+        assertEquals("# HELP c_total a counter\n# TYPE c_total counter\nc_total 5\n" +
+                "# HELP g a gauge\n# TYPE g gauge\ng 2.5\n", Files.readString(file));
+        Files.delete(file);
+
+        var server = metrics.serve(0);
+        try {
+            var response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + server.getAddress().getPort() + "/metrics")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertTrue(response.body().contains("c_total 5\n"));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class TestOutboundQueue {
+
+    DummyGame game = new DummyGame();
+    Board board = game.getBoard("map1");
+    DummyEntity ent = new DummyEntity(game);
+    OutboundDispatcher dispatcher = new OutboundDispatcher(game, new EventFanout(game), 1);
+
+    /** a client that stops reading until released */
+    static class StalledConnection implements AgentConnection {
+        final CountDownLatch firstSend = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger sent = new AtomicInteger();
+        final AtomicInteger resyncs = new AtomicInteger();
+        volatile boolean closed;
+
+        public void send(EncodedEvent payload) {
+            firstSend.countDown();
+            try {
+                release.await();
+            } catch(InterruptedException e) { }
+            payload.getBuffer();  // still readable on the I/O thread
+            sent.incrementAndGet();
+        }
+
+        public void resync() { resyncs.incrementAndGet(); }
+
+        public void close() { closed = true; }
+    }
+
+    StalledConnection client = new StalledConnection();
+
+    @After
+    public void shutdown() {
+        client.release.countDown();
+        dispatcher.close();
+    }
+
+    private void moves(int n) {
+        for(int i = 0; i < n; i++) game.moveEntity(ent, board.getTile(i % 5, (i / 5) % 5));
+    }
+
+    /** moves once and waits until that event is stuck in the client's write */
+    private void stall() throws InterruptedException {
+        moves(1);
+        assertTrue(client.firstSend.await(5, TimeUnit.SECONDS));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(!condition.getAsBoolean()) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testDropOldestDoesNotStallTheGame() throws InterruptedException {
+        var queue = dispatcher.attach("a", EventFormat.JSON, client, SlowConsumerPolicy.DROP_OLDEST, 10);
+        stall();
+        moves(100);
+        assertEquals(10, queue.getDepth());
+        assertEquals(90, queue.getDropped());
+        assertTrue(queue.getLagMillis() >= 0);
+        client.release.countDown();
+        await(() -> client.sent.get() == 11);
+        assertEquals(0, queue.getDepth());
+        assertEquals(11, queue.getSent());
+    }
+
+    @Test
+    public void testCoalesceKeepsLatestPerEntity() throws InterruptedException {
+        var other = new DummyEntity(game);
+        var queue = dispatcher.attach("a", EventFormat.JSON, client, SlowConsumerPolicy.COALESCE, 10);
+        stall();
+        for(int i = 0; i < 25; i++) {
+            game.moveEntity(ent, board.getTile(i % 5, 1));
+            game.moveEntity(other, board.getTile(i % 5, 2));
+        }
+        board.getTile(4, 4).setProperty("lit", true);
+        assertEquals(3, queue.getDepth());
+        assertEquals(48, queue.getCoalesced());
+        assertEquals(0, queue.getDropped());
+    }
+
+    @Test
+    public void testResyncDropsBacklog() throws InterruptedException {
+        var queue = dispatcher.attach("a", EventFormat.BINARY, client, SlowConsumerPolicy.RESYNC, 5);
+        stall();
+        moves(19);
+        assertEquals(3, queue.getResyncs());
+        assertEquals(4, queue.getDepth());
+        assertEquals(15, queue.getDropped());
+        client.release.countDown();
+        await(() -> client.sent.get() == 5);
+        assertEquals(1, client.resyncs.get());
+    }
+
+    @Test
+    public void testDisconnectSlowClient() throws InterruptedException {
+        var queue = dispatcher.attach("a", EventFormat.JSON, client, SlowConsumerPolicy.DISCONNECT, 3);
+        stall();
+        moves(4);
+        assertTrue(queue.isClosed());
+        assertEquals(0, queue.getDepth());
+        client.release.countDown();
+        await(() -> client.closed);
+        await(() -> dispatcher.getQueue("a") == null);
+        moves(5);
+        assertEquals(1, client.sent.get());
+    }
+
+    @Test
+    public void testPerAgentMetrics() throws InterruptedException {
+        dispatcher.attach("a", EventFormat.JSON, client, SlowConsumerPolicy.DROP_OLDEST, 10);
+        stall();
+        moves(3);
+        var metrics = game.getMetrics().toPrometheusText();
+        assertTrue(metrics.contains("mqttrpg_outbound_queue_depth{agent=\"a\"} 3\n"));
+        assertTrue(metrics.contains("mqttrpg_outbound_lag_seconds{agent=\"a\"} "));
+        moves(10);
+        metrics = game.getMetrics().toPrometheusText();
+        assertTrue(metrics.contains("# TYPE mqttrpg_outbound_dropped_events_total counter\n"));
+        assertTrue(metrics.contains("mqttrpg_outbound_dropped_events_total{agent=\"a\"} 3\n"));
+        dispatcher.detach("a");
+        assertFalse(game.getMetrics().toPrometheusText().contains("agent=\"a\""));
+    }
+
+    @Test
+    public void testQueuedAgentsAreNotCalledOnTheGameThread() throws InterruptedException {
+        var calls = new AtomicInteger();
+        var agent = new ScriptedAgent(game, "a", "player") {
+            public void act(long tick) { }
+            public void receiveCommand(Command command) { }
+            public void acceptEvent(Event event) { calls.incrementAndGet(); }
+        };
+        var queue = dispatcher.attach("a", EventFormat.JSON, client, SlowConsumerPolicy.DROP_OLDEST, 10);
+        stall();
+        moves(3);
+        assertEquals(0, calls.get());
+        assertEquals(3, queue.getDepth());
+
+        game.removeAgent(agent);
+        assertNull(dispatcher.getQueue("a"));
+        assertTrue(queue.isClosed());
+        client.release.countDown();
+        await(() -> client.closed);
+    }
+
+    @Test
+    public void testDetachedAgentsReceiveEventsAgain() {
+        var calls = new AtomicInteger();
+        new ScriptedAgent(game, "a", "player") {
+            public void act(long tick) { }
+            public void receiveCommand(Command command) { }
+            public void acceptEvent(Event event) { calls.incrementAndGet(); }
+        };
+        dispatcher.attach("a", EventFormat.JSON, client, SlowConsumerPolicy.DROP_OLDEST, 10);
+        dispatcher.detach("a");
+        moves(2);
+        assertEquals(2, calls.get());
+    }
+}
@@ -0,0 +1,109 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestParallelActions {
+
+    Board board = new Board("open", ("          \n").repeat(10), Map.of());
+    DummyGame game = new DummyGame(board);
+    List<DummyEntity> entities = new ArrayList<>();
+
+    public TestParallelActions() {
+        for(int i = 0; i < 8; i++) {
+            var ent = new DummyEntity(game);
+            game.moveEntity(ent, board.getTile(i, 1));
+            entities.add(ent);
+        }
+        game.setActionParallelism(4);
+    }
+
+    @Test
+    public void testDisjointActionsCommit() {
+        for(var ent : entities)
+            game.addAction(g -> {
+                var tile = (Tile)g.getEntityLocation(ent);
+                g.moveEntity(ent, board.getTile(tile.getColumn(), 2));
+                assertEquals(2, ((Tile)g.getEntityLocation(ent)).getRow()); // sees its own write
+                ent.setProperty("moved", true);
+            });
+        game.tick();
+        for(int i = 0; i < entities.size(); i++) {
+            assertEquals(board.getTile(i, 2), game.getEntityLocation(entities.get(i)));
+            assertEquals(true, entities.get(i).getProperty("moved"));
+        }
+        assertEquals(8, game.getActionsCommitted());
+        assertEquals(0, game.getActionsReexecuted());
+    }
+
+    @Test
+    public void testSwallowedAbortStillSerializes() {
+        int[] followUps = {0};
+        for(int i = 0; i < 2; i++)
+            game.addAction(g -> {
+                try {
+                    g.addAction(h -> { h.serialOnly(); followUps[0]++; });
+                } catch(RuntimeException e) {
+                    // an action hiding errors must not hide the untracked operation
+                }
+            });
+        game.tick();
+        assertEquals(2, game.getActionsSerialized());
+        game.tick();
+        assertEquals(2, followUps[0]);
+    }
+
+    @Test
+    public void testConflictsReexecute() {
+        var target = board.getTile(3, 3);
+        // each action moves the next entity onto the target tile and records how many it found there
+        for(var ent : entities)
+            game.addAction(g -> {
+                int count = (int)target.getEntities().count();
+                g.moveEntity(ent, target);
+                ent.setProperty("seen", count);
+            });
+        game.tick();
+        for(int i = 0; i < entities.size(); i++)
+            assertEquals(i, entities.get(i).getProperty("seen"));
+        assertEquals(8, target.getEntities().count());
+        assertEquals(7, game.getActionsReexecuted());
+    }
+
+    @Test
+    public void testUntrackedOperationsRunSerially() {
+        var created = new ArrayList<Entity>();
+        game.addAction(g -> created.add(new DummyEntity(g)));
+        game.addAction(g -> g.moveEntity(entities.get(0), board.getTile(5, 5)));
+        game.addAction(g -> {
+            if(!created.isEmpty()) created.get(0).setProperty("seen", true);
+        });
+        game.tick();
+        assertEquals(1, game.getActionsSerialized());
+        assertEquals(board.getTile(5, 5), game.getEntityLocation(entities.get(0)));
+        assertEquals(true, created.get(0).getProperty("seen"));
+    }
+
+    @Test
+    public void testEventsRaisedOnCommit() {
+        var events = new ArrayList<Event>();
+        game.addAgent(new Agent("watcher", "spectator") {
+            public void receiveCommand(Command command) { }
+            public void acceptEvent(Event event) { events.add(event); }
+            public Game getGame() { return game; }
+            public Map<String,Object> getProperties() { return Map.of(); }
+            public void setProperty(String key, Object value) { }
+        });
+        for(var ent : entities)
+            game.addAction(g -> g.moveEntity(ent, board.getTile(ent.getID() % 8, 4)));
+        game.tick();
+        assertEquals(8, events.size());
+        for(int i = 0; i < entities.size(); i++)
+            assertSame(entities.get(i), events.get(i).getEntity().get());
+    }
+}
@@ -0,0 +1,106 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestPropertyStore {
+    static final PropertyKey<Integer> HP = PropertyKey.intKey("hp");
+    static final PropertyKey<Boolean> IMPASSABLE = PropertyKey.booleanKey("impassable");
+    static final PropertyKey<Double> SPEED = PropertyKey.doubleKey("speed");
+
+    @Test
+    public void testInterning() {
+        assertSame(HP, PropertyKey.intKey("hp"));
+        assertEquals(HP.getId(), PropertyKey.of("hp").getId());
+        assertNotEquals(HP.getId(), IMPASSABLE.getId());
+    }
+
+    @Test
+    public void testLookupsDoNotInternNames() {
+        var store = new PropertyStore(Map.of("a", "1"));
+        var name = "never-set-" + System.nanoTime();
+        assertFalse(store.contains(name));
+        assertNull(store.get(name));
+        assertNull(store.asMap().get(name));
+        assertFalse(store.asMap().containsKey(name));
+        assertFalse(store.remove(name));
+        assertEquals(-1, PropertyKey.find(name));
+        store.put(name, 1);
+        assertEquals(1, store.get(name));
+        assertNotEquals(-1, PropertyKey.find(name));
+    }
+
+    @Test
+    public void testTypedSlots() {
+        var store = new PropertyStore();
+        store.setInt(HP, 10);
+        store.setBoolean(IMPASSABLE, true);
+        store.setDouble(SPEED, 1.5);
+        assertEquals(10, store.getInt(HP));
+        assertTrue(store.getBoolean(IMPASSABLE));
+        assertEquals(1.5, store.getDouble(SPEED), 0);
+        assertEquals(3, store.size());
+
+        // the string-keyed API sees the same values in boxed form
+        assertEquals(10, store.get("hp"));
+        assertEquals(true, store.get("impassable"));
+        assertEquals(Map.of("hp", 10, "impassable", true, "speed", 1.5), new HashMap<>(store.asMap()));
+    }
+
+    @Test
+    public void testConversions() {
+        var store = new PropertyStore(Map.of("hp", "7", "impassable", "true"));
+        assertEquals(7, store.getInt(HP));
+        assertTrue(store.getBoolean(IMPASSABLE));
+        assertEquals((Integer)7, store.get(HP));
+        assertEquals("7", store.get(PropertyKey.stringKey("hp")));
+        assertNull(store.get(SPEED));
+        try {
+            store.getDouble(SPEED);
+            fail();
+        } catch(IllegalArgumentException e) { }
+    }
+
+    @Test
+    public void testViews() {
+        var store = new PropertyStore(Map.of("a", "1"));
+        var view = store.asMap("id", 5);
+        assertEquals(Map.of("a", "1", "id", 5), new HashMap<>(view));
+        store.put("b", 2);
+        assertEquals(3, view.size());
+        assertEquals(2, view.get("b"));
+        try {
+            view.put("c", 3);
+            fail();
+        } catch(UnsupportedOperationException e) { }
+    }
+
+    @Test
+    public void testHasPropertiesAccessors() {
+        var game = new DummyGame();
+        var entity = new DummyEntity(game);
+        entity.setInt(HP, 3);
+        assertEquals(3, entity.getInt(HP));
+        assertEquals((Integer)3, entity.getInteger("hp"));
+        assertEquals("DummyValue", entity.getString("DummyKey"));
+        assertEquals(entity.getID(), entity.getProperty("id"));
+
+        var tile = game.getBoard("map1").getTile(1, 1);
+        tile.setBoolean(IMPASSABLE, true);
+        assertTrue(tile.getBoolean(IMPASSABLE));
+    }
+
+    @Test
+    public void testEventCoordinatesResolveTiles() {
+        var game = new DummyGame();
+        var tile = game.getBoard("map1").getTile(2, 3);
+        var event = new Event(game, "entity-moved", Map.of("board", "map1", "row", 3, "column", 2));
+        assertEquals(tile, event.getTile().get());
+        var legacy = new Event(game, "entity-moved", Map.of("board", "map1", "row", "3", "column", "2"));
+        assertEquals(tile, legacy.getTile().get());
+    }
+}
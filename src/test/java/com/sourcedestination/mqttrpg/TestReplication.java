@@ -0,0 +1,240 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.*;
+
+public class TestReplication {
+
+    /** spawns entities and moves them to random tiles, marking the tiles they visit */
+    static class Builder extends ScriptedAgent {
+        Builder(Game game, String id) { super(game, id, "builder"); }
+
+        public void act(long tick) { }
+
+        public void receiveCommand(Command command) {
+            var game = getGame();
+            var board = game.getBoard("map1");
+            var rnd = game.getRandom();
+            var tile = board.getTile(1 + rnd.nextInt(3), 1 + rnd.nextInt(3));
+            Entity ent;
+            if("spawn".equals(command.getProperty("type"))) {
+                ent = new DummyEntity(game);
+                ent.setProperty("hp", rnd.nextInt(100));
+            } else {
+                ent = game.getEntity(((Number)command.getProperty("entity")).intValue());
+            }
+            game.moveEntity(ent, tile);
+            tile.setProperty("visited", getAgentID());
+        }
+    }
+
+    /** delivers messages through a shared local transport unless they are filtered out */
+    static class LossyTransport implements NodeTransport {
+        final NodeTransport delegate;
+        Predicate<String> drop = message -> false;
+
+        LossyTransport(NodeTransport delegate) { this.delegate = delegate; }
+
+        public void start(String nodeId, Consumer<String> receiver) throws IOException { delegate.start(nodeId, receiver); }
+        public void send(String nodeId, String message) throws IOException {
+            if(!drop.test(message)) delegate.send(nodeId, message);
+        }
+        public void stop(String nodeId) { delegate.stop(nodeId); }
+    }
+
+    LocalTransport hub = new LocalTransport();
+    LossyTransport transport = new LossyTransport(hub);
+    DummyGame primaryGame = lockstep(new DummyGame());
+    Builder alice = new Builder(primaryGame, "alice");
+    Builder bob = new Builder(primaryGame, "bob");
+    ReplicationPrimary primary = primary(primaryGame, "primary");
+
+    private static DummyGame lockstep(DummyGame game) {
+        game.setLockstep(42, 16);
+        return game;
+    }
+
+    private ReplicationPrimary primary(Game game, String id) {
+        try {
+            return new ReplicationPrimary(game, id, transport, 5);
+        } catch(IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private GameReplica replica(String id) throws IOException {
+        var replica = new GameReplica(lockstep(new DummyGame()), id, "primary", transport, (g, agent, role) -> new Builder(g, agent));
+        replica.registerType("dummy", DummyEntity::new);
+        return replica;
+    }
+
+    /** issues a spawn and a move and runs a tick on the primary */
+    private void play(Game game, Agent a, Agent b) {
+        game.addCommand(a, new Command(game, Map.of("type", "spawn")));
+        var existing = game.getEntities().mapToInt(Entity::getID).min();
+        if(existing.isPresent())
+            game.addCommand(b, new Command(game, Map.of("type", "move", "entity", existing.getAsInt())));
+        game.tick();
+    }
+
+    private static void assertInSync(Game expected, GameReplica replica) {
+        assertEquals(expected.getTickCount(), replica.getAppliedTick());
+        assertEquals(expected.getStateHash(), replica.getGame().getStateHash());
+        assertEquals(expected.getEntities().count(), replica.getGame().getEntities().count());
+    }
+
+    @Test
+    public void testReplicaReplaysTicks() throws IOException {
+        var replica = replica("standby");
+        for(int t = 0; t < 20; t++) {
+            play(primaryGame, alice, bob);
+            assertEquals(1, replica.poll());
+            assertInSync(primaryGame, replica);
+        }
+        assertEquals(20, replica.getFramesApplied());
+        assertEquals(0, replica.getDivergences());
+        assertEquals(0, primary.getSnapshotsSent());
+    }
+
+    @Test
+    public void testLateReplicaStartsFromSnapshot() throws IOException {
+        for(int t = 0; t < 20; t++) play(primaryGame, alice, bob);
+        var replica = replica("late");
+        play(primaryGame, alice, bob); // the primary answers the join at the end of the tick
+        replica.poll();
+        assertEquals(1, replica.getSnapshotsRestored());
+        assertInSync(primaryGame, replica);
+
+        for(int t = 0; t < 5; t++) {
+            play(primaryGame, alice, bob);
+            replica.poll();
+        }
+        assertInSync(primaryGame, replica);
+        assertEquals(0, replica.getDivergences());
+        assertEquals(26, replica.getGame().getEntities().count());
+    }
+
+    /** marks a tile on every beat, so a replica missing the timer diverges */
+    private static void heartbeat(Game game) {
+        game.scheduleAtFixedRate(g -> g.getBoard("map1").getTile(2, 2).setProperty("beat", g.getTickCount()), 32, 32);
+    }
+
+    @Test
+    public void testTimersAreReplayedByReplicas() throws IOException {
+        heartbeat(primaryGame);
+        var game = lockstep(new DummyGame());
+        heartbeat(game);
+        var replica = new GameReplica(game, "standby", "primary", transport, (g, agent, role) -> new Builder(g, agent));
+        replica.registerType("dummy", DummyEntity::new);
+        for(int t = 0; t < 10; t++) {
+            play(primaryGame, alice, bob);
+            replica.poll();
+            assertInSync(primaryGame, replica);
+        }
+        assertEquals(0, replica.getDivergences());
+        assertNotNull(game.getBoard("map1").getTile(2, 2).getProperty("beat"));
+    }
+
+    @Test
+    public void testSnapshotOfGameWithTimersIsRefused() throws IOException {
+        heartbeat(primaryGame);
+        for(int t = 0; t < 20; t++) play(primaryGame, alice, bob);
+        var replica = replica("late");
+        play(primaryGame, alice, bob);
+        for(int attempt = 0; attempt < 2; attempt++) {
+            try {
+                replica.poll();
+                fail("late replica cannot catch up without a snapshot");
+            } catch(IllegalStateException e) { }
+            play(primaryGame, alice, bob);
+        }
+        assertEquals(1, primary.getSnapshotsRefused());  // refused once, not asked again in a loop
+        assertEquals(0, primary.getSnapshotsSent());
+        assertEquals(0, replica.getSnapshotsRestored());
+    }
+
+    @Test
+    public void testMalformedMessagesAreDropped() throws IOException {
+        var replica = replica("standby");
+        for(var message : java.util.List.of("not json", "{}", "{\"kind\":[1]}", "{\"kind\":\"resend\"}",
+                "{\"kind\":\"resend\",\"replica\":\"standby\",\"from\":-1}",
+                "{\"kind\":\"resend\",\"replica\":7,\"from\":1}"))
+            hub.send("primary", message);
+        for(var message : java.util.List.of("not json", "{}", "{\"kind\":[1]}", "{\"kind\":\"gossip\"}",
+                "{\"kind\":\"frame\",\"tick\":1}", "{\"kind\":\"frame\",\"tick\":\"x\",\"hash\":1,\"commands\":[]}",
+                "{\"kind\":\"frame\",\"tick\":1,\"hash\":1,\"commands\":[{\"agent\":\"alice\"}]}",
+                "{\"kind\":\"snapshot\"}"))
+            hub.send("standby", message);
+        play(primaryGame, alice, bob);
+        assertEquals(6, primary.getRequestsDropped());
+        assertEquals(1, replica.poll());
+        assertEquals(8, replica.getMessagesDropped());
+        assertInSync(primaryGame, replica);
+    }
+
+    @Test
+    public void testMissingFramesAreResent() throws IOException {
+        var replica = replica("standby");
+        play(primaryGame, alice, bob);
+        replica.poll();
+        transport.drop = message -> message.contains("\"tick\":2,");
+        play(primaryGame, alice, bob);
+        play(primaryGame, alice, bob);
+        transport.drop = message -> false;
+        assertEquals(0, replica.poll()); // tick 3 arrived without tick 2
+        assertEquals(1, replica.getGapsDetected());
+        assertEquals(1, replica.getAppliedTick());
+
+        play(primaryGame, alice, bob);
+        assertEquals(3, replica.poll());
+        assertInSync(primaryGame, replica);
+        assertEquals(4, primary.getFramesResent()); // tick 1 answering the join, then ticks 2 to 4
+    }
+
+    @Test
+    public void testDivergedReplicaIsRestored() throws IOException {
+        var replica = replica("standby");
+        play(primaryGame, alice, bob);
+        replica.poll();
+        replica.getGame().getEntities().findFirst().get().setProperty("hp", -1);
+        play(primaryGame, alice, bob);
+        replica.poll();
+        assertEquals(1, replica.getDivergences());
+
+        play(primaryGame, alice, bob);
+        replica.poll();
+        assertEquals(1, replica.getSnapshotsRestored());
+        assertInSync(primaryGame, replica);
+    }
+
+    @Test
+    public void testPromotion() throws IOException {
+        var standby = replica("standby");
+        var other = replica("other");
+        for(int t = 0; t < 10; t++) {
+            play(primaryGame, alice, bob);
+            standby.poll();
+            other.poll();
+        }
+        primary.close();
+
+        var promoted = standby.promote();
+        assertTrue(standby.isPromoted());
+        var newPrimary = new ReplicationPrimary(promoted, "standby", transport, 5);
+        other.follow("standby");
+        for(int t = 0; t < 10; t++) {
+            play(promoted, promoted.getAgent("alice"), promoted.getAgent("bob"));
+            other.poll();
+        }
+        assertEquals(20, promoted.getTickCount());
+        assertInSync(promoted, other);
+        assertEquals(0, other.getSnapshotsRestored());
+        assertEquals(0, newPrimary.getSnapshotsSent());
+    }
+}
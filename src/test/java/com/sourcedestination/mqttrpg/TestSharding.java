@@ -0,0 +1,255 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestSharding {
+
+    static class Chest extends Entity implements Container {
+        Chest(Game game) { super(game, Map.of()); }
+        public String getType() { return "chest"; }
+    }
+
+    static class Recorder extends ScriptedAgent {
+        final List<Command> received = new ArrayList<>();
+
+        Recorder(Game game) { super(game, "player", "player"); }
+
+        public void act(long tick) { }
+        public void receiveCommand(Command command) { received.add(command); }
+    }
+
+    static final Map<String,String> OWNERS = Map.of("map1", "a", "map2", "b");
+
+    LocalTransport transport = new LocalTransport();
+    DummyGame gameA = new DummyGame(new DummyBoard("map2", Map1.MAP1));
+    DummyGame gameB = new DummyGame(new DummyBoard("map2", Map1.MAP1));
+    ShardCoordinator nodeA = node(gameA, "a");
+    ShardCoordinator nodeB = node(gameB, "b");
+
+    private ShardCoordinator node(Game game, String id) {
+        try {
+            var node = new ShardCoordinator(game, id, transport, OWNERS);
+            node.registerType("dummy", DummyEntity::new);
+            node.registerType("chest", Chest::new);
+            return node;
+        } catch(IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    public void testEntityIdsAreUniqueAcrossNodes() {
+        var ids = new HashSet<Integer>();
+        for(int i = 0; i < 10; i++) {
+            assertTrue(ids.add(new DummyEntity(gameA).getID()));
+            assertTrue(ids.add(new DummyEntity(gameB).getID()));
+        }
+        assertEquals("a", nodeB.locate(new DummyEntity(gameA).getID()));
+        assertEquals("b", nodeA.locate(new DummyEntity(gameB).getID()));
+    }
+
+    @Test
+    public void testNodeWithoutBoardsGetsItsOwnIds() throws IOException {
+        var nodes = List.of("a", "b", "c");
+        var games = List.of(new DummyGame(new DummyBoard("map2", Map1.MAP1)),
+                new DummyGame(new DummyBoard("map2", Map1.MAP1)), new DummyGame(new DummyBoard("map2", Map1.MAP1)));
+        var others = new LocalTransport();
+        for(int i = 0; i < nodes.size(); i++)
+            new ShardCoordinator(games.get(i), nodes.get(i), nodes, others, OWNERS);
+        var ids = new HashSet<Integer>();
+        for(int i = 0; i < 10; i++)
+            for(var game : games) assertTrue(ids.add(new DummyEntity(game).getID()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNodeWithoutBoardsNeedsNodeList() throws IOException {
+        new ShardCoordinator(new DummyGame(new DummyBoard("map2", Map1.MAP1)), "c", transport, OWNERS);
+    }
+
+    @Test
+    public void testHandOffWithContents() {
+        var chest = new Chest(gameA);
+        var coin = new DummyEntity(gameA);
+        gameA.moveEntity(chest, gameA.getBoard("map1").getTile(1, 1));
+        gameA.moveEntity(coin, chest);
+        chest.setProperty("gold", 12);
+        chest.setProperty("locked", true);
+        chest.setHeading(Direction.NORTH);
+
+        gameA.moveEntity(chest, gameA.getBoard("map2").getTile(2, 3));
+        assertNull(gameA.getEntity(chest.getID()));
+        assertNull(gameA.getEntity(coin.getID()));
+        assertEquals(0, gameB.getEntities().count()); // applied at the end of the receiver's tick
+
+        gameB.tick();
+        var arrivedChest = gameB.getEntity(chest.getID());
+        var arrivedCoin = gameB.getEntity(coin.getID());
+        assertTrue(arrivedChest instanceof Chest);
+        assertEquals(gameB.getBoard("map2").getTile(2, 3), gameB.getEntityLocation(arrivedChest));
+        assertEquals(arrivedChest, gameB.getEntityLocation(arrivedCoin));
+        assertEquals(12, arrivedChest.getProperties().get("gold"));
+        assertEquals(true, arrivedChest.getProperties().get("locked"));
+        assertEquals(Direction.NORTH, arrivedChest.getHeading());
+        assertEquals("DummyValue", arrivedCoin.getProperties().get("DummyKey"));
+        assertEquals(1, nodeA.getHandoffsSent());
+        assertEquals(1, nodeB.getHandoffsReceived());
+        assertEquals("b", nodeA.locate(chest.getID()));
+        assertEquals("b", nodeB.locate(coin.getID()));
+        assertEquals(1, nodeA.getPendingHandoffs());
+
+        // and back again
+        gameB.moveEntity(arrivedChest, gameB.getBoard("map1").getTile(3, 3));
+        gameA.tick();
+        assertEquals(0, nodeA.getPendingHandoffs());
+        assertEquals(0, nodeA.getHandoffsFailed());
+        assertEquals(gameA.getBoard("map1").getTile(3, 3), gameA.getEntityLocation(gameA.getEntity(chest.getID())));
+        assertEquals("a", nodeB.locate(chest.getID()));
+    }
+
+    @Test
+    public void testFailedHandOffKeepsEntity() {
+        nodeB.close();
+        var ent = new DummyEntity(gameA);
+        var start = gameA.getBoard("map1").getTile(1, 1);
+        gameA.moveEntity(ent, start);
+        gameA.moveEntity(ent, gameA.getBoard("map2").getTile(1, 1));
+        assertSame(ent, gameA.getEntity(ent.getID()));
+        assertEquals(start, gameA.getEntityLocation(ent));
+        assertEquals(1, nodeA.getHandoffsFailed());
+    }
+
+    @Test
+    public void testFailedHandOffKeepsTimers() {
+        nodeB.close();
+        gameA.setLockstep(1, 50);
+        var ent = new DummyEntity(gameA);
+        gameA.moveEntity(ent, gameA.getBoard("map1").getTile(1, 1));
+        var runs = new ArrayList<Long>();
+        gameA.scheduleAtFixedRate(game -> runs.add(game.getGameTime()), 50, 50, ent);
+        gameA.moveEntity(ent, gameA.getBoard("map2").getTile(1, 1));
+        assertEquals(1, gameA.getTimers().size());
+        gameA.tick();  // game time 0
+        gameA.tick();
+        assertEquals(List.of(50L), runs);
+    }
+
+    @Test
+    public void testRefusedHandOffIsReinstated() throws IOException {
+        var others = new LocalTransport();
+        var sender = new DummyGame(new DummyBoard("map2", Map1.MAP1));
+        var receiver = new DummyGame(new DummyBoard("map2", Map1.MAP1));
+        var nodeSender = new ShardCoordinator(sender, "a", others, OWNERS);
+        var nodeReceiver = new ShardCoordinator(receiver, "b", others, OWNERS);
+        nodeSender.registerType("chest", Chest::new);
+        nodeReceiver.registerType("dummy", DummyEntity::new);  // but not chests
+        sender.setLockstep(1, 50);
+        var chest = new Chest(sender);
+        var start = sender.getBoard("map1").getTile(1, 1);
+        sender.moveEntity(chest, start);
+        var runs = new ArrayList<Long>();
+        sender.scheduleAtFixedRate(game -> runs.add(game.getGameTime()), 50, 50, chest);
+
+        sender.moveEntity(chest, sender.getBoard("map2").getTile(2, 3));
+        assertNull(sender.getEntity(chest.getID()));
+        receiver.tick();
+        assertEquals(1, nodeReceiver.getMessagesDropped());
+        assertEquals(0, receiver.getEntities().count());
+
+        sender.tick();  // game time 0, the refusal is applied
+        assertSame(chest, sender.getEntity(chest.getID()));
+        assertEquals(start, sender.getEntityLocation(chest));
+        assertEquals("a", nodeSender.locate(chest.getID()));
+        assertEquals(1, nodeSender.getHandoffsFailed());
+        assertEquals(0, nodeSender.getPendingHandoffs());
+        sender.tick();
+        assertEquals(List.of(50L), runs);
+    }
+
+    @Test
+    public void testUnansweredHandOffTimesOut() {
+        gameA.setLockstep(1, 50);
+        nodeA.setHandoffTimeout(100);
+        var ent = new DummyEntity(gameA);
+        var start = gameA.getBoard("map1").getTile(1, 1);
+        gameA.moveEntity(ent, start);
+        gameA.moveEntity(ent, gameA.getBoard("map2").getTile(1, 1));
+        gameA.tick();  // inbox processed at game time 50
+        assertNull(gameA.getEntity(ent.getID()));
+        gameA.tick();  // game time 100, node b never answered
+        assertSame(ent, gameA.getEntity(ent.getID()));
+        assertEquals(start, gameA.getEntityLocation(ent));
+        assertEquals(1, nodeA.getHandoffsFailed());
+
+        // the late acknowledgement revokes the handoff, so the entity is not on both nodes
+        gameB.tick();
+        assertNotNull(gameB.getEntity(ent.getID()));
+        gameA.tick();
+        gameB.tick();
+        assertNull(gameB.getEntity(ent.getID()));
+        assertEquals(1, nodeB.getHandoffsRevoked());
+        assertEquals("a", nodeB.locate(ent.getID()));
+        assertSame(ent, gameA.getEntity(ent.getID()));
+    }
+
+    @Test
+    public void testMalformedMessagesAreDropped() throws IOException {
+        var chest = new Chest(gameA);
+        gameA.moveEntity(chest, gameA.getBoard("map1").getTile(1, 1));
+        var handoff = "{\"kind\":\"handoff\",\"board\":\"map2\",\"column\":2,\"row\":3,\"entities\":";
+        var entity = "{\"id\":" + (chest.getID() + 1000) + ",\"type\":\"chest\",\"properties\":{}";
+        for(var message : List.of("not json", "{\"kind\":\"gossip\"}",
+                "{\"kind\":\"handoff\",\"board\":\"nowhere\",\"column\":1,\"row\":1,\"entities\":[]}",
+                handoff.replace("\"column\":2", "\"column\":10000000000") + "[]}",
+                handoff.replace("\"row\":3,", "") + "[]}",
+                handoff + "[" + entity.replace("chest", "dragon") + "}]}",
+                handoff + "[" + entity + ",\"container\":99}]}",
+                handoff + "[" + entity + ",\"heading\":\"UP\"}]}",  // fails while recreating
+                handoff + "[" + entity + "}," + entity + "}]}",  // duplicate id
+                "{\"kind\":\"command\",\"agent\":\"player\",\"command\":{}}"))
+            transport.send("b", message);
+        gameB.tick();
+        assertEquals(10, nodeB.getMessagesDropped());
+        assertEquals(0, nodeB.getHandoffsReceived());
+        assertEquals(0, gameB.getEntities().count());
+
+        gameA.moveEntity(chest, gameA.getBoard("map2").getTile(2, 3));  // the game loop still runs
+        gameB.tick();
+        assertEquals(1, nodeB.getHandoffsReceived());
+        assertNotNull(gameB.getEntity(chest.getID()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownTypeIsNotHandedOff() {
+        var ent = new Entity(gameA, Map.of()) {
+            public String getType() { return "unknown"; }
+        };
+        gameA.moveEntity(ent, gameA.getBoard("map2").getTile(1, 1));
+    }
+
+    @Test
+    public void testCommandsFollowEntity() throws Exception {
+        var playerA = new Recorder(gameA);
+        var playerB = new Recorder(gameB);
+        var ent = new DummyEntity(gameA);
+        gameA.moveEntity(ent, gameA.getBoard("map2").getTile(1, 1));
+        gameB.tick();
+
+        nodeA.submitCommand(playerA, new Command(gameA, "{\"type\":\"look\",\"entity\":" + ent.getID() + "}"));
+        nodeA.submitCommand(playerA, new Command(gameA, "{\"type\":\"wait\"}"));
+        assertEquals(1, nodeA.getCommandsForwarded());
+        gameA.tick();
+        gameB.tick(); // forwarded command is admitted
+        gameB.tick(); // and handled
+        assertEquals(List.of("wait"), playerA.received.stream().map(c -> c.getProperties().get("type")).toList());
+        assertEquals(1, playerB.received.size());
+        assertEquals(ent.getID(), playerB.received.get(0).getProperties().get("entity"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestSimulationRunner {
+    static final PropertyKey<Integer> STEPS = PropertyKey.intKey("steps");
+
+    /** game that ends once its walker has taken 20 steps */
+    static class WalkGame extends DummyGame {
+        final Walker walker = new Walker(this);
+
+        public boolean checkGameAlive() { return walker.body.getInt(STEPS) < 20; }
+    }
+
+    /** randomly walks a body around the board, sometimes standing still */
+    static class Walker extends ScriptedAgent {
+        final Entity body;
+
+        Walker(Game game) {
+            super(game, "walker", "player");
+            body = new DummyEntity(game);
+            body.setInt(STEPS, 0);
+        }
+
+        public void act(long tick) {
+            if(getGame().getRandom().nextInt(3) > 0) issue(new Command(getGame(), Map.of()));
+        }
+
+        public void receiveCommand(Command command) {
+            var game = getGame();
+            var board = game.getBoard("map1");
+            game.moveEntity(body, board.getTile(game.getRandom().nextInt(board.getWidth()),
+                    game.getRandom().nextInt(board.getHeight())));
+            body.setInt(STEPS, body.getInt(STEPS) + 1);
+        }
+    }
+
+    SimulationRunner runner = new SimulationRunner(seed -> new WalkGame())
+            .threads(4)
+            .millisPerTick(50)
+            .statistics(game -> Map.of("ticks", game.getTickCount()));
+
+    @Test
+    public void testBatchRun() {
+        var report = runner.run(40, 1000);
+        assertEquals(40, report.getGames());
+        assertEquals(0, report.getFailures());
+        for(var outcome : report.getOutcomes()) {
+            assertTrue(outcome.isFinished());
+            assertTrue(outcome.getTicks() >= 20);
+            assertEquals(outcome.getTicks() * 50, outcome.getGameTime());
+        }
+        assertEquals(1000, report.getOutcomes().get(0).getSeed());
+        assertEquals(40, report.getStatistic("ticks").getCount());
+        assertTrue(report.getGamesPerSecond() > 0);
+    }
+
+    @Test
+    public void testGamesReplayFromSeed() {
+        var report = runner.run(8, 5);
+        for(var outcome : report.getOutcomes()) {
+            var replay = runner.runGame(outcome.getSeed());
+            assertEquals(outcome.getStateHash(), replay.getStateHash());
+            assertEquals(outcome.getTicks(), replay.getTicks());
+        }
+    }
+
+    @Test
+    public void testTickLimit() {
+        var outcome = runner.maxTicks(5).runGame(1);
+        assertFalse(outcome.isFinished());
+        assertEquals(5, outcome.getTicks());
+    }
+}
@@ -0,0 +1,193 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestSpeculation {
+
+    static class Box extends DummyEntity implements Pushable {
+        Box(Game game) { super(game); }
+    }
+
+    /** records the order listening entities are notified in */
+    static class Sentry extends DummyEntity implements EventListener {
+        final String name;
+        final List<String> log;
+
+        Sentry(Game game, String name, List<String> log) {
+            super(game);
+            this.name = name;
+            this.log = log;
+        }
+
+        public void acceptEvent(Event event) {
+            if(log != null) log.add(name);  // null while its own creation event is delivered
+        }
+    }
+
+    DummyGame game = new DummyGame();
+    Board board = game.getBoard("map1");
+    DummyEntity player = new DummyEntity(game);
+    Box box = new Box(game);
+    Tile start = board.getTile(1, 1);
+    Tile boxTile = board.getTile(2, 1);
+    ArrayList<Event> events = new ArrayList<>();
+
+    public TestSpeculation() {
+        game.moveEntity(player, start);
+        game.moveEntity(box, boxTile);
+        game.addAgent(new Agent("watcher", "spectator") {
+            public void receiveCommand(Command command) { }
+            public void acceptEvent(Event event) { events.add(event); }
+            public Game getGame() { return game; }
+            public Map<String,Object> getProperties() { return Map.of(); }
+            public void setProperty(String key, Object value) { }
+        });
+    }
+
+    @Test
+    public void testRollbackRestoresState() {
+        long hash = game.getStateHash();
+        int entities = (int)game.getEntities().count();
+        try(var s = game.speculate()) {
+            box.push(player).accept(game);
+            assertEquals(board.getTile(3, 1), game.getEntityLocation(box));
+            game.moveEntity(player, boxTile);
+            player.setProperty("DummyKey", "changed");
+            player.setProperty("health", 3);
+            boxTile.setProperty("lit", true);
+            player.setHeading(Direction.EAST);
+            game.moveEntity(new DummyEntity(game), start);
+            game.removeEntity(box);
+            game.getRandom().nextLong();
+        }
+        assertEquals(start, game.getEntityLocation(player));
+        assertEquals(boxTile, game.getEntityLocation(box));
+        assertSame(box, game.getEntity(box.getID()));
+        assertEquals("DummyValue", player.getProperty("DummyKey"));
+        assertFalse(player.hasProperty("health"));
+        assertFalse(boxTile.hasProperty("lit"));
+        assertNull(player.getHeading());
+        assertEquals(entities, game.getEntities().count());
+        assertEquals(hash, game.getStateHash());
+        assertTrue(events.isEmpty());
+        assertFalse(game.isSpeculating());
+    }
+
+    @Test
+    public void testRollbackRestoresLockstepHash() {
+        game.setLockstep(7, 16);
+        boxTile.setProperty("lit", false);
+        long hash = game.getStateHash();
+        try(var s = game.speculate()) {
+            start.setProperty("lit", true);
+            boxTile.setProperty("lit", true);
+            assertNotEquals(hash, game.getStateHash());
+        }
+        assertEquals(hash, game.getStateHash());
+        assertEquals(List.of(boxTile), game.getModifiedTiles());
+    }
+
+    @Test
+    public void testRollbackRestoresTimers() {
+        game.setLockstep(7, 50);
+        int[] runs = {0, 0};
+        game.schedule(g -> runs[0]++, 150);
+        var periodic = game.scheduleAtFixedRate(g -> runs[1]++, 100, 100);
+        try(var s = game.speculate()) {
+            for(int t = 0; t < 4; t++) game.tick();  // game time 0, 50, 100 and 150
+            assertEquals(1, runs[0]);
+            assertEquals(1, runs[1]);
+        }
+        assertEquals(2, game.getTimers().size());
+        assertEquals(100, periodic.getDueTime());
+        for(int t = 0; t < 4; t++) game.tick();
+        assertEquals(2, runs[0]);  // once inside the speculation, once after it
+        assertEquals(2, runs[1]);
+        assertEquals(1, game.getTimers().size());
+    }
+
+    @Test
+    public void testNestedBranches() {
+        var a = board.getTile(1, 2);
+        var b = board.getTile(1, 3);
+        try(var outer = game.speculate()) {
+            game.moveEntity(player, a);
+            try(var inner = game.speculate()) {
+                game.moveEntity(player, b);
+                inner.rollback();
+                assertEquals(a, game.getEntityLocation(player));
+                game.moveEntity(box, b);
+            }
+            assertEquals(boxTile, game.getEntityLocation(box));
+            try(var inner = game.speculate()) {
+                game.moveEntity(box, b);
+                inner.commit();
+            }
+            assertEquals(b, game.getEntityLocation(box));
+        }
+        assertEquals(start, game.getEntityLocation(player));
+        assertEquals(boxTile, game.getEntityLocation(box));
+    }
+
+    @Test
+    public void testEventsRedirected() {
+        var speculative = new ArrayList<Event>();
+        try(var s = game.speculate(speculative::add)) {
+            game.moveEntity(player, board.getTile(1, 2));
+        }
+        assertEquals(1, speculative.size());
+        assertTrue(events.isEmpty());
+        game.moveEntity(player, board.getTile(1, 2));
+        assertEquals(1, events.size());
+        assertEquals(speculative.get(0).getProperty("id"), events.get(0).getProperty("id"));
+    }
+
+    @Test
+    public void testCommitKeepsChanges() {
+        var s = game.speculate();
+        game.moveEntity(player, board.getTile(1, 2));
+        s.commit();
+        s.close();
+        assertEquals(board.getTile(1, 2), game.getEntityLocation(player));
+        assertFalse(game.isSpeculating());
+    }
+
+    @Test
+    public void testCommitPropagatesKeptEvents() {
+        try(var outer = game.speculate()) {
+            game.moveEntity(player, board.getTile(1, 2));
+            try(var inner = game.speculate()) {
+                game.moveEntity(box, board.getTile(3, 1));  // rolled back, never reported
+            }
+            try(var inner = game.speculate()) {
+                boxTile.setProperty("lit", true);
+                inner.commit();
+            }
+            assertTrue(events.isEmpty());
+            outer.commit();
+        }
+        assertEquals(2, events.size());
+        assertEquals("entity-moved", events.get(0).getType());
+        assertEquals("tile-status-update", events.get(1).getType());
+    }
+
+    @Test
+    public void testRollbackKeepsListenerOrder() {
+        var log = new ArrayList<String>();
+        var first = new Sentry(game, "first", log);
+        new Sentry(game, "second", log);
+        try(var speculation = game.speculate()) {
+            game.removeEntity(first);
+            speculation.rollback();
+        }
+        log.clear();
+        board.getTile(1, 2).setProperty("lit", true);
+        assertEquals(List.of("first", "second"), log);
+    }
+}
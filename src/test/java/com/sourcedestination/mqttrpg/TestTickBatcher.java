@@ -0,0 +1,146 @@
+package com.sourcedestination.mqttrpg;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestTickBatcher {
+
+    DummyGame game = new DummyGame();
+    Board board = game.getBoard("map1");
+    DummyEntity ent = new DummyEntity(game);
+    EventFanout fanout = new EventFanout(game);
+    List<String> topics = new ArrayList<>();
+    List<byte[]> frames = new ArrayList<>();
+    TickBatcher batcher = new TickBatcher(game, (topic, frame) -> { topics.add(topic); frames.add(frame); });
+
+    private void walk(int steps) {
+        for(int i = 0; i < steps; i++) {
+            int step = i;
+            game.addAction(g -> g.moveEntity(ent, board.getTile(step % 5, (step / 5) % 5)));
+        }
+    }
+
+    @Test
+    public void testOneFramePerTopicPerTick() {
+        var json = new ArrayList<String>();
+        game.addEventListener(event -> json.add(event.toString()));
+        batcher.subscribe(fanout, "game/spectators", EventFormat.JSON, PayloadCompression.DEFLATE);
+        batcher.subscribe(fanout, "game/bot", EventFormat.BINARY, PayloadCompression.NONE);
+        walk(20);
+        game.tick();
+        assertEquals(List.of("game/spectators", "game/bot"), topics);
+        var events = EventBatchCodec.decode(frames.get(0));
+        assertEquals(20, events.size());
+        for(int i = 0; i < 20; i++)
+            assertEquals(json.get(i), new String(events.get(i), StandardCharsets.UTF_8));
+        assertEquals(20, EventBatchCodec.decode(frames.get(1)).size());
+
+        game.tick();  // nothing happened, nothing published
+        assertEquals(2, frames.size());
+        assertEquals(2, batcher.getBatches());
+        assertEquals(40, batcher.getEvents());
+    }
+
+    @Test
+    public void testCompressionShrinksBatches() {
+        var codec = new EventBatchCodec();
+        var events = new ArrayList<byte[]>();
+        game.addEventListener(event -> events.add(event.toString().getBytes(StandardCharsets.UTF_8)));
+        walk(30);
+        game.tick();
+        var plain = codec.encode(events, PayloadCompression.NONE);
+        var deflated = codec.encode(events, PayloadCompression.DEFLATE);
+        var fast = codec.encode(events, PayloadCompression.FAST);
+        assertTrue(deflated.length * 4 < plain.length);
+        assertTrue(fast.length * 3 < plain.length);
+        for(var frame : List.of(plain, deflated, fast)) {
+            var decoded = EventBatchCodec.decode(frame);
+            for(int i = 0; i < events.size(); i++)
+                assertArrayEquals(events.get(i), decoded.get(i));
+        }
+
+        // the dictionary pays off even for a single event
+        var single = List.of(events.get(0));
+        var withDictionary = codec.encode(single, PayloadCompression.DEFLATE);
+        var withoutDictionary = new EventBatchCodec(new byte[0]).encode(single, PayloadCompression.DEFLATE);
+        assertTrue(withDictionary.length < withoutDictionary.length);
+        codec.close();
+    }
+
+    @Test
+    public void testMalformedFrames() {
+        var frame = new EventBatchCodec().encode(List.of(new byte[] {1, 2, 3}), PayloadCompression.FAST);
+        int magic = EventBatchCodec.MAGIC;
+        for(var bad : List.of(new byte[] {1, 2, 3, 4}, java.util.Arrays.copyOf(frame, frame.length - 2),
+                new byte[] {(byte)magic, 0, -1, -1, -1, -1, 15, 1, 0},  // negative count
+                new byte[] {(byte)magic, 1, 1, -1, -1, -1, -1, 15, 0},  // negative body length
+                new byte[] {(byte)magic, 1, 1, -1, -1, -1, -1, 7, 0, 0},  // body far larger than the frame allows
+                new byte[] {(byte)magic, 0, 5, 2, 0, 0},  // more events than body bytes
+                new byte[] {(byte)magic, 0, 1, 5, -1, -1, -1, -1, 15}))  // negative event length
+            try {
+                EventBatchCodec.decode(bad);
+                fail();
+            } catch(IllegalArgumentException e) { }
+    }
+
+    @Test
+    public void testNegotiation() {
+        assertEquals(PayloadCompression.FAST, PayloadCompression.negotiate(List.of("lz4", "fast", "deflate")));
+        assertEquals(PayloadCompression.DEFLATE, PayloadCompression.negotiate(List.of("DEFLATE")));
+        assertEquals(PayloadCompression.NONE, PayloadCompression.negotiate(List.of("brotli")));
+    }
+
+    @Test
+    public void testRefusedBatchResyncsTopic() {
+        var sent = new ArrayList<String>();
+        boolean[] refuse = {true};
+        var client = (IMqttAsyncClient)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {IMqttAsyncClient.class}, (proxy, method, args) -> {
+                    if(refuse[0]) throw new MqttException(MqttException.REASON_CODE_MAX_INFLIGHT);
+                    sent.add(new String(((MqttMessage)args[1]).getPayload(), StandardCharsets.UTF_8));
+                    return null;
+                });
+        var publisher = new MqttBatchPublisher(client, 0, topic -> ("snapshot of " + topic).getBytes(StandardCharsets.UTF_8));
+        publisher.publish("game/spectators", "delta 1".getBytes(StandardCharsets.UTF_8));
+        refuse[0] = false;
+        publisher.publish("game/spectators", "delta 2".getBytes(StandardCharsets.UTF_8));
+        publisher.publish("game/spectators", "delta 3".getBytes(StandardCharsets.UTF_8));
+        assertEquals(List.of("snapshot of game/spectators", "delta 3"), sent);
+        assertEquals(1, publisher.getFailed());
+        assertEquals(1, publisher.getResyncs());
+        assertEquals(2, publisher.getPublished());
+    }
+
+    @Test
+    public void testFailedDeliveryResyncsTopic() {
+        var sent = new ArrayList<String>();
+        var callbacks = new ArrayList<IMqttActionListener>();
+        var client = (IMqttAsyncClient)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {IMqttAsyncClient.class}, (proxy, method, args) -> {
+                    sent.add(new String(((MqttMessage)args[1]).getPayload(), StandardCharsets.UTF_8));
+                    callbacks.add((IMqttActionListener)args[3]);
+                    return null;
+                });
+        var token = (IMqttToken)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {IMqttToken.class}, (proxy, method, args) -> "game/spectators");
+        var publisher = new MqttBatchPublisher(client, 1, topic -> ("snapshot of " + topic).getBytes(StandardCharsets.UTF_8));
+        publisher.publish("game/spectators", "delta 1".getBytes(StandardCharsets.UTF_8));
+        callbacks.get(0).onFailure(token, new MqttException(MqttException.REASON_CODE_CONNECTION_LOST));
+        publisher.publish("game/spectators", "delta 2".getBytes(StandardCharsets.UTF_8));
+        assertEquals(List.of("delta 1", "snapshot of game/spectators"), sent);
+        assertEquals(1, publisher.getFailed());
+        assertEquals(1, publisher.getResyncs());
+    }
+}
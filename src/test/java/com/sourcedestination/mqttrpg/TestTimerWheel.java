@@ -0,0 +1,121 @@
+package com.sourcedestination.mqttrpg;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestTimerWheel {
+
+    TimerWheel wheel = new TimerWheel(10, 0);
+    List<String> fired = new ArrayList<>();
+
+    private Action log(String name) {
+        return game -> fired.add(name);
+    }
+
+    private void run(List<Action> actions) {
+        actions.forEach(a -> a.accept(null));
+    }
+
+    @Test
+    public void testOrderingAndDelays() {
+        wheel.schedule(log("c"), 1_000_000, null);  // beyond the first levels
+        wheel.schedule(log("b"), 700, null);
+        wheel.schedule(log("a"), 15, null);
+        wheel.schedule(log("a2"), 15, null);
+        run(wheel.advance(10));
+        assertTrue(fired.isEmpty());
+        run(wheel.advance(20));
+        assertEquals(List.of("a", "a2"), fired);
+        run(wheel.advance(699));
+        assertEquals(2, fired.size());
+        run(wheel.advance(700));
+        assertEquals("b", fired.get(2));
+        run(wheel.advance(999_990));
+        assertEquals(3, fired.size());
+        run(wheel.advance(1_000_000));
+        assertEquals(List.of("a", "a2", "b", "c"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testPeriodicAndCancel() {
+        var regen = wheel.scheduleAtFixedRate(log("regen"), 2000, 2000, null);
+        var door = wheel.schedule(log("door"), 5000, null);
+        door.cancel();
+        assertFalse(door.isPending());
+        for(long t = 0; t <= 10_000; t += 100) run(wheel.advance(t));
+        assertEquals(5, fired.size());
+        assertTrue(regen.isPending());
+        assertEquals(12_000, regen.getDueTime());
+        regen.cancel();
+        for(long t = 10_000; t <= 20_000; t += 100) run(wheel.advance(t));
+        assertEquals(5, fired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testMissedRunsCatchUp() {
+        wheel.scheduleAtFixedRate(log("regen"), 100, 100, null);
+        run(wheel.advance(1000));
+        assertEquals(1, fired.size());  // at most one run per advance
+        run(wheel.advance(1000));
+        run(wheel.advance(1000));
+        assertEquals(3, fired.size());
+    }
+
+    @Test
+    public void testEntityLifetime() {
+        var game = new DummyGame();
+        game.setLockstep(1, 100);
+        var ent = new DummyEntity(game);
+        var count = new int[1];
+        var timer = game.scheduleAtFixedRate(g -> count[0]++, 100, 100, ent);
+        game.schedule(g -> count[0] += 100, 5000, ent);
+        for(int i = 0; i < 10; i++) game.tick();
+        assertEquals(9, count[0]);
+        game.removeEntity(ent);
+        assertFalse(timer.isPending());
+        assertEquals(0, game.getTimers().size());
+        for(int i = 0; i < 100; i++) game.tick();
+        assertEquals(9, count[0]);
+    }
+
+    @Test
+    public void testManyTimers() {
+        var timers = new ArrayList<Timer>();
+        for(int i = 0; i < 300_000; i++)
+            timers.add(wheel.schedule(log(null), 10 + (i * 7919L) % 3_600_000, null));
+        for(int i = 0; i < timers.size(); i += 2) timers.get(i).cancel();
+        assertEquals(150_000, wheel.size());
+        int total = 0;
+        for(long t = 0; t <= 3_600_000; t += 1000) total += wheel.advance(t).size();
+        assertEquals(150_000, total);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testUndoAdvance() {
+        var undo = new ArrayList<Runnable>();
+        var owner = new DummyEntity(new DummyGame());
+        var regen = wheel.scheduleAtFixedRate(log("regen"), 100, 100, owner);
+        var door = wheel.schedule(log("door"), 150, owner);
+        wheel.schedule(log("far"), 1_000_000, null);  // cascades on the way
+        run(wheel.advance(200, undo::add));
+        assertEquals(List.of("regen", "door"), fired);
+        assertEquals(2, wheel.size());
+        undo.forEach(Runnable::run);
+        assertEquals(3, wheel.size());
+        assertTrue(door.isPending());
+        assertEquals(100, regen.getDueTime());
+        assertEquals(2, wheel.owned(owner).size());
+        fired.clear();
+        run(wheel.advance(200));
+        assertEquals(List.of("regen", "door"), fired);
+        run(wheel.advance(1_000_000));
+        assertEquals(List.of("regen", "door", "regen", "far"), fired);
+    }
+}
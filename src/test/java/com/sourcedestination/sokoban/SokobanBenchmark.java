@@ -0,0 +1,73 @@
+package com.sourcedestination.sokoban;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/** solves a level set and reports solve time, states explored and heap used per level.
+ * Takes an optional XSB collection file (e.g. a standard set such as Microban); without one it
+ * solves a small built-in set.
+ * Run with: java -cp target/classes:target/test-classes:&lt;deps&gt; com.sourcedestination.sokoban.SokobanBenchmark [levels.xsb] [threads]
+ */
+public class SokobanBenchmark {
+
+    static final String LEVELS =
+            "; 1\n" +
+            "#######\n" +
+            "#     #\n" +
+            "# $$  #\n" +
+            "#  @ .#\n" +
+            "#   ..#\n" +
+            "#######\n" +
+            "\n; 2\n" +
+            "  #####\n" +
+            "###   #\n" +
+            "#.@$  #\n" +
+            "### $.#\n" +
+            "#.##$ #\n" +
+            "# # . ##\n" +
+            "#$ *$$.#\n" +
+            "#   .  #\n" +
+            "########\n" +
+            "\n; 3\n" +
+            "########\n" +
+            "#      #\n" +
+            "# #$#  #\n" +
+            "# $ .. #\n" +
+            "#  $#. #\n" +
+            "## @   #\n" +
+            " #######\n" +
+            "\n; 4\n" +
+            "#########\n" +
+            "#   #   #\n" +
+            "# $ $ $ #\n" +
+            "#  ...  #\n" +
+            "## #@# ##\n" +
+            " #     #\n" +
+            " #######\n";
+
+    public static void main(String[] args) throws Exception {
+        List<SokobanLevel> levels = args.length > 0 ?
+                SokobanLevel.parseCollection(Files.readString(Path.of(args[0]))) :
+                SokobanLevel.parseCollection(LEVELS);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        var runtime = Runtime.getRuntime();
+        long totalNanos = 0;
+        int solved = 0;
+        for(int i = 0; i < levels.size(); i++) {
+            System.gc();
+            long before = runtime.totalMemory() - runtime.freeMemory();
+            var solver = new SokobanSolver(levels.get(i)).parallelism(threads);
+            long start = System.nanoTime();
+            var solution = solver.solve();
+            long nanos = System.nanoTime() - start;
+            long used = runtime.totalMemory() - runtime.freeMemory() - before;
+            totalNanos += nanos;
+            if(solution.isPresent()) solved++;
+            System.out.printf("level %d: %s in %.1f ms, %,d states, ~%,d KB heap%n", i + 1,
+                    solution.map(s -> s.getPushes() + " pushes").orElse("no solution"),
+                    nanos / 1e6, solver.getStatesExplored(), Math.max(0, used) / 1024);
+        }
+        System.out.printf("%d/%d solved in %.1f ms with %d threads%n", solved, levels.size(), totalNanos / 1e6, threads);
+    }
+}
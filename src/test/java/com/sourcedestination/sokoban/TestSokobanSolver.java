@@ -0,0 +1,176 @@
+package com.sourcedestination.sokoban;
+
+import com.sourcedestination.mqttrpg.*;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestSokobanSolver {
+
+    static final String SIMPLE =
+            "#####\n" +
+            "#@$.#\n" +
+            "#####\n";
+
+    static final String TWO_BOXES =
+            "#######\n" +
+            "#     #\n" +
+            "# $$  #\n" +
+            "#  @ .#\n" +
+            "#   ..#\n" +
+            "#######\n";
+
+    static final String CORNER_DEADLOCK =
+            "######\n" +
+            "#$   #\n" +
+            "# @ .#\n" +
+            "######\n";
+
+    static final String AROUND_THE_CORNER =
+            "  ####\n" +
+            "###  #\n" +
+            "#.$  #\n" +
+            "###$ #\n" +
+            "#.  @#\n" +
+            "######\n";
+
+    /** plays LURD moves on a level, returning whether every box ends on a goal */
+    static boolean replay(SokobanLevel level, String moves) {
+        int width = level.getWidth(), player = level.getPlayer();
+        var boxes = new boolean[width * level.getHeight()];
+        for(int p = 0; p < boxes.length; p++) boxes[p] = level.isBox(p);
+        for(char m : moves.toCharArray()) {
+            int delta = switch(Character.toLowerCase(m)) {
+                case 'u' -> -width;
+                case 'd' -> width;
+                case 'l' -> -1;
+                default -> 1;
+            };
+            int next = player + delta;
+            assertFalse(level.isWall(next));
+            if(boxes[next]) {
+                assertTrue("push must be uppercase", Character.isUpperCase(m));
+                assertFalse(level.isWall(next + delta) || boxes[next + delta]);
+                boxes[next] = false;
+                boxes[next + delta] = true;
+            } else assertTrue("walk must be lowercase", Character.isLowerCase(m));
+            player = next;
+        }
+        for(int p = 0; p < boxes.length; p++)
+            if(boxes[p] && !level.isGoal(p)) return false;
+        return true;
+    }
+
+    @Test
+    public void testSolvesLevels() {
+        for(var xsb : new String[] { SIMPLE, TWO_BOXES, AROUND_THE_CORNER }) {
+            var level = SokobanLevel.parse(xsb);
+            var solution = new SokobanSolver(level).solve();
+            assertTrue(xsb, solution.isPresent());
+            assertTrue(replay(level, solution.get().getMoves()));
+        }
+        assertEquals("R", new SokobanSolver(SokobanLevel.parse(SIMPLE)).solve().get().getMoves());
+    }
+
+    @Test
+    public void testPushOptimal() {
+        var solution = new SokobanSolver(SokobanLevel.parse(TWO_BOXES)).parallelism(1).solve().get();
+        assertEquals(solution.getPushes(),
+                new SokobanSolver(SokobanLevel.parse(TWO_BOXES)).parallelism(4).solve().get().getPushes());
+        assertEquals(solution.getPushes(), solution.getMoves().chars().filter(Character::isUpperCase).count());
+    }
+
+    @Test
+    public void testDeadlocks() {
+        var solver = new SokobanSolver(SokobanLevel.parse(CORNER_DEADLOCK));
+        assertTrue(solver.isDeadSquare(1, 1));
+        assertFalse(solver.isDeadSquare(4, 2));
+        assertFalse(solver.solve().isPresent());
+        assertEquals(1, solver.getStatesExplored());
+
+        assertFalse(new SokobanSolver(SokobanLevel.parse(TWO_BOXES)).isDeadlocked());
+        // neither box is on a dead square, but each keeps the other from sliding along the wall
+        var frozen = SokobanLevel.parse(
+                "######\n" +
+                "#.$$.#\n" +
+                "#    #\n" +
+                "# @  #\n" +
+                "######\n");
+        var frozenSolver = new SokobanSolver(frozen);
+        assertFalse(frozenSolver.isDeadSquare(2, 1));
+        assertTrue(frozenSolver.isDeadlocked());
+        assertFalse(frozenSolver.solve().isPresent());
+    }
+
+    @Test
+    public void testCollectionParsing() {
+        var levels = SokobanLevel.parseCollection("; 1\n" + SIMPLE + "\nLevel 2\n" + TWO_BOXES);
+        assertEquals(2, levels.size());
+        assertEquals(SIMPLE, levels.get(0).toString());
+    }
+
+    @Test
+    public void testHintFromBoard() {
+        var generators = Map.of(
+                '#', Tile.getGenerator('#', "wall", Map.of("impassable", "true")),
+                '.', Tile.getGenerator('.', "goal", Map.of("goal", "true")));
+        var board = new Board("level", "#####\n#  .#\n#####\n", generators);
+        var game = new DummyGame(board);
+        var player = new DummyEntity(game);
+        var box = new Box(game);
+        game.moveEntity(player, board.getTile(1, 1));
+        game.moveEntity(box, board.getTile(2, 1));
+        var hint = SokobanSolver.hint(game, board, player, tile -> tile.hasProperty("goal"));
+        assertEquals(Direction.EAST, hint.get());
+    }
+
+    @Test
+    public void testImpassableEntitiesAreWalls() {
+        var generators = Map.of(
+                '#', Tile.getGenerator('#', "wall", Map.of("impassable", "true")),
+                '.', Tile.getGenerator('.', "goal", Map.of("goal", "true")));
+        var board = new Board("level", "######\n#   .#\n######\n", generators);
+        var game = new DummyGame(board);
+        var player = new DummyEntity(game);
+        var box = new Box(game);
+        var boulder = new DummyEntity(game);
+        boulder.setProperty("impassable", "true");
+        game.moveEntity(player, board.getTile(1, 1));
+        game.moveEntity(box, board.getTile(2, 1));
+        game.moveEntity(boulder, board.getTile(3, 1));
+        var level = SokobanLevel.fromBoard(game, board, player, tile -> tile.hasProperty("goal"));
+        assertTrue(level.isWall(1 * 6 + 3));
+        assertTrue(level.isBox(1 * 6 + 2));
+        try {
+            new SokobanSolver(level);
+            fail("the boulder cuts the goal off");
+        } catch(IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("goal at column 4, row 1"));
+        }
+    }
+
+    @Test
+    public void testUnreachableBoxesAreRejected() {
+        var level = SokobanLevel.parse(
+                "#######\n" +
+                "#@ .#$#\n" +
+                "#$ .# #\n" +
+                "#######\n");
+        try {
+            new SokobanSolver(level);
+            fail("a box the player cannot reach can never be pushed");
+        } catch(IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("column 5, row 1"));
+        }
+        new SokobanSolver(SokobanLevel.parse(  // an unreachable box already on its goal is fine
+                "#######\n" +
+                "#@$.#*#\n" +
+                "#######\n"));
+    }
+
+    static class Box extends DummyEntity implements PushableToPassable {
+        Box(Game game) { super(game); }
+    }
+}